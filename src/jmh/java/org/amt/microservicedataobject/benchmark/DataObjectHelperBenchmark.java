@@ -0,0 +1,202 @@
+package org.amt.microservicedataobject.benchmark;
+
+import org.amt.microservicedataobject.service.DataObjectHelper;
+import org.amt.microservicedataobject.service.DataObjectListing;
+import org.amt.microservicedataobject.service.aws.AwsDataObjectHelperImpl;
+import org.amt.microservicedataobject.service.aws.AwsServiceConfigurator;
+import org.amt.microservicedataobject.service.local.LocalDataObjectHelperImpl;
+import org.amt.microservicedataobject.service.local.LocalUrlSigner;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Throughput, latency percentiles and allocation of the operations of a {@link DataObjectHelper}
+ * Each operation runs with 1, 4 and 16 threads sharing the same helper, one nested class per thread count
+ * - local: the files of a temporary directory, no network involved
+ * - s3: an S3-compatible stand-in (MinIO, LocalStack...) at the endpoint given by the DATAOBJECT_AWS_ENDPOINT
+ * environment variable, with the credentials of AWS_ACCESS_KEY_ID and AWS_SECRET_ACCESS_KEY, whose bucket exists
+ * mvn -Pbenchmark verify -Dbenchmark="DataObjectHelper -p backend=s3"
+ * Payloads are random bytes of the given sizes and the images of the tests
+ *
+ * @author De Bleser Dimitri
+ * @author Peer Vincent
+ * @author Nelson Jeanreneaud
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 3)
+@Measurement(iterations = 3, time = 3)
+@Fork(1)
+public abstract class DataObjectHelperBenchmark {
+
+    private static final int LISTED_OBJECTS = 100;
+    private static final byte[] SMALL_CONTENT = new byte[128];
+
+    @State(Scope.Benchmark)
+    public static class Storage {
+
+        @Param({"local"})
+        public String backend;
+
+        DataObjectHelper dataObjectHelper;
+        // Every run writes below its own prefix, removed at the end
+        String prefix;
+        private Path root;
+
+        @Setup
+        public void setUp() throws Exception {
+            prefix = "benchmark/" + UUID.randomUUID() + "/";
+            if ("s3".equals(backend)) {
+                String endpoint = System.getenv("DATAOBJECT_AWS_ENDPOINT");
+                if (endpoint == null || endpoint.isBlank()) {
+                    throw new IllegalStateException("DATAOBJECT_AWS_ENDPOINT must point to an S3-compatible stand-in");
+                }
+                dataObjectHelper = new AwsDataObjectHelperImpl(new AwsServiceConfigurator.Builder()
+                        .withEnvironmentVariables()
+                        .withEndpointOverride(URI.create(endpoint))
+                        .build());
+            } else {
+                root = Files.createTempDirectory("dataobject-benchmark");
+                dataObjectHelper = new LocalDataObjectHelperImpl(root, new LocalUrlSigner("http://localhost:8080", null));
+            }
+            for (int i = 0; i < LISTED_OBJECTS; i++)
+                add(prefix + "list/" + i, SMALL_CONTENT);
+            add(prefix + "object", SMALL_CONTENT);
+        }
+
+        void add(String key, byte[] content) throws DataObjectHelper.DataObjectHelperException {
+            dataObjectHelper.add(key, new ByteArrayInputStream(content), content.length);
+        }
+
+        @TearDown
+        public void tearDown() throws Exception {
+            List<String> keys = dataObjectHelper.listObjects(prefix, null, Integer.MAX_VALUE - 1, null).getKeys();
+            dataObjectHelper.deleteAll(keys);
+            if (dataObjectHelper instanceof AutoCloseable) {
+                ((AutoCloseable) dataObjectHelper).close();
+            }
+            if (root != null) {
+                try (Stream<Path> paths = Files.walk(root)) {
+                    for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator)
+                        Files.deleteIfExists(path);
+                }
+            }
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Payload {
+
+        @Param({"1KB", "64KB", "1MB", "testImage.jpg", "testImage2.jpg"})
+        public String payload;
+
+        byte[] content;
+        String key;
+
+        @Setup
+        public void setUp(Storage storage) throws Exception {
+            if (payload.endsWith(".jpg")) {
+                try (InputStream fixture = DataObjectHelperBenchmark.class.getResourceAsStream("/" + payload)) {
+                    if (fixture == null) {
+                        throw new IOException("Missing test fixture " + payload);
+                    }
+                    content = fixture.readAllBytes();
+                }
+            } else {
+                content = new byte[(int) DataSize.parse(payload).toBytes()];
+                new Random(42).nextBytes(content);
+            }
+            key = storage.prefix + "payload/" + payload;
+            storage.add(key, content);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadKey {
+
+        private static final AtomicInteger THREADS = new AtomicInteger();
+
+        // Each thread overwrites its own object, so the storage does not grow with the number of operations
+        String key;
+
+        @Setup
+        public void setUp(Storage storage) {
+            key = storage.prefix + "thread/" + THREADS.incrementAndGet();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class DeletedObject {
+
+        String key;
+
+        @Setup
+        public void setUp(ThreadKey threadKey) {
+            key = threadKey.key + "-deleted";
+        }
+
+        // Not measured, each deletion needs an object to delete
+        @Setup(Level.Invocation)
+        public void add(Storage storage) throws Exception {
+            storage.add(key, SMALL_CONTENT);
+        }
+    }
+
+    @Benchmark
+    public void add(Storage storage, Payload payload, ThreadKey threadKey) throws Exception {
+        storage.dataObjectHelper.add(threadKey.key, new ByteArrayInputStream(payload.content), payload.content.length);
+    }
+
+    @Benchmark
+    public byte[] get(Storage storage, Payload payload) throws Exception {
+        return storage.dataObjectHelper.get(payload.key);
+    }
+
+    @Benchmark
+    public DataObjectListing listObjects(Storage storage) throws Exception {
+        return storage.dataObjectHelper.listObjects(storage.prefix + "list/", null, 1000, null);
+    }
+
+    @Benchmark
+    public boolean exists(Storage storage) throws Exception {
+        return storage.dataObjectHelper.exists(storage.prefix + "object");
+    }
+
+    @Benchmark
+    public void delete(Storage storage, DeletedObject deletedObject) throws Exception {
+        storage.dataObjectHelper.delete(deletedObject.key);
+    }
+
+    @Benchmark
+    public URL getUrl(Storage storage) throws Exception {
+        return storage.dataObjectHelper.getUrl(storage.prefix + "object", Duration.ofMinutes(10));
+    }
+
+    @Threads(1)
+    public static class Threads1 extends DataObjectHelperBenchmark {
+    }
+
+    @Threads(4)
+    public static class Threads4 extends DataObjectHelperBenchmark {
+    }
+
+    @Threads(16)
+    public static class Threads16 extends DataObjectHelperBenchmark {
+    }
+}
@@ -0,0 +1,79 @@
+package org.amt.microservicedataobject.benchmark;
+
+import org.amt.microservicedataobject.service.ConcurrencyLimitedDataObjectHelper;
+import org.amt.microservicedataobject.service.DataObjectHelper;
+import org.amt.microservicedataobject.service.VirtualThreads;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of blocking requests to the storage depending on the thread model
+ * Each operation is a burst of concurrent requests calling {@link DataObjectHelper#exists(String)}
+ * on a stand-in storage answering after a fixed latency, as S3 would
+ * - platform: a pool of {@code concurrency} threads, as Tomcat with {@code server.tomcat.threads.max}
+ * - virtual: a virtual thread per request, the concurrency limiter allowing {@code concurrency} calls
+ * The virtual model needs Java 21: mvn -Pjava21,benchmark verify -Dbenchmark=ThreadModel
+ *
+ * @author De Bleser Dimitri
+ * @author Peer Vincent
+ * @author Nelson Jeanreneaud
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class ThreadModelBenchmark {
+
+    private static final int REQUESTS = 2000;
+
+    @Param({"platform", "virtual"})
+    public String threadModel;
+
+    @Param({"50", "200", "1000"})
+    public int concurrency;
+
+    @Param({"20"})
+    public long latencyMillis;
+
+    private ExecutorService executor;
+    private DataObjectHelper dataObjectHelper;
+
+    @Setup
+    public void setUp() {
+        DataObjectHelper storage = (DataObjectHelper) Proxy.newProxyInstance(DataObjectHelper.class.getClassLoader(),
+                new Class<?>[]{DataObjectHelper.class}, (proxy, method, args) -> {
+                    Thread.sleep(latencyMillis);
+                    return method.getReturnType() == boolean.class ? Boolean.TRUE : null;
+                });
+        dataObjectHelper = new ConcurrencyLimitedDataObjectHelper(storage, concurrency, Duration.ofMinutes(1));
+        executor = "virtual".equals(threadModel)
+                ? VirtualThreads.newThreadPerTaskExecutor()
+                : Executors.newFixedThreadPool(concurrency);
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(REQUESTS)
+    public void exists(Blackhole blackhole) throws Exception {
+        List<Future<Boolean>> futures = new ArrayList<>(REQUESTS);
+        for (int i = 0; i < REQUESTS; i++)
+            futures.add(executor.submit(() -> dataObjectHelper.exists("testImage.jpg")));
+        for (Future<Boolean> future : futures)
+            blackhole.consume(future.get());
+    }
+}
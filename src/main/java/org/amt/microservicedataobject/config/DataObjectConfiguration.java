@@ -0,0 +1,292 @@
+package org.amt.microservicedataobject.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.amt.microservicedataobject.service.AsyncDataObjectHelper;
+import org.amt.microservicedataobject.service.CircuitBreakingDataObjectHelper;
+import org.amt.microservicedataobject.service.CoalescingDataObjectHelper;
+import org.amt.microservicedataobject.service.ConcurrencyLimitedDataObjectHelper;
+import org.amt.microservicedataobject.service.DataObjectBatchUploader;
+import org.amt.microservicedataobject.service.DataObjectHelper;
+import org.amt.microservicedataobject.service.HedgingDataObjectHelper;
+import org.amt.microservicedataobject.service.MeteredDataObjectHelper;
+import org.amt.microservicedataobject.service.cache.DiskCachingDataObjectHelper;
+import org.amt.microservicedataobject.service.image.ImageVariants;
+import org.amt.microservicedataobject.service.aws.AwsAsyncDataObjectHelperImpl;
+import org.amt.microservicedataobject.service.aws.AwsDataObjectHelperImpl;
+import org.amt.microservicedataobject.service.aws.AwsRequestMetrics;
+import org.amt.microservicedataobject.service.aws.AwsServiceConfigurator;
+import org.amt.microservicedataobject.service.aws.AwsShardRebalancer;
+import org.amt.microservicedataobject.service.local.LocalDataObjectHelperImpl;
+import org.amt.microservicedataobject.service.local.LocalUrlSigner;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+import java.net.URI;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Spring configuration building the {@link DataObjectHelper} from the application properties
+ * When a Micrometer registry is available, the helpers and the AWS clients record their metrics in it
+ *
+ * @author De Bleser Dimitri
+ * @author Peer Vincent
+ * @author Nelson Jeanreneaud
+ */
+@Configuration
+public class DataObjectConfiguration {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DataObjectConfiguration.class);
+
+    @Bean
+    public AwsServiceConfigurator awsServiceConfigurator(
+            @Value("${dataobject.aws.buckets:amt.team08.diduno.education}") List<String> buckets,
+            @Value("${dataobject.aws.shard-prefixes:0}") int shardPrefixes,
+            @Value("${dataobject.aws.sharding.rebalance.from-buckets:}") List<String> previousBuckets,
+            @Value("${dataobject.aws.sharding.rebalance.from-prefixes:0}") int previousShardPrefixes,
+            @Value("${dataobject.aws.multipart-threshold:16MB}") DataSize multipartThreshold,
+            @Value("${dataobject.aws.part-size:8MB}") DataSize partSize,
+            @Value("${dataobject.aws.transfer-concurrency:8}") int transferConcurrency,
+            @Value("${dataobject.aws.part-retries:3}") int partRetries,
+            @Value("${dataobject.aws.retry.max-retries:3}") int retries,
+            @Value("${dataobject.aws.retry.base-delay:100ms}") Duration retryBaseDelay,
+            @Value("${dataobject.aws.retry.throttling-base-delay:500ms}") Duration throttlingRetryBaseDelay,
+            @Value("${dataobject.aws.retry.max-backoff:20s}") Duration retryMaxBackoff,
+            @Value("${dataobject.aws.presigned-url.cache-size:10000}") int presignedUrlCacheSize,
+            @Value("${dataobject.aws.presigned-url.max-age:5m}") Duration presignedUrlMaxAge,
+            @Value("${dataobject.aws.metadata-cache.size:10000}") int metadataCacheSize,
+            @Value("${dataobject.aws.metadata-cache.ttl:5s}") Duration metadataCacheTtl,
+            @Value("${dataobject.aws.metadata-cache.negative-ttl:1s}") Duration metadataCacheNegativeTtl,
+            @Value("${dataobject.aws.deduplication.enabled:false}") boolean deduplication,
+            @Value("${dataobject.aws.deduplication.max-buffer-size:8MB}") DataSize deduplicationMaxBufferSize,
+            @Value("${dataobject.aws.compression.enabled:false}") boolean compression,
+            @Value("${dataobject.aws.compression.extensions:json,jsonl,ndjson,csv,tsv,txt,log,xml,html,md,yaml,yml}") List<String> compressedExtensions,
+            @Value("${dataobject.aws.compression.min-size:1KB}") DataSize compressionMinSize,
+            @Value("${dataobject.virtual-threads.enabled:false}") boolean virtualThreads,
+            @Value("${dataobject.aws.http.client:apache}") String httpClientType,
+            @Value("${dataobject.aws.http.max-connections:50}") int maxConnections,
+            @Value("${dataobject.aws.http.connection-acquisition-timeout:10s}") Duration connectionAcquisitionTimeout,
+            @Value("${dataobject.aws.http.connection-timeout:2s}") Duration connectionTimeout,
+            @Value("${dataobject.aws.http.socket-timeout:30s}") Duration socketTimeout,
+            @Value("${dataobject.aws.http.tcp-keep-alive:false}") boolean tcpKeepAlive,
+            @Value("${dataobject.aws.http.connection-max-idle-time:60s}") Duration connectionMaxIdleTime,
+            @Value("${dataobject.aws.http.idle-connection-reaper:true}") boolean idleConnectionReaper,
+            @Value("${dataobject.aws.endpoint:}") String endpoint,
+            ObjectProvider<MeterRegistry> meterRegistry) {
+        AwsServiceConfigurator.Builder builder = new AwsServiceConfigurator.Builder();
+        if (!endpoint.isBlank()) {
+            builder.withEndpointOverride(URI.create(endpoint.trim()));
+        }
+        meterRegistry.ifAvailable(registry -> builder.withMetricPublisher(new AwsRequestMetrics(registry)));
+        if (!previousBuckets.isEmpty()) {
+            // While the objects are moved, the keys not found where they are placed are read from the previous placement
+            builder.withPreviousPlacement(previousBuckets, previousShardPrefixes);
+        }
+        return builder
+                .withEnvironmentVariables()
+                .withBuckets(buckets)
+                .withShardPrefixes(shardPrefixes)
+                .withMultipartThreshold(multipartThreshold.toBytes())
+                .withPartSize(partSize.toBytes())
+                .withTransferConcurrency(transferConcurrency)
+                .withPartRetries(partRetries)
+                .withRetries(retries)
+                .withRetryBaseDelay(retryBaseDelay)
+                .withThrottlingRetryBaseDelay(throttlingRetryBaseDelay)
+                .withRetryMaxBackoff(retryMaxBackoff)
+                .withPresignedUrlCacheSize(presignedUrlCacheSize)
+                .withPresignedUrlMaxAge(presignedUrlMaxAge)
+                .withMetadataCacheSize(metadataCacheSize)
+                .withMetadataCacheTtl(metadataCacheTtl)
+                .withMetadataCacheNegativeTtl(metadataCacheNegativeTtl)
+                .withDeduplication(deduplication)
+                .withDeduplicationMaxBufferSize(deduplicationMaxBufferSize.toBytes())
+                .withCompression(compression)
+                .withCompressedExtensions(compressedExtensions)
+                .withCompressionMinSize(compressionMinSize.toBytes())
+                .withVirtualThreads(virtualThreads)
+                .withHttpClientType(AwsServiceConfigurator.HttpClientType.valueOf(httpClientType.trim().toUpperCase().replace('-', '_')))
+                .withMaxConnections(maxConnections)
+                .withConnectionAcquisitionTimeout(connectionAcquisitionTimeout)
+                .withConnectionTimeout(connectionTimeout)
+                .withSocketTimeout(socketTimeout)
+                .withTcpKeepAlive(tcpKeepAlive)
+                .withConnectionMaxIdleTime(connectionMaxIdleTime)
+                .withIdleConnectionReaper(idleConnectionReaper)
+                .build();
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "dataobject.backend", havingValue = "aws", matchIfMissing = true)
+    public DataObjectHelper dataObjectHelper(AwsServiceConfigurator awsServiceConfigurator,
+            @Value("${dataobject.concurrency-limit.enabled:${dataobject.virtual-threads.enabled:false}}") boolean concurrencyLimitEnabled,
+            @Value("${dataobject.concurrency-limit.max-calls:50}") int maxConcurrentCalls,
+            @Value("${dataobject.concurrency-limit.timeout:10s}") Duration concurrencyLimitTimeout,
+            @Value("${dataobject.concurrency-limit.adaptive.enabled:true}") boolean adaptiveConcurrencyLimit,
+            @Value("${dataobject.concurrency-limit.adaptive.min-calls:4}") int minConcurrentCalls,
+            @Value("${dataobject.circuit-breaker.enabled:true}") boolean circuitBreakerEnabled,
+            @Value("${dataobject.circuit-breaker.window-size:50}") int circuitBreakerWindowSize,
+            @Value("${dataobject.circuit-breaker.minimum-calls:20}") int circuitBreakerMinimumCalls,
+            @Value("${dataobject.circuit-breaker.failure-rate-threshold:0.5}") double circuitBreakerFailureRateThreshold,
+            @Value("${dataobject.circuit-breaker.open-duration:10s}") Duration circuitBreakerOpenDuration,
+            @Value("${dataobject.circuit-breaker.trial-calls:3}") int circuitBreakerTrialCalls,
+            @Value("${dataobject.hedging.enabled:false}") boolean hedgingEnabled,
+            @Value("${dataobject.hedging.percentile:0.95}") double hedgingPercentile,
+            @Value("${dataobject.hedging.max-rate:0.05}") double hedgingMaxRate,
+            @Value("${dataobject.hedging.min-delay:20ms}") Duration hedgingMinDelay,
+            @Value("${dataobject.virtual-threads.enabled:false}") boolean virtualThreads,
+            @Value("${dataobject.coalescing.enabled:true}") boolean coalescingEnabled,
+            @Value("${dataobject.disk-cache.enabled:false}") boolean diskCacheEnabled,
+            @Value("${dataobject.disk-cache.directory:${java.io.tmpdir}/dataobject-cache}") String diskCacheDirectory,
+            @Value("${dataobject.disk-cache.max-size:1GB}") DataSize diskCacheMaxSize,
+            @Value("${dataobject.disk-cache.max-entry-size:16MB}") DataSize diskCacheMaxEntrySize,
+            @Value("${dataobject.disk-cache.revalidate-after:5s}") Duration diskCacheRevalidateAfter,
+            ObjectProvider<MeterRegistry> meterRegistryProvider) {
+        MeterRegistry meterRegistry = meterRegistryProvider.getIfAvailable();
+        AwsDataObjectHelperImpl awsDataObjectHelper = new AwsDataObjectHelperImpl(awsServiceConfigurator);
+        if (meterRegistry != null) {
+            DataObjectMetrics.bind(meterRegistry, awsDataObjectHelper);
+        }
+        DataObjectHelper dataObjectHelper = awsDataObjectHelper;
+        HedgingDataObjectHelper hedging = null;
+        if (hedgingEnabled) {
+            // Inside the circuit breaker, the cancelled calls are not failures, and inside the limit, the
+            // latencies do not include the wait for a permit, the hedges taking one without waiting
+            hedging = new HedgingDataObjectHelper(dataObjectHelper, hedgingPercentile, hedgingMaxRate,
+                    hedgingMinDelay, virtualThreads);
+            if (meterRegistry != null) {
+                DataObjectMetrics.bind(meterRegistry, hedging);
+            }
+            dataObjectHelper = hedging;
+        }
+        if (circuitBreakerEnabled) {
+            // Inside the limit, the permits are given back at once while the circuit is open
+            CircuitBreakingDataObjectHelper circuitBreaker = new CircuitBreakingDataObjectHelper(dataObjectHelper,
+                    circuitBreakerWindowSize, circuitBreakerMinimumCalls, circuitBreakerFailureRateThreshold,
+                    circuitBreakerOpenDuration, circuitBreakerTrialCalls);
+            if (meterRegistry != null) {
+                DataObjectMetrics.bind(meterRegistry, circuitBreaker);
+            }
+            dataObjectHelper = circuitBreaker;
+        }
+        if (concurrencyLimitEnabled) {
+            dataObjectHelper = limited(dataObjectHelper, adaptiveConcurrencyLimit ? Math.min(minConcurrentCalls, maxConcurrentCalls) : maxConcurrentCalls,
+                    maxConcurrentCalls, concurrencyLimitTimeout, meterRegistry);
+            if (hedging != null && dataObjectHelper instanceof ConcurrencyLimitedDataObjectHelper) {
+                hedging.setHedgePermits((ConcurrencyLimitedDataObjectHelper) dataObjectHelper);
+            }
+        }
+        if (coalescingEnabled) {
+            // Outside of the limit, the callers sharing a read do not hold a permit
+            CoalescingDataObjectHelper coalescing = new CoalescingDataObjectHelper(dataObjectHelper);
+            if (meterRegistry != null) {
+                DataObjectMetrics.bind(meterRegistry, coalescing);
+            }
+            dataObjectHelper = coalescing;
+        }
+        if (diskCacheEnabled) {
+            // Outside of the limit, cache hits do not wait for a call to S3
+            DiskCachingDataObjectHelper diskCache = new DiskCachingDataObjectHelper(dataObjectHelper, Path.of(diskCacheDirectory),
+                    diskCacheMaxSize.toBytes(), diskCacheMaxEntrySize.toBytes(), diskCacheRevalidateAfter);
+            if (meterRegistry != null) {
+                DataObjectMetrics.bind(meterRegistry, diskCache);
+            }
+            dataObjectHelper = diskCache;
+        }
+        return metered(dataObjectHelper, meterRegistry);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "dataobject.backend", havingValue = "local")
+    public LocalUrlSigner localUrlSigner(@Value("${dataobject.local.public-url:http://localhost:8080}") String publicUrl,
+            @Value("${dataobject.local.url-secret:}") String urlSecret) {
+        return new LocalUrlSigner(publicUrl, urlSecret);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "dataobject.backend", havingValue = "local")
+    public DataObjectHelper localDataObjectHelper(LocalUrlSigner localUrlSigner,
+            @Value("${dataobject.local.root:./data}") String root,
+            @Value("${dataobject.concurrency-limit.enabled:${dataobject.virtual-threads.enabled:false}}") boolean concurrencyLimitEnabled,
+            @Value("${dataobject.concurrency-limit.max-calls:50}") int maxConcurrentCalls,
+            @Value("${dataobject.concurrency-limit.timeout:10s}") Duration concurrencyLimitTimeout,
+            ObjectProvider<MeterRegistry> meterRegistryProvider) {
+        MeterRegistry meterRegistry = meterRegistryProvider.getIfAvailable();
+        DataObjectHelper dataObjectHelper = new LocalDataObjectHelperImpl(Path.of(root), localUrlSigner);
+        if (concurrencyLimitEnabled) {
+            dataObjectHelper = limited(dataObjectHelper, maxConcurrentCalls, maxConcurrentCalls, concurrencyLimitTimeout, meterRegistry);
+        }
+        return metered(dataObjectHelper, meterRegistry);
+    }
+
+    private static DataObjectHelper limited(DataObjectHelper dataObjectHelper, int minConcurrentCalls, int maxConcurrentCalls,
+            Duration timeout, MeterRegistry meterRegistry) {
+        if (maxConcurrentCalls > 0) {
+            // Adaptive between distinct bounds, fixed otherwise
+            ConcurrencyLimitedDataObjectHelper limitedDataObjectHelper = new ConcurrencyLimitedDataObjectHelper(dataObjectHelper,
+                    Math.max(minConcurrentCalls, 1), maxConcurrentCalls, timeout);
+            if (meterRegistry != null) {
+                DataObjectMetrics.bind(meterRegistry, limitedDataObjectHelper);
+            }
+            dataObjectHelper = limitedDataObjectHelper;
+        }
+        return dataObjectHelper;
+    }
+
+    private static DataObjectHelper metered(DataObjectHelper dataObjectHelper, MeterRegistry meterRegistry) {
+        // Outermost, the recorded durations include the wait for a permit and the cache hits
+        return meterRegistry == null ? dataObjectHelper : new MeteredDataObjectHelper(dataObjectHelper, meterRegistry);
+    }
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(name = "dataobject.aws.async.enabled", havingValue = "true")
+    public AsyncDataObjectHelper asyncDataObjectHelper(AwsServiceConfigurator awsServiceConfigurator,
+            ObjectProvider<MeterRegistry> meterRegistry) {
+        AwsAsyncDataObjectHelperImpl asyncDataObjectHelper = new AwsAsyncDataObjectHelperImpl(awsServiceConfigurator);
+        meterRegistry.ifAvailable(registry -> DataObjectMetrics.bind(registry, asyncDataObjectHelper.getConnectionPoolMetrics(), "async"));
+        return asyncDataObjectHelper;
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "dataobject.aws.sharding.rebalance.enabled", havingValue = "true")
+    public ApplicationRunner shardRebalancer(AwsServiceConfigurator awsServiceConfigurator,
+            @Value("${dataobject.aws.sharding.rebalance.from-buckets}") List<String> previousBuckets,
+            @Value("${dataobject.aws.sharding.rebalance.from-prefixes:0}") int previousShardPrefixes) {
+        // Run once at startup, moving the objects stored with the previous placement to the configured one
+        return args -> {
+            try (AwsShardRebalancer rebalancer = new AwsShardRebalancer(awsServiceConfigurator, previousBuckets, previousShardPrefixes)) {
+                AwsShardRebalancer.Report report = rebalancer.rebalance();
+                LOGGER.info("Rebalancing done: {}", report);
+                report.getFailures().forEach(failure ->
+                        LOGGER.warn("Not moved: {}: {}", failure.getFileName(), failure.getError()));
+            }
+        };
+    }
+
+    @Bean
+    public DataObjectBatchUploader dataObjectBatchUploader(DataObjectHelper dataObjectHelper,
+            @Value("${dataobject.batch.upload-concurrency:16}") int uploadConcurrency) {
+        return new DataObjectBatchUploader(dataObjectHelper, uploadConcurrency);
+    }
+
+    @Bean(destroyMethod = "close")
+    public ImageVariants imageVariants(DataObjectHelper dataObjectHelper,
+            @Value("${dataobject.variants.workers:2}") int workers,
+            @Value("${dataobject.variants.queue-size:32}") int queueSize,
+            @Value("${dataobject.variants.sizes:64x64,256x256,1024x1024}") List<String> sizes,
+            @Value("${dataobject.variants.max-source-size:32MB}") DataSize maxSourceSize,
+            ObjectProvider<MeterRegistry> meterRegistry) {
+        // Through the decorated helper, the variants are read and stored like any other object
+        ImageVariants imageVariants = new ImageVariants(dataObjectHelper, workers, queueSize, sizes, maxSourceSize.toBytes());
+        meterRegistry.ifAvailable(registry -> DataObjectMetrics.bind(registry, imageVariants));
+        return imageVariants;
+    }
+}
@@ -0,0 +1,210 @@
+package org.amt.microservicedataobject.config;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.amt.microservicedataobject.service.CircuitBreakingDataObjectHelper;
+import org.amt.microservicedataobject.service.CoalescingDataObjectHelper;
+import org.amt.microservicedataobject.service.ConcurrencyLimitedDataObjectHelper;
+import org.amt.microservicedataobject.service.HedgingDataObjectHelper;
+import org.amt.microservicedataobject.service.aws.AwsConnectionPoolMetrics;
+import org.amt.microservicedataobject.service.aws.AwsDataObjectHelperImpl;
+import org.amt.microservicedataobject.service.cache.DiskCachingDataObjectHelper;
+import org.amt.microservicedataobject.service.image.ImageVariants;
+
+/**
+ * Gauges and counters exposing the state the helpers already track in a Micrometer registry
+ *
+ * @author De Bleser Dimitri
+ * @author Peer Vincent
+ * @author Nelson Jeanreneaud
+ */
+final class DataObjectMetrics {
+
+    private DataObjectMetrics() {
+    }
+
+    /**
+     * Bind the connection pool of an AWS client, tagged with the given client name
+     */
+    static void bind(MeterRegistry registry, AwsConnectionPoolMetrics pool, String client) {
+        Gauge.builder("aws.http.connections.max", pool, AwsConnectionPoolMetrics::getMaxConcurrency)
+                .description("Maximum number of connections of the pool")
+                .tag("client", client)
+                .register(registry);
+        Gauge.builder("aws.http.connections.available", pool, AwsConnectionPoolMetrics::getAvailableConcurrency)
+                .description("Idle connections ready to be leased")
+                .tag("client", client)
+                .register(registry);
+        Gauge.builder("aws.http.connections.leased", pool, AwsConnectionPoolMetrics::getLeasedConcurrency)
+                .description("Connections in use")
+                .tag("client", client)
+                .register(registry);
+        Gauge.builder("aws.http.connections.pending", pool, AwsConnectionPoolMetrics::getPendingConcurrencyAcquires)
+                .description("Requests waiting for a connection")
+                .tag("client", client)
+                .register(registry);
+    }
+
+    /**
+     * Bind the caches of the AWS helper and its connection pool
+     */
+    static void bind(MeterRegistry registry, AwsDataObjectHelperImpl helper) {
+        bind(registry, helper.getConnectionPoolMetrics(), "sync");
+        FunctionCounter.builder("dataobject.aws.metadata-cache.hits", helper, AwsDataObjectHelperImpl::getMetadataCacheHitCount)
+                .description("Metadata served from the cache")
+                .register(registry);
+        FunctionCounter.builder("dataobject.aws.metadata-cache.misses", helper, AwsDataObjectHelperImpl::getMetadataCacheMissCount)
+                .description("Metadata read from S3")
+                .register(registry);
+        FunctionCounter.builder("dataobject.aws.presigned-url-cache.hits", helper, AwsDataObjectHelperImpl::getPresignedUrlCacheHitCount)
+                .description("Presigned URLs served from the cache")
+                .register(registry);
+        FunctionCounter.builder("dataobject.aws.presigned-url-cache.misses", helper, AwsDataObjectHelperImpl::getPresignedUrlCacheMissCount)
+                .description("Presigned URLs signed again")
+                .register(registry);
+        FunctionCounter.builder("dataobject.aws.deduplication.skipped", helper, AwsDataObjectHelperImpl::getDeduplicatedUploadCount)
+                .description("Uploads skipped because the object already held the same content")
+                .register(registry);
+        FunctionCounter.builder("dataobject.aws.deduplication.bytes.saved", helper, AwsDataObjectHelperImpl::getDeduplicatedBytes)
+                .description("Bytes not uploaded because the object already held the same content")
+                .baseUnit("bytes")
+                .register(registry);
+        FunctionCounter.builder("dataobject.aws.compression.uploads", helper, AwsDataObjectHelperImpl::getCompressedUploadCount)
+                .description("Uploads stored compressed")
+                .register(registry);
+        FunctionCounter.builder("dataobject.aws.compression.bytes.in", helper, AwsDataObjectHelperImpl::getCompressionBytesIn)
+                .description("Bytes of the compressed uploads before their compression")
+                .baseUnit("bytes")
+                .register(registry);
+        FunctionCounter.builder("dataobject.aws.compression.bytes.out", helper, AwsDataObjectHelperImpl::getCompressionBytesOut)
+                .description("Bytes of the compressed uploads as stored")
+                .baseUnit("bytes")
+                .register(registry);
+    }
+
+    /**
+     * Bind the permits of a concurrency limit
+     */
+    static void bind(MeterRegistry registry, ConcurrencyLimitedDataObjectHelper helper) {
+        Gauge.builder("dataobject.concurrency-limit.max", helper, ConcurrencyLimitedDataObjectHelper::getMaxConcurrentCalls)
+                .description("Calls allowed to run at the same time")
+                .register(registry);
+        Gauge.builder("dataobject.concurrency-limit.active", helper, ConcurrencyLimitedDataObjectHelper::getActiveCalls)
+                .description("Calls running on the storage")
+                .register(registry);
+        Gauge.builder("dataobject.concurrency-limit.waiting", helper, ConcurrencyLimitedDataObjectHelper::getWaitingCalls)
+                .description("Calls waiting for their turn")
+                .register(registry);
+
+        Gauge.builder("dataobject.concurrency-limit.limit", helper, ConcurrencyLimitedDataObjectHelper::getLimit)
+                .description("Calls currently allowed to run at the same time, lowered when the storage throttles calls")
+                .register(registry);
+        FunctionCounter.builder("dataobject.concurrency-limit.decreases", helper, ConcurrencyLimitedDataObjectHelper::getLimitDecreases)
+                .description("Decreases of the limit after throttled calls")
+                .register(registry);
+    }
+
+    /**
+     * Bind the hedged reads
+     */
+    static void bind(MeterRegistry registry, HedgingDataObjectHelper helper) {
+        FunctionCounter.builder("dataobject.hedging.calls", helper, HedgingDataObjectHelper::getHedgeableCount)
+                .description("Reads which could be hedged")
+                .register(registry);
+        FunctionCounter.builder("dataobject.hedging.hedges", helper, HedgingDataObjectHelper::getHedgeCount)
+                .description("Reads made a second time because the first call was slow")
+                .register(registry);
+        FunctionCounter.builder("dataobject.hedging.wins", helper, HedgingDataObjectHelper::getWinCount)
+                .description("Hedges completed before the call they hedged")
+                .register(registry);
+        FunctionCounter.builder("dataobject.hedging.budget-exhausted", helper, HedgingDataObjectHelper::getBudgetExhaustedCount)
+                .description("Slow reads not hedged because the maximum hedging rate was reached")
+                .register(registry);
+        FunctionCounter.builder("dataobject.hedging.permit-unavailable", helper, HedgingDataObjectHelper::getPermitUnavailableCount)
+                .description("Slow reads not hedged because no permit of the concurrency limit was free")
+                .register(registry);
+    }
+
+    /**
+     * Bind the state of the circuit breaker, and its transitions to each state
+     */
+    static void bind(MeterRegistry registry, CircuitBreakingDataObjectHelper helper) {
+        for (CircuitBreakingDataObjectHelper.State state : CircuitBreakingDataObjectHelper.State.values()) {
+            String tag = state.name().toLowerCase();
+            Gauge.builder("dataobject.circuit-breaker.state", helper, h -> h.getState() == state ? 1 : 0)
+                    .description("1 for the current state of the circuit breaker")
+                    .tag("state", tag)
+                    .register(registry);
+            FunctionCounter.builder("dataobject.circuit-breaker.transitions", helper, h -> h.getTransitions(state))
+                    .description("Transitions of the circuit breaker to the state")
+                    .tag("state", tag)
+                    .register(registry);
+        }
+        FunctionCounter.builder("dataobject.circuit-breaker.rejected", helper, CircuitBreakingDataObjectHelper::getRejectedCalls)
+                .description("Calls failed fast without calling the storage")
+                .register(registry);
+    }
+
+    /**
+     * Bind the reads shared between concurrent callers
+     */
+    static void bind(MeterRegistry registry, CoalescingDataObjectHelper helper) {
+        FunctionCounter.builder("dataobject.coalescing.calls", helper, CoalescingDataObjectHelper::getCallCount)
+                .description("Reads made on the storage")
+                .register(registry);
+        FunctionCounter.builder("dataobject.coalescing.saved", helper, CoalescingDataObjectHelper::getCoalescedCount)
+                .description("Reads served by the result of the same read already running")
+                .register(registry);
+    }
+
+    /**
+     * Bind the usage of the disk cache
+     */
+    static void bind(MeterRegistry registry, DiskCachingDataObjectHelper helper) {
+        FunctionCounter.builder("dataobject.disk-cache.hits", helper, DiskCachingDataObjectHelper::getHitCount)
+                .description("Contents served from the disk without a call to the storage")
+                .register(registry);
+        FunctionCounter.builder("dataobject.disk-cache.revalidations", helper, DiskCachingDataObjectHelper::getRevalidatedCount)
+                .description("Contents served from the disk after a conditional read confirmed them")
+                .register(registry);
+        FunctionCounter.builder("dataobject.disk-cache.misses", helper, DiskCachingDataObjectHelper::getMissCount)
+                .description("Contents read from the storage")
+                .register(registry);
+        FunctionCounter.builder("dataobject.disk-cache.evictions", helper, DiskCachingDataObjectHelper::getEvictionCount)
+                .description("Contents removed to make room")
+                .register(registry);
+        FunctionCounter.builder("dataobject.disk-cache.bytes.saved", helper, DiskCachingDataObjectHelper::getBytesSaved)
+                .description("Bytes served from the disk instead of the storage")
+                .baseUnit("bytes")
+                .register(registry);
+        Gauge.builder("dataobject.disk-cache.size", helper, DiskCachingDataObjectHelper::getSize)
+                .description("Size of the cached contents")
+                .baseUnit("bytes")
+                .register(registry);
+        Gauge.builder("dataobject.disk-cache.entries", helper, DiskCachingDataObjectHelper::getEntryCount)
+                .description("Number of cached contents")
+                .register(registry);
+    }
+
+    /**
+     * Bind the generation of the image variants
+     */
+    static void bind(MeterRegistry registry, ImageVariants imageVariants) {
+        FunctionCounter.builder("dataobject.variants.hits", imageVariants, ImageVariants::getHitCount)
+                .description("Image variants served from the storage")
+                .register(registry);
+        FunctionCounter.builder("dataobject.variants.generated", imageVariants, ImageVariants::getGeneratedCount)
+                .description("Image variants generated and stored")
+                .register(registry);
+        FunctionCounter.builder("dataobject.variants.rejected", imageVariants, ImageVariants::getRejectedCount)
+                .description("Generations rejected because too many were waiting")
+                .register(registry);
+        Gauge.builder("dataobject.variants.active", imageVariants, ImageVariants::getActiveCount)
+                .description("Image variants being generated")
+                .register(registry);
+        Gauge.builder("dataobject.variants.queued", imageVariants, ImageVariants::getQueuedCount)
+                .description("Generations waiting for a worker")
+                .register(registry);
+    }
+}
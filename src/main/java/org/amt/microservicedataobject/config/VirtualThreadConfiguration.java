@@ -0,0 +1,46 @@
+package org.amt.microservicedataobject.config;
+
+import jakarta.annotation.PreDestroy;
+import org.amt.microservicedataobject.service.VirtualThreads;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Spring configuration running the requests on virtual threads, enabled by {@code dataobject.virtual-threads.enabled}
+ * Tomcat and the streamed responses get a new virtual thread per task instead of their pools of platform threads,
+ * so the number of requests in flight is no longer bounded by {@code server.tomcat.threads.max}:
+ * the calls to the storage are bounded by the concurrency limit of {@link DataObjectConfiguration} instead
+ * Requires Java 21, see the {@code java21} maven profile
+ *
+ * @author De Bleser Dimitri
+ * @author Peer Vincent
+ * @author Nelson Jeanreneaud
+ */
+@Configuration
+@ConditionalOnProperty(name = "dataobject.virtual-threads.enabled", havingValue = "true")
+public class VirtualThreadConfiguration implements WebMvcConfigurer {
+
+    private final ExecutorService executor = VirtualThreads.newThreadPerTaskExecutor();
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadProtocolHandlerCustomizer() {
+        return protocolHandler -> protocolHandler.setExecutor(executor);
+    }
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.setTaskExecutor(new TaskExecutorAdapter(executor));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
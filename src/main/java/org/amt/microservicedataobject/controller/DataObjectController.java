@@ -1,59 +1,156 @@
 package org.amt.microservicedataobject.controller;
 
-import org.amt.microservicedataobject.service.aws.AwsDataObjectHelperImpl;
-import org.amt.microservicedataobject.service.aws.AwsServiceConfigurator;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.amt.microservicedataobject.service.DataObjectBatchUploader;
+import org.amt.microservicedataobject.service.DataObjectContent;
 import org.amt.microservicedataobject.service.DataObjectHelper;
+import org.amt.microservicedataobject.service.DataObjectListing;
+import org.amt.microservicedataobject.service.DataObjectMetadata;
+import org.amt.microservicedataobject.service.DataObjectResult;
+import org.amt.microservicedataobject.service.image.ImageVariants;
+import jakarta.servlet.http.HttpServletRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.URL;
 import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.amt.microservicedataobject.controller.DataObjectResponses.*;
 
 @RestController
+@Profile("!reactive")
 public class DataObjectController {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(DataObjectController.class);
+
     private final DataObjectHelper dataObjectHelper;
+    private final DataObjectBatchUploader batchUploader;
+    private final ImageVariants imageVariants;
+    private final ObjectMapper objectMapper;
 
-    public DataObjectController() {
-        this.dataObjectHelper = new AwsDataObjectHelperImpl(new AwsServiceConfigurator.Builder().withEnvironmentVariables().build());
+    public DataObjectController(DataObjectHelper dataObjectHelper, DataObjectBatchUploader batchUploader,
+                                ImageVariants imageVariants, ObjectMapper objectMapper) {
+        this.dataObjectHelper = dataObjectHelper;
+        this.batchUploader = batchUploader;
+        this.imageVariants = imageVariants;
+        this.objectMapper = objectMapper;
     }
 
     @GetMapping("/objects")
-    public ResponseEntity<Object> listObjects() {
+    public ResponseEntity<StreamingResponseBody> listObjects(@RequestParam(value = "prefix", required = false) String prefix,
+                                                             @RequestParam(value = "delimiter", required = false) String delimiter,
+                                                             @RequestParam(value = "pageSize", required = false) Integer pageSize,
+                                                             @RequestParam(value = "continuationToken", required = false) String continuationToken,
+                                                             @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
         try {
-            return new ResponseEntity<>(dataObjectHelper.listObjects(), HttpStatus.OK);
-        } catch (DataObjectHelper.AccessDeniedException e) {
-            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
-        } catch (DataObjectHelper.DataObjectNotFoundException e) {
-            return ResponseEntity.notFound().build();
+            // The first page is fetched before answering, so that errors are still mapped to a status
+            DataObjectListing firstPage = dataObjectHelper.listObjects(prefix, delimiter,
+                    pageSize == null ? LISTING_PAGE_SIZE : pageSize, continuationToken);
+
+            if (pageSize != null || continuationToken != null) {
+                return ResponseEntity.ok()
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .body(outputStream -> outputStream.write(objectMapper.writeValueAsBytes(firstPage)));
+            }
+
+            // Otherwise every page is written as soon as it is listed
+            if (accepts(accept, MediaType.APPLICATION_NDJSON)) {
+                return ResponseEntity.ok()
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .body(outputStream -> {
+                            for (DataObjectListing page = firstPage; page != null; page = nextPage(page, prefix, delimiter)) {
+                                for (String name : names(page)) {
+                                    outputStream.write(objectMapper.writeValueAsBytes(name));
+                                    outputStream.write('\n');
+                                }
+                                outputStream.flush();
+                            }
+                        });
+            }
+            return ResponseEntity.ok()
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(outputStream -> {
+                        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)
+                                .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)) {
+                            generator.writeStartArray();
+                            for (DataObjectListing page = firstPage; page != null; page = nextPage(page, prefix, delimiter)) {
+                                for (String name : names(page)) {
+                                    generator.writeString(name);
+                                }
+                                generator.flush();
+                            }
+                            generator.writeEndArray();
+                        }
+                    });
         } catch (Exception e) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+            return ResponseEntity.status(statusOf(e)).build();
         }
     }
 
     @RequestMapping(value = "/objects", method = RequestMethod.POST, consumes = {"multipart/form-data"})
     public ResponseEntity<Object> postObject(@RequestParam("file") MultipartFile file) {
         try {
-            File tempFile = File.createTempFile("temp", "file");
-            file.transferTo(tempFile);
-            System.out.println("File uploaded: " + tempFile.getAbsolutePath() + " " + tempFile.length());
-            dataObjectHelper.add(file.getOriginalFilename(), tempFile);
-            return ResponseEntity.ok().build();
+            checkWritable(file.getOriginalFilename());
+            try (InputStream inputStream = file.getInputStream()) {
+                long saved = dataObjectHelper.addIfChanged(file.getOriginalFilename(), inputStream, file.getSize());
+                System.out.println("File uploaded: " + file.getOriginalFilename() + " " + file.getSize());
+                return ResponseEntity.ok().header(BYTES_SAVED, String.valueOf(saved)).build();
+            }
         } catch (DataObjectHelper.InvalidParamException | NullPointerException e){
             System.out.println(e.getMessage());
             return ResponseEntity.badRequest().body(e.getMessage());
-        } catch (DataObjectHelper.AccessDeniedException e) {
+        } catch (Exception e) {
             System.out.println(e.getMessage());
-            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
-        } catch (DataObjectHelper.DataObjectNotFoundException e) {
+            return ResponseEntity.status(statusOf(e)).build();
+        }
+    }
+
+    @RequestMapping(value = "/objects/batch", method = RequestMethod.POST, consumes = {"multipart/form-data"})
+    public ResponseEntity<Object> postObjects(@RequestParam("files") List<MultipartFile> files) {
+        try {
+            List<DataObjectBatchUploader.Upload> uploads = new ArrayList<>(files.size());
+            // The whole batch is refused before any file is uploaded
+            for (MultipartFile file : files)
+                checkWritable(file.getOriginalFilename());
+            for (MultipartFile file : files)
+                uploads.add(new DataObjectBatchUploader.Upload(file.getOriginalFilename(), file.getSize(), file::getInputStream));
+            return ResponseEntity.ok(batchUploader.upload(uploads));
+        } catch (DataObjectHelper.InvalidParamException | NullPointerException e){
+            System.out.println(e.getMessage());
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (Exception e) {
+            System.out.println(e.getMessage());
+            return ResponseEntity.status(statusOf(e)).build();
+        }
+    }
+
+    @PutMapping("/objects/{objectName}")
+    public ResponseEntity<Object> putObject(@PathVariable String objectName, HttpServletRequest request) {
+        try {
+            checkWritable(objectName);
+            // The request body is piped to the data object as it arrives, nothing is written on the local disk
+            long saved = dataObjectHelper.addIfChanged(objectName, request.getInputStream(), request.getContentLengthLong());
+            return ResponseEntity.ok().header(BYTES_SAVED, String.valueOf(saved)).build();
+        } catch (DataObjectHelper.InvalidParamException | NullPointerException e){
             System.out.println(e.getMessage());
-            return ResponseEntity.notFound().build();
+            return ResponseEntity.badRequest().body(e.getMessage());
         } catch (Exception e) {
             System.out.println(e.getMessage());
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+            return ResponseEntity.status(statusOf(e)).build();
         }
     }
 
@@ -61,16 +158,62 @@ public class DataObjectController {
     public ResponseEntity<String> getObject(@PathVariable String objectName, @RequestParam("duration") int duration) {
         try {
             URL downloadURL = dataObjectHelper.getUrl(objectName, Duration.ofMinutes(duration));
-            return ResponseEntity.ok().body(downloadURL.toString());
+            // Answered with 304 by Spring when the client already holds this URL
+            return ResponseEntity.ok().eTag(eTagOf(downloadURL)).body(downloadURL.toString());
         } catch (DataObjectHelper.InvalidParamException | NullPointerException e){
             return ResponseEntity.badRequest().body(e.getMessage());
-        } catch (DataObjectHelper.AccessDeniedException e) {
-            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
-        } catch (DataObjectHelper.KeyNotFoundException e) {
-            return ResponseEntity.notFound().build();
         } catch (Exception e) {
             System.out.println(e.getMessage());
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+            return ResponseEntity.status(statusOf(e)).build();
+        }
+    }
+
+    @GetMapping("/objects/{objectName}/content")
+    public ResponseEntity<StreamingResponseBody> getObjectContent(@PathVariable String objectName,
+                                                                  @RequestHeader(value = HttpHeaders.RANGE, required = false) String range,
+                                                                  @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+                                                                  @RequestHeader(value = HttpHeaders.IF_MODIFIED_SINCE, required = false) String ifModifiedSince,
+                                                                  @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        try {
+            return conditionalContentResponse(dataObjectHelper, objectName, range, ifNoneMatch, ifModifiedSince, acceptEncoding);
+        } catch (Exception e) {
+            System.out.println(e.getMessage());
+            return ResponseEntity.status(statusOf(e)).build();
+        }
+    }
+
+    @GetMapping("/objects/{objectName}/variants/{width:\\d+}x{height:\\d+}")
+    public ResponseEntity<StreamingResponseBody> getObjectVariant(@PathVariable String objectName, @PathVariable int width,
+                                                                  @PathVariable int height,
+                                                                  @RequestParam(value = "format", required = false) String format,
+                                                                  @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+                                                                  @RequestHeader(value = HttpHeaders.IF_MODIFIED_SINCE, required = false) String ifModifiedSince) {
+        try {
+            DataObjectContent content = imageVariants.getVariant(objectName, width, height, format, ifNoneMatch, parseHttpDate(ifModifiedSince));
+            if (content != null) {
+                return contentResponse(content);
+            }
+            ResponseEntity<StreamingResponseBody> notModified = notModified(ifNoneMatch);
+            return notModified != null ? notModified : ResponseEntity.status(HttpStatus.NOT_MODIFIED).build();
+        } catch (Exception e) {
+            System.out.println(e.getMessage());
+            return ResponseEntity.status(statusOf(e)).build();
+        }
+    }
+
+    @PostMapping("/objects/delete")
+    public ResponseEntity<Object> deleteObjects(@RequestBody List<String> objectNames) {
+        try {
+            List<DataObjectResult> results = dataObjectHelper.deleteAll(objectNames);
+            for (DataObjectResult result : results)
+                if (result.isSuccessful())
+                    deleteVariants(result.getFileName());
+            return ResponseEntity.ok(results);
+        } catch (DataObjectHelper.InvalidParamException | NullPointerException e){
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (Exception e) {
+            System.out.println(e.getMessage());
+            return ResponseEntity.status(statusOf(e)).build();
         }
     }
 
@@ -78,16 +221,91 @@ public class DataObjectController {
     public ResponseEntity<Object> deleteObject(@PathVariable String objectName) {
         try {
             dataObjectHelper.delete(objectName);
+            deleteVariants(objectName);
             return ResponseEntity.noContent().build();
         } catch (DataObjectHelper.InvalidParamException | NullPointerException e){
             return ResponseEntity.badRequest().body(e.getMessage());
-        } catch (DataObjectHelper.AccessDeniedException e) {
-            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
-        } catch (DataObjectHelper.KeyNotFoundException e) {
-            return ResponseEntity.notFound().build();
         } catch (Exception e) {
             System.out.println(e.getMessage());
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+            return ResponseEntity.status(statusOf(e)).build();
+        }
+    }
+
+    /**
+     * Delete the variants of a deleted image, the image being deleted even if its variants are not
+     */
+    private void deleteVariants(String objectName) {
+        try {
+            imageVariants.deleteVariants(objectName);
+        } catch (Exception e) {
+            LOGGER.warn("Variants of {} not deleted: {}", objectName, e.getMessage());
+        }
+    }
+
+    /**
+     * Open the content asked by a GET request and stream it to the client, or answer 304 when the client
+     * already holds the current version of the file
+     * Only single byte ranges are served partially, other Range headers are ignored
+     */
+    static ResponseEntity<StreamingResponseBody> conditionalContentResponse(DataObjectHelper dataObjectHelper, String fileName,
+            String range, String ifNoneMatch, String ifModifiedSince, String acceptEncoding) throws DataObjectHelper.DataObjectHelperException {
+        long[] bounds = parseRange(range);
+        Instant modifiedSince = parseHttpDate(ifModifiedSince);
+        if (bounds != null) {
+            if (ifNoneMatch == null && modifiedSince == null) {
+                return contentResponse(dataObjectHelper.getContent(fileName, bounds[0], bounds[1]));
+            }
+            // The conditions of a range are evaluated on the metadata, the range is only opened when needed
+            DataObjectMetadata metadata = dataObjectHelper.getMetadata(fileName);
+            return metadata.isNotModified(ifNoneMatch, modifiedSince)
+                    ? notModified(metadata)
+                    : contentResponse(dataObjectHelper.getContent(fileName, bounds[0], bounds[1]));
+        }
+        // The conditions are sent to the storage, which does not send the content of an unchanged file,
+        // and a compressed file is sent as stored to a client accepting its encoding
+        DataObjectContent content = dataObjectHelper.getContentIfModified(fileName, ifNoneMatch, modifiedSince, acceptEncoding);
+        if (content != null) {
+            return contentResponse(content);
+        }
+        ResponseEntity<StreamingResponseBody> notModified = notModified(ifNoneMatch);
+        return notModified != null ? notModified : notModified(dataObjectHelper.getMetadata(fileName));
+    }
+
+    /**
+     * Stream an opened content to the client, closing it once sent
+     */
+    static ResponseEntity<StreamingResponseBody> contentResponse(DataObjectContent content) {
+        DataObjectMetadata metadata = content.getMetadata();
+
+        // The content is copied from the data object to the client through a fixed-size buffer
+        StreamingResponseBody body = outputStream -> {
+            try (content) {
+                content.transferTo(outputStream);
+            }
+        };
+
+        ResponseEntity.BodyBuilder response = content.getContentRange() == null
+                ? ResponseEntity.ok()
+                : ResponseEntity.status(HttpStatus.PARTIAL_CONTENT).header(HttpHeaders.CONTENT_RANGE, content.getContentRange());
+        withEncoding(withValidators(response, metadata), metadata).contentType(mediaTypeOf(metadata)).header(HttpHeaders.ACCEPT_RANGES, "bytes");
+        if (metadata.getContentLength() >= 0) {
+            response.contentLength(metadata.getContentLength());
+        }
+        return response.body(body);
+    }
+
+    /**
+     * Fetch the page following a streamed one
+     * Once the response is committed, a failure can only abort it
+     */
+    private DataObjectListing nextPage(DataObjectListing page, String prefix, String delimiter) throws IOException {
+        if (!page.isTruncated()) {
+            return null;
+        }
+        try {
+            return dataObjectHelper.listObjects(prefix, delimiter, LISTING_PAGE_SIZE, page.getNextContinuationToken());
+        } catch (DataObjectHelper.DataObjectHelperException e) {
+            throw new IOException("Listing interrupted: " + e.getMessage(), e);
         }
     }
 }
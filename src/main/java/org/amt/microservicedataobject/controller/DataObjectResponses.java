@@ -0,0 +1,214 @@
+package org.amt.microservicedataobject.controller;
+
+import org.amt.microservicedataobject.service.DataObjectHelper;
+import org.amt.microservicedataobject.service.DataObjectListing;
+import org.amt.microservicedataobject.service.DataObjectMetadata;
+import org.amt.microservicedataobject.service.image.ImageVariants;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.DigestUtils;
+
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * HTTP mapping shared by the servlet and the reactive controllers, so both answer the same way
+ *
+ * @author De Bleser Dimitri
+ * @author Peer Vincent
+ * @author Nelson Jeanreneaud
+ */
+final class DataObjectResponses {
+
+    private static final Pattern BYTE_RANGE = Pattern.compile("bytes=(\\d*)-(\\d*)");
+    static final int LISTING_PAGE_SIZE = 1000;
+    // Bytes of an upload not sent because the storage already held the same content
+    static final String BYTES_SAVED = "X-Bytes-Saved";
+
+    private DataObjectResponses() {
+    }
+
+    /**
+     * Refuse to write under the prefix of the image variants, only stored by the service
+     * @throws DataObjectHelper.InvalidParamException if the name is reserved
+     */
+    static void checkWritable(String fileName) throws DataObjectHelper.InvalidParamException {
+        if (ImageVariants.isReserved(fileName)) {
+            throw new DataObjectHelper.InvalidParamException("Names starting with " + ImageVariants.VARIANT_PREFIX
+                    + " are reserved for the image variants: " + fileName);
+        }
+    }
+
+    /**
+     * Map a failure of a {@link DataObjectHelper} to the status of the response
+     * @param error thrown by the helper, possibly wrapped by a future
+     * @return status of the response
+     */
+    static HttpStatus statusOf(Throwable error) {
+        Throwable cause = unwrap(error);
+        if (cause instanceof DataObjectHelper.InvalidRangeException) {
+            return HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE;
+        }
+        if (cause instanceof DataObjectHelper.InvalidParamException || cause instanceof NullPointerException) {
+            return HttpStatus.BAD_REQUEST;
+        }
+        if (cause instanceof DataObjectHelper.AccessDeniedException) {
+            return HttpStatus.FORBIDDEN;
+        }
+        if (cause instanceof DataObjectHelper.KeyNotFoundException || cause instanceof DataObjectHelper.DataObjectNotFoundException) {
+            return HttpStatus.NOT_FOUND;
+        }
+        if (cause instanceof DataObjectHelper.ThrottlingException || cause instanceof DataObjectHelper.CircuitOpenException) {
+            // Overloaded or unavailable storage, the client may try again later
+            return HttpStatus.SERVICE_UNAVAILABLE;
+        }
+        return HttpStatus.INTERNAL_SERVER_ERROR;
+    }
+
+    /**
+     * @return the failure wrapped by a future
+     */
+    static Throwable unwrap(Throwable error) {
+        Throwable cause = error;
+        while ((cause instanceof CompletionException || cause instanceof ExecutionException) && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause;
+    }
+
+    static MediaType mediaTypeOf(DataObjectMetadata metadata) {
+        try {
+            return metadata.getContentType() == null
+                    ? MediaType.APPLICATION_OCTET_STREAM
+                    : MediaType.parseMediaType(metadata.getContentType());
+        } catch (InvalidMediaTypeException e) {
+            return MediaType.APPLICATION_OCTET_STREAM;
+        }
+    }
+
+    /**
+     * Parse a single byte range
+     * @param range value of a Range header
+     * @return start and end of the range as expected by {@link DataObjectHelper#getContent(String, long, long)},
+     * or null if the header is absent, invalid or holds several ranges
+     */
+    static long[] parseRange(String range) {
+        if (range == null) {
+            return null;
+        }
+        Matcher matcher = BYTE_RANGE.matcher(range.trim());
+        if (!matcher.matches() || (matcher.group(1).isEmpty() && matcher.group(2).isEmpty())) {
+            return null;
+        }
+        try {
+            if (matcher.group(1).isEmpty()) {
+                long suffixLength = Long.parseLong(matcher.group(2));
+                return suffixLength == 0 ? null : new long[]{-suffixLength, -1};
+            }
+            long start = Long.parseLong(matcher.group(1));
+            long end = matcher.group(2).isEmpty() ? -1 : Long.parseLong(matcher.group(2));
+            return end >= 0 && end < start ? null : new long[]{start, end};
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Parse an HTTP date, such as the value of an If-Modified-Since header
+     * @return the date, or null if the header is absent or invalid, an invalid date being ignored
+     */
+    static Instant parseHttpDate(String date) {
+        if (date == null) {
+            return null;
+        }
+        try {
+            return ZonedDateTime.parse(date.trim(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant();
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Add the ETag and Last-Modified headers of a version of a file, for the clients to revalidate it
+     */
+    static <B extends ResponseEntity.HeadersBuilder<B>> B withValidators(B response, DataObjectMetadata metadata) {
+        if (metadata.getETag() != null) {
+            response.eTag(metadata.getETag());
+        }
+        if (metadata.getLastModified() != null) {
+            response.lastModified(metadata.getLastModified());
+        }
+        return response;
+    }
+
+    /**
+     * Add the Content-Encoding of a content sent as stored, compressed, and tell the caches that the
+     * content depends on the encodings accepted by the client
+     */
+    static <B extends ResponseEntity.HeadersBuilder<B>> B withEncoding(B response, DataObjectMetadata metadata) {
+        if (metadata.getContentEncoding() != null) {
+            response.header(HttpHeaders.CONTENT_ENCODING, metadata.getContentEncoding());
+        }
+        return response.header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+    }
+
+    /**
+     * @return 304 response telling the client its version of the file is still the current one
+     */
+    static <T> ResponseEntity<T> notModified(DataObjectMetadata metadata) {
+        return withValidators(ResponseEntity.status(HttpStatus.NOT_MODIFIED), metadata).build();
+    }
+
+    /**
+     * @return 304 response for a single entity tag found in If-None-Match, or null if the tags do not tell the current one
+     */
+    static <T> ResponseEntity<T> notModified(String ifNoneMatch) {
+        List<String> entityTags = ifNoneMatch == null ? List.of() : DataObjectMetadata.entityTags(ifNoneMatch);
+        if (entityTags.size() != 1 || entityTags.get(0).equals("*")) {
+            return null;
+        }
+        // The only tag held by the client matched, it is the one of the current version
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(entityTags.get(0)).build();
+    }
+
+    /**
+     * ETag of a returned URL, the presigned URLs reused from the cache being answered with 304 to the clients holding them
+     */
+    static String eTagOf(URL url) {
+        return "\"" + DigestUtils.md5DigestAsHex(url.toString().getBytes(StandardCharsets.UTF_8)) + "\"";
+    }
+
+    /**
+     * @return common prefixes then file names of a listing page
+     */
+    static List<String> names(DataObjectListing page) {
+        if (page.getCommonPrefixes().isEmpty()) {
+            return page.getKeys();
+        }
+        List<String> names = new ArrayList<>(page.getCommonPrefixes());
+        names.addAll(page.getKeys());
+        return names;
+    }
+
+    static boolean accepts(String accept, MediaType mediaType) {
+        try {
+            return accept != null && MediaType.parseMediaTypes(accept).stream()
+                    .anyMatch(acceptedType -> acceptedType.equalsTypeAndSubtype(mediaType));
+        } catch (InvalidMediaTypeException e) {
+            return false;
+        }
+    }
+}
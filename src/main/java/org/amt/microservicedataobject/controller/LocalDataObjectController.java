@@ -0,0 +1,68 @@
+package org.amt.microservicedataobject.controller;
+
+import org.amt.microservicedataobject.service.DataObjectHelper;
+import org.amt.microservicedataobject.service.local.LocalUrlSigner;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import static org.amt.microservicedataobject.controller.DataObjectResponses.statusOf;
+
+/**
+ * Serves the URLs signed by the local storage, in place of the presigned URLs of S3
+ */
+@RestController
+@Profile("!reactive")
+@ConditionalOnProperty(name = "dataobject.backend", havingValue = "local")
+public class LocalDataObjectController {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LocalDataObjectController.class);
+
+    private final DataObjectHelper dataObjectHelper;
+    private final LocalUrlSigner urlSigner;
+
+    public LocalDataObjectController(DataObjectHelper dataObjectHelper, LocalUrlSigner urlSigner) {
+        this.dataObjectHelper = dataObjectHelper;
+        this.urlSigner = urlSigner;
+    }
+
+    @GetMapping(LocalUrlSigner.PATH)
+    public ResponseEntity<StreamingResponseBody> getSignedObject(@RequestParam("key") String key,
+                                                                 @RequestParam("expires") long expires,
+                                                                 @RequestParam("signature") String signature,
+                                                                 @RequestHeader(value = HttpHeaders.RANGE, required = false) String range,
+                                                                 @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+                                                                 @RequestHeader(value = HttpHeaders.IF_MODIFIED_SINCE, required = false) String ifModifiedSince,
+                                                                 @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        if (!urlSigner.verify(key, expires, signature)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        try {
+            return DataObjectController.conditionalContentResponse(dataObjectHelper, key, range, ifNoneMatch, ifModifiedSince, acceptEncoding);
+        } catch (Exception e) {
+            HttpStatus status = statusOf(e);
+            logError(e, status);
+            return ResponseEntity.status(status).build();
+        }
+    }
+
+    /**
+     * Failures of the storage are logged, the missing objects and unsatisfiable ranges are only answered
+     */
+    private static void logError(Exception e, HttpStatus status) {
+        if (status.is5xxServerError()) {
+            LOGGER.warn("Signed request failed with {}: {}", status.value(), e.getMessage());
+        } else {
+            LOGGER.debug("Signed request refused with {}: {}", status.value(), e.getMessage());
+        }
+    }
+}
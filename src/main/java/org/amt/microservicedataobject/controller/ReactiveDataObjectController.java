@@ -0,0 +1,311 @@
+package org.amt.microservicedataobject.controller;
+
+import org.amt.microservicedataobject.service.AsyncDataObjectContent;
+import org.amt.microservicedataobject.service.AsyncDataObjectHelper;
+import org.amt.microservicedataobject.service.DataObjectListing;
+import org.amt.microservicedataobject.service.DataObjectMetadata;
+import org.amt.microservicedataobject.service.DataObjectResult;
+import org.amt.microservicedataobject.service.image.ImageVariants;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.compression.JdkZlibDecoder;
+import io.netty.handler.codec.compression.ZlibWrapper;
+import org.reactivestreams.Publisher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.multipart.FilePart;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.amt.microservicedataobject.controller.DataObjectResponses.*;
+
+/**
+ * Reactive counterpart of {@link DataObjectController}, serving the same routes with the reactive profile
+ * Request bodies are requested from the client only as fast as they are sent to the storage,
+ * and contents are requested from the storage only as fast as the client reads them
+ * Contents stored gzip-compressed are sent as stored to the clients accepting gzip, and decompressed as they
+ * are sent to the other clients
+ */
+@RestController
+@Profile("reactive")
+public class ReactiveDataObjectController {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReactiveDataObjectController.class);
+    private static final String GZIP = "gzip";
+
+    private final AsyncDataObjectHelper dataObjectHelper;
+    private final int uploadConcurrency;
+
+    public ReactiveDataObjectController(AsyncDataObjectHelper dataObjectHelper,
+                                        @Value("${dataobject.batch.upload-concurrency:16}") int uploadConcurrency) {
+        this.dataObjectHelper = dataObjectHelper;
+        this.uploadConcurrency = uploadConcurrency;
+    }
+
+    @GetMapping("/objects")
+    public Mono<ResponseEntity<Object>> listObjects(@RequestParam(value = "prefix", required = false) String prefix,
+                                                    @RequestParam(value = "delimiter", required = false) String delimiter,
+                                                    @RequestParam(value = "pageSize", required = false) Integer pageSize,
+                                                    @RequestParam(value = "continuationToken", required = false) String continuationToken,
+                                                    @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        // The first page is fetched before answering, so that errors are still mapped to a status
+        Mono<DataObjectListing> firstPage = Mono.fromFuture(() -> dataObjectHelper.listObjects(prefix, delimiter,
+                pageSize == null ? LISTING_PAGE_SIZE : pageSize, continuationToken));
+
+        return firstPage.map(page -> {
+            if (pageSize != null || continuationToken != null) {
+                return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body((Object) page);
+            }
+            // Otherwise the next pages are only listed as the names of the previous ones are written
+            Flux<String> names = Mono.just(page)
+                    .expand(listed -> listed.isTruncated()
+                            ? Mono.fromFuture(() -> dataObjectHelper.listObjects(prefix, delimiter, LISTING_PAGE_SIZE, listed.getNextContinuationToken()))
+                            : Mono.empty())
+                    .concatMapIterable(DataObjectResponses::names);
+            MediaType contentType = accepts(accept, MediaType.APPLICATION_NDJSON) ? MediaType.APPLICATION_NDJSON : MediaType.APPLICATION_JSON;
+            return ResponseEntity.ok().contentType(contentType).body((Object) names);
+        }).onErrorResume(e -> Mono.just(ResponseEntity.status(statusOf(e)).build()));
+    }
+
+    @PostMapping(value = "/objects", consumes = {"multipart/form-data"})
+    public Mono<ResponseEntity<Object>> postObject(@RequestPart("file") Mono<FilePart> file) {
+        return file.flatMap(part -> Mono.fromCallable(() -> {
+                            checkWritable(part.filename());
+                            return part;
+                        })
+                        .flatMap(checked -> Mono.fromFuture(() -> dataObjectHelper.add(part.filename(), toByteBuffers(part.content()), -1)))
+                        .doOnSuccess(done -> LOGGER.debug("File uploaded: {}", part.filename())))
+                .then(Mono.just(ResponseEntity.ok().build()))
+                .onErrorResume(this::error);
+    }
+
+    @PostMapping(value = "/objects/batch", consumes = {"multipart/form-data"})
+    public Mono<ResponseEntity<Object>> postObjects(@RequestPart("files") Flux<FilePart> files) {
+        // The parts are uploaded as they arrive, a reserved name only failing its own part
+        return files.flatMapSequential(part -> Mono.fromCallable(() -> {
+                                    checkWritable(part.filename());
+                                    return part;
+                                })
+                                .flatMap(checked -> Mono.fromFuture(() -> dataObjectHelper.add(part.filename(), toByteBuffers(part.content()), -1)))
+                                .then(Mono.fromCallable(() -> DataObjectResult.success(part.filename())))
+                                .onErrorResume(e -> Mono.just(DataObjectResult.failure(part.filename(), unwrap(e).getMessage()))),
+                        uploadConcurrency)
+                .collectList()
+                .map(results -> ResponseEntity.ok().body((Object) results))
+                .onErrorResume(this::error);
+    }
+
+    @PutMapping("/objects/{objectName}")
+    public Mono<ResponseEntity<Object>> putObject(@PathVariable String objectName, ServerHttpRequest request) {
+        // The request body is piped to the data object as it arrives, nothing is written on the local disk
+        return Mono.fromCallable(() -> {
+                    checkWritable(objectName);
+                    return objectName;
+                })
+                .flatMap(checked -> Mono.fromFuture(() -> dataObjectHelper.add(objectName, toByteBuffers(request.getBody()),
+                        request.getHeaders().getContentLength())))
+                .then(Mono.just(ResponseEntity.ok().build()))
+                .onErrorResume(this::error);
+    }
+
+    @GetMapping("/objects/{objectName}")
+    public Mono<ResponseEntity<Object>> getObject(@PathVariable String objectName, @RequestParam("duration") int duration) {
+        return Mono.fromFuture(() -> dataObjectHelper.getUrl(objectName, Duration.ofMinutes(duration)))
+                .map(url -> ResponseEntity.ok().eTag(eTagOf(url)).body((Object) url.toString()))
+                .onErrorResume(this::error);
+    }
+
+    @GetMapping("/objects/{objectName}/content")
+    public Mono<ResponseEntity<Flux<DataBuffer>>> getObjectContent(@PathVariable String objectName,
+                                                                   @RequestHeader(value = HttpHeaders.RANGE, required = false) String range,
+                                                                   @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+                                                                   @RequestHeader(value = HttpHeaders.IF_MODIFIED_SINCE, required = false) String ifModifiedSince,
+                                                                   @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        // Only single byte ranges are served partially, other Range headers are ignored
+        long[] bounds = parseRange(range);
+        Instant modifiedSince = parseHttpDate(ifModifiedSince);
+        Mono<ResponseEntity<Flux<DataBuffer>>> response;
+        if (ifNoneMatch == null && modifiedSince == null) {
+            response = Mono.fromFuture(() -> bounds == null
+                    ? dataObjectHelper.getContent(objectName)
+                    : dataObjectHelper.getContent(objectName, bounds[0], bounds[1])).map(content -> contentResponse(content, acceptEncoding));
+        } else if (bounds != null) {
+            // The conditions of a range are evaluated on the metadata, the range is only opened when needed
+            response = Mono.fromFuture(() -> dataObjectHelper.getMetadata(objectName))
+                    .flatMap(metadata -> metadata.isNotModified(ifNoneMatch, modifiedSince)
+                            ? Mono.just(DataObjectResponses.<Flux<DataBuffer>>notModified(metadata))
+                            : Mono.fromFuture(() -> dataObjectHelper.getContent(objectName, bounds[0], bounds[1])).map(content -> contentResponse(content, acceptEncoding)));
+        } else {
+            // The conditions are sent to the storage, which does not send the content of an unchanged file
+            response = Mono.fromFuture(() -> dataObjectHelper.getContentIfModified(objectName, ifNoneMatch, modifiedSince))
+                    .map(content -> contentResponse(content, acceptEncoding))
+                    .switchIfEmpty(Mono.defer(() -> {
+                        ResponseEntity<Flux<DataBuffer>> notModified = notModified(ifNoneMatch);
+                        return notModified != null
+                                ? Mono.just(notModified)
+                                : Mono.fromFuture(() -> dataObjectHelper.getMetadata(objectName)).map(DataObjectResponses::notModified);
+                    }));
+        }
+
+        return response.onErrorResume(e -> {
+            HttpStatus status = statusOf(e);
+            logError(unwrap(e), status);
+            return Mono.just(ResponseEntity.status(status).build());
+        });
+    }
+
+    @PostMapping("/objects/delete")
+    public Mono<ResponseEntity<Object>> deleteObjects(@RequestBody List<String> objectNames) {
+        return Mono.fromFuture(() -> dataObjectHelper.deleteAll(objectNames))
+                .flatMap(results -> Flux.fromIterable(results)
+                        .filter(DataObjectResult::isSuccessful)
+                        .concatMap(result -> deleteVariants(result.getFileName()))
+                        .then(Mono.just(ResponseEntity.ok().body((Object) results))))
+                .onErrorResume(this::error);
+    }
+
+    @DeleteMapping("/objects/{objectName}")
+    public Mono<ResponseEntity<Object>> deleteObject(@PathVariable String objectName) {
+        return Mono.fromFuture(() -> dataObjectHelper.delete(objectName))
+                .then(deleteVariants(objectName))
+                .then(Mono.just(ResponseEntity.noContent().build()))
+                .onErrorResume(this::error);
+    }
+
+    /**
+     * Delete the variants of a deleted image, stored by the servlet controller on the same storage
+     * Only the direct children of the prefix of the image are listed, not the variants of the images named after it
+     * The image being deleted, a failure is only logged
+     */
+    private Mono<Void> deleteVariants(String objectName) {
+        if (ImageVariants.isReserved(objectName)) {
+            return Mono.empty();
+        }
+        String prefix = ImageVariants.VARIANT_PREFIX + objectName + "/";
+        return Mono.fromFuture(() -> dataObjectHelper.listObjects(prefix, "/", LISTING_PAGE_SIZE, null))
+                .expand(listed -> listed.isTruncated()
+                        ? Mono.fromFuture(() -> dataObjectHelper.listObjects(prefix, "/", LISTING_PAGE_SIZE, listed.getNextContinuationToken()))
+                        : Mono.empty())
+                .concatMapIterable(DataObjectListing::getKeys)
+                .collectList()
+                .flatMap(keys -> keys.isEmpty() ? Mono.empty() : Mono.fromFuture(() -> dataObjectHelper.deleteAll(keys)))
+                .then()
+                .onErrorResume(e -> {
+                    LOGGER.warn("Variants of {} not deleted: {}", objectName, unwrap(e).getMessage());
+                    return Mono.empty();
+                });
+    }
+
+    /**
+     * @param acceptEncoding content codings accepted by the client, a compressed content being decompressed
+     * for the clients not accepting its encoding
+     */
+    private ResponseEntity<Flux<DataBuffer>> contentResponse(AsyncDataObjectContent content, String acceptEncoding) {
+        DataObjectMetadata metadata = content.getMetadata();
+        Flux<DataBuffer> body;
+        if (GZIP.equalsIgnoreCase(metadata.getContentEncoding()) && !DataObjectMetadata.acceptsEncoding(acceptEncoding, GZIP)) {
+            // Another representation of the stored bytes, of unknown length until decompressed
+            String eTag = metadata.getETag();
+            metadata = new DataObjectMetadata(-1, metadata.getContentType(),
+                    eTag == null || eTag.startsWith("W/") ? eTag : "W/" + eTag, metadata.getLastModified(), metadata.getContentHash());
+            body = decompressed(content.getPublisher());
+        } else {
+            body = Flux.from(content.getPublisher()).map(DefaultDataBufferFactory.sharedInstance::wrap);
+        }
+        ResponseEntity.BodyBuilder response = content.getContentRange() == null
+                ? ResponseEntity.ok()
+                : ResponseEntity.status(HttpStatus.PARTIAL_CONTENT).header(HttpHeaders.CONTENT_RANGE, content.getContentRange());
+        withEncoding(withValidators(response, metadata), metadata).contentType(mediaTypeOf(metadata)).header(HttpHeaders.ACCEPT_RANGES, "bytes");
+        if (metadata.getContentLength() >= 0) {
+            response.contentLength(metadata.getContentLength());
+        }
+        return response.body(body);
+    }
+
+    /**
+     * Decompress a gzip content as it is published, with the decoder of Netty fed one buffer at a time
+     * The demand of the client is passed on to the storage, a few decompressed buffers being published for each compressed one
+     */
+    private static Flux<DataBuffer> decompressed(Publisher<ByteBuffer> compressed) {
+        return Flux.using(() -> new EmbeddedChannel(new JdkZlibDecoder(ZlibWrapper.GZIP)),
+                decoder -> Flux.from(compressed)
+                        // Copied, the decoder may keep the bytes of an incomplete block after the buffer is recycled
+                        .concatMapIterable(buffer -> {
+                            decoder.writeInbound(Unpooled.copiedBuffer(buffer));
+                            return readDecompressed(decoder);
+                        })
+                        .concatWith(Flux.defer(() -> {
+                            decoder.finish();
+                            return Flux.fromIterable(readDecompressed(decoder));
+                        })),
+                EmbeddedChannel::finishAndReleaseAll);
+    }
+
+    private static List<DataBuffer> readDecompressed(EmbeddedChannel decoder) {
+        List<DataBuffer> buffers = new ArrayList<>();
+        for (ByteBuf decompressed = decoder.readInbound(); decompressed != null; decompressed = decoder.readInbound()) {
+            try {
+                byte[] bytes = new byte[decompressed.readableBytes()];
+                decompressed.readBytes(bytes);
+                buffers.add(DefaultDataBufferFactory.sharedInstance.wrap(bytes));
+            } finally {
+                decompressed.release();
+            }
+        }
+        return buffers;
+    }
+
+    private Mono<ResponseEntity<Object>> error(Throwable error) {
+        Throwable cause = unwrap(error);
+        HttpStatus status = statusOf(cause);
+        logError(cause, status);
+        return Mono.just(status == HttpStatus.BAD_REQUEST
+                ? ResponseEntity.badRequest().body(cause.getMessage())
+                : ResponseEntity.status(status).build());
+    }
+
+    /**
+     * Failures of the storage are logged, the errors of the client are only answered
+     */
+    private static void logError(Throwable cause, HttpStatus status) {
+        if (status.is5xxServerError()) {
+            LOGGER.warn("Request failed with {}: {}", status.value(), cause.getMessage());
+        } else {
+            LOGGER.debug("Request refused with {}: {}", status.value(), cause.getMessage());
+        }
+    }
+
+    /**
+     * Copy the request buffers for the storage, releasing them as soon as they are copied
+     * The demand of the storage is passed on to the request, so the client is read as fast as the storage accepts the content
+     */
+    private static Flux<ByteBuffer> toByteBuffers(Flux<DataBuffer> body) {
+        return body.map(dataBuffer -> {
+            try {
+                byte[] bytes = new byte[dataBuffer.readableByteCount()];
+                dataBuffer.read(bytes);
+                return ByteBuffer.wrap(bytes);
+            } finally {
+                DataBufferUtils.release(dataBuffer);
+            }
+        }).doOnDiscard(DataBuffer.class, DataBufferUtils::release);
+    }
+}
@@ -0,0 +1,46 @@
+package org.amt.microservicedataobject.service;
+
+import org.reactivestreams.Publisher;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Non-blocking stream on the content of a stored file
+ * The content is only transferred as fast as the subscriber of the publisher requests it
+ * @author De Bleser Dimitri
+ * @author Peer Vincent
+ * @author Nelson Jeanreneaud
+ */
+public class AsyncDataObjectContent {
+
+    private final DataObjectMetadata metadata;
+    private final Publisher<ByteBuffer> publisher;
+    private final String contentRange;
+
+    public AsyncDataObjectContent(DataObjectMetadata metadata, Publisher<ByteBuffer> publisher, String contentRange) {
+        this.metadata = metadata;
+        this.publisher = publisher;
+        this.contentRange = contentRange;
+    }
+
+    /**
+     * @return metadata of the file
+     */
+    public DataObjectMetadata getMetadata() {
+        return metadata;
+    }
+
+    /**
+     * @return publisher of the file content, to be subscribed exactly once
+     */
+    public Publisher<ByteBuffer> getPublisher() {
+        return publisher;
+    }
+
+    /**
+     * @return range of the file held by the publisher, as in a Content-Range header, or null for the whole file
+     */
+    public String getContentRange() {
+        return contentRange;
+    }
+}
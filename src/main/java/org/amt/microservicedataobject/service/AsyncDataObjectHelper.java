@@ -0,0 +1,123 @@
+package org.amt.microservicedataobject.service;
+
+import org.reactivestreams.Publisher;
+
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Non-blocking counterpart of {@link DataObjectHelper}
+ * No method blocks the calling thread: failures complete the returned futures exceptionally
+ * with the exceptions of {@link DataObjectHelper}
+ * @author De Bleser Dimitri
+ * @author Peer Vincent
+ * @author Nelson Jeanreneaud
+ */
+public interface AsyncDataObjectHelper {
+
+    /**
+     * Upload a file *
+     * @param fileName given file name
+     * @param file to upload
+     */
+    CompletableFuture<Void> add(String fileName, Path file);
+
+    /**
+     * Upload the content of a publisher, requesting it only as fast as it can be sent *
+     * @param fileName given file name
+     * @param content to upload
+     * @param contentLength number of bytes published, or -1 if unknown
+     */
+    CompletableFuture<Void> add(String fileName, Publisher<ByteBuffer> content, long contentLength);
+
+    /**
+     * List files in the container *
+     * @return file names
+     */
+    CompletableFuture<List<String>> listObjects();
+
+    /**
+     * List one page of files in the container *
+     * @see DataObjectHelper#listObjects(String, String, int, String)
+     */
+    CompletableFuture<DataObjectListing> listObjects(String prefix, String delimiter, int pageSize, String continuationToken);
+
+    /**
+     * Get file content*
+     * @param fileName to get
+     * @return File content
+     */
+    CompletableFuture<byte[]> get(String fileName);
+
+    /**
+     * Get a publisher of the file content *
+     * @param fileName to get
+     * @return File content, published as it is received
+     */
+    CompletableFuture<AsyncDataObjectContent> getContent(String fileName);
+
+    /**
+     * Get a publisher of a byte range of the file content *
+     * @see DataObjectHelper#getContent(String, long, long)
+     */
+    CompletableFuture<AsyncDataObjectContent> getContent(String fileName, long start, long end);
+
+    /**
+     * Get a publisher of the file content unless the caller already holds its current version *
+     * @see DataObjectHelper#getContentIfModified(String, String, Instant)
+     * @return File content, or null if the file was not modified
+     */
+    default CompletableFuture<AsyncDataObjectContent> getContentIfModified(String fileName, String ifNoneMatch, Instant ifModifiedSince) {
+        if (ifNoneMatch == null && ifModifiedSince == null) {
+            return getContent(fileName);
+        }
+        return getMetadata(fileName).thenCompose(metadata -> metadata.isNotModified(ifNoneMatch, ifModifiedSince)
+                ? CompletableFuture.completedFuture(null)
+                : getContent(fileName));
+    }
+
+    /**
+     * Delete a file in the container *
+     * @param fileName to delete
+     */
+    CompletableFuture<Void> delete(String fileName);
+
+    /**
+     * Delete many files in the container *
+     * @see DataObjectHelper#deleteAll(Collection)
+     */
+    CompletableFuture<List<DataObjectResult>> deleteAll(Collection<String> fileNames);
+
+    /**
+     * Get a public url to pointing to a given file *
+     * @param fileName     to get
+     * @param linkDuration duration of the link
+     * @return Url to the file
+     */
+    CompletableFuture<URL> getUrl(String fileName, Duration linkDuration);
+
+    /**
+     * Chceks if the file exists
+     * @param fileName to check
+     * @return true if the file exists
+     */
+    CompletableFuture<Boolean> exists(String fileName);
+
+    /**
+     * Get the metadata of a file without its content
+     * @param fileName to check
+     * @return metadata of the file
+     */
+    CompletableFuture<DataObjectMetadata> getMetadata(String fileName);
+
+    /**
+     * @return The container's name
+     */
+    String getName();
+}
@@ -0,0 +1,96 @@
+package org.amt.microservicedataobject.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Stream on a range of a file channel, read with positional reads so it does not move the position of the channel
+ * Copied to an output stream with {@link FileChannel#transferTo} on a channel wrapping the stream, which copies the
+ * bytes through a small heap buffer: the copy is done by the kernel only between file and socket channels
+ *
+ * @author De Bleser Dimitri
+ * @author Peer Vincent
+ * @author Nelson Jeanreneaud
+ */
+class ChannelRangeInputStream extends InputStream {
+
+    private final FileChannel channel;
+    private long position;
+    private long remaining;
+
+    /**
+     * @param channel opened on the file, closed with the stream
+     * @param position first byte of the range
+     * @param count number of bytes of the range
+     */
+    ChannelRangeInputStream(FileChannel channel, long position, long count) {
+        this.channel = channel;
+        this.position = position;
+        this.remaining = count;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] single = new byte[1];
+        return read(single, 0, 1) < 0 ? -1 : single[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        if (remaining <= 0) {
+            return -1;
+        }
+        ByteBuffer target = ByteBuffer.wrap(buffer, offset, (int) Math.min(length, remaining));
+        int read = channel.read(target, position);
+        if (read < 0) {
+            // The file was truncated since it was opened
+            remaining = 0;
+            return -1;
+        }
+        position += read;
+        remaining -= read;
+        return read;
+    }
+
+    @Override
+    public long skip(long n) {
+        long skipped = Math.max(Math.min(n, remaining), 0);
+        position += skipped;
+        remaining -= skipped;
+        return skipped;
+    }
+
+    @Override
+    public int available() {
+        return (int) Math.min(remaining, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public long transferTo(OutputStream outputStream) throws IOException {
+        WritableByteChannel target = Channels.newChannel(outputStream);
+        long transferred = 0;
+        while (remaining > 0) {
+            long written = channel.transferTo(position, remaining, target);
+            if (written <= 0) {
+                break;
+            }
+            position += written;
+            remaining -= written;
+            transferred += written;
+        }
+        return transferred;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
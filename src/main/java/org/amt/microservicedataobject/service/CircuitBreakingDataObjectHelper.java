@@ -0,0 +1,283 @@
+package org.amt.microservicedataobject.service;
+
+import java.io.File;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.channels.FileChannel;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Vector;
+
+/**
+ * {@link DataObjectHelper} failing fast while the decorated storage is unhealthy, instead of letting every caller
+ * wait for the same failure
+ * - closed: the calls are made, and the outcomes of the last ones are recorded
+ * - open: once the failure rate of the recorded calls reaches the threshold, calls fail with a CircuitOpenException
+ *   without being made
+ * - half-open: after the open duration, a few trial calls are made, closing the circuit if they all succeed and
+ *   opening it again otherwise
+ * Failures are the ServiceException and ClientException of the storage (5xx, timeouts, connection errors), throttling
+ * excepted: a storage asking to slow down still answers, the concurrency limit slows down instead
+ * Missing keys, invalid parameters and the other answers of the storage count as successes
+ * @author De Bleser Dimitri
+ * @author Peer Vincent
+ * @author Nelson Jeanreneaud
+ */
+public class CircuitBreakingDataObjectHelper extends ForwardingDataObjectHelper {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final double failureRateThreshold;
+    private final int minimumCalls;
+    private final Duration openDuration;
+    private final int trialCalls;
+    // Outcomes of the last calls made while closed, true for a failure
+    private final boolean[] outcomes;
+    private int recordedCalls;
+    private int nextOutcome;
+    private int failedCalls;
+    private State state = State.CLOSED;
+    // Incremented on each transition, the calls made before it do not count afterwards
+    private long generation;
+    private long openedAt;
+    private int startedTrials;
+    private int succeededTrials;
+    private long rejectedCalls;
+    private final Map<State, Long> transitions = new EnumMap<>(State.class);
+
+    /**
+     * @param delegate helper to protect
+     * @param windowSize number of last calls the failure rate is computed on
+     * @param minimumCalls number of calls recorded before the circuit can open
+     * @param failureRateThreshold failure rate opening the circuit, between 0 exclusive and 1
+     * @param openDuration time during which calls fail fast before the trial calls
+     * @param trialCalls number of trial calls which must succeed to close the circuit
+     */
+    public CircuitBreakingDataObjectHelper(DataObjectHelper delegate, int windowSize, int minimumCalls,
+            double failureRateThreshold, Duration openDuration, int trialCalls) {
+        super(delegate);
+        if (windowSize < 1 || minimumCalls < 1 || minimumCalls > windowSize) {
+            throw new IllegalArgumentException("Invalid window: " + minimumCalls + " to " + windowSize + " calls");
+        }
+        if (!(failureRateThreshold > 0 && failureRateThreshold <= 1)) {
+            throw new IllegalArgumentException("Invalid failure rate threshold: " + failureRateThreshold);
+        }
+        Objects.requireNonNull(openDuration, "openDuration must not be null");
+        if (openDuration.isNegative()) {
+            throw new IllegalArgumentException("Invalid open duration: " + openDuration);
+        }
+        if (trialCalls < 1) {
+            throw new IllegalArgumentException("Invalid trial calls: " + trialCalls);
+        }
+        this.outcomes = new boolean[windowSize];
+        this.minimumCalls = minimumCalls;
+        this.failureRateThreshold = failureRateThreshold;
+        this.openDuration = openDuration;
+        this.trialCalls = trialCalls;
+        for (State s : State.values()) {
+            transitions.put(s, 0L);
+        }
+    }
+
+    /**
+     * @return current state, an open circuit whose open duration is over being reported open until the next call
+     */
+    public synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * @return number of times the circuit went to the state
+     */
+    public synchronized long getTransitions(State to) {
+        return transitions.get(to);
+    }
+
+    /**
+     * @return number of calls failed fast without being made
+     */
+    public synchronized long getRejectedCalls() {
+        return rejectedCalls;
+    }
+
+    @Override
+    public void add(String fileName, File file) throws DataObjectHelperException {
+        guarded(() -> {
+            delegate().add(fileName, file);
+            return null;
+        });
+    }
+
+    @Override
+    public void add(String fileName, InputStream inputStream, long contentLength) throws DataObjectHelperException {
+        guarded(() -> {
+            delegate().add(fileName, inputStream, contentLength);
+            return null;
+        });
+    }
+
+    @Override
+    public long addIfChanged(String fileName, File file) throws DataObjectHelperException {
+        return guarded(() -> delegate().addIfChanged(fileName, file));
+    }
+
+    @Override
+    public long addIfChanged(String fileName, InputStream inputStream, long contentLength) throws DataObjectHelperException {
+        return guarded(() -> delegate().addIfChanged(fileName, inputStream, contentLength));
+    }
+
+    @Override
+    public Vector<String> listObjects() throws DataObjectHelperException {
+        return guarded(() -> delegate().listObjects());
+    }
+
+    @Override
+    public DataObjectListing listObjects(String prefix, String delimiter, int pageSize, String continuationToken) throws DataObjectHelperException {
+        return guarded(() -> delegate().listObjects(prefix, delimiter, pageSize, continuationToken));
+    }
+
+    @Override
+    public byte[] get(String fileName) throws DataObjectHelperException {
+        return guarded(() -> delegate().get(fileName));
+    }
+
+    @Override
+    public DataObjectContent getContent(String fileName) throws DataObjectHelperException {
+        return guarded(() -> delegate().getContent(fileName));
+    }
+
+    @Override
+    public DataObjectContent getContent(String fileName, long start, long end) throws DataObjectHelperException {
+        return guarded(() -> delegate().getContent(fileName, start, end));
+    }
+
+    @Override
+    public DataObjectContent getContentIfModified(String fileName, String ifNoneMatch, Instant ifModifiedSince) throws DataObjectHelperException {
+        return guarded(() -> delegate().getContentIfModified(fileName, ifNoneMatch, ifModifiedSince));
+    }
+
+    @Override
+    public DataObjectContent getContentIfModified(String fileName, String ifNoneMatch, Instant ifModifiedSince, String acceptEncoding) throws DataObjectHelperException {
+        return guarded(() -> delegate().getContentIfModified(fileName, ifNoneMatch, ifModifiedSince, acceptEncoding));
+    }
+
+    @Override
+    public long download(String fileName, FileChannel channel) throws DataObjectHelperException {
+        return guarded(() -> delegate().download(fileName, channel));
+    }
+
+    @Override
+    public void delete(String fileName) throws DataObjectHelperException {
+        guarded(() -> {
+            delegate().delete(fileName);
+            return null;
+        });
+    }
+
+    @Override
+    public List<DataObjectResult> deleteAll(Collection<String> fileNames) throws DataObjectHelperException {
+        return guarded(() -> delegate().deleteAll(fileNames));
+    }
+
+    @Override
+    public URL getUrl(String fileName, Duration linkDuration) throws DataObjectHelperException {
+        return guarded(() -> delegate().getUrl(fileName, linkDuration));
+    }
+
+    @Override
+    public boolean exists(String fileName) throws DataObjectHelperException {
+        return guarded(() -> delegate().exists(fileName));
+    }
+
+    @Override
+    public DataObjectMetadata getMetadata(String fileName) throws DataObjectHelperException {
+        return guarded(() -> delegate().getMetadata(fileName));
+    }
+
+    private <T> T guarded(Call<T> call) throws DataObjectHelperException {
+        long callGeneration = permit();
+        boolean failed = false;
+        try {
+            return call.call();
+        } catch (ServiceException | ClientException e) {
+            failed = !(e instanceof ThrottlingException);
+            throw e;
+        } finally {
+            record(callGeneration, failed);
+        }
+    }
+
+    /**
+     * @return generation of the state the call is made in
+     */
+    private synchronized long permit() throws CircuitOpenException {
+        if (state == State.OPEN) {
+            if (System.nanoTime() - openedAt < openDuration.toNanos()) {
+                rejectedCalls++;
+                throw new CircuitOpenException("Storage unavailable, calls suspended for " + openDuration);
+            }
+            transition(State.HALF_OPEN);
+        }
+        if (state == State.HALF_OPEN) {
+            if (startedTrials == trialCalls) {
+                rejectedCalls++;
+                throw new CircuitOpenException("Storage unavailable, waiting for the trial calls");
+            }
+            startedTrials++;
+        }
+        return generation;
+    }
+
+    private synchronized void record(long callGeneration, boolean failed) {
+        if (callGeneration != generation) {
+            return;
+        }
+        if (state == State.HALF_OPEN) {
+            if (failed) {
+                transition(State.OPEN);
+            } else if (++succeededTrials == trialCalls) {
+                transition(State.CLOSED);
+            }
+            return;
+        }
+        if (recordedCalls == outcomes.length) {
+            failedCalls -= outcomes[nextOutcome] ? 1 : 0;
+        } else {
+            recordedCalls++;
+        }
+        outcomes[nextOutcome] = failed;
+        failedCalls += failed ? 1 : 0;
+        nextOutcome = (nextOutcome + 1) % outcomes.length;
+        if (recordedCalls >= minimumCalls && failedCalls >= failureRateThreshold * recordedCalls) {
+            transition(State.OPEN);
+        }
+    }
+
+    private void transition(State to) {
+        state = to;
+        generation++;
+        transitions.merge(to, 1L, Long::sum);
+        if (to == State.OPEN) {
+            openedAt = System.nanoTime();
+        } else if (to == State.HALF_OPEN) {
+            startedTrials = 0;
+            succeededTrials = 0;
+        } else {
+            recordedCalls = 0;
+            nextOutcome = 0;
+            failedCalls = 0;
+        }
+    }
+
+    @FunctionalInterface
+    private interface Call<T> {
+        T call() throws DataObjectHelperException;
+    }
+}
@@ -0,0 +1,181 @@
+package org.amt.microservicedataobject.service;
+
+import java.io.File;
+import java.io.InputStream;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.UnaryOperator;
+
+/**
+ * {@link DataObjectHelper} sharing the reads of a key running at the same time
+ * The first caller of get, exists or getMetadata on a key calls the decorated helper, the callers arriving
+ * while it runs wait for its result instead of making the same call. They get their own copy of the content,
+ * or the same exception as the first caller when the call fails
+ * Writing or deleting a key detaches the read in flight, later callers make a new call and see the change
+ * @author De Bleser Dimitri
+ * @author Peer Vincent
+ * @author Nelson Jeanreneaud
+ */
+public class CoalescingDataObjectHelper extends ForwardingDataObjectHelper {
+
+    private final ConcurrentMap<String, CompletableFuture<byte[]>> gets = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, CompletableFuture<Boolean>> exists = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, CompletableFuture<DataObjectMetadata>> metadata = new ConcurrentHashMap<>();
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder coalescedCalls = new LongAdder();
+
+    public CoalescingDataObjectHelper(DataObjectHelper delegate) {
+        super(delegate);
+    }
+
+    /**
+     * @return number of reads made on the decorated helper
+     */
+    public long getCallCount() {
+        return calls.sum();
+    }
+
+    /**
+     * @return number of reads served by the result of a read already running, the calls saved
+     */
+    public long getCoalescedCount() {
+        return coalescedCalls.sum();
+    }
+
+    @Override
+    public byte[] get(String fileName) throws DataObjectHelperException {
+        return coalesced(gets, fileName, () -> delegate().get(fileName), byte[]::clone);
+    }
+
+    @Override
+    public boolean exists(String fileName) throws DataObjectHelperException {
+        return coalesced(exists, fileName, () -> delegate().exists(fileName), UnaryOperator.identity());
+    }
+
+    @Override
+    public DataObjectMetadata getMetadata(String fileName) throws DataObjectHelperException {
+        return coalesced(metadata, fileName, () -> delegate().getMetadata(fileName), UnaryOperator.identity());
+    }
+
+    @Override
+    public void add(String fileName, File file) throws DataObjectHelperException {
+        try {
+            delegate().add(fileName, file);
+        } finally {
+            detach(fileName);
+        }
+    }
+
+    @Override
+    public void add(String fileName, InputStream inputStream, long contentLength) throws DataObjectHelperException {
+        try {
+            delegate().add(fileName, inputStream, contentLength);
+        } finally {
+            detach(fileName);
+        }
+    }
+
+    @Override
+    public long addIfChanged(String fileName, File file) throws DataObjectHelperException {
+        try {
+            return delegate().addIfChanged(fileName, file);
+        } finally {
+            detach(fileName);
+        }
+    }
+
+    @Override
+    public long addIfChanged(String fileName, InputStream inputStream, long contentLength) throws DataObjectHelperException {
+        try {
+            return delegate().addIfChanged(fileName, inputStream, contentLength);
+        } finally {
+            detach(fileName);
+        }
+    }
+
+    @Override
+    public void delete(String fileName) throws DataObjectHelperException {
+        try {
+            delegate().delete(fileName);
+        } finally {
+            detach(fileName);
+        }
+    }
+
+    @Override
+    public List<DataObjectResult> deleteAll(Collection<String> fileNames) throws DataObjectHelperException {
+        try {
+            return delegate().deleteAll(fileNames);
+        } finally {
+            if (fileNames != null) {
+                fileNames.forEach(this::detach);
+            }
+        }
+    }
+
+    private void detach(String fileName) {
+        if (fileName != null) {
+            gets.remove(fileName);
+            exists.remove(fileName);
+            metadata.remove(fileName);
+        }
+    }
+
+    /**
+     * @param flights reads in flight of the operation, by key
+     * @param copy copy of the result given to the callers sharing it
+     */
+    private <T> T coalesced(ConcurrentMap<String, CompletableFuture<T>> flights, String fileName, Call<T> call,
+                            UnaryOperator<T> copy) throws DataObjectHelperException {
+        if (fileName == null) {
+            // Left to the decorated helper to reject
+            return call.call();
+        }
+        CompletableFuture<T> flight = new CompletableFuture<>();
+        CompletableFuture<T> running = flights.putIfAbsent(fileName, flight);
+        if (running != null) {
+            coalescedCalls.increment();
+            return copy.apply(await(running));
+        }
+        calls.increment();
+        try {
+            T result = call.call();
+            flight.complete(result);
+            // The stored result is only read by the callers sharing it, each of them changing its own copy
+            return copy.apply(result);
+        } catch (DataObjectHelperException | RuntimeException | Error e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            flights.remove(fileName, flight);
+        }
+    }
+
+    private static <T> T await(CompletableFuture<T> flight) throws DataObjectHelperException {
+        try {
+            return flight.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ClientException("Interrupted while waiting for a read of the same key");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof DataObjectHelperException) {
+                throw (DataObjectHelperException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw (Error) cause;
+        }
+    }
+
+    @FunctionalInterface
+    private interface Call<T> {
+        T call() throws DataObjectHelperException;
+    }
+}
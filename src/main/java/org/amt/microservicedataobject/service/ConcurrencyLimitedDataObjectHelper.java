@@ -0,0 +1,423 @@
+package org.amt.microservicedataobject.service;
+
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.nio.channels.FileChannel;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.Vector;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * {@link DataObjectHelper} bounding the number of calls running at the same time on the decorated helper
+ * Without it, a thread per request model lets the storage see as many concurrent calls as there are threads,
+ * which is unbounded with virtual threads
+ * Calls over the limit wait for a permit, in arrival order, and fail with a ThrottlingException once the timeout is reached
+ * An open content holds its permit until it is closed, as it holds a connection to the storage
+ * An adaptive limit follows the capacity of the storage (AIMD): it grows by one every limit successful calls while
+ * the permits are in use, and shrinks by a tenth when the storage throttles a call, at most once per round of calls
+ * Extra calls made by a decorated helper, such as hedges, take a permit with tryAcquire, so they stay within the limit
+ * @author De Bleser Dimitri
+ * @author Peer Vincent
+ * @author Nelson Jeanreneaud
+ */
+public class ConcurrencyLimitedDataObjectHelper extends ForwardingDataObjectHelper implements HedgingDataObjectHelper.HedgePermits {
+
+    private static final double BACKOFF_RATIO = 0.9;
+
+    // Fair, the waiting calls are signaled in arrival order
+    private final ReentrantLock lock = new ReentrantLock(true);
+    private final Condition permitFreed = lock.newCondition();
+    private final int minConcurrentCalls;
+    private final int maxConcurrentCalls;
+    private final Duration timeout;
+    private double limit;
+    private int activeCalls;
+    private int waitingCalls;
+    private long startedCalls;
+    // Calls started before the last decrease were already running when it was decided
+    private long decreasedAfter;
+    private long decreases;
+
+    /**
+     * @param delegate helper to protect
+     * @param maxConcurrentCalls number of calls allowed to run at the same time
+     * @param timeout maximum time a call waits for a permit
+     */
+    public ConcurrencyLimitedDataObjectHelper(DataObjectHelper delegate, int maxConcurrentCalls, Duration timeout) {
+        this(delegate, maxConcurrentCalls, maxConcurrentCalls, timeout);
+    }
+
+    /**
+     * @param delegate helper to protect
+     * @param minConcurrentCalls lowest limit the throttled calls can bring the limit to
+     * @param maxConcurrentCalls number of calls allowed to run at the same time at first, and highest limit
+     * @param timeout maximum time a call waits for a permit
+     */
+    public ConcurrencyLimitedDataObjectHelper(DataObjectHelper delegate, int minConcurrentCalls, int maxConcurrentCalls, Duration timeout) {
+        super(delegate);
+        if (minConcurrentCalls < 1 || minConcurrentCalls > maxConcurrentCalls) {
+            throw new IllegalArgumentException("Invalid concurrent calls: " + minConcurrentCalls + " to " + maxConcurrentCalls);
+        }
+        Objects.requireNonNull(timeout, "timeout must not be null");
+        if (timeout.isNegative()) {
+            throw new IllegalArgumentException("Invalid timeout: " + timeout);
+        }
+        this.minConcurrentCalls = minConcurrentCalls;
+        this.maxConcurrentCalls = maxConcurrentCalls;
+        this.limit = maxConcurrentCalls;
+        this.timeout = timeout;
+    }
+
+    /**
+     * @return highest number of calls allowed to run at the same time
+     */
+    public int getMaxConcurrentCalls() {
+        return maxConcurrentCalls;
+    }
+
+    /**
+     * @return lowest number of calls allowed to run at the same time
+     */
+    public int getMinConcurrentCalls() {
+        return minConcurrentCalls;
+    }
+
+    /**
+     * @return number of calls currently allowed to run at the same time
+     */
+    public int getLimit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return number of times the limit was decreased after a throttled call
+     */
+    public long getLimitDecreases() {
+        lock.lock();
+        try {
+            return decreases;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return number of calls currently running
+     */
+    public int getActiveCalls() {
+        lock.lock();
+        try {
+            return activeCalls;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return number of calls waiting for a permit
+     */
+    public int getWaitingCalls() {
+        lock.lock();
+        try {
+            return waitingCalls;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void add(String fileName, File file) throws DataObjectHelperException {
+        limited(() -> {
+            delegate().add(fileName, file);
+            return null;
+        });
+    }
+
+    @Override
+    public void add(String fileName, InputStream inputStream, long contentLength) throws DataObjectHelperException {
+        limited(() -> {
+            delegate().add(fileName, inputStream, contentLength);
+            return null;
+        });
+    }
+
+    @Override
+    public long addIfChanged(String fileName, File file) throws DataObjectHelperException {
+        return limited(() -> delegate().addIfChanged(fileName, file));
+    }
+
+    @Override
+    public long addIfChanged(String fileName, InputStream inputStream, long contentLength) throws DataObjectHelperException {
+        return limited(() -> delegate().addIfChanged(fileName, inputStream, contentLength));
+    }
+
+    @Override
+    public Vector<String> listObjects() throws DataObjectHelperException {
+        return limited(() -> delegate().listObjects());
+    }
+
+    @Override
+    public DataObjectListing listObjects(String prefix, String delimiter, int pageSize, String continuationToken) throws DataObjectHelperException {
+        return limited(() -> delegate().listObjects(prefix, delimiter, pageSize, continuationToken));
+    }
+
+    @Override
+    public byte[] get(String fileName) throws DataObjectHelperException {
+        return limited(() -> delegate().get(fileName));
+    }
+
+    @Override
+    public DataObjectContent getContent(String fileName) throws DataObjectHelperException {
+        return openLimited(() -> delegate().getContent(fileName));
+    }
+
+    @Override
+    public DataObjectContent getContent(String fileName, long start, long end) throws DataObjectHelperException {
+        return openLimited(() -> delegate().getContent(fileName, start, end));
+    }
+
+    @Override
+    public DataObjectContent getContentIfModified(String fileName, String ifNoneMatch, Instant ifModifiedSince) throws DataObjectHelperException {
+        return openLimited(() -> delegate().getContentIfModified(fileName, ifNoneMatch, ifModifiedSince));
+    }
+
+    @Override
+    public DataObjectContent getContentIfModified(String fileName, String ifNoneMatch, Instant ifModifiedSince, String acceptEncoding) throws DataObjectHelperException {
+        return openLimited(() -> delegate().getContentIfModified(fileName, ifNoneMatch, ifModifiedSince, acceptEncoding));
+    }
+
+    @Override
+    public long download(String fileName, FileChannel channel) throws DataObjectHelperException {
+        return limited(() -> delegate().download(fileName, channel));
+    }
+
+    @Override
+    public void delete(String fileName) throws DataObjectHelperException {
+        limited(() -> {
+            delegate().delete(fileName);
+            return null;
+        });
+    }
+
+    @Override
+    public List<DataObjectResult> deleteAll(Collection<String> fileNames) throws DataObjectHelperException {
+        return limited(() -> delegate().deleteAll(fileNames));
+    }
+
+    @Override
+    public URL getUrl(String fileName, Duration linkDuration) throws DataObjectHelperException {
+        return limited(() -> delegate().getUrl(fileName, linkDuration));
+    }
+
+    @Override
+    public boolean exists(String fileName) throws DataObjectHelperException {
+        return limited(() -> delegate().exists(fileName));
+    }
+
+    @Override
+    public DataObjectMetadata getMetadata(String fileName) throws DataObjectHelperException {
+        return limited(() -> delegate().getMetadata(fileName));
+    }
+
+    private <T> T limited(Call<T> call) throws DataObjectHelperException {
+        long sequence = acquire();
+        try {
+            T result = call.call();
+            succeeded();
+            return result;
+        } catch (ThrottlingException e) {
+            throttled(sequence);
+            throw e;
+        } finally {
+            release();
+        }
+    }
+
+    private DataObjectContent openLimited(Call<DataObjectContent> call) throws DataObjectHelperException {
+        long sequence = acquire();
+        boolean opened = false;
+        try {
+            DataObjectContent content;
+            try {
+                content = call.call();
+            } catch (ThrottlingException e) {
+                throttled(sequence);
+                throw e;
+            }
+            succeeded();
+            if (content == null) {
+                return null;
+            }
+            DataObjectContent limitedContent = new DataObjectContent(content.getMetadata(),
+                    new PermitInputStream(content.getInputStream()), content.getContentRange()) {
+                @Override
+                public long transferTo(OutputStream outputStream) throws IOException {
+                    // Keeps the copy of the decorated content, which may avoid the buffer
+                    return content.transferTo(outputStream);
+                }
+            };
+            opened = true;
+            return limitedContent;
+        } finally {
+            if (!opened) {
+                release();
+            }
+        }
+    }
+
+    /**
+     * Wait for a permit, behind the calls already waiting
+     * @return sequence number of the call
+     */
+    private long acquire() throws DataObjectHelperException {
+        lock.lock();
+        try {
+            if (waitingCalls == 0 && activeCalls < (int) limit) {
+                return start();
+            }
+            waitingCalls++;
+            try {
+                long remaining = timeout.toNanos();
+                while (activeCalls >= (int) limit) {
+                    if (remaining <= 0) {
+                        // Let the next waiting call check the permit this one was maybe signaled for
+                        permitFreed.signal();
+                        throw new ThrottlingException("Too many concurrent requests, no permit available after " + timeout);
+                    }
+                    remaining = permitFreed.awaitNanos(remaining);
+                }
+                return start();
+            } catch (InterruptedException e) {
+                permitFreed.signal();
+                Thread.currentThread().interrupt();
+                throw new ClientException("Interrupted while waiting for a permit");
+            } finally {
+                waitingCalls--;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Take a permit without waiting, only if one is free and no call is waiting for it
+     * @return true if a permit was taken, to give back with release
+     */
+    @Override
+    public boolean tryAcquire() {
+        lock.lock();
+        try {
+            if (waitingCalls == 0 && activeCalls < (int) limit) {
+                start();
+                return true;
+            }
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private long start() {
+        activeCalls++;
+        return ++startedCalls;
+    }
+
+    /**
+     * Give back a permit, taken by tryAcquire or by a call
+     */
+    @Override
+    public void release() {
+        lock.lock();
+        try {
+            activeCalls--;
+            permitFreed.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Additive increase, only while the permits are in use: an idle helper does not learn anything about the storage
+     */
+    private void succeeded() {
+        if (minConcurrentCalls == maxConcurrentCalls) {
+            return;
+        }
+        lock.lock();
+        try {
+            if (activeCalls * 2 >= limit && limit < maxConcurrentCalls) {
+                int before = (int) limit;
+                limit = Math.min(maxConcurrentCalls, limit + 1 / limit);
+                if ((int) limit > before) {
+                    permitFreed.signal();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Multiplicative decrease, once for the calls that were running together when the storage throttled them
+     */
+    private void throttled(long sequence) {
+        if (minConcurrentCalls == maxConcurrentCalls) {
+            return;
+        }
+        lock.lock();
+        try {
+            if (sequence > decreasedAfter) {
+                limit = Math.max(minConcurrentCalls, limit * BACKOFF_RATIO);
+                decreasedAfter = startedCalls;
+                decreases++;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @FunctionalInterface
+    private interface Call<T> {
+        T call() throws DataObjectHelperException;
+    }
+
+    /**
+     * Stream releasing its permit once, when it is closed
+     */
+    private class PermitInputStream extends FilterInputStream {
+        private boolean released;
+
+        PermitInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                synchronized (this) {
+                    if (!released) {
+                        released = true;
+                        release();
+                    }
+                }
+            }
+        }
+    }
+}
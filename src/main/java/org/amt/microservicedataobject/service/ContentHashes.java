@@ -0,0 +1,70 @@
+package org.amt.microservicedataobject.service;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * SHA-256 of the contents, used to recognize a content already stored
+ * @author De Bleser Dimitri
+ * @author Peer Vincent
+ * @author Nelson Jeanreneaud
+ */
+public final class ContentHashes {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private ContentHashes() {
+    }
+
+    /**
+     * @return a new SHA-256 digest, to be updated while the content is read
+     */
+    public static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @param digest updated with the whole content
+     * @return the hash in lowercase hexadecimal
+     */
+    public static String toHex(MessageDigest digest) {
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * @param content to hash
+     * @return SHA-256 of the content in lowercase hexadecimal
+     */
+    public static String of(byte[] content) {
+        MessageDigest digest = newDigest();
+        digest.update(content);
+        return toHex(digest);
+    }
+
+    /**
+     * Hash a file in a single pass, without loading it in memory
+     * @param file to hash
+     * @return SHA-256 of the file in lowercase hexadecimal
+     */
+    public static String of(File file) throws IOException {
+        MessageDigest digest = newDigest();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try (InputStream inputStream = new FileInputStream(file)) {
+            int read;
+            while ((read = inputStream.read(buffer)) >= 0) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return toHex(digest);
+    }
+}
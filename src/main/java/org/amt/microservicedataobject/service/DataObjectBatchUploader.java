@@ -0,0 +1,124 @@
+package org.amt.microservicedataobject.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Upload many files concurrently through a {@link DataObjectHelper}
+ * A fixed pool of threads bounds the number of uploads running at the same time, whatever the number of batches
+ * @author De Bleser Dimitri
+ * @author Peer Vincent
+ * @author Nelson Jeanreneaud
+ */
+public class DataObjectBatchUploader implements AutoCloseable {
+
+    private final DataObjectHelper dataObjectHelper;
+    private final ExecutorService executor;
+
+    public DataObjectBatchUploader(DataObjectHelper dataObjectHelper, int concurrency) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("Invalid upload concurrency: " + concurrency);
+        }
+        this.dataObjectHelper = Objects.requireNonNull(dataObjectHelper);
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(concurrency, runnable -> {
+            Thread thread = new Thread(runnable, "batch-upload-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Upload files concurrently
+     * @param uploads files to upload
+     * @return outcome for each file, in the order of the uploads
+     */
+    public List<DataObjectResult> upload(List<Upload> uploads) throws DataObjectHelper.DataObjectHelperException {
+        Objects.requireNonNull(uploads, "uploads must not be null");
+
+        List<Future<DataObjectResult>> futures = new ArrayList<>(uploads.size());
+        for (Upload upload : uploads)
+            futures.add(executor.submit(() -> upload(upload)));
+
+        List<DataObjectResult> results = new ArrayList<>(uploads.size());
+        try {
+            for (Future<DataObjectResult> future : futures)
+                results.add(future.get());
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            futures.forEach(future -> future.cancel(true));
+            throw new DataObjectHelper.ClientException("Upload interrupted");
+        } catch (ExecutionException e) {
+            throw new DataObjectHelper.DataObjectException("Error uploading objects" + e.getCause().getMessage());
+        }
+    }
+
+    private DataObjectResult upload(Upload upload) {
+        if (upload.getFileName() == null || upload.getFileName().isEmpty()) {
+            return DataObjectResult.failure(upload.getFileName(), "fileName must not be empty");
+        }
+        try (InputStream inputStream = upload.getSource().open()) {
+            long saved = dataObjectHelper.addIfChanged(upload.getFileName(), inputStream, upload.getContentLength());
+            return DataObjectResult.uploaded(upload.getFileName(), saved);
+        } catch (DataObjectHelper.DataObjectHelperException | IOException | RuntimeException e) {
+            return DataObjectResult.failure(upload.getFileName(), e.getMessage());
+        }
+    }
+
+    /**
+     * Stop the upload threads
+     */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Opens the content of a file to upload
+     */
+    @FunctionalInterface
+    public interface ContentSource {
+        InputStream open() throws IOException;
+    }
+
+    /**
+     * File to upload
+     */
+    public static class Upload {
+        private final String fileName;
+        private final long contentLength;
+        private final ContentSource source;
+
+        /**
+         * @param fileName given file name
+         * @param contentLength number of bytes of the content, or -1 if unknown
+         * @param source opens the content when the upload starts
+         */
+        public Upload(String fileName, long contentLength, ContentSource source) {
+            this.fileName = fileName;
+            this.contentLength = contentLength;
+            this.source = Objects.requireNonNull(source);
+        }
+
+        public String getFileName() {
+            return fileName;
+        }
+
+        public long getContentLength() {
+            return contentLength;
+        }
+
+        public ContentSource getSource() {
+            return source;
+        }
+    }
+}
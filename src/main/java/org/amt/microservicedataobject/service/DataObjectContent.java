@@ -0,0 +1,74 @@
+package org.amt.microservicedataobject.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Open stream on the content of a stored file
+ * The stream must be closed once read to release the underlying connection
+ * @author De Bleser Dimitri
+ * @author Peer Vincent
+ * @author Nelson Jeanreneaud
+ */
+public class DataObjectContent implements Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final DataObjectMetadata metadata;
+    private final InputStream inputStream;
+    private final String contentRange;
+
+    public DataObjectContent(DataObjectMetadata metadata, InputStream inputStream) {
+        this(metadata, inputStream, null);
+    }
+
+    public DataObjectContent(DataObjectMetadata metadata, InputStream inputStream, String contentRange) {
+        this.metadata = metadata;
+        this.inputStream = inputStream;
+        this.contentRange = contentRange;
+    }
+
+    /**
+     * @return metadata of the file
+     */
+    public DataObjectMetadata getMetadata() {
+        return metadata;
+    }
+
+    /**
+     * @return range of the file held by the stream, as in a Content-Range header, or null for the whole file
+     */
+    public String getContentRange() {
+        return contentRange;
+    }
+
+    /**
+     * @return stream on the file content
+     */
+    public InputStream getInputStream() {
+        return inputStream;
+    }
+
+    /**
+     * Copy the content to an output stream through a single fixed-size buffer
+     * @param outputStream destination of the content
+     * @return number of bytes copied
+     */
+    public long transferTo(OutputStream outputStream) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        long transferred = 0;
+        int read;
+        while ((read = inputStream.read(buffer)) >= 0) {
+            outputStream.write(buffer, 0, read);
+            transferred += read;
+        }
+        return transferred;
+    }
+
+    @Override
+    public void close() throws IOException {
+        inputStream.close();
+    }
+}
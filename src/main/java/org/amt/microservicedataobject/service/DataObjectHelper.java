@@ -1,8 +1,17 @@
 package org.amt.microservicedataobject.service;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.URL;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
 import java.util.Vector;
 
 /**
@@ -20,12 +29,53 @@ public interface DataObjectHelper {
      */
     void add(String fileName, File file) throws NullPointerException, DataObjectHelperException;
 
+    /**
+     * Upload the content of a stream without buffering it on disk *
+     * @param fileName given file name
+     * @param inputStream content to upload, read until its end
+     * @param contentLength number of bytes in the stream, or -1 if unknown
+     */
+    void add(String fileName, InputStream inputStream, long contentLength) throws NullPointerException, DataObjectHelperException;
+
+    /**
+     * Upload a file unless the container already holds the same content under this name *
+     * @param fileName given file name
+     * @param file to upload
+     * @return number of bytes not sent because the content was already stored, 0 if it was uploaded
+     */
+    default long addIfChanged(String fileName, File file) throws NullPointerException, DataObjectHelperException {
+        add(fileName, file);
+        return 0;
+    }
+
+    /**
+     * Upload the content of a stream unless the container already holds the same content under this name *
+     * @param fileName given file name
+     * @param inputStream content to upload, read until its end
+     * @param contentLength number of bytes in the stream, or -1 if unknown
+     * @return number of bytes not sent because the content was already stored, 0 if it was uploaded
+     */
+    default long addIfChanged(String fileName, InputStream inputStream, long contentLength) throws NullPointerException, DataObjectHelperException {
+        add(fileName, inputStream, contentLength);
+        return 0;
+    }
+
     /**
      * List files in the container *
      * @return file names
      */
     Vector<String> listObjects() throws DataObjectHelperException;
 
+    /**
+     * List one page of files in the container *
+     * @param prefix only list the files starting with it, or null for all files
+     * @param delimiter group the files containing it after the prefix into common prefixes, or null
+     * @param pageSize maximum number of names in the page, capped by the container
+     * @param continuationToken token returned by the previous page, or null for the first page
+     * @return file names of the page
+     */
+    DataObjectListing listObjects(String prefix, String delimiter, int pageSize, String continuationToken) throws DataObjectHelperException;
+
     /**
      * Get file content*
      * @param fileName to get
@@ -33,12 +83,88 @@ public interface DataObjectHelper {
      */
     byte[] get(String fileName) throws DataObjectHelperException;
 
+    /**
+     * Open a stream on the file content, without loading it in memory *
+     * @param fileName to get
+     * @return File content, to be closed once read
+     */
+    DataObjectContent getContent(String fileName) throws DataObjectHelperException;
+
+    /**
+     * Open a stream on a byte range of the file content *
+     * @param fileName to get
+     * @param start first byte of the range, or a negative value to get the last -start bytes
+     * @param end last byte of the range, included, or -1 to read until the end of the file
+     * @return Range of the file content, to be closed once read
+     */
+    DataObjectContent getContent(String fileName, long start, long end) throws DataObjectHelperException;
+
+    /**
+     * Open a stream on the file content unless the caller already holds its current version, as a conditional GET *
+     * @param fileName to get
+     * @param ifNoneMatch entity tags of the versions held by the caller, as in an If-None-Match header, or null
+     * @param ifModifiedSince date of the version held by the caller, ignored with ifNoneMatch, or null
+     * @return File content, to be closed once read, or null if the file was not modified
+     * @see DataObjectMetadata#isNotModified(String, Instant)
+     */
+    default DataObjectContent getContentIfModified(String fileName, String ifNoneMatch, Instant ifModifiedSince) throws DataObjectHelperException {
+        if ((ifNoneMatch != null || ifModifiedSince != null) && getMetadata(fileName).isNotModified(ifNoneMatch, ifModifiedSince)) {
+            return null;
+        }
+        return getContent(fileName);
+    }
+
+    /**
+     * Open a stream on the file content unless the caller already holds its current version, a compressed file
+     * being sent as stored when the caller accepts its encoding *
+     * @param fileName to get
+     * @param ifNoneMatch entity tags of the versions held by the caller, as in an If-None-Match header, or null
+     * @param ifModifiedSince date of the version held by the caller, ignored with ifNoneMatch, or null
+     * @param acceptEncoding content codings accepted by the caller, as in an Accept-Encoding header, or null
+     * @return File content, to be closed once read, whose metadata names its encoding if it is still encoded,
+     * or null if the file was not modified
+     */
+    default DataObjectContent getContentIfModified(String fileName, String ifNoneMatch, Instant ifModifiedSince, String acceptEncoding) throws DataObjectHelperException {
+        return getContentIfModified(fileName, ifNoneMatch, ifModifiedSince);
+    }
+
+    /**
+     * Download a file into a channel, large files being fetched in concurrent ranges *
+     * @param fileName to download
+     * @param channel destination, written from its current position
+     * @return number of bytes written
+     */
+    long download(String fileName, FileChannel channel) throws DataObjectHelperException;
+
+    /**
+     * Download a file to a local path, replacing its content *
+     * @param fileName to download
+     * @param target destination path
+     * @return number of bytes written
+     */
+    default long download(String fileName, Path target) throws DataObjectHelperException {
+        Objects.requireNonNull(target, "target must not be null");
+        try (FileChannel channel = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            return download(fileName, channel);
+        } catch (IOException e) {
+            throw new DataObjectException("Error while writing file" + e.getMessage());
+        }
+    }
+
     /**
      * Delete a file in the container *
      * @param fileName to delete
      */
     void delete(String fileName) throws DataObjectHelperException;
 
+    /**
+     * Delete many files in the container, with as few requests as possible *
+     * @param fileNames to delete
+     * @return outcome for each file, in no particular order
+     */
+    List<DataObjectResult> deleteAll(Collection<String> fileNames) throws DataObjectHelperException;
+
     /**
      * Get a public url to pointing to a given file *
      *
@@ -60,6 +186,13 @@ public interface DataObjectHelper {
      */
     boolean exists(String fileName) throws DataObjectHelperException;
 
+    /**
+     * Get the metadata of a file without its content
+     * @param fileName to check
+     * @return metadata of the file
+     */
+    DataObjectMetadata getMetadata(String fileName) throws DataObjectHelperException;
+
 
     class DataObjectHelperException extends Exception {
         public DataObjectHelperException(String message) {
@@ -73,12 +206,30 @@ public interface DataObjectHelper {
         }
     }
 
+    class InvalidRangeException extends InvalidParamException {
+        public InvalidRangeException(String message) {
+            super(message);
+        }
+    }
+
     class ServiceException extends DataObjectHelperException {
         public ServiceException(String message) {
             super(message);
         }
     }
 
+    class ThrottlingException extends ServiceException {
+        public ThrottlingException(String message) {
+            super(message);
+        }
+    }
+
+    class CircuitOpenException extends ServiceException {
+        public CircuitOpenException(String message) {
+            super(message);
+        }
+    }
+
     class ClientException extends DataObjectHelperException {
         public ClientException(String message) {
             super(message);
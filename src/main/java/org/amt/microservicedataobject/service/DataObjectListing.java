@@ -0,0 +1,50 @@
+package org.amt.microservicedataobject.service;
+
+import java.util.List;
+
+/**
+ * One page of file names listed from a container
+ * @author De Bleser Dimitri
+ * @author Peer Vincent
+ * @author Nelson Jeanreneaud
+ */
+public class DataObjectListing {
+
+    private final List<String> keys;
+    private final List<String> commonPrefixes;
+    private final String nextContinuationToken;
+
+    public DataObjectListing(List<String> keys, List<String> commonPrefixes, String nextContinuationToken) {
+        this.keys = List.copyOf(keys);
+        this.commonPrefixes = List.copyOf(commonPrefixes);
+        this.nextContinuationToken = nextContinuationToken;
+    }
+
+    /**
+     * @return file names of the page
+     */
+    public List<String> getKeys() {
+        return keys;
+    }
+
+    /**
+     * @return prefixes up to the delimiter, grouping the file names not listed individually
+     */
+    public List<String> getCommonPrefixes() {
+        return commonPrefixes;
+    }
+
+    /**
+     * @return token to pass to get the next page, or null if this page is the last one
+     */
+    public String getNextContinuationToken() {
+        return nextContinuationToken;
+    }
+
+    /**
+     * @return true if more pages follow
+     */
+    public boolean isTruncated() {
+        return nextContinuationToken != null;
+    }
+}
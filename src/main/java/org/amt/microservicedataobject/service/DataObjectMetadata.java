@@ -0,0 +1,168 @@
+package org.amt.microservicedataobject.service;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Metadata of a stored file
+ * @author De Bleser Dimitri
+ * @author Peer Vincent
+ * @author Nelson Jeanreneaud
+ */
+public class DataObjectMetadata {
+
+    private final long contentLength;
+    private final String contentType;
+    private final String eTag;
+    private final Instant lastModified;
+    private final String contentHash;
+    private final String contentEncoding;
+
+    public DataObjectMetadata(long contentLength, String contentType, String eTag, Instant lastModified) {
+        this(contentLength, contentType, eTag, lastModified, null);
+    }
+
+    public DataObjectMetadata(long contentLength, String contentType, String eTag, Instant lastModified, String contentHash) {
+        this(contentLength, contentType, eTag, lastModified, contentHash, null);
+    }
+
+    public DataObjectMetadata(long contentLength, String contentType, String eTag, Instant lastModified, String contentHash,
+                              String contentEncoding) {
+        this.contentLength = contentLength;
+        this.contentType = contentType;
+        this.eTag = eTag;
+        this.lastModified = lastModified;
+        this.contentHash = contentHash;
+        this.contentEncoding = contentEncoding;
+    }
+
+    /**
+     * @return size of the file in bytes, or -1 if unknown
+     */
+    public long getContentLength() {
+        return contentLength;
+    }
+
+    /**
+     * @return media type of the file, or null if unknown
+     */
+    public String getContentType() {
+        return contentType;
+    }
+
+    /**
+     * @return entity tag of the current version of the file, or null if unknown
+     */
+    public String getETag() {
+        return eTag;
+    }
+
+    /**
+     * @return last modification date of the file, or null if unknown
+     */
+    public Instant getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * @return SHA-256 of the content in lowercase hexadecimal, as recorded when the file was uploaded, or null if unknown
+     */
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    /**
+     * @return content coding of the bytes, as in a Content-Encoding header, or null if they are the content itself
+     */
+    public String getContentEncoding() {
+        return contentEncoding;
+    }
+
+    /**
+     * @param contentHash SHA-256 of a content in lowercase hexadecimal
+     * @param contentLength size of that content in bytes
+     * @return true if the file is known to hold that content
+     */
+    public boolean hasContent(String contentHash, long contentLength) {
+        return this.contentHash != null && this.contentHash.equals(contentHash) && this.contentLength == contentLength;
+    }
+
+    /**
+     * Evaluate the preconditions of a conditional GET against this version of the file, as HTTP does
+     * If-None-Match is compared with weak comparison and takes precedence, If-Modified-Since is only
+     * evaluated without it, to the second as HTTP dates
+     * @param ifNoneMatch entity tags held by the caller, comma separated, or * for any version, or null
+     * @param ifModifiedSince date of the version held by the caller, or null
+     * @return true if the caller already holds this version, the content does not need to be sent
+     */
+    public boolean isNotModified(String ifNoneMatch, Instant ifModifiedSince) {
+        if (ifNoneMatch != null) {
+            for (String entityTag : entityTags(ifNoneMatch)) {
+                if (entityTag.equals("*") || (eTag != null && entityTag.equals(opaqueTag(eTag)))) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        return ifModifiedSince != null && lastModified != null
+                && !lastModified.truncatedTo(ChronoUnit.SECONDS).isAfter(ifModifiedSince);
+    }
+
+    /**
+     * Split an If-None-Match value in its entity tags, without their weak indicator
+     * @param ifNoneMatch comma separated entity tags
+     * @return the entity tags, quoted, or * for any version
+     */
+    public static List<String> entityTags(String ifNoneMatch) {
+        List<String> entityTags = new ArrayList<>();
+        for (String entityTag : ifNoneMatch.split(",")) {
+            String trimmed = entityTag.trim();
+            if (!trimmed.isEmpty()) {
+                entityTags.add(trimmed.equals("*") ? trimmed : opaqueTag(trimmed));
+            }
+        }
+        return entityTags;
+    }
+
+    /**
+     * Check whether a content coding is accepted by a client, as HTTP does
+     * @param acceptEncoding content codings accepted by the client, as in an Accept-Encoding header, or null
+     * @param contentEncoding content coding to check, such as gzip
+     * @return true if the coding, or any coding, is listed without a zero quality value
+     */
+    public static boolean acceptsEncoding(String acceptEncoding, String contentEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        Boolean wildcard = null;
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parameters = coding.split(";");
+            String name = parameters[0].trim();
+            if (name.equalsIgnoreCase(contentEncoding)) {
+                return isAccepted(parameters);
+            }
+            if (name.equals("*")) {
+                wildcard = isAccepted(parameters);
+            }
+        }
+        // A coding listed by its name takes precedence over the wildcard
+        return wildcard != null && wildcard;
+    }
+
+    private static boolean isAccepted(String[] parameters) {
+        for (int i = 1; i < parameters.length; i++) {
+            String parameter = parameters[i].trim();
+            if (parameter.startsWith("q=") && parameter.substring(2).matches("0(\\.0{0,3})?")) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String opaqueTag(String entityTag) {
+        String opaqueTag = entityTag.startsWith("W/") ? entityTag.substring(2) : entityTag;
+        return opaqueTag.startsWith("\"") ? opaqueTag : "\"" + opaqueTag + "\"";
+    }
+}
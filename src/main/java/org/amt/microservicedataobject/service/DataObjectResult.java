@@ -0,0 +1,62 @@
+package org.amt.microservicedataobject.service;
+
+/**
+ * Outcome of an operation on one file of a batch
+ * @author De Bleser Dimitri
+ * @author Peer Vincent
+ * @author Nelson Jeanreneaud
+ */
+public class DataObjectResult {
+
+    private final String fileName;
+    private final boolean successful;
+    private final String error;
+    private final Long bytesSaved;
+
+    private DataObjectResult(String fileName, boolean successful, String error, Long bytesSaved) {
+        this.fileName = fileName;
+        this.successful = successful;
+        this.error = error;
+        this.bytesSaved = bytesSaved;
+    }
+
+    public static DataObjectResult success(String fileName) {
+        return new DataObjectResult(fileName, true, null, null);
+    }
+
+    public static DataObjectResult uploaded(String fileName, long bytesSaved) {
+        return new DataObjectResult(fileName, true, null, bytesSaved);
+    }
+
+    public static DataObjectResult failure(String fileName, String error) {
+        return new DataObjectResult(fileName, false, error, null);
+    }
+
+    /**
+     * @return name of the file
+     */
+    public String getFileName() {
+        return fileName;
+    }
+
+    /**
+     * @return true if the operation succeeded on the file
+     */
+    public boolean isSuccessful() {
+        return successful;
+    }
+
+    /**
+     * @return reason of the failure, or null if the operation succeeded
+     */
+    public String getError() {
+        return error;
+    }
+
+    /**
+     * @return bytes of an upload not sent because the file already had this content, or null for other operations
+     */
+    public Long getBytesSaved() {
+        return bytesSaved;
+    }
+}
@@ -0,0 +1,72 @@
+package org.amt.microservicedataobject.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Content of a local file, read with positional reads and copied to the output with {@link FileChannel#transferTo}
+ * Servlet output streams are not channels, the bytes are still copied through a small heap buffer
+ * @author De Bleser Dimitri
+ * @author Peer Vincent
+ * @author Nelson Jeanreneaud
+ */
+public class FileDataObjectContent extends DataObjectContent {
+
+    private FileDataObjectContent(DataObjectMetadata metadata, ChannelRangeInputStream inputStream, String contentRange) {
+        super(metadata, inputStream, contentRange);
+    }
+
+    /**
+     * Open a whole file
+     * @param file to read
+     * @param metadata of the stored object
+     * @return content of the file, to be closed once read
+     */
+    public static FileDataObjectContent open(Path file, DataObjectMetadata metadata) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            return new FileDataObjectContent(metadata, new ChannelRangeInputStream(channel, 0, channel.size()), null);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Open a byte range of a file
+     * @param file to read
+     * @param metadata of the stored object
+     * @param start first byte of the range, or a negative value to get the last -start bytes
+     * @param end last byte of the range, included, or -1 to read until the end of the file
+     * @return range of the file, whose metadata holds the length of the range, to be closed once read
+     */
+    public static FileDataObjectContent open(Path file, DataObjectMetadata metadata, long start, long end)
+            throws IOException, DataObjectHelper.InvalidRangeException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            long first = start < 0 ? Math.max(size + start, 0) : start;
+            long last = end < 0 || end >= size ? size - 1 : end;
+            if (size == 0 || first >= size) {
+                throw new DataObjectHelper.InvalidRangeException("Range not satisfiable");
+            }
+            long count = last - first + 1;
+            // As with S3, the length of a range is the one of the returned bytes
+            DataObjectMetadata rangeMetadata = new DataObjectMetadata(count, metadata.getContentType(),
+                    metadata.getETag(), metadata.getLastModified());
+            return new FileDataObjectContent(rangeMetadata, new ChannelRangeInputStream(channel, first, count),
+                    "bytes " + first + "-" + last + "/" + size);
+        } catch (IOException | DataObjectHelper.InvalidRangeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public long transferTo(OutputStream outputStream) throws IOException {
+        return getInputStream().transferTo(outputStream);
+    }
+}
@@ -0,0 +1,142 @@
+package org.amt.microservicedataobject.service;
+
+import java.io.File;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.channels.FileChannel;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.Vector;
+
+/**
+ * {@link DataObjectHelper} forwarding every call to another helper
+ * Decorators extend it and only override the operations they change
+ * @author De Bleser Dimitri
+ * @author Peer Vincent
+ * @author Nelson Jeanreneaud
+ */
+public abstract class ForwardingDataObjectHelper implements DataObjectHelper, AutoCloseable {
+
+    private final DataObjectHelper delegate;
+
+    protected ForwardingDataObjectHelper(DataObjectHelper delegate) {
+        this.delegate = Objects.requireNonNull(delegate, "delegate must not be null");
+    }
+
+    /**
+     * @return the decorated helper
+     */
+    protected DataObjectHelper delegate() {
+        return delegate;
+    }
+
+    @Override
+    public void add(String fileName, File file) throws DataObjectHelperException {
+        delegate.add(fileName, file);
+    }
+
+    @Override
+    public void add(String fileName, InputStream inputStream, long contentLength) throws DataObjectHelperException {
+        delegate.add(fileName, inputStream, contentLength);
+    }
+
+    @Override
+    public long addIfChanged(String fileName, File file) throws DataObjectHelperException {
+        return delegate.addIfChanged(fileName, file);
+    }
+
+    @Override
+    public long addIfChanged(String fileName, InputStream inputStream, long contentLength) throws DataObjectHelperException {
+        return delegate.addIfChanged(fileName, inputStream, contentLength);
+    }
+
+    @Override
+    public Vector<String> listObjects() throws DataObjectHelperException {
+        return delegate.listObjects();
+    }
+
+    @Override
+    public DataObjectListing listObjects(String prefix, String delimiter, int pageSize, String continuationToken) throws DataObjectHelperException {
+        return delegate.listObjects(prefix, delimiter, pageSize, continuationToken);
+    }
+
+    @Override
+    public byte[] get(String fileName) throws DataObjectHelperException {
+        return delegate.get(fileName);
+    }
+
+    @Override
+    public DataObjectContent getContent(String fileName) throws DataObjectHelperException {
+        return delegate.getContent(fileName);
+    }
+
+    @Override
+    public DataObjectContent getContent(String fileName, long start, long end) throws DataObjectHelperException {
+        return delegate.getContent(fileName, start, end);
+    }
+
+    @Override
+    public DataObjectContent getContentIfModified(String fileName, String ifNoneMatch, Instant ifModifiedSince) throws DataObjectHelperException {
+        return delegate.getContentIfModified(fileName, ifNoneMatch, ifModifiedSince);
+    }
+
+    @Override
+    public DataObjectContent getContentIfModified(String fileName, String ifNoneMatch, Instant ifModifiedSince, String acceptEncoding) throws DataObjectHelperException {
+        return delegate.getContentIfModified(fileName, ifNoneMatch, ifModifiedSince, acceptEncoding);
+    }
+
+    @Override
+    public long download(String fileName, FileChannel channel) throws DataObjectHelperException {
+        return delegate.download(fileName, channel);
+    }
+
+    @Override
+    public void delete(String fileName) throws DataObjectHelperException {
+        delegate.delete(fileName);
+    }
+
+    @Override
+    public List<DataObjectResult> deleteAll(Collection<String> fileNames) throws DataObjectHelperException {
+        return delegate.deleteAll(fileNames);
+    }
+
+    @Override
+    public URL getUrl(String fileName, Duration linkDuration) throws DataObjectHelperException {
+        return delegate.getUrl(fileName, linkDuration);
+    }
+
+    @Override
+    public String getName() {
+        return delegate.getName();
+    }
+
+    @Override
+    public boolean exists(String fileName) throws DataObjectHelperException {
+        return delegate.exists(fileName);
+    }
+
+    @Override
+    public DataObjectMetadata getMetadata(String fileName) throws DataObjectHelperException {
+        return delegate.getMetadata(fileName);
+    }
+
+    /**
+     * Close the decorated helper if it holds resources
+     * @throws IllegalStateException if the decorated helper fails to close
+     */
+    @Override
+    public void close() {
+        if (delegate instanceof AutoCloseable) {
+            try {
+                ((AutoCloseable) delegate).close();
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IllegalStateException("Error closing " + delegate.getName(), e);
+            }
+        }
+    }
+}
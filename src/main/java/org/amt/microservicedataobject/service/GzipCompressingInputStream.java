@@ -0,0 +1,132 @@
+package org.amt.microservicedataobject.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterInputStream;
+
+/**
+ * Stream reading the gzip compression of another stream, compressed as it is read
+ * The content can be uploaded while it is compressed, without buffering the whole compressed content
+ * The compressor is released once the end of the stream is read, closing it also closes the source
+ * @author De Bleser Dimitri
+ * @author Peer Vincent
+ * @author Nelson Jeanreneaud
+ */
+public class GzipCompressingInputStream extends InputStream {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    // Magic number, deflate method, no flags, no modification time, no extra flags, unknown operating system
+    private static final byte[] HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+    private final CheckedInputStream source;
+    private final Deflater deflater;
+    private final DeflaterInputStream deflated;
+    private byte[] pending = HEADER;
+    private int pendingPosition;
+    private boolean finished;
+    private boolean ended;
+    private long uncompressedLength;
+    private long compressedLength;
+
+    public GzipCompressingInputStream(InputStream source) {
+        this(source, Deflater.DEFAULT_COMPRESSION);
+    }
+
+    /**
+     * @param source content to compress
+     * @param level compression level, from 0 to 9, or -1 for the default level
+     */
+    public GzipCompressingInputStream(InputStream source, int level) {
+        this.source = new CheckedInputStream(source, new CRC32());
+        // Raw deflate data, the gzip header and trailer are written around it
+        this.deflater = new Deflater(level, true);
+        this.deflated = new DeflaterInputStream(this.source, deflater, BUFFER_SIZE);
+    }
+
+    /**
+     * @return number of bytes of the source read so far
+     */
+    public long getUncompressedLength() {
+        return ended ? uncompressedLength : deflater.getBytesRead();
+    }
+
+    /**
+     * @return number of compressed bytes read so far
+     */
+    public long getCompressedLength() {
+        return compressedLength;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] b = new byte[1];
+        return read(b, 0, 1) < 0 ? -1 : b[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        while (true) {
+            if (pending != null) {
+                int copied = Math.min(len, pending.length - pendingPosition);
+                System.arraycopy(pending, pendingPosition, b, off, copied);
+                pendingPosition += copied;
+                if (pendingPosition == pending.length) {
+                    pending = null;
+                }
+                compressedLength += copied;
+                return copied;
+            }
+            if (finished) {
+                return -1;
+            }
+            int read = deflated.read(b, off, len);
+            if (read > 0) {
+                compressedLength += read;
+                return read;
+            }
+            if (read < 0) {
+                finished = true;
+                pending = trailer();
+                pendingPosition = 0;
+                end();
+            }
+        }
+    }
+
+    /**
+     * CRC-32 and size modulo 2^32 of the source, little-endian
+     */
+    private byte[] trailer() {
+        long crc = source.getChecksum().getValue();
+        long size = deflater.getBytesRead();
+        byte[] trailer = new byte[8];
+        for (int i = 0; i < 4; i++) {
+            trailer[i] = (byte) (crc >>> (8 * i));
+            trailer[4 + i] = (byte) (size >>> (8 * i));
+        }
+        return trailer;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            source.close();
+        } finally {
+            end();
+        }
+    }
+
+    private void end() {
+        if (!ended) {
+            ended = true;
+            uncompressedLength = deflater.getBytesRead();
+            deflater.end();
+        }
+    }
+}
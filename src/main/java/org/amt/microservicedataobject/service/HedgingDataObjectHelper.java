@@ -0,0 +1,323 @@
+package org.amt.microservicedataobject.service;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link DataObjectHelper} hedging the reads of the decorated helper to cut their tail latency
+ * When a get, exists or getMetadata call has not completed after a percentile of the recent latencies of the same
+ * operation, the same call is made a second time and the first result is returned, the other call being cancelled
+ * Each hedgeable call adds the maximum rate to a budget and each hedge spends one, so hedges never add more than this
+ * rate of calls, plus a small burst
+ * Each hedge also takes a permit of the concurrency limit given with setHedgePermits, a slow call not being hedged
+ * when none is free, so hedges never add calls over the limit
+ * Hedging starts once enough latencies are known. Reads of streamed contents are not hedged
+ * @author De Bleser Dimitri
+ * @author Peer Vincent
+ * @author Nelson Jeanreneaud
+ */
+public class HedgingDataObjectHelper extends ForwardingDataObjectHelper {
+
+    // Latencies kept for each operation, and number of them needed before hedging
+    private static final int WINDOW_SIZE = 1000;
+    private static final int MIN_SAMPLES = 100;
+    // The hedging delay is computed again every REFRESH latencies, not on each call
+    private static final int REFRESH = 100;
+    // Hedges that can be sent in a row once the budget is full
+    private static final double MAX_BUDGET = 10;
+    private static final HedgePermits UNLIMITED = new HedgePermits() {
+        @Override
+        public boolean tryAcquire() {
+            return true;
+        }
+
+        @Override
+        public void release() {
+        }
+    };
+
+    private final ExecutorService executor;
+    private final double percentile;
+    private final double maxRate;
+    private final long minDelayNanos;
+    private final LatencyWindow getLatencies = new LatencyWindow();
+    // exists and getMetadata are both a HEAD request
+    private final LatencyWindow headLatencies = new LatencyWindow();
+    private double budget;
+    private volatile HedgePermits hedgePermits = UNLIMITED;
+    private final LongAdder hedgeableCount = new LongAdder();
+    private final LongAdder hedgeCount = new LongAdder();
+    private final LongAdder winCount = new LongAdder();
+    private final LongAdder budgetExhaustedCount = new LongAdder();
+    private final LongAdder permitUnavailableCount = new LongAdder();
+
+    /**
+     * @param delegate helper to hedge the reads of
+     * @param percentile of the recent latencies after which a call is hedged, between 0 exclusive and 1
+     * @param maxRate maximum number of hedges per call, between 0 and 1
+     * @param minDelay minimum time before a call is hedged
+     * @param virtualThreads true to run the calls on virtual threads
+     */
+    public HedgingDataObjectHelper(DataObjectHelper delegate, double percentile, double maxRate, Duration minDelay, boolean virtualThreads) {
+        super(delegate);
+        if (!(percentile > 0 && percentile <= 1)) {
+            throw new IllegalArgumentException("Invalid percentile: " + percentile);
+        }
+        if (!(maxRate >= 0 && maxRate <= 1)) {
+            throw new IllegalArgumentException("Invalid maximum hedging rate: " + maxRate);
+        }
+        Objects.requireNonNull(minDelay, "minDelay must not be null");
+        if (minDelay.isNegative()) {
+            throw new IllegalArgumentException("Invalid minimum delay: " + minDelay);
+        }
+        this.percentile = percentile;
+        this.maxRate = maxRate;
+        this.minDelayNanos = minDelay.toNanos();
+        if (virtualThreads) {
+            this.executor = VirtualThreads.newThreadPerTaskExecutor();
+        } else {
+            AtomicInteger threadCount = new AtomicInteger();
+            this.executor = Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "hedged-read-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * @return number of calls made once hedging started, each of which could be hedged
+     */
+    public long getHedgeableCount() {
+        return hedgeableCount.sum();
+    }
+
+    /**
+     * @return number of hedges sent
+     */
+    public long getHedgeCount() {
+        return hedgeCount.sum();
+    }
+
+    /**
+     * @return number of hedges which completed before the call they hedged
+     */
+    public long getWinCount() {
+        return winCount.sum();
+    }
+
+    /**
+     * @return number of slow calls not hedged because the budget was spent
+     */
+    public long getBudgetExhaustedCount() {
+        return budgetExhaustedCount.sum();
+    }
+
+    /**
+     * @return number of slow calls not hedged because no permit of the concurrency limit was free
+     */
+    public long getPermitUnavailableCount() {
+        return permitUnavailableCount.sum();
+    }
+
+    /**
+     * @param hedgePermits permits of the concurrency limit the decorated helper is called within, taken by each hedge
+     */
+    public void setHedgePermits(HedgePermits hedgePermits) {
+        this.hedgePermits = Objects.requireNonNull(hedgePermits, "hedgePermits must not be null");
+    }
+
+    @Override
+    public byte[] get(String fileName) throws DataObjectHelperException {
+        return hedged(getLatencies, () -> delegate().get(fileName));
+    }
+
+    @Override
+    public boolean exists(String fileName) throws DataObjectHelperException {
+        return hedged(headLatencies, () -> delegate().exists(fileName));
+    }
+
+    @Override
+    public DataObjectMetadata getMetadata(String fileName) throws DataObjectHelperException {
+        return hedged(headLatencies, () -> delegate().getMetadata(fileName));
+    }
+
+    private <T> T hedged(LatencyWindow latencies, Call<T> call) throws DataObjectHelperException {
+        long delay = latencies.delay;
+        long start = System.nanoTime();
+        if (delay < 0) {
+            // Not enough latencies known yet, the call is made by the caller
+            try {
+                return call.call();
+            } finally {
+                latencies.record(System.nanoTime() - start);
+            }
+        }
+
+        hedgeableCount.increment();
+        earn();
+        CompletionService<T> completion = new ExecutorCompletionService<>(executor);
+        Future<T> primary = completion.submit(call::call);
+        Future<T> hedge = null;
+        HedgePermits permits = hedgePermits;
+        // Set by the hedge when it runs, or once it is cancelled before, whichever gives back its permit
+        AtomicBoolean permitClaimed = new AtomicBoolean();
+        try {
+            Future<T> first = completion.poll(delay, TimeUnit.NANOSECONDS);
+            if (first == null) {
+                if (!spend()) {
+                    budgetExhaustedCount.increment();
+                } else if (!permits.tryAcquire()) {
+                    refund();
+                    permitUnavailableCount.increment();
+                } else {
+                    hedgeCount.increment();
+                    hedge = completion.submit(() -> {
+                        if (!permitClaimed.compareAndSet(false, true)) {
+                            throw new CancellationException();
+                        }
+                        try {
+                            return call.call();
+                        } finally {
+                            permits.release();
+                        }
+                    });
+                }
+                first = completion.take();
+            }
+            try {
+                T result = first.get();
+                if (first == hedge) {
+                    winCount.increment();
+                }
+                return result;
+            } catch (ExecutionException e) {
+                if (hedge == null || !isUnavailable(e.getCause())) {
+                    throw unwrap(e);
+                }
+                // The other call may still succeed
+                Future<T> second = completion.take();
+                try {
+                    T result = second.get();
+                    if (second == hedge) {
+                        winCount.increment();
+                    }
+                    return result;
+                } catch (ExecutionException ignored) {
+                    throw unwrap(e);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ClientException("Interrupted while reading");
+        } finally {
+            // An abandoned call is recorded with the time it ran, a lower bound of its latency
+            latencies.record(System.nanoTime() - start);
+            primary.cancel(true);
+            if (hedge != null) {
+                hedge.cancel(true);
+                if (permitClaimed.compareAndSet(false, true)) {
+                    permits.release();
+                }
+            }
+        }
+    }
+
+    private synchronized void earn() {
+        budget = Math.min(MAX_BUDGET, budget + maxRate);
+    }
+
+    private synchronized boolean spend() {
+        if (budget < 1) {
+            return false;
+        }
+        budget--;
+        return true;
+    }
+
+    private synchronized void refund() {
+        budget = Math.min(MAX_BUDGET, budget + 1);
+    }
+
+    private static boolean isUnavailable(Throwable cause) {
+        return cause instanceof ServiceException || cause instanceof ClientException;
+    }
+
+    private static DataObjectHelperException unwrap(ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof DataObjectHelperException) {
+            return (DataObjectHelperException) cause;
+        }
+        if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        return new DataObjectException("Error while reading: " + cause.getMessage());
+    }
+
+    /**
+     * Stop the threads of the hedged calls and close the decorated helper
+     */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+        super.close();
+    }
+
+    @FunctionalInterface
+    private interface Call<T> {
+        T call() throws DataObjectHelperException;
+    }
+
+    /**
+     * Permits of a concurrency limit, taken without waiting by the hedges
+     */
+    public interface HedgePermits {
+
+        /**
+         * @return true if a permit was taken, to give back with release
+         */
+        boolean tryAcquire();
+
+        void release();
+    }
+
+    /**
+     * Last latencies of an operation, and the delay after which its calls are hedged
+     */
+    private class LatencyWindow {
+        private final long[] samples = new long[WINDOW_SIZE];
+        private int count;
+        private int next;
+        private int sinceRefresh;
+        // Nanoseconds, or -1 until enough latencies are known
+        private volatile long delay = -1;
+
+        synchronized void record(long nanos) {
+            samples[next] = nanos;
+            next = (next + 1) % samples.length;
+            count = Math.min(count + 1, samples.length);
+            if (++sinceRefresh >= REFRESH && count >= MIN_SAMPLES) {
+                sinceRefresh = 0;
+                long[] sorted = Arrays.copyOf(samples, count);
+                Arrays.sort(sorted);
+                int index = (int) Math.ceil(percentile * count) - 1;
+                delay = Math.max(minDelayNanos, sorted[Math.max(index, 0)]);
+            }
+        }
+    }
+}
@@ -0,0 +1,318 @@
+package org.amt.microservicedataobject.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.nio.channels.FileChannel;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.Vector;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link DataObjectHelper} recording the calls made on the decorated helper in a Micrometer registry
+ * - dataobject.operations: duration of the calls, with a percentile histogram, by operation, outcome and exception
+ * - dataobject.operation.errors: failed calls, by operation and exception
+ * - dataobject.bytes.in / dataobject.bytes.out: bytes uploaded and downloaded, by operation
+ * - dataobject.bytes.deduplicated: bytes not uploaded because the storage already held the same content
+ * The duration of a call opening a content stops once the content is opened, its bytes are counted as they are read
+ * @author De Bleser Dimitri
+ * @author Peer Vincent
+ * @author Nelson Jeanreneaud
+ */
+public class MeteredDataObjectHelper extends ForwardingDataObjectHelper {
+
+    public static final String OPERATIONS = "dataobject.operations";
+    public static final String ERRORS = "dataobject.operation.errors";
+    public static final String BYTES_IN = "dataobject.bytes.in";
+    public static final String BYTES_OUT = "dataobject.bytes.out";
+    public static final String BYTES_DEDUPLICATED = "dataobject.bytes.deduplicated";
+
+    private final MeterRegistry meterRegistry;
+
+    public MeteredDataObjectHelper(DataObjectHelper delegate, MeterRegistry meterRegistry) {
+        super(delegate);
+        this.meterRegistry = Objects.requireNonNull(meterRegistry, "meterRegistry must not be null");
+    }
+
+    @Override
+    public void add(String fileName, File file) throws DataObjectHelperException {
+        // Uploads may be skipped by the storage even when the caller does not ask for it
+        addIfChanged(fileName, file);
+    }
+
+    @Override
+    public void add(String fileName, InputStream inputStream, long contentLength) throws DataObjectHelperException {
+        addIfChanged(fileName, inputStream, contentLength);
+    }
+
+    @Override
+    public long addIfChanged(String fileName, File file) throws DataObjectHelperException {
+        return metered("add", () -> {
+            long length = file.length();
+            long saved = delegate().addIfChanged(fileName, file);
+            uploaded(length, saved);
+            return saved;
+        });
+    }
+
+    @Override
+    public long addIfChanged(String fileName, InputStream inputStream, long contentLength) throws DataObjectHelperException {
+        return metered("add", () -> {
+            // The bytes read, as the length of a chunked upload is not known
+            CountingInputStream counting = new CountingInputStream(inputStream, null);
+            long saved = delegate().addIfChanged(fileName, counting, contentLength);
+            uploaded(counting.getCount(), saved);
+            return saved;
+        });
+    }
+
+    @Override
+    public Vector<String> listObjects() throws DataObjectHelperException {
+        return metered("listObjects", () -> delegate().listObjects());
+    }
+
+    @Override
+    public DataObjectListing listObjects(String prefix, String delimiter, int pageSize, String continuationToken) throws DataObjectHelperException {
+        return metered("listObjects", () -> delegate().listObjects(prefix, delimiter, pageSize, continuationToken));
+    }
+
+    @Override
+    public byte[] get(String fileName) throws DataObjectHelperException {
+        return metered("get", () -> {
+            byte[] content = delegate().get(fileName);
+            bytesOut("get", content.length);
+            return content;
+        });
+    }
+
+    @Override
+    public DataObjectContent getContent(String fileName) throws DataObjectHelperException {
+        return metered("getContent", () -> counted("getContent", delegate().getContent(fileName)));
+    }
+
+    @Override
+    public DataObjectContent getContent(String fileName, long start, long end) throws DataObjectHelperException {
+        return metered("getContent", () -> counted("getContent", delegate().getContent(fileName, start, end)));
+    }
+
+    @Override
+    public DataObjectContent getContentIfModified(String fileName, String ifNoneMatch, Instant ifModifiedSince) throws DataObjectHelperException {
+        return metered("getContent", () -> counted("getContent", delegate().getContentIfModified(fileName, ifNoneMatch, ifModifiedSince)));
+    }
+
+    @Override
+    public DataObjectContent getContentIfModified(String fileName, String ifNoneMatch, Instant ifModifiedSince, String acceptEncoding) throws DataObjectHelperException {
+        return metered("getContent", () -> counted("getContent", delegate().getContentIfModified(fileName, ifNoneMatch, ifModifiedSince, acceptEncoding)));
+    }
+
+    @Override
+    public long download(String fileName, FileChannel channel) throws DataObjectHelperException {
+        return metered("download", () -> {
+            long downloaded = delegate().download(fileName, channel);
+            bytesOut("download", downloaded);
+            return downloaded;
+        });
+    }
+
+    @Override
+    public void delete(String fileName) throws DataObjectHelperException {
+        metered("delete", () -> {
+            delegate().delete(fileName);
+            return null;
+        });
+    }
+
+    @Override
+    public List<DataObjectResult> deleteAll(Collection<String> fileNames) throws DataObjectHelperException {
+        return metered("deleteAll", () -> delegate().deleteAll(fileNames));
+    }
+
+    @Override
+    public URL getUrl(String fileName, Duration linkDuration) throws DataObjectHelperException {
+        return metered("getUrl", () -> delegate().getUrl(fileName, linkDuration));
+    }
+
+    @Override
+    public boolean exists(String fileName) throws DataObjectHelperException {
+        return metered("exists", () -> delegate().exists(fileName));
+    }
+
+    @Override
+    public DataObjectMetadata getMetadata(String fileName) throws DataObjectHelperException {
+        return metered("getMetadata", () -> delegate().getMetadata(fileName));
+    }
+
+    private <T> T metered(String operation, Call<T> call) throws DataObjectHelperException {
+        long start = System.nanoTime();
+        String outcome = "success";
+        String exception = "none";
+        try {
+            T result = call.call();
+            if (result == null && "getContent".equals(operation)) {
+                // Only a conditional read returns no content
+                outcome = "not_modified";
+            } else if ("add".equals(operation) && (Long) result > 0) {
+                outcome = "unchanged";
+            }
+            return result;
+        } catch (DataObjectHelperException | RuntimeException e) {
+            outcome = "error";
+            exception = e.getClass().getSimpleName();
+            Counter.builder(ERRORS)
+                    .description("Failed calls to the storage")
+                    .tag("operation", operation)
+                    .tag("exception", exception)
+                    .register(meterRegistry)
+                    .increment();
+            throw e;
+        } finally {
+            Timer.builder(OPERATIONS)
+                    .description("Duration of the calls to the storage")
+                    .tag("operation", operation)
+                    .tag("outcome", outcome)
+                    .tag("exception", exception)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry)
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private DataObjectContent counted(String operation, DataObjectContent content) {
+        if (content == null) {
+            return null;
+        }
+        Counter bytesOut = bytesOutCounter(operation);
+        return new DataObjectContent(content.getMetadata(), new CountingInputStream(content.getInputStream(), bytesOut),
+                content.getContentRange()) {
+            @Override
+            public long transferTo(OutputStream outputStream) throws IOException {
+                // Keeps the copy of the decorated content, which may avoid the buffer
+                long transferred = content.transferTo(outputStream);
+                bytesOut.increment(transferred);
+                return transferred;
+            }
+
+            @Override
+            public void close() throws IOException {
+                content.close();
+            }
+        };
+    }
+
+    private void uploaded(long length, long saved) {
+        bytesIn("add", Math.max(length - saved, 0));
+        if (saved > 0) {
+            Counter.builder(BYTES_DEDUPLICATED)
+                    .description("Bytes not uploaded because the storage already held the same content")
+                    .baseUnit("bytes")
+                    .register(meterRegistry)
+                    .increment(saved);
+        }
+    }
+
+    private void bytesIn(String operation, long bytes) {
+        Counter.builder(BYTES_IN)
+                .description("Bytes uploaded to the storage")
+                .baseUnit("bytes")
+                .tag("operation", operation)
+                .register(meterRegistry)
+                .increment(bytes);
+    }
+
+    private void bytesOut(String operation, long bytes) {
+        bytesOutCounter(operation).increment(bytes);
+    }
+
+    private Counter bytesOutCounter(String operation) {
+        return Counter.builder(BYTES_OUT)
+                .description("Bytes downloaded from the storage")
+                .baseUnit("bytes")
+                .tag("operation", operation)
+                .register(meterRegistry);
+    }
+
+    @FunctionalInterface
+    private interface Call<T> {
+        T call() throws DataObjectHelperException;
+    }
+
+    /**
+     * Stream counting the bytes read through it, and adding them to a counter if any
+     * Bytes read again after a reset, by a retried upload, are counted once
+     */
+    private static class CountingInputStream extends FilterInputStream {
+        private final Counter counter;
+        private long position;
+        private long marked;
+        private long count;
+
+        CountingInputStream(InputStream in, Counter counter) {
+            super(in);
+            this.counter = counter;
+        }
+
+        long getCount() {
+            return count;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int read = super.read();
+            if (read >= 0) {
+                counted(1);
+            }
+            return read;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0) {
+                counted(read);
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            if (skipped > 0) {
+                counted(skipped);
+            }
+            return skipped;
+        }
+
+        @Override
+        public synchronized void mark(int readLimit) {
+            super.mark(readLimit);
+            marked = position;
+        }
+
+        @Override
+        public synchronized void reset() throws IOException {
+            super.reset();
+            position = marked;
+        }
+
+        private void counted(long bytes) {
+            position += bytes;
+            if (position > count) {
+                if (counter != null) {
+                    counter.increment(position - count);
+                }
+                count = position;
+            }
+        }
+    }
+}
@@ -0,0 +1,647 @@
+package org.amt.microservicedataobject.service.aws;
+
+import org.amt.microservicedataobject.service.AsyncDataObjectContent;
+import org.amt.microservicedataobject.service.AsyncDataObjectHelper;
+import org.amt.microservicedataobject.service.DataObjectHelper.*;
+import org.amt.microservicedataobject.service.DataObjectListing;
+import org.amt.microservicedataobject.service.DataObjectMetadata;
+import org.amt.microservicedataobject.service.DataObjectResult;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import software.amazon.awssdk.awscore.exception.AwsServiceException;
+import software.amazon.awssdk.core.ResponseBytes;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.core.async.AsyncResponseTransformer;
+import software.amazon.awssdk.core.async.SdkPublisher;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.S3AsyncClientBuilder;
+import software.amazon.awssdk.services.s3.model.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
+
+/**
+ * Implementation of {@link AsyncDataObjectHelper} using the non-blocking AWS client
+ * All the requests share a small pool of Netty event loop threads, whatever the number of requests in flight
+ * Compressed objects are published as stored, their metadata naming their encoding
+ * @author De Bleser Dimitri
+ * @author Peer Vincent
+ * @author Nelson Jeanreneaud
+ */
+public class AwsAsyncDataObjectHelperImpl implements AsyncDataObjectHelper {
+
+    // Maximum number of keys returned or deleted by S3 in one request
+    private final static int MAX_PAGE_SIZE = 1000;
+    private final static int MAX_DELETE_BATCH_SIZE = 1000;
+    private final S3AsyncClient s3;
+    private final AwsShards shards;
+    private final AwsConnectionPoolMetrics connectionPoolMetrics = new AwsConnectionPoolMetrics();
+    private final AwsUrlSigner urlSigner;
+    private final long multipartThreshold;
+    private final long partSize;
+    private final int transferConcurrency;
+
+    /**
+     * Constructor
+     */
+    public AwsAsyncDataObjectHelperImpl(AwsServiceConfigurator awsServiceConfigurator) {
+        S3AsyncClientBuilder s3Builder = S3AsyncClient.builder()
+                .region(awsServiceConfigurator.getRegion())
+                .credentialsProvider(awsServiceConfigurator.getCredentialsProvider())
+                .httpClientBuilder(awsServiceConfigurator.asyncHttpClientBuilder())
+                .serviceConfiguration(awsServiceConfigurator.s3Configuration())
+                .overrideConfiguration(configuration -> {
+                    configuration.retryPolicy(awsServiceConfigurator.retryPolicy());
+                    configuration.addMetricPublisher(connectionPoolMetrics);
+                    awsServiceConfigurator.getMetricPublishers().forEach(configuration::addMetricPublisher);
+                });
+        if (awsServiceConfigurator.getEndpointOverride() != null) {
+            s3Builder.endpointOverride(awsServiceConfigurator.getEndpointOverride());
+        }
+        s3 = s3Builder.build();
+        shards = new AwsShards(awsServiceConfigurator);
+        urlSigner = new AwsUrlSigner(awsServiceConfigurator);
+        multipartThreshold = awsServiceConfigurator.getMultipartThreshold();
+        partSize = awsServiceConfigurator.getPartSize();
+        transferConcurrency = awsServiceConfigurator.getTransferConcurrency();
+    }
+
+    /**
+     * Bucket name getter
+     * @return String containing the bucket names, separated by commas
+     */
+    public String getName() {
+        return String.join(",", shards.getBuckets());
+    }
+
+    /**
+     * @return gauges of the connection pool of the S3AsyncClient
+     */
+    public AwsConnectionPoolMetrics getConnectionPoolMetrics() {
+        return connectionPoolMetrics;
+    }
+
+    /**
+     * Close the S3AsyncClient and the presigner
+     */
+    public void close() {
+        urlSigner.close();
+        s3.close();
+    }
+
+    /**
+     * Upload a file to the bucket, large files being sent as multipart uploads
+     * @param targetFileName uploaded file name
+     * @param file to be uploaded
+     */
+    public CompletableFuture<Void> add(String targetFileName, Path file) {
+        Objects.requireNonNull(targetFileName, "targetFileName must not be null");
+        Objects.requireNonNull(file, "file must not be null");
+
+        long size;
+        try {
+            size = Files.size(file);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(new NullPointerException("File does not exist"));
+        }
+        if (size >= multipartThreshold) {
+            return translated(uploadMultipart(targetFileName, AsyncRequestBody.fromFile(file)), "adding object");
+        }
+
+        AwsShards.Shard shard = shards.shardOf(targetFileName);
+        PutObjectRequest objectRequest = PutObjectRequest.builder()
+                .bucket(shard.getBucket())
+                .key(shard.toKey(targetFileName))
+                .build();
+        return translated(s3.putObject(objectRequest, AsyncRequestBody.fromFile(file)).thenApply(response -> null), "adding object");
+    }
+
+    /**
+     * Upload the content of a publisher to the bucket
+     * Content of unknown length or above the multipart threshold is sent as a multipart upload
+     * @param targetFileName uploaded file name
+     * @param content to be uploaded
+     * @param contentLength number of bytes published, or -1 if unknown
+     */
+    public CompletableFuture<Void> add(String targetFileName, Publisher<ByteBuffer> content, long contentLength) {
+        Objects.requireNonNull(targetFileName, "targetFileName must not be null");
+        Objects.requireNonNull(content, "content must not be null");
+
+        if (contentLength < 0 || contentLength >= multipartThreshold) {
+            return translated(uploadMultipart(targetFileName, content), "adding object");
+        }
+
+        AwsShards.Shard shard = shards.shardOf(targetFileName);
+        PutObjectRequest objectRequest = PutObjectRequest.builder()
+                .bucket(shard.getBucket())
+                .key(shard.toKey(targetFileName))
+                .contentLength(contentLength)
+                .build();
+        return translated(s3.putObject(objectRequest, AsyncRequestBody.fromPublisher(content)).thenApply(response -> null), "adding object");
+    }
+
+    private CompletableFuture<Void> uploadMultipart(String targetFileName, Publisher<ByteBuffer> content) {
+        AwsShards.Shard shard = shards.shardOf(targetFileName);
+        AwsAsyncMultipartUpload upload = new AwsAsyncMultipartUpload(s3, shard.getBucket(), shard.toKey(targetFileName),
+                partSize, transferConcurrency);
+        content.subscribe(upload);
+        return upload.result();
+    }
+
+    /**
+     * List files contained in the buckets, following all the pages
+     * @return Objects names, sorted as S3 lists them
+     */
+    public CompletableFuture<List<String>> listObjects() {
+        List<CompletableFuture<List<String>>> listings = new ArrayList<>();
+        for (AwsShards.Shard shard : shards.getListedShards()) {
+            List<String> keys = new ArrayList<>();
+            ListObjectsV2Request listObjects = ListObjectsV2Request
+                    .builder()
+                    .bucket(shard.getBucket())
+                    .prefix(shard.getPrefix().isEmpty() ? null : shard.getPrefix())
+                    .build();
+            // Pages are published one after the other, so the list is never written concurrently
+            listings.add(s3.listObjectsV2Paginator(listObjects).contents()
+                    .subscribe(myValue -> keys.add(shard.toFileName(myValue.key())))
+                    .thenApply(done -> keys));
+        }
+
+        return translated(CompletableFuture.allOf(listings.toArray(new CompletableFuture<?>[0])).thenApply(done -> {
+            List<String> keys = new ArrayList<>();
+            for (CompletableFuture<List<String>> listing : listings)
+                keys.addAll(listing.join());
+            if (shards.isSharded()) {
+                // A key being moved may be listed on both placements
+                TreeSet<String> sorted = new TreeSet<>(AwsShards.KEY_ORDER);
+                sorted.addAll(keys);
+                return new ArrayList<>(sorted);
+            }
+            return keys;
+        }), "listing objects");
+    }
+
+    /**
+     * List one page of files contained in the bucket
+     * @see AwsDataObjectHelperImpl#listObjects(String, String, int, String)
+     */
+    public CompletableFuture<DataObjectListing> listObjects(String prefix, String delimiter, int pageSize, String continuationToken) {
+        if (pageSize <= 0) {
+            return CompletableFuture.failedFuture(new InvalidParamException("pageSize must be positive"));
+        }
+        if (shards.isSharded()) {
+            return listShards(prefix, delimiter, Math.min(pageSize, MAX_PAGE_SIZE), continuationToken);
+        }
+
+        ListObjectsV2Request listObjects = ListObjectsV2Request
+                .builder()
+                .bucket(shards.getShards().get(0).getBucket())
+                .prefix(prefix)
+                .delimiter(delimiter)
+                .maxKeys(Math.min(pageSize, MAX_PAGE_SIZE))
+                .continuationToken(continuationToken)
+                .build();
+
+        return translated(s3.listObjectsV2(listObjects).thenApply(res -> {
+            List<String> keys = new ArrayList<>(res.contents().size());
+            for (S3Object myValue : res.contents())
+                keys.add(myValue.key());
+            List<String> commonPrefixes = new ArrayList<>(res.commonPrefixes().size());
+            for (CommonPrefix commonPrefix : res.commonPrefixes())
+                commonPrefixes.add(commonPrefix.prefix());
+            return new DataObjectListing(keys, commonPrefixes,
+                    Boolean.TRUE.equals(res.isTruncated()) ? res.nextContinuationToken() : null);
+        }), "listing objects");
+    }
+
+    /**
+     * List a page from every shard at the same time and merge them
+     * @see AwsDataObjectHelperImpl#listObjects(String, String, int, String)
+     */
+    private CompletableFuture<DataObjectListing> listShards(String prefix, String delimiter, int pageSize, String continuationToken) {
+        String startAfter;
+        try {
+            startAfter = continuationToken == null ? null : AwsShards.decodeToken(continuationToken);
+        } catch (InvalidParamException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        List<AwsShards.Shard> listed = shards.getListedShards();
+        List<CompletableFuture<ListObjectsV2Response>> pages = new ArrayList<>(listed.size());
+        for (AwsShards.Shard shard : listed)
+            pages.add(s3.listObjectsV2(AwsShards.pageRequest(shard, prefix, delimiter, pageSize, startAfter)));
+
+        return translated(CompletableFuture.allOf(pages.toArray(new CompletableFuture<?>[0])).thenApply(done -> {
+            List<ListObjectsV2Response> responses = new ArrayList<>(pages.size());
+            for (CompletableFuture<ListObjectsV2Response> page : pages)
+                responses.add(page.join());
+            return AwsShards.merge(listed, responses, pageSize);
+        }), "listing objects");
+    }
+
+    /**
+     * Get the file content
+     * @param fileName to be downloaded
+     * @return file content in byte array
+     */
+    public CompletableFuture<byte[]> get(String fileName) {
+        Objects.requireNonNull(fileName, "fileName must not be null");
+
+        return translated(readPlaced(fileName, shard -> s3.getObject(GetObjectRequest.builder()
+                        .bucket(shard.getBucket())
+                        .key(shard.toKey(fileName))
+                        .build(), AsyncResponseTransformer.toBytes()))
+                .thenApply(AwsAsyncDataObjectHelperImpl::decompressed), "getting object");
+    }
+
+    /**
+     * Get a publisher of the file content
+     * @param fileName to be downloaded
+     * @return file content, published as it is received from the bucket
+     */
+    public CompletableFuture<AsyncDataObjectContent> getContent(String fileName) {
+        return openContent(fileName, null, null, null);
+    }
+
+    /**
+     * Get a publisher of a byte range of the file content
+     * @see AwsDataObjectHelperImpl#getContent(String, long, long)
+     */
+    public CompletableFuture<AsyncDataObjectContent> getContent(String fileName, long start, long end) {
+        if (start < 0 && end >= 0) {
+            return CompletableFuture.failedFuture(new InvalidRangeException("A suffix range has no end"));
+        }
+        if (end >= 0 && end < start) {
+            return CompletableFuture.failedFuture(new InvalidRangeException("Range end is before its start"));
+        }
+        return openContent(fileName, start < 0 ? "bytes=" + start : "bytes=" + start + "-" + (end < 0 ? "" : String.valueOf(end)), null, null);
+    }
+
+    /**
+     * Get a publisher of the file content with a conditional GET
+     * @see AwsDataObjectHelperImpl#getContentIfModified(String, String, Instant)
+     */
+    public CompletableFuture<AsyncDataObjectContent> getContentIfModified(String fileName, String ifNoneMatch, Instant ifModifiedSince) {
+        if (ifNoneMatch == null) {
+            return openContent(fileName, null, null, ifModifiedSince);
+        }
+        List<String> entityTags = DataObjectMetadata.entityTags(ifNoneMatch);
+        if (entityTags.size() == 1 && !entityTags.get(0).equals("*")) {
+            return openContent(fileName, null, entityTags.get(0), null);
+        }
+        return AsyncDataObjectHelper.super.getContentIfModified(fileName, ifNoneMatch, null);
+    }
+
+    private CompletableFuture<AsyncDataObjectContent> openContent(String fileName, String range, String ifNoneMatch, Instant ifModifiedSince) {
+        Objects.requireNonNull(fileName, "fileName must not be null");
+
+        GetObjectRequest.Builder getObjectRequest = GetObjectRequest.builder()
+                .range(range)
+                .ifNoneMatch(ifNoneMatch)
+                .ifModifiedSince(ifModifiedSince);
+
+        // S3 answers 304 without the content when the conditions tell the caller holds the current version
+        return translated(readPlaced(fileName, shard -> s3.getObject(getObjectRequest
+                .bucket(shard.getBucket())
+                .key(shard.toKey(fileName))
+                .build(), new ContentTransformer())).exceptionally(throwable -> {
+            Throwable cause = unwrap(throwable);
+            if (cause instanceof S3Exception && ((S3Exception) cause).statusCode() == 304) {
+                return null;
+            }
+            throw throwable instanceof CompletionException ? (CompletionException) throwable : new CompletionException(throwable);
+        }).thenCompose(content -> {
+            if (range == null || content == null || !AwsCompression.isCompressed(content.getMetadata().getContentEncoding())) {
+                return CompletableFuture.completedFuture(content);
+            }
+            // A range of the compressed bytes cannot be decompressed, the whole object is sent instead, as HTTP allows
+            content.getPublisher().subscribe(new CancellingSubscriber());
+            return openContent(fileName, null, ifNoneMatch, ifModifiedSince);
+        }), "getting object");
+    }
+
+    private static byte[] decompressed(ResponseBytes<GetObjectResponse> bytes) {
+        if (!AwsCompression.isCompressed(bytes.response().contentEncoding())) {
+            return bytes.asByteArray();
+        }
+        try (InputStream content = AwsCompression.decompress(new ByteArrayInputStream(bytes.asByteArrayUnsafe()))) {
+            return content.readAllBytes();
+        } catch (IOException e) {
+            throw new CompletionException(new DataObjectException("Error while reading object" + e.getMessage()));
+        }
+    }
+
+    /**
+     * Metadata of an object as published, compressed objects keeping their encoding
+     */
+    private static DataObjectMetadata toMetadata(Long contentLength, String contentType, String eTag, Instant lastModified,
+                                                 String contentEncoding, Map<String, String> metadata) {
+        return new DataObjectMetadata(contentLength == null ? -1 : contentLength, contentType, eTag, lastModified,
+                metadata.get(AwsDataObjectHelperImpl.CONTENT_HASH_METADATA), contentEncoding);
+    }
+
+    /**
+     * Delete a file in the bucket
+     * @param fileName to delete
+     */
+    public CompletableFuture<Void> delete(String fileName) {
+        Objects.requireNonNull(fileName, "fileName must not be null");
+
+        return exists(fileName).thenCompose(exists -> {
+            if (!exists) {
+                return CompletableFuture.failedFuture(new KeyNotFoundException("Object not found"));
+            }
+            AwsShards.Shard shard = shards.shardOf(fileName);
+            DeleteObjectRequest deleteObjectRequest = DeleteObjectRequest.builder()
+                    .bucket(shard.getBucket())
+                    .key(shard.toKey(fileName))
+                    .build();
+            CompletableFuture<?> deleted = s3.deleteObject(deleteObjectRequest);
+            // Not moved back by the next rebalancing
+            AwsShards.Shard previous = shards.previousShardOf(fileName);
+            if (previous != null) {
+                deleted = deleted.thenCompose(response -> s3.deleteObject(DeleteObjectRequest.builder()
+                        .bucket(previous.getBucket())
+                        .key(previous.toKey(fileName))
+                        .build()).thenRun(() -> urlSigner.invalidate(previous.getBucket(), previous.toKey(fileName))));
+            }
+            return translated(deleted.thenApply(response -> {
+                urlSigner.invalidate(shard.getBucket(), shard.toKey(fileName));
+                return null;
+            }), "deleting object");
+        });
+    }
+
+    /**
+     * Delete many files in the bucket, sending all the DeleteObjects requests at once
+     * @see AwsDataObjectHelperImpl#deleteAll(Collection)
+     */
+    public CompletableFuture<List<DataObjectResult>> deleteAll(Collection<String> fileNames) {
+        Objects.requireNonNull(fileNames, "fileNames must not be null");
+        List<String> keys = new ArrayList<>(new LinkedHashSet<>(fileNames));
+        if (keys.contains(null)) {
+            return CompletableFuture.failedFuture(new InvalidParamException("fileNames must not contain null"));
+        }
+
+        // A DeleteObjects request deletes keys of a single bucket
+        Map<String, Map<String, String>> keysByBucket = shards.keysByBucket(keys);
+
+        List<CompletableFuture<List<DataObjectResult>>> batches = new ArrayList<>();
+        keysByBucket.forEach((bucket, bucketFileNames) -> {
+            List<String> storedKeys = new ArrayList<>(bucketFileNames.keySet());
+            for (int start = 0; start < storedKeys.size(); start += MAX_DELETE_BATCH_SIZE)
+                batches.add(deleteBatch(bucket, storedKeys.subList(start, Math.min(start + MAX_DELETE_BATCH_SIZE, storedKeys.size())), bucketFileNames));
+        });
+
+        return CompletableFuture.allOf(batches.toArray(new CompletableFuture<?>[0])).thenApply(done -> {
+            List<DataObjectResult> results = new ArrayList<>(keys.size());
+            for (CompletableFuture<List<DataObjectResult>> batch : batches)
+                results.addAll(batch.join());
+            return AwsShards.resultsByFile(keys, results);
+        });
+    }
+
+    /**
+     * @param batch stored keys to delete
+     * @param fileNames stored keys to the names of the files
+     */
+    private CompletableFuture<List<DataObjectResult>> deleteBatch(String bucket, List<String> batch, Map<String, String> fileNames) {
+        List<ObjectIdentifier> identifiers = new ArrayList<>(batch.size());
+        for (String key : batch)
+            identifiers.add(ObjectIdentifier.builder().key(key).build());
+
+        DeleteObjectsRequest deleteObjectsRequest = DeleteObjectsRequest.builder()
+                .bucket(bucket)
+                .delete(Delete.builder().objects(identifiers).quiet(false).build())
+                .build();
+
+        // A failure of the whole request is reported on each of its files
+        return s3.deleteObjects(deleteObjectsRequest).handle((response, throwable) -> {
+            List<DataObjectResult> results = new ArrayList<>(batch.size());
+            if (throwable != null) {
+                for (String key : batch)
+                    results.add(DataObjectResult.failure(fileNames.get(key), translate(throwable, "deleting objects").getMessage()));
+                return results;
+            }
+            List<String> deletedKeys = new ArrayList<>(response.deleted().size());
+            for (DeletedObject deleted : response.deleted()) {
+                deletedKeys.add(deleted.key());
+                results.add(DataObjectResult.success(fileNames.getOrDefault(deleted.key(), deleted.key())));
+            }
+            urlSigner.invalidate(bucket, deletedKeys);
+            for (S3Error error : response.errors())
+                results.add(DataObjectResult.failure(fileNames.getOrDefault(error.key(), error.key()), error.code() + ": " + error.message()));
+            return results;
+        });
+    }
+
+    /**
+     * Checks if a file exists in the bucket
+     * @param fileName to check
+     * @return true if the file exists, false otherwise
+     */
+    public CompletableFuture<Boolean> exists(String fileName) {
+        return head(fileName).thenApply(Optional::isPresent);
+    }
+
+    /**
+     * Get the metadata of a file in the bucket
+     * @param fileName to check
+     * @return size, ETag and last modification date of the file
+     */
+    public CompletableFuture<DataObjectMetadata> getMetadata(String fileName) {
+        return head(fileName).thenCompose(metadata -> metadata
+                .map(CompletableFuture::completedFuture)
+                .orElseGet(() -> CompletableFuture.failedFuture(new KeyNotFoundException("Object not found"))));
+    }
+
+    private CompletableFuture<Optional<DataObjectMetadata>> head(String fileName) {
+        Objects.requireNonNull(fileName, "fileName must not be null");
+        return translated(readPlaced(fileName, shard -> s3.headObject(HeadObjectRequest.builder()
+                .bucket(shard.getBucket())
+                .key(shard.toKey(fileName))
+                .build())).handle((response, throwable) -> {
+            if (throwable == null) {
+                return Optional.of(toMetadata(response.contentLength(), response.contentType(), response.eTag(),
+                        response.lastModified(), response.contentEncoding(), response.metadata()));
+            }
+            if (unwrap(throwable) instanceof NoSuchKeyException) {
+                return Optional.empty();
+            }
+            throw new CompletionException(unwrap(throwable));
+        }), "checking object");
+    }
+
+    /**
+     * Request a publicly accessible url to a file *
+     * @param fileName     of the requested file
+     * @param linkDuration duration of the link validity
+     * @return Url to linking to a file
+     */
+    public CompletableFuture<URL> getUrl(String fileName, Duration linkDuration) {
+        Objects.requireNonNull(fileName, "fileName must not be null");
+        Objects.requireNonNull(linkDuration, "linkDuration must not be null");
+
+        if (linkDuration.isNegative() || linkDuration.isZero()) {
+            return CompletableFuture.failedFuture(new InvalidParamException("linkDuration must be positive"));
+        }
+
+        AwsShards.Shard shard = shards.shardOf(fileName);
+        URL cachedUrl = urlSigner.getCached(shard.getBucket(), shard.toKey(fileName), linkDuration);
+        if (cachedUrl != null) {
+            return CompletableFuture.completedFuture(cachedUrl);
+        }
+
+        if (shards.previousShardOf(fileName) != null) {
+            // Signed where the object is, on its shard of the previous placement until it is moved
+            return translated(readPlaced(fileName, placed -> s3.headObject(HeadObjectRequest.builder()
+                    .bucket(placed.getBucket())
+                    .key(placed.toKey(fileName))
+                    .build()).thenApply(response -> urlSigner.sign(placed.getBucket(), placed.toKey(fileName), linkDuration))),
+                    "checking object");
+        }
+        return exists(fileName).thenCompose(exists -> exists
+                ? CompletableFuture.completedFuture(urlSigner.sign(shard.getBucket(), shard.toKey(fileName), linkDuration))
+                : CompletableFuture.failedFuture(new KeyNotFoundException("Object not found")));
+    }
+
+    /**
+     * Read an object on its shard, then on its shard of the previous placement if it was not found and not moved yet
+     */
+    private <T> CompletableFuture<T> readPlaced(String fileName, Function<AwsShards.Shard, CompletableFuture<T>> read) {
+        CompletableFuture<T> placed = read.apply(shards.shardOf(fileName));
+        AwsShards.Shard previous = shards.previousShardOf(fileName);
+        if (previous == null) {
+            return placed;
+        }
+        return placed.handle((value, throwable) -> {
+            if (throwable == null) {
+                return CompletableFuture.completedFuture(value);
+            }
+            Throwable cause = unwrap(throwable);
+            return cause instanceof NoSuchKeyException ? read.apply(previous) : CompletableFuture.<T>failedFuture(cause);
+        }).thenCompose(Function.identity());
+    }
+
+    /**
+     * Complete a future with the exception of {@link org.amt.microservicedataobject.service.DataObjectHelper}
+     * matching the failure of an AWS call
+     */
+    private static <T> CompletableFuture<T> translated(CompletableFuture<T> future, String action) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        future.whenComplete((value, throwable) -> {
+            if (throwable == null) {
+                result.complete(value);
+            } else {
+                result.completeExceptionally(translate(throwable, action));
+            }
+        });
+        return result;
+    }
+
+    private static Throwable translate(Throwable throwable, String action) {
+        Throwable cause = unwrap(throwable);
+        if (cause instanceof DataObjectHelperException || cause instanceof NullPointerException) {
+            return cause;
+        }
+        if (cause instanceof NoSuchKeyException) {
+            return new KeyNotFoundException("Object not found" + cause.getMessage());
+        }
+        if (cause instanceof NoSuchBucketException) {
+            return new DataObjectNotFoundException("Bucket not found" + cause.getMessage());
+        }
+        if (cause instanceof InvalidObjectStateException) {
+            return new AccessDeniedException("Access denied" + cause.getMessage());
+        }
+        if (cause instanceof AwsServiceException && AwsTransfers.isUnavailable((AwsServiceException) cause)) {
+            return AwsTransfers.unavailable("Error " + action, (AwsServiceException) cause);
+        }
+        if (cause instanceof S3Exception) {
+            if (((S3Exception) cause).statusCode() == 416) {
+                return new InvalidRangeException("Range not satisfiable" + cause.getMessage());
+            }
+            return new DataObjectException("Error " + action + cause.getMessage());
+        }
+        if (cause instanceof AwsServiceException) {
+            return AwsTransfers.unavailable("Error " + action, (AwsServiceException) cause);
+        }
+        if (cause instanceof SdkClientException) {
+            return new ClientException("Error " + action + cause.getMessage());
+        }
+        return new DataObjectException("Error " + action + cause.getMessage());
+    }
+
+    private static Throwable unwrap(Throwable throwable) {
+        Throwable cause = throwable;
+        while ((cause instanceof CompletionException || cause instanceof ExecutionException) && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause;
+    }
+
+    /**
+     * Completes as soon as the response headers are received, handing the body publisher to the caller
+     */
+    private static class ContentTransformer implements AsyncResponseTransformer<GetObjectResponse, AsyncDataObjectContent> {
+        private CompletableFuture<AsyncDataObjectContent> future;
+        private GetObjectResponse response;
+
+        @Override
+        public CompletableFuture<AsyncDataObjectContent> prepare() {
+            future = new CompletableFuture<>();
+            return future;
+        }
+
+        @Override
+        public void onResponse(GetObjectResponse response) {
+            this.response = response;
+        }
+
+        @Override
+        public void onStream(SdkPublisher<ByteBuffer> publisher) {
+            future.complete(new AsyncDataObjectContent(toMetadata(response.contentLength(), response.contentType(),
+                    response.eTag(), response.lastModified(), response.contentEncoding(), response.metadata()),
+                    publisher, response.contentRange()));
+        }
+
+        @Override
+        public void exceptionOccurred(Throwable throwable) {
+            future.completeExceptionally(throwable);
+        }
+    }
+
+    /**
+     * Releases the connection of a body that is not read
+     */
+    private static class CancellingSubscriber implements Subscriber<ByteBuffer> {
+        @Override
+        public void onSubscribe(Subscription subscription) {
+            subscription.cancel();
+        }
+
+        @Override
+        public void onNext(ByteBuffer byteBuffer) {
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+        }
+
+        @Override
+        public void onComplete() {
+        }
+    }
+}
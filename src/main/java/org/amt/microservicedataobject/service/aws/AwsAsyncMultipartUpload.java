@@ -0,0 +1,283 @@
+package org.amt.microservicedataobject.service.aws;
+
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.*;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Subscriber uploading the content of a publisher as an S3 multipart upload
+ * Received bytes are copied into a single part buffer. A full part is sent while fewer than the concurrency limit
+ * of parts are being sent, otherwise the rest of the received buffer waits for a part to complete, and the
+ * publisher is only asked for more data once everything received is buffered
+ * So at most one buffer per concurrent part, and the one being filled, are held in memory
+ * Content smaller than a part is sent with a single request
+ *
+ * @author De Bleser Dimitri
+ * @author Peer Vincent
+ * @author Nelson Jeanreneaud
+ */
+class AwsAsyncMultipartUpload implements Subscriber<ByteBuffer> {
+
+    private static final int MAX_PARTS = 10_000;
+
+    private final S3AsyncClient s3;
+    private final String bucket;
+    private final String key;
+    private final int partSize;
+    private final int concurrency;
+    private final CompletableFuture<Void> result = new CompletableFuture<>();
+    private final List<CompletedPart> parts = new ArrayList<>();
+
+    private Subscription subscription;
+    private byte[] buffer;
+    private int buffered;
+    // Received bytes not copied yet, waiting for a part to complete
+    private ByteBuffer pending;
+    private int nextPartNumber = 1;
+    private int inFlight;
+    // A full part waits for one of the parts being sent to complete
+    private boolean stalled;
+    private boolean upstreamDone;
+    private boolean finishing;
+    private boolean completing;
+    private boolean failed;
+    private CompletableFuture<String> uploadId;
+
+    AwsAsyncMultipartUpload(S3AsyncClient s3, String bucket, String key, long partSize, int concurrency) {
+        this.s3 = s3;
+        this.bucket = bucket;
+        this.key = key;
+        this.partSize = (int) partSize;
+        this.concurrency = Math.max(concurrency, 1);
+    }
+
+    /**
+     * @return future completed once the object is stored, or the upload aborted
+     */
+    CompletableFuture<Void> result() {
+        return result;
+    }
+
+    @Override
+    public void onSubscribe(Subscription subscription) {
+        synchronized (this) {
+            if (this.subscription != null) {
+                subscription.cancel();
+                return;
+            }
+            this.subscription = subscription;
+        }
+        subscription.request(1);
+    }
+
+    @Override
+    public void onNext(ByteBuffer byteBuffer) {
+        boolean requestMore;
+        synchronized (this) {
+            if (failed) {
+                return;
+            }
+            pending = byteBuffer;
+            requestMore = drain();
+        }
+        if (requestMore) {
+            subscription.request(1);
+        }
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        fail(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+        synchronized (this) {
+            if (failed) {
+                return;
+            }
+            upstreamDone = true;
+            // Otherwise finished once the pending bytes are buffered
+            if (!stalled) {
+                finish();
+            }
+        }
+    }
+
+    /**
+     * Copy the pending bytes into the part buffer, sending each full part if a slot is free
+     * @return true if every received byte is buffered and more can be requested
+     */
+    private boolean drain() {
+        while (true) {
+            if (buffered == partSize) {
+                if (inFlight >= concurrency) {
+                    stalled = true;
+                    return false;
+                }
+                sendPart();
+                if (failed) {
+                    return false;
+                }
+            }
+            if (pending == null || !pending.hasRemaining()) {
+                break;
+            }
+            if (buffer == null) {
+                buffer = new byte[partSize];
+                buffered = 0;
+            }
+            int length = Math.min(pending.remaining(), partSize - buffered);
+            pending.get(buffer, buffered, length);
+            buffered += length;
+        }
+        pending = null;
+        stalled = false;
+        if (upstreamDone) {
+            finish();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Send what is left once the publisher completed, then complete the upload when every part is sent
+     */
+    private void finish() {
+        finishing = true;
+        if (uploadId == null) {
+            // Everything fits in a single part
+            byte[] content = buffer == null ? new byte[0] : Arrays.copyOf(buffer, buffered);
+            buffer = null;
+            s3.putObject(PutObjectRequest.builder().bucket(bucket).key(key).build(), AsyncRequestBody.fromBytes(content))
+                    .whenComplete((response, throwable) -> {
+                        if (throwable != null) {
+                            fail(throwable);
+                        } else {
+                            result.complete(null);
+                        }
+                    });
+            return;
+        }
+        if (buffered > 0) {
+            if (inFlight >= concurrency) {
+                // Sent once a part completes
+                stalled = true;
+                return;
+            }
+            sendPart();
+        }
+        if (inFlight == 0 && !failed) {
+            complete();
+        }
+    }
+
+    /**
+     * Send the buffered bytes as the next part, starting the multipart upload on the first part
+     */
+    private void sendPart() {
+        if (nextPartNumber > MAX_PARTS) {
+            fail(new IllegalStateException("Content exceeds the maximum number of parts"));
+            return;
+        }
+        if (uploadId == null) {
+            uploadId = s3.createMultipartUpload(CreateMultipartUploadRequest.builder().bucket(bucket).key(key).build())
+                    .thenApply(CreateMultipartUploadResponse::uploadId);
+        }
+        int partNumber = nextPartNumber++;
+        byte[] content = buffered == partSize ? buffer : Arrays.copyOf(buffer, buffered);
+        buffer = null;
+        buffered = 0;
+        inFlight++;
+
+        uploadId.thenCompose(id -> s3.uploadPart(UploadPartRequest.builder()
+                        .bucket(bucket)
+                        .key(key)
+                        .uploadId(id)
+                        .partNumber(partNumber)
+                        .contentLength((long) content.length)
+                        .build(), AsyncRequestBody.fromBytes(content)))
+                .whenComplete((response, throwable) -> onPartSent(partNumber, response, throwable));
+    }
+
+    private void onPartSent(int partNumber, UploadPartResponse response, Throwable throwable) {
+        if (throwable != null) {
+            fail(throwable);
+            return;
+        }
+        boolean requestMore = false;
+        synchronized (this) {
+            inFlight--;
+            if (failed) {
+                return;
+            }
+            parts.add(CompletedPart.builder().partNumber(partNumber).eTag(response.eTag()).build());
+            if (stalled) {
+                requestMore = drain();
+            } else if (finishing && inFlight == 0) {
+                complete();
+            }
+        }
+        if (requestMore) {
+            subscription.request(1);
+        }
+    }
+
+    private void complete() {
+        // A part sent last may already have completed it
+        if (completing) {
+            return;
+        }
+        completing = true;
+        parts.sort(Comparator.comparing(CompletedPart::partNumber));
+        List<CompletedPart> completedParts = List.copyOf(parts);
+        uploadId.thenCompose(id -> s3.completeMultipartUpload(CompleteMultipartUploadRequest.builder()
+                        .bucket(bucket)
+                        .key(key)
+                        .uploadId(id)
+                        .multipartUpload(CompletedMultipartUpload.builder().parts(completedParts).build())
+                        .build()))
+                .whenComplete((response, throwable) -> {
+                    if (throwable != null) {
+                        fail(throwable);
+                    } else {
+                        result.complete(null);
+                    }
+                });
+    }
+
+    private void fail(Throwable throwable) {
+        CompletableFuture<String> startedUpload;
+        Subscription upstream;
+        synchronized (this) {
+            if (failed || result.isDone()) {
+                return;
+            }
+            failed = true;
+            buffer = null;
+            pending = null;
+            startedUpload = uploadId;
+            upstream = upstreamDone ? null : subscription;
+        }
+        if (upstream != null) {
+            upstream.cancel();
+        }
+        if (startedUpload != null) {
+            startedUpload.thenCompose(id -> s3.abortMultipartUpload(AbortMultipartUploadRequest.builder()
+                    .bucket(bucket)
+                    .key(key)
+                    .uploadId(id)
+                    .build()));
+        }
+        result.completeExceptionally(throwable);
+    }
+}
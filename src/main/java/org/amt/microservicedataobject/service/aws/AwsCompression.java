@@ -0,0 +1,157 @@
+package org.amt.microservicedataobject.service.aws;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collection;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Compression of the objects stored in S3
+ * Objects whose key has a compressible extension are stored gzip-compressed, with the Content-Encoding gzip
+ * and the length of their uncompressed content in their metadata
+ *
+ * @author De Bleser Dimitri
+ * @author Peer Vincent
+ * @author Nelson Jeanreneaud
+ */
+final class AwsCompression {
+
+    static final String GZIP = "gzip";
+    // User metadata holding the length of the content before compression, sent as x-amz-meta-uncompressed-length
+    static final String UNCOMPRESSED_LENGTH_METADATA = "uncompressed-length";
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final boolean enabled;
+    private final Set<String> extensions;
+    private final long minSize;
+
+    AwsCompression(boolean enabled, Collection<String> extensions, long minSize) {
+        this.enabled = enabled;
+        this.extensions = extensions.stream().map(extension -> extension.toLowerCase(Locale.ROOT)).collect(Collectors.toSet());
+        this.minSize = minSize;
+    }
+
+    /**
+     * @param key of the object
+     * @param contentLength size of the content, or -1 if unknown
+     * @return true if the content is to be stored compressed, its length being known
+     */
+    boolean shouldCompress(String key, long contentLength) {
+        return contentLength >= minSize && mayBeCompressed(key);
+    }
+
+    /**
+     * @param key of the object
+     * @return true if the object may be stored compressed, whatever its size
+     */
+    boolean mayBeCompressed(String key) {
+        if (!enabled) {
+            return false;
+        }
+        int dot = key.lastIndexOf('.');
+        return dot >= 0 && dot > key.lastIndexOf('/') && extensions.contains(key.substring(dot + 1).toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * @param contentEncoding Content-Encoding of an object, or null
+     * @return true if the object is stored gzip-compressed
+     */
+    static boolean isCompressed(String contentEncoding) {
+        return GZIP.equalsIgnoreCase(contentEncoding);
+    }
+
+    /**
+     * @param metadata user metadata of a compressed object
+     * @return length of its uncompressed content, or -1 if unknown
+     */
+    static long uncompressedLength(Map<String, String> metadata) {
+        try {
+            String length = metadata.get(UNCOMPRESSED_LENGTH_METADATA);
+            return length == null ? -1 : Long.parseLong(length);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * @param compressed gzip-compressed content
+     * @return the uncompressed content, decompressed as it is read
+     */
+    static InputStream decompress(InputStream compressed) throws IOException {
+        return new GZIPInputStream(compressed, BUFFER_SIZE);
+    }
+
+    /**
+     * @param compressed gzip-compressed content
+     * @param start first uncompressed byte of the range
+     * @param length number of bytes of the range
+     * @return the range of the uncompressed content, the bytes before it being decompressed and skipped
+     */
+    static InputStream decompressRange(InputStream compressed, long start, long length) throws IOException {
+        return range(decompress(compressed), start, length);
+    }
+
+    /**
+     * @param content whole content
+     * @param start first byte of the range
+     * @param length number of bytes of the range
+     * @return the range of the content, the bytes before it being skipped
+     */
+    static InputStream range(InputStream content, long start, long length) throws IOException {
+        content.skipNBytes(start);
+        return new RangeInputStream(content, length);
+    }
+
+    /**
+     * Stream ending after a number of bytes of another stream
+     */
+    private static class RangeInputStream extends FilterInputStream {
+        private long remaining;
+
+        RangeInputStream(InputStream in, long length) {
+            super(in);
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int read = super.read();
+            if (read >= 0) {
+                remaining--;
+            }
+            return read;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int read = super.read(b, off, (int) Math.min(len, remaining));
+            if (read > 0) {
+                remaining -= read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(Math.min(n, remaining));
+            remaining -= skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(super.available(), remaining);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package org.amt.microservicedataobject.service.aws;
+
+import software.amazon.awssdk.http.HttpMetric;
+import software.amazon.awssdk.metrics.MetricCollection;
+import software.amazon.awssdk.metrics.MetricPublisher;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Gauges of the connection pool of an AWS client, updated from the metrics the client publishes after each request
+ * The values are the ones seen by the last request, the peaks are kept since the creation of the client
+ *
+ * @author De Bleser Dimitri
+ * @author Peer Vincent
+ * @author Nelson Jeanreneaud
+ */
+public class AwsConnectionPoolMetrics implements MetricPublisher {
+
+    private final AtomicInteger maxConcurrency = new AtomicInteger();
+    private final AtomicInteger availableConcurrency = new AtomicInteger();
+    private final AtomicInteger leasedConcurrency = new AtomicInteger();
+    private final AtomicInteger pendingConcurrencyAcquires = new AtomicInteger();
+    private final AtomicInteger peakLeasedConcurrency = new AtomicInteger();
+    private final AtomicInteger peakPendingConcurrencyAcquires = new AtomicInteger();
+
+    @Override
+    public void publish(MetricCollection metricCollection) {
+        // Pool metrics are reported by the HTTP client, in the collections of the attempts of the call
+        update(maxConcurrency, null, metricCollection.metricValues(HttpMetric.MAX_CONCURRENCY));
+        update(availableConcurrency, null, metricCollection.metricValues(HttpMetric.AVAILABLE_CONCURRENCY));
+        update(leasedConcurrency, peakLeasedConcurrency, metricCollection.metricValues(HttpMetric.LEASED_CONCURRENCY));
+        update(pendingConcurrencyAcquires, peakPendingConcurrencyAcquires, metricCollection.metricValues(HttpMetric.PENDING_CONCURRENCY_ACQUIRES));
+        for (MetricCollection child : metricCollection.children())
+            publish(child);
+    }
+
+    private static void update(AtomicInteger gauge, AtomicInteger peak, List<Integer> values) {
+        for (Integer value : values) {
+            gauge.set(value);
+            if (peak != null) {
+                peak.accumulateAndGet(value, Math::max);
+            }
+        }
+    }
+
+    /**
+     * @return maximum number of connections of the pool
+     */
+    public int getMaxConcurrency() {
+        return maxConcurrency.get();
+    }
+
+    /**
+     * @return number of idle connections ready to be leased
+     */
+    public int getAvailableConcurrency() {
+        return availableConcurrency.get();
+    }
+
+    /**
+     * @return number of connections in use
+     */
+    public int getLeasedConcurrency() {
+        return leasedConcurrency.get();
+    }
+
+    /**
+     * @return number of requests waiting for a connection
+     */
+    public int getPendingConcurrencyAcquires() {
+        return pendingConcurrencyAcquires.get();
+    }
+
+    /**
+     * @return highest number of connections in use at the same time
+     */
+    public int getPeakLeasedConcurrency() {
+        return peakLeasedConcurrency.get();
+    }
+
+    /**
+     * @return highest number of requests waiting for a connection at the same time
+     */
+    public int getPeakPendingConcurrencyAcquires() {
+        return peakPendingConcurrencyAcquires.get();
+    }
+
+    @Override
+    public void close() {
+    }
+}
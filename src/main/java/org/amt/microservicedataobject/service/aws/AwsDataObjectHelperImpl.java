@@ -1,24 +1,56 @@
 package org.amt.microservicedataobject.service.aws;
 
+import org.amt.microservicedataobject.service.ContentHashes;
+import org.amt.microservicedataobject.service.DataObjectContent;
 import org.amt.microservicedataobject.service.DataObjectHelper;
+import org.amt.microservicedataobject.service.DataObjectListing;
+import org.amt.microservicedataobject.service.DataObjectMetadata;
+import org.amt.microservicedataobject.service.DataObjectResult;
+import org.amt.microservicedataobject.service.GzipCompressingInputStream;
+import org.amt.microservicedataobject.service.VirtualThreads;
+import org.amt.microservicedataobject.service.cache.ExpiringCache;
 import software.amazon.awssdk.awscore.exception.AwsServiceException;
+import software.amazon.awssdk.core.ResponseInputStream;
 import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.core.exception.SdkException;
 import software.amazon.awssdk.core.sync.RequestBody;
 import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.S3ClientBuilder;
 import software.amazon.awssdk.services.s3.model.*;
-import software.amazon.awssdk.services.s3.presigner.S3Presigner;
-import software.amazon.awssdk.services.s3.presigner.model.GetObjectPresignRequest;
-import software.amazon.awssdk.services.s3.presigner.model.PresignedGetObjectRequest;
 import software.amazon.awssdk.utils.IoUtils;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
+import java.nio.channels.FileChannel;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
 import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.TreeSet;
 import java.util.Vector;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.amt.microservicedataobject.service.aws.AwsCompression.GZIP;
+import static org.amt.microservicedataobject.service.aws.AwsCompression.UNCOMPRESSED_LENGTH_METADATA;
 
 
 /**
@@ -27,67 +59,276 @@ import java.util.Vector;
  * @author Peer Vincent
  * @author Nelson Jeanreneaud
  */
-public class AwsDataObjectHelperImpl implements DataObjectHelper {
+public class AwsDataObjectHelperImpl implements DataObjectHelper, AutoCloseable {
 
-    private final static String BUCKET = "amt.team08.diduno.education";
+    // Maximum number of keys returned by S3 in one listing request
+    private final static int MAX_PAGE_SIZE = 1000;
+    // Maximum number of keys deleted by S3 in one request
+    private final static int MAX_DELETE_BATCH_SIZE = 1000;
+    // User metadata holding the SHA-256 of the content, sent as x-amz-meta-sha256
+    final static String CONTENT_HASH_METADATA = "sha256";
     private final S3Client s3;
+    private final AwsShards shards;
+    private final AwsConnectionPoolMetrics connectionPoolMetrics = new AwsConnectionPoolMetrics();
+    private final AwsUrlSigner urlSigner;
+    // Missing objects are cached as empty metadata
+    private final ExpiringCache<String, Optional<DataObjectMetadata>> metadataCache;
+    private final Duration metadataCacheTtl;
+    private final Duration metadataCacheNegativeTtl;
+    private final ExecutorService transferExecutor;
+    private final AwsMultipartUploader multipartUploader;
+    private final AwsRangedDownloader rangedDownloader;
+    private final long multipartThreshold;
+    private final long partSize;
+    private final int transferConcurrency;
+    private final boolean deduplication;
+    private final long deduplicationMaxBufferSize;
+    private final LongAdder deduplicatedUploads = new LongAdder();
+    private final LongAdder deduplicatedBytes = new LongAdder();
+    private final AwsCompression compression;
+    private final LongAdder compressedUploads = new LongAdder();
+    private final LongAdder compressionBytesIn = new LongAdder();
+    private final LongAdder compressionBytesOut = new LongAdder();
 
     /**
      * Constructor
      */
     public AwsDataObjectHelperImpl(AwsServiceConfigurator awsServiceConfigurator) {
-        s3 = S3Client.builder()
+        this(awsServiceConfigurator, null);
+    }
+
+    /**
+     * @param s3 client sending the requests, or null to build it from the configuration
+     */
+    AwsDataObjectHelperImpl(AwsServiceConfigurator awsServiceConfigurator, S3Client s3) {
+        this.s3 = s3 != null ? s3 : buildClient(awsServiceConfigurator);
+        shards = new AwsShards(awsServiceConfigurator);
+        urlSigner = new AwsUrlSigner(awsServiceConfigurator);
+        metadataCache = new ExpiringCache<>(awsServiceConfigurator.getMetadataCacheSize());
+        metadataCacheTtl = awsServiceConfigurator.getMetadataCacheTtl();
+        metadataCacheNegativeTtl = awsServiceConfigurator.getMetadataCacheNegativeTtl();
+
+        if (awsServiceConfigurator.isVirtualThreads()) {
+            // The number of parts in flight is already bounded by the transfer concurrency of each transfer
+            transferExecutor = VirtualThreads.newThreadPerTaskExecutor();
+        } else {
+            AtomicInteger threadCount = new AtomicInteger();
+            transferExecutor = Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "s3-transfer-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        multipartUploader = new AwsMultipartUploader(this.s3, transferExecutor,
+                awsServiceConfigurator.getPartSize(),
+                awsServiceConfigurator.getTransferConcurrency(),
+                awsServiceConfigurator.getPartRetries());
+        rangedDownloader = new AwsRangedDownloader(this.s3, transferExecutor,
+                awsServiceConfigurator.getPartSize(),
+                awsServiceConfigurator.getTransferConcurrency(),
+                awsServiceConfigurator.getPartRetries());
+        multipartThreshold = awsServiceConfigurator.getMultipartThreshold();
+        partSize = awsServiceConfigurator.getPartSize();
+        transferConcurrency = awsServiceConfigurator.getTransferConcurrency();
+        compression = new AwsCompression(awsServiceConfigurator.isCompression(),
+                awsServiceConfigurator.getCompressedExtensions(),
+                awsServiceConfigurator.getCompressionMinSize());
+        deduplication = awsServiceConfigurator.isDeduplication();
+        deduplicationMaxBufferSize = awsServiceConfigurator.getDeduplicationMaxBufferSize();
+    }
+
+    private S3Client buildClient(AwsServiceConfigurator awsServiceConfigurator) {
+        S3ClientBuilder s3Builder = S3Client.builder()
                 .region(awsServiceConfigurator.getRegion())
                 .credentialsProvider(awsServiceConfigurator.getCredentialsProvider())
-                .build();
+                .httpClientBuilder(awsServiceConfigurator.httpClientBuilder())
+                .serviceConfiguration(awsServiceConfigurator.s3Configuration())
+                .overrideConfiguration(configuration -> {
+                    configuration.retryPolicy(awsServiceConfigurator.retryPolicy());
+                    configuration.addMetricPublisher(connectionPoolMetrics);
+                    awsServiceConfigurator.getMetricPublishers().forEach(configuration::addMetricPublisher);
+                });
+        if (awsServiceConfigurator.getEndpointOverride() != null) {
+            s3Builder.endpointOverride(awsServiceConfigurator.getEndpointOverride());
+        }
+        return s3Builder.build();
     }
 
     /**
      * Bucket name getter
-     * @return String containing the bucket name
+     * @return String containing the bucket names, separated by commas
      */
     public String getName() {
-        return BUCKET;
+        return String.join(",", shards.getBuckets());
+    }
+
+    /**
+     * @return gauges of the connection pool of the S3Client
+     */
+    public AwsConnectionPoolMetrics getConnectionPoolMetrics() {
+        return connectionPoolMetrics;
     }
 
     /**
-     * Close the S3Client
+     * Close the S3Client and the S3Presigner, and stop the transfer threads
      */
     public void close() {
+        transferExecutor.shutdownNow();
+        urlSigner.close();
         s3.close();
     }
 
     /**
-     * List files contained in the bucket
-     * @return Objects names
+     * List files contained in the buckets, following all the pages
+     * @return Objects names, sorted as S3 lists them
      */
     public Vector<String> listObjects() throws DataObjectHelperException {
         Vector<String> keys = new Vector<>();
-        ListObjectsRequest listObjects = ListObjectsRequest
+
+        try {
+            for (AwsShards.Shard shard : shards.getListedShards()) {
+                ListObjectsV2Request listObjects = ListObjectsV2Request
+                        .builder()
+                        .bucket(shard.getBucket())
+                        .prefix(shard.getPrefix().isEmpty() ? null : shard.getPrefix())
+                        .build();
+                for (S3Object myValue : s3.listObjectsV2Paginator(listObjects).contents())
+                    keys.add(shard.toFileName(myValue.key()));
+            }
+            if (shards.isSharded()) {
+                // A key being moved may be listed on both placements
+                TreeSet<String> sorted = new TreeSet<>(AwsShards.KEY_ORDER);
+                sorted.addAll(keys);
+                return new Vector<>(sorted);
+            }
+            return keys;
+        } catch (NoSuchBucketException e) {
+            throw new DataObjectNotFoundException("Bucket not found" + e.getMessage());
+        } catch (S3Exception e) {
+            if (AwsTransfers.isUnavailable(e)) {
+                throw AwsTransfers.unavailable("Error listing objects", e);
+            }
+            throw new DataObjectHelperException("Error listing objects" + e.getMessage());
+        } catch (AwsServiceException e) {
+            throw AwsTransfers.unavailable("Error listing objects", e);
+        } catch (SdkClientException e) {
+            throw new ClientException("Error listing objects" + e.getMessage());
+        }
+    }
+
+    /**
+     * List one page of files contained in the buckets
+     * When the keys are sharded, a page is listed from every shard at the same time and the pages are merged,
+     * the continuation token holding the last name of the page
+     * @param prefix only list the files starting with it, or null for all files
+     * @param delimiter group the files containing it after the prefix into common prefixes, or null
+     * @param pageSize maximum number of names in the page, at most 1000
+     * @param continuationToken token returned by the previous page, or null for the first page
+     * @return Objects names of the page
+     */
+    public DataObjectListing listObjects(String prefix, String delimiter, int pageSize, String continuationToken) throws DataObjectHelperException {
+        if (pageSize <= 0) {
+            throw new InvalidParamException("pageSize must be positive");
+        }
+        if (shards.isSharded()) {
+            return listShards(prefix, delimiter, Math.min(pageSize, MAX_PAGE_SIZE),
+                    continuationToken == null ? null : AwsShards.decodeToken(continuationToken));
+        }
+
+        ListObjectsV2Request listObjects = ListObjectsV2Request
                 .builder()
-                .bucket(BUCKET)
+                .bucket(shards.getShards().get(0).getBucket())
+                .prefix(prefix)
+                .delimiter(delimiter)
+                .maxKeys(Math.min(pageSize, MAX_PAGE_SIZE))
+                .continuationToken(continuationToken)
                 .build();
 
         try {
-            ListObjectsResponse res = s3.listObjects(listObjects);
-            List<S3Object> objects = res.contents();
-            for (S3Object myValue : objects)
+            ListObjectsV2Response res = s3.listObjectsV2(listObjects);
+            List<String> keys = new ArrayList<>(res.contents().size());
+            for (S3Object myValue : res.contents())
                 keys.add(myValue.key());
+            List<String> commonPrefixes = new ArrayList<>(res.commonPrefixes().size());
+            for (CommonPrefix commonPrefix : res.commonPrefixes())
+                commonPrefixes.add(commonPrefix.prefix());
 
-            return keys;
+            return new DataObjectListing(keys, commonPrefixes,
+                    Boolean.TRUE.equals(res.isTruncated()) ? res.nextContinuationToken() : null);
         } catch (NoSuchBucketException e) {
             throw new DataObjectNotFoundException("Bucket not found" + e.getMessage());
         } catch (S3Exception e) {
+            if (AwsTransfers.isUnavailable(e)) {
+                throw AwsTransfers.unavailable("Error listing objects", e);
+            }
+            if (e.statusCode() == 400) {
+                throw new InvalidParamException("Invalid listing parameters" + e.getMessage());
+            }
             throw new DataObjectHelperException("Error listing objects" + e.getMessage());
+        } catch (AwsServiceException e) {
+            throw AwsTransfers.unavailable("Error listing objects", e);
+        } catch (SdkClientException e) {
+            throw new ClientException("Error listing objects" + e.getMessage());
+        }
+    }
+
+    /**
+     * List a page from every shard concurrently and merge them
+     * @param startAfter last name of the previous page, or null for the first page
+     */
+    private DataObjectListing listShards(String prefix, String delimiter, int pageSize, String startAfter) throws DataObjectHelperException {
+        List<AwsShards.Shard> listed = shards.getListedShards();
+        List<Future<ListObjectsV2Response>> futures = new ArrayList<>(listed.size());
+        try {
+            for (AwsShards.Shard shard : listed)
+                futures.add(transferExecutor.submit(() ->
+                        s3.listObjectsV2(AwsShards.pageRequest(shard, prefix, delimiter, pageSize, startAfter))));
+
+            List<ListObjectsV2Response> pages = new ArrayList<>(listed.size());
+            for (Future<ListObjectsV2Response> future : futures)
+                pages.add(future.get());
+            return AwsShards.merge(listed, pages, pageSize);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ClientException("Listing interrupted");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof NoSuchBucketException) {
+                throw new DataObjectNotFoundException("Bucket not found" + cause.getMessage());
+            }
+            if (cause instanceof S3Exception && ((S3Exception) cause).statusCode() == 400) {
+                throw new InvalidParamException("Invalid listing parameters" + cause.getMessage());
+            }
+            if (cause instanceof AwsServiceException) {
+                throw AwsTransfers.unavailable("Error listing objects", (AwsServiceException) cause);
+            }
+            if (cause instanceof SdkClientException) {
+                throw new ClientException("Error listing objects" + cause.getMessage());
+            }
+            throw new DataObjectHelperException("Error listing objects" + cause.getMessage());
+        } finally {
+            futures.forEach(future -> future.cancel(true));
         }
     }
 
     /**
-     * Upload a file to the bucket
+     * Upload a file to the bucket, unless it already holds the same content under this key
      * @param targetFileName uploaded file name
      * @param file to be uploaded
      */
     public void add(String targetFileName, File file) throws NullPointerException, DataObjectHelperException {
+        addIfChanged(targetFileName, file);
+    }
+
+    /**
+     * Upload a file to the bucket, unless it already holds the same content under this key
+     * The file is hashed before the upload, its hash is stored in the metadata of the object and compared
+     * with the hash of the content uploaded next under the same key
+     * @param targetFileName uploaded file name
+     * @param file to be uploaded
+     * @return size of the file if the upload was skipped, 0 if it was uploaded
+     */
+    public long addIfChanged(String targetFileName, File file) throws NullPointerException, DataObjectHelperException {
         Objects.requireNonNull(targetFileName, "targetFileName must not be null");
         Objects.requireNonNull(file, "file must not be null");
 
@@ -95,23 +336,188 @@ public class AwsDataObjectHelperImpl implements DataObjectHelper {
             throw new NullPointerException("File does not exist");
         }
 
-        PutObjectRequest objectRequest = PutObjectRequest.builder()
-                .bucket(BUCKET)
-                .key(targetFileName)
-                .build();
+        try {
+            long length = file.length();
+            Map<String, String> metadata = new HashMap<>();
+            if (deduplication) {
+                String contentHash = ContentHashes.of(file);
+                if (isStored(targetFileName, contentHash, length)) {
+                    return skipped(length);
+                }
+                metadata.put(CONTENT_HASH_METADATA, contentHash);
+            }
+
+            AwsShards.Shard shard = shards.shardOf(targetFileName);
+            PutObjectRequest objectRequest = PutObjectRequest.builder()
+                    .bucket(shard.getBucket())
+                    .key(shard.toKey(targetFileName))
+                    .metadata(metadata)
+                    .build();
+
+            // Upload file to bucket, large files are sent in concurrent parts
+            if (compression.shouldCompress(targetFileName, length)) {
+                try (InputStream inputStream = new FileInputStream(file)) {
+                    uploadCompressed(targetFileName, inputStream, length, metadata);
+                }
+            } else if (length >= multipartThreshold) {
+                multipartUploader.upload(shard.getBucket(), shard.toKey(targetFileName), file, metadata);
+            } else {
+                s3.putObject(objectRequest, RequestBody.fromFile(file));
+            }
+            metadataCache.invalidate(targetFileName);
+            return 0;
+        } catch (S3Exception e) {
+            if (AwsTransfers.isUnavailable(e)) {
+                throw AwsTransfers.unavailable("Error adding object", e);
+            }
+            throw new DataObjectException("Error adding object" + e.getMessage());
+        } catch (AwsServiceException e) {
+            throw AwsTransfers.unavailable("Error adding object", e);
+        } catch (SdkClientException e) {
+            throw new ClientException("Error adding object" + e.getMessage());
+        } catch (IOException e) {
+            throw new DataObjectException("Error while reading file" + e.getMessage());
+        }
+    }
+
+    /**
+     * Upload the content of a stream to the bucket, unless it already holds the same content under this key
+     * @param targetFileName uploaded file name
+     * @param inputStream content to be uploaded
+     * @param contentLength number of bytes in the stream, or -1 if unknown
+     */
+    public void add(String targetFileName, InputStream inputStream, long contentLength) throws NullPointerException, DataObjectHelperException {
+        addIfChanged(targetFileName, inputStream, contentLength);
+    }
 
+    /**
+     * Upload the content of a stream to the bucket, unless it already holds the same content under this key
+     * A stream of known length up to the deduplication buffer size is hashed while it is read into the buffer
+     * it is then sent from, the upload is skipped if the object already has this hash
+     * When the length is unknown or above the multipart threshold, the stream is sent as a multipart upload
+     * with a bounded number of part buffers, so memory usage does not depend on the size of the content.
+     * Streams larger than the deduplication buffer are always uploaded, without a hash
+     * @param targetFileName uploaded file name
+     * @param inputStream content to be uploaded
+     * @param contentLength number of bytes in the stream, or -1 if unknown
+     * @return length of the content if the upload was skipped, 0 if it was uploaded
+     */
+    public long addIfChanged(String targetFileName, InputStream inputStream, long contentLength) throws NullPointerException, DataObjectHelperException {
+        Objects.requireNonNull(targetFileName, "targetFileName must not be null");
+        Objects.requireNonNull(inputStream, "inputStream must not be null");
+
+        AwsShards.Shard shard = shards.shardOf(targetFileName);
         try {
-            // Upload file to bucket
-            s3.putObject(objectRequest, RequestBody.fromFile(file));
+            if (deduplication && contentLength >= 0 && contentLength <= deduplicationMaxBufferSize) {
+                MessageDigest digest = ContentHashes.newDigest();
+                byte[] content = new DigestInputStream(inputStream, digest).readNBytes((int) contentLength);
+                if (content.length < contentLength) {
+                    throw new DataObjectException("Error adding object: expected " + contentLength + " bytes, received " + content.length);
+                }
+                String contentHash = ContentHashes.toHex(digest);
+                if (isStored(targetFileName, contentHash, contentLength)) {
+                    return skipped(contentLength);
+                }
+                Map<String, String> metadata = new HashMap<>();
+                metadata.put(CONTENT_HASH_METADATA, contentHash);
+                if (compression.shouldCompress(targetFileName, contentLength)) {
+                    uploadCompressed(targetFileName, new ByteArrayInputStream(content), contentLength, metadata);
+                } else {
+                    PutObjectRequest objectRequest = PutObjectRequest.builder()
+                            .bucket(shard.getBucket())
+                            .key(shard.toKey(targetFileName))
+                            .contentLength(contentLength)
+                            .metadata(metadata)
+                            .build();
+                    s3.putObject(objectRequest, RequestBody.fromInputStream(new ByteArrayInputStream(content), contentLength));
+                }
+            } else if (compression.shouldCompress(targetFileName, contentLength)) {
+                uploadCompressed(targetFileName, inputStream, contentLength, new HashMap<>());
+            } else if (contentLength >= 0 && contentLength < multipartThreshold) {
+                PutObjectRequest objectRequest = PutObjectRequest.builder()
+                        .bucket(shard.getBucket())
+                        .key(shard.toKey(targetFileName))
+                        .contentLength(contentLength)
+                        .build();
+                s3.putObject(objectRequest, RequestBody.fromInputStream(inputStream, contentLength));
+            } else {
+                multipartUploader.upload(shard.getBucket(), shard.toKey(targetFileName), inputStream);
+            }
+            metadataCache.invalidate(targetFileName);
+            return 0;
         } catch (S3Exception e) {
+            if (AwsTransfers.isUnavailable(e)) {
+                throw AwsTransfers.unavailable("Error adding object", e);
+            }
             throw new DataObjectException("Error adding object" + e.getMessage());
         } catch (AwsServiceException e) {
-            throw new ServiceException("Error adding object" + e.getMessage());
+            throw AwsTransfers.unavailable("Error adding object", e);
         } catch (SdkClientException e) {
             throw new ClientException("Error adding object" + e.getMessage());
+        } catch (IOException e) {
+            throw new DataObjectException("Error while reading object" + e.getMessage());
         }
     }
 
+    /**
+     * Upload a content compressed with gzip, with the length of the uncompressed content in its metadata
+     * A content smaller than a part is compressed in memory and sent in a single request, a larger one is
+     * compressed while it is sent as a multipart upload, its compressed length being unknown until its end
+     * @param contentLength length of the uncompressed content, checked once it is read
+     * @param metadata user metadata of the object
+     */
+    private void uploadCompressed(String fileName, InputStream content, long contentLength, Map<String, String> metadata) throws IOException, DataObjectHelperException {
+        AwsShards.Shard shard = shards.shardOf(fileName);
+        String key = shard.toKey(fileName);
+        metadata.put(UNCOMPRESSED_LENGTH_METADATA, String.valueOf(contentLength));
+        GzipCompressingInputStream compressed = new GzipCompressingInputStream(content);
+        if (contentLength < partSize) {
+            byte[] body = compressed.readAllBytes();
+            checkUncompressedLength(compressed, contentLength);
+            PutObjectRequest objectRequest = PutObjectRequest.builder()
+                    .bucket(shard.getBucket())
+                    .key(key)
+                    .contentLength((long) body.length)
+                    .contentEncoding(GZIP)
+                    .metadata(metadata)
+                    .build();
+            s3.putObject(objectRequest, RequestBody.fromInputStream(new ByteArrayInputStream(body), body.length));
+        } else {
+            multipartUploader.upload(shard.getBucket(), key, compressed, metadata, GZIP);
+            try {
+                checkUncompressedLength(compressed, contentLength);
+            } catch (DataObjectException e) {
+                // The recorded length is wrong, the object must not be served
+                s3.deleteObject(DeleteObjectRequest.builder().bucket(shard.getBucket()).key(key).build());
+                throw e;
+            }
+        }
+        compressedUploads.increment();
+        compressionBytesIn.add(compressed.getUncompressedLength());
+        compressionBytesOut.add(compressed.getCompressedLength());
+    }
+
+    private static void checkUncompressedLength(GzipCompressingInputStream compressed, long contentLength) throws DataObjectException {
+        if (compressed.getUncompressedLength() != contentLength) {
+            throw new DataObjectException("Error adding object: expected " + contentLength + " bytes, received " + compressed.getUncompressedLength());
+        }
+    }
+
+    /**
+     * Check the current version of an object, the cached metadata may belong to a version replaced since
+     * @return true if the object holds the content with the given hash and length
+     */
+    private boolean isStored(String fileName, String contentHash, long contentLength) throws DataObjectHelperException {
+        metadataCache.invalidate(fileName);
+        return head(fileName).map(metadata -> metadata.hasContent(contentHash, contentLength)).orElse(false);
+    }
+
+    private long skipped(long contentLength) {
+        deduplicatedUploads.increment();
+        deduplicatedBytes.add(contentLength);
+        return contentLength;
+    }
+
     /**
      * Get the file content
      * @param fileName to be downloaded
@@ -120,16 +526,17 @@ public class AwsDataObjectHelperImpl implements DataObjectHelper {
     public byte[] get(String fileName) throws DataObjectHelperException {
         Objects.requireNonNull(fileName, "fileName must not be null");
 
-        GetObjectRequest getObjectRequest = GetObjectRequest.builder()
-                .bucket(BUCKET)
-                .key(fileName)
-                .build();
         byte[] imageInByte;
 
         try {
-            InputStream stream = s3.getObject(getObjectRequest);
+            ResponseInputStream<GetObjectResponse> stream = readPlaced(fileName, shard -> s3.getObject(GetObjectRequest.builder()
+                    .bucket(shard.getBucket())
+                    .key(shard.toKey(fileName))
+                    .build()));
 
-            imageInByte = IoUtils.toByteArray(stream);
+            imageInByte = IoUtils.toByteArray(AwsCompression.isCompressed(stream.response().contentEncoding())
+                    ? AwsCompression.decompress(stream)
+                    : stream);
 
             return imageInByte;
         } catch (NoSuchKeyException e) {
@@ -137,16 +544,272 @@ public class AwsDataObjectHelperImpl implements DataObjectHelper {
         } catch (InvalidObjectStateException e) {
             throw new AccessDeniedException("Access denied" + e.getMessage());
         } catch (S3Exception e) {
+            if (AwsTransfers.isUnavailable(e)) {
+                throw AwsTransfers.unavailable("Error getting object", e);
+            }
+            throw new DataObjectException("Error getting object" + e.getMessage());
+        } catch (AwsServiceException e) {
+            throw AwsTransfers.unavailable("Error getting object", e);
+        } catch (SdkClientException e) {
+            throw new ClientException("Error getting object" + e.getMessage());
+        } catch (IOException e) {
+            throw new DataObjectException("Error while reading object" + e.getMessage());
+        }
+    }
+
+    /**
+     * Open a stream on the file content
+     * @param fileName to be downloaded
+     * @return file content, streamed from the bucket as it is read
+     */
+    public DataObjectContent getContent(String fileName) throws DataObjectHelperException {
+        return openContent(fileName, null, null, null, null);
+    }
+
+    /**
+     * Open a stream on a byte range of the file content
+     * @param fileName to be downloaded
+     * @param start first byte of the range, or a negative value to get the last -start bytes
+     * @param end last byte of the range, included, or -1 to read until the end of the file
+     * @return range of the file content, streamed from the bucket as it is read
+     */
+    public DataObjectContent getContent(String fileName, long start, long end) throws DataObjectHelperException {
+        if (start < 0 && end >= 0) {
+            throw new InvalidRangeException("A suffix range has no end");
+        }
+        if (end >= 0 && end < start) {
+            throw new InvalidRangeException("Range end is before its start");
+        }
+        return openContent(fileName, new long[]{start, end}, null, null, null);
+    }
+
+    /**
+     * Open a stream on the file content with a conditional GET, S3 answering 304 without the content
+     * when the caller already holds the current version
+     * S3 compares a single entity tag, a list of entity tags is evaluated on the metadata of the file instead
+     * @param fileName to be downloaded
+     * @param ifNoneMatch entity tags of the versions held by the caller, or null
+     * @param ifModifiedSince date of the version held by the caller, ignored with ifNoneMatch, or null
+     * @return file content, streamed from the bucket as it is read, or null if the file was not modified
+     */
+    public DataObjectContent getContentIfModified(String fileName, String ifNoneMatch, Instant ifModifiedSince) throws DataObjectHelperException {
+        return getContentIfModified(fileName, ifNoneMatch, ifModifiedSince, null);
+    }
+
+    /**
+     * Open a stream on the file content with a conditional GET, a compressed object being sent as stored
+     * when the caller accepts gzip
+     * @param fileName to be downloaded
+     * @param ifNoneMatch entity tags of the versions held by the caller, or null
+     * @param ifModifiedSince date of the version held by the caller, ignored with ifNoneMatch, or null
+     * @param acceptEncoding content codings accepted by the caller, as in an Accept-Encoding header, or null
+     * @return file content, streamed from the bucket as it is read, or null if the file was not modified
+     */
+    public DataObjectContent getContentIfModified(String fileName, String ifNoneMatch, Instant ifModifiedSince, String acceptEncoding) throws DataObjectHelperException {
+        if (ifNoneMatch == null) {
+            return openContent(fileName, null, null, ifModifiedSince, acceptEncoding);
+        }
+        List<String> entityTags = DataObjectMetadata.entityTags(ifNoneMatch);
+        if (entityTags.size() == 1 && !entityTags.get(0).equals("*")) {
+            // Without If-Modified-Since, which S3 would combine with If-None-Match instead of ignoring it
+            return openContent(fileName, null, entityTags.get(0), null, acceptEncoding);
+        }
+        if (getMetadata(fileName).isNotModified(ifNoneMatch, null)) {
+            return null;
+        }
+        return openContent(fileName, null, null, null, acceptEncoding);
+    }
+
+    /**
+     * Open a stream on the file content, a compressed object being decompressed as it is read unless the caller
+     * accepts gzip and reads it whole
+     * S3 only serves ranges of the stored bytes, so a range of a key that may be stored compressed is read from
+     * the start of the object with a single request, see openDecodedRange
+     * @param range first and last byte of the range, as in getContent, or null for the whole file
+     */
+    private DataObjectContent openContent(String fileName, long[] range, String ifNoneMatch, Instant ifModifiedSince,
+                                          String acceptEncoding) throws DataObjectHelperException {
+        Objects.requireNonNull(fileName, "fileName must not be null");
+
+        boolean decodedRange = range != null && compression.mayBeCompressed(fileName);
+        GetObjectRequest.Builder getObjectRequest = GetObjectRequest.builder()
+                .range(range == null || decodedRange ? null : range[0] < 0
+                        ? "bytes=" + range[0]
+                        : "bytes=" + range[0] + "-" + (range[1] < 0 ? "" : String.valueOf(range[1])))
+                .ifNoneMatch(ifNoneMatch)
+                .ifModifiedSince(ifModifiedSince);
+
+        try {
+            ResponseInputStream<GetObjectResponse> stream = readPlaced(fileName, shard -> s3.getObject(getObjectRequest
+                    .bucket(shard.getBucket())
+                    .key(shard.toKey(fileName))
+                    .build()));
+            GetObjectResponse response = stream.response();
+            if (decodedRange) {
+                return openDecodedRange(stream, range);
+            }
+            if (!AwsCompression.isCompressed(response.contentEncoding())
+                    || (range == null && DataObjectMetadata.acceptsEncoding(acceptEncoding, GZIP))) {
+                return new DataObjectContent(toMetadata(response, false), stream, response.contentRange());
+            }
+            if (range == null) {
+                return new DataObjectContent(toMetadata(response, true), decompress(stream));
+            }
+            // S3 served a range of the compressed bytes of an object stored before its extension was dropped
+            // from the compressed ones, or compression disabled
+            stream.abort();
+            return openDecodedRange(fileName, range, response.eTag());
+        } catch (NoSuchKeyException e) {
+            throw new KeyNotFoundException("Object not found" + e.getMessage());
+        } catch (InvalidObjectStateException e) {
+            throw new AccessDeniedException("Access denied" + e.getMessage());
+        } catch (S3Exception e) {
+            if (AwsTransfers.isUnavailable(e)) {
+                throw AwsTransfers.unavailable("Error getting object", e);
+            }
+            if (e.statusCode() == 304) {
+                return null;
+            }
+            if (e.statusCode() == 416) {
+                throw new InvalidRangeException("Range not satisfiable" + e.getMessage());
+            }
+            throw new DataObjectException("Error getting object" + e.getMessage());
+        } catch (AwsServiceException e) {
+            throw AwsTransfers.unavailable("Error getting object", e);
+        } catch (SdkClientException e) {
+            throw new ClientException("Error getting object" + e.getMessage());
+        } catch (IOException e) {
+            throw new DataObjectException("Error while reading object" + e.getMessage());
+        }
+    }
+
+    /**
+     * Open a range of the content of a compressed object, S3 only serving ranges of its compressed bytes
+     * The object is read again from its start
+     * @param range first and last byte of the range, as in getContent
+     * @param eTag ETag of the version the range was first requested on
+     */
+    private DataObjectContent openDecodedRange(String fileName, long[] range, String eTag) throws DataObjectHelperException {
+        try {
+            return openDecodedRange(readPlaced(fileName, shard -> s3.getObject(GetObjectRequest.builder()
+                    .bucket(shard.getBucket())
+                    .key(shard.toKey(fileName))
+                    .ifMatch(eTag)
+                    .build())), range);
+        } catch (NoSuchKeyException e) {
+            throw new KeyNotFoundException("Object not found" + e.getMessage());
+        } catch (InvalidObjectStateException e) {
+            throw new AccessDeniedException("Access denied" + e.getMessage());
+        } catch (S3Exception e) {
+            if (AwsTransfers.isUnavailable(e)) {
+                throw AwsTransfers.unavailable("Error getting object", e);
+            }
             throw new DataObjectException("Error getting object" + e.getMessage());
         } catch (AwsServiceException e) {
-            throw new ServiceException("Error getting object" + e.getMessage());
+            throw AwsTransfers.unavailable("Error getting object", e);
         } catch (SdkClientException e) {
             throw new ClientException("Error getting object" + e.getMessage());
+        }
+    }
+
+    /**
+     * Cut a range out of a whole object, read from its start
+     * A compressed object is decompressed up to the end of the range, as gzip has no random access: the bytes
+     * before the range are decompressed and skipped. The bytes of an uncompressed object before the range are skipped
+     * @param stream whole object
+     * @param range first and last byte of the range, as in getContent
+     */
+    private DataObjectContent openDecodedRange(ResponseInputStream<GetObjectResponse> stream, long[] range) throws DataObjectHelperException {
+        GetObjectResponse response = stream.response();
+        boolean compressed = AwsCompression.isCompressed(response.contentEncoding());
+        long total = compressed ? AwsCompression.uncompressedLength(response.metadata())
+                : response.contentLength() == null ? -1 : response.contentLength();
+        long start = range[0] < 0 ? Math.max(0, total + range[0]) : range[0];
+        long end = range[0] < 0 || range[1] < 0 ? total - 1 : Math.min(range[1], total - 1);
+        if (total < 0 || start >= total) {
+            stream.abort();
+            throw new InvalidRangeException("Range not satisfiable");
+        }
+        DataObjectMetadata content = toMetadata(response, true);
+        DataObjectMetadata metadata = new DataObjectMetadata(end - start + 1, content.getContentType(),
+                content.getETag(), content.getLastModified(), content.getContentHash());
+        try {
+            InputStream rangeStream = compressed
+                    ? AwsCompression.decompressRange(stream, start, end - start + 1)
+                    : AwsCompression.range(stream, start, end - start + 1);
+            return new DataObjectContent(metadata, rangeStream, "bytes " + start + "-" + end + "/" + total) {
+                @Override
+                public void close() throws IOException {
+                    // The bytes after the range are not read
+                    stream.abort();
+                    super.close();
+                }
+            };
         } catch (IOException e) {
+            stream.abort();
             throw new DataObjectException("Error while reading object" + e.getMessage());
         }
     }
 
+    /**
+     * Download a file into a channel, fetching its ranges concurrently
+     * @param fileName to be downloaded
+     * @param channel destination, written from its current position
+     * @return number of bytes written
+     */
+    public long download(String fileName, FileChannel channel) throws DataObjectHelperException {
+        Objects.requireNonNull(fileName, "fileName must not be null");
+        Objects.requireNonNull(channel, "channel must not be null");
+
+        try {
+            return readPlaced(fileName, shard -> rangedDownloader.download(shard.getBucket(), shard.toKey(fileName), channel));
+        } catch (NoSuchKeyException e) {
+            throw new KeyNotFoundException("Object not found" + e.getMessage());
+        } catch (S3Exception e) {
+            if (AwsTransfers.isUnavailable(e)) {
+                throw AwsTransfers.unavailable("Error downloading object", e);
+            }
+            throw new DataObjectException("Error downloading object" + e.getMessage());
+        } catch (AwsServiceException e) {
+            throw AwsTransfers.unavailable("Error downloading object", e);
+        } catch (SdkClientException e) {
+            throw new ClientException("Error downloading object" + e.getMessage());
+        } catch (IOException e) {
+            throw new DataObjectException("Error while writing object" + e.getMessage());
+        }
+    }
+
+    private static DataObjectMetadata toMetadata(GetObjectResponse response, boolean decompressed) {
+        return toMetadata(response.contentLength(), response.contentType(), response.eTag(), response.lastModified(),
+                response.contentEncoding(), response.metadata(), decompressed);
+    }
+
+    /**
+     * Describe the content of an object as it is served
+     * A decompressed content has the length recorded at its upload and a weak entity tag, the ETag of S3
+     * identifying the compressed bytes
+     * @param decompressed true if the content of a compressed object is served decompressed
+     */
+    private static DataObjectMetadata toMetadata(Long contentLength, String contentType, String eTag, Instant lastModified,
+                                                 String contentEncoding, Map<String, String> metadata, boolean decompressed) {
+        String contentHash = metadata.get(CONTENT_HASH_METADATA);
+        if (decompressed && AwsCompression.isCompressed(contentEncoding)) {
+            return new DataObjectMetadata(AwsCompression.uncompressedLength(metadata), contentType,
+                    eTag == null ? null : "W/" + eTag, lastModified, contentHash);
+        }
+        return new DataObjectMetadata(contentLength == null ? -1 : contentLength, contentType, eTag, lastModified,
+                contentHash, contentEncoding);
+    }
+
+    private static InputStream decompress(ResponseInputStream<GetObjectResponse> stream) throws IOException {
+        try {
+            return AwsCompression.decompress(stream);
+        } catch (IOException e) {
+            stream.abort();
+            throw e;
+        }
+    }
+
     /**
      * Delete a file in the bucket*
      * @param fileName to delete
@@ -156,44 +819,250 @@ public class AwsDataObjectHelperImpl implements DataObjectHelper {
 
         try {
             if (exists(fileName)) {
+                AwsShards.Shard shard = shards.shardOf(fileName);
                 DeleteObjectRequest deleteObjectRequest = DeleteObjectRequest.builder()
-                        .bucket(BUCKET)
-                        .key(fileName)
+                        .bucket(shard.getBucket())
+                        .key(shard.toKey(fileName))
                         .build();
 
                 s3.deleteObject(deleteObjectRequest);
+                // Not moved back by the next rebalancing
+                AwsShards.Shard previous = shards.previousShardOf(fileName);
+                if (previous != null) {
+                    s3.deleteObject(DeleteObjectRequest.builder()
+                            .bucket(previous.getBucket())
+                            .key(previous.toKey(fileName))
+                            .build());
+                }
+                forget(fileName);
             } else {
                 throw new KeyNotFoundException("Object not found");
             }
         } catch (S3Exception e) {
+            if (AwsTransfers.isUnavailable(e)) {
+                throw AwsTransfers.unavailable("Error deleting object", e);
+            }
             throw new DataObjectException("Error deleting object" + e.getMessage());
         } catch (AwsServiceException e) {
-            throw new ServiceException("Error deleting object" + e.getMessage());
+            throw AwsTransfers.unavailable("Error deleting object", e);
         } catch (SdkClientException e) {
             throw new ClientException("Error deleting object" + e.getMessage());
         }
     }
 
+    /**
+     * Drop everything cached about a deleted file
+     */
+    private void forget(String fileName) {
+        AwsShards.Shard shard = shards.shardOf(fileName);
+        metadataCache.invalidate(fileName);
+        urlSigner.invalidate(shard.getBucket(), shard.toKey(fileName));
+        AwsShards.Shard previous = shards.previousShardOf(fileName);
+        if (previous != null) {
+            urlSigner.invalidate(previous.getBucket(), previous.toKey(fileName));
+        }
+    }
+
+    /**
+     * Delete many files in the bucket, sending batches of DeleteObjects requests concurrently
+     * S3 reports the keys that do not exist as deleted
+     * @param fileNames to delete
+     * @return outcome for each file
+     */
+    public List<DataObjectResult> deleteAll(Collection<String> fileNames) throws DataObjectHelperException {
+        Objects.requireNonNull(fileNames, "fileNames must not be null");
+        List<String> keys = new ArrayList<>(new LinkedHashSet<>(fileNames));
+        if (keys.contains(null)) {
+            throw new InvalidParamException("fileNames must not contain null");
+        }
+
+        // A DeleteObjects request deletes keys of a single bucket
+        Map<String, Map<String, String>> keysByBucket = shards.keysByBucket(keys);
+
+        List<Future<List<DataObjectResult>>> futures = new ArrayList<>();
+        Semaphore slots = new Semaphore(transferConcurrency);
+        try {
+            for (Map.Entry<String, Map<String, String>> bucketKeys : keysByBucket.entrySet()) {
+                List<String> storedKeys = new ArrayList<>(bucketKeys.getValue().keySet());
+                for (int start = 0; start < storedKeys.size(); start += MAX_DELETE_BATCH_SIZE) {
+                    List<String> batch = storedKeys.subList(start, Math.min(start + MAX_DELETE_BATCH_SIZE, storedKeys.size()));
+                    slots.acquire();
+                    futures.add(transferExecutor.submit(() -> {
+                        try {
+                            return deleteBatch(bucketKeys.getKey(), batch, bucketKeys.getValue());
+                        } finally {
+                            slots.release();
+                        }
+                    }));
+                }
+            }
+
+            List<DataObjectResult> results = new ArrayList<>(keys.size());
+            for (Future<List<DataObjectResult>> future : futures) {
+                results.addAll(future.get());
+            }
+            return AwsShards.resultsByFile(keys, results);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            futures.forEach(future -> future.cancel(true));
+            throw new ClientException("Deletion interrupted");
+        } catch (ExecutionException e) {
+            throw new DataObjectException("Error deleting objects" + e.getCause().getMessage());
+        }
+    }
+
+    /**
+     * Delete up to 1000 files of a bucket with a single request
+     * A failure of the whole request is reported on each of its files
+     * @param batch stored keys to delete
+     * @param fileNames stored keys to the names of the files
+     */
+    private List<DataObjectResult> deleteBatch(String bucket, List<String> batch, Map<String, String> fileNames) {
+        List<DataObjectResult> results = new ArrayList<>(batch.size());
+        List<ObjectIdentifier> identifiers = new ArrayList<>(batch.size());
+        for (String key : batch)
+            identifiers.add(ObjectIdentifier.builder().key(key).build());
+
+        DeleteObjectsRequest deleteObjectsRequest = DeleteObjectsRequest.builder()
+                .bucket(bucket)
+                .delete(Delete.builder().objects(identifiers).quiet(false).build())
+                .build();
+
+        try {
+            DeleteObjectsResponse response = s3.deleteObjects(deleteObjectsRequest);
+            List<String> deletedKeys = new ArrayList<>(response.deleted().size());
+            for (DeletedObject deleted : response.deleted()) {
+                String fileName = fileNames.getOrDefault(deleted.key(), deleted.key());
+                metadataCache.invalidate(fileName);
+                deletedKeys.add(deleted.key());
+                results.add(DataObjectResult.success(fileName));
+            }
+            // Each placement of a file is deleted by the batch of its bucket
+            urlSigner.invalidate(bucket, deletedKeys);
+            for (S3Error error : response.errors())
+                results.add(DataObjectResult.failure(fileNames.getOrDefault(error.key(), error.key()), error.code() + ": " + error.message()));
+        } catch (SdkException e) {
+            for (String key : batch)
+                results.add(DataObjectResult.failure(fileNames.get(key), e.getMessage()));
+        }
+        return results;
+    }
+
     /**
      * Checks if a file exists in the bucket
      * @param fileName to check
      * @return true if the file exists, false otherwise
      */
     public boolean exists(String fileName) throws DataObjectHelperException {
+        return head(fileName).isPresent();
+    }
+
+    /**
+     * Get the metadata of a file in the bucket
+     * @param fileName to check
+     * @return size, ETag and last modification date of the file
+     */
+    public DataObjectMetadata getMetadata(String fileName) throws DataObjectHelperException {
+        return head(fileName).orElseThrow(() -> new KeyNotFoundException("Object not found"));
+    }
+
+    /**
+     * @return number of presigned URLs answered by the cache
+     */
+    public long getPresignedUrlCacheHitCount() {
+        return urlSigner.getHitCount();
+    }
+
+    /**
+     * @return number of presigned URLs that had to be signed
+     */
+    public long getPresignedUrlCacheMissCount() {
+        return urlSigner.getMissCount();
+    }
+
+    /**
+     * @return number of uploads skipped because the object already held the same content
+     */
+    public long getDeduplicatedUploadCount() {
+        return deduplicatedUploads.sum();
+    }
+
+    /**
+     * @return number of bytes not uploaded because the object already held the same content
+     */
+    public long getDeduplicatedBytes() {
+        return deduplicatedBytes.sum();
+    }
+
+    /**
+     * @return number of uploads stored compressed
+     */
+    public long getCompressedUploadCount() {
+        return compressedUploads.sum();
+    }
+
+    /**
+     * @return number of bytes of the compressed uploads before their compression
+     */
+    public long getCompressionBytesIn() {
+        return compressionBytesIn.sum();
+    }
+
+    /**
+     * @return number of bytes of the compressed uploads once compressed, as stored
+     */
+    public long getCompressionBytesOut() {
+        return compressionBytesOut.sum();
+    }
+
+    /**
+     * @return number of metadata lookups answered by the cache
+     */
+    public long getMetadataCacheHitCount() {
+        return metadataCache.getHitCount();
+    }
+
+    /**
+     * @return number of metadata lookups sent to the bucket
+     */
+    public long getMetadataCacheMissCount() {
+        return metadataCache.getMissCount();
+    }
+
+    /**
+     * Read the metadata of a file, from the cache when it is still fresh
+     * @param fileName to check
+     * @return metadata of the file, or empty if it does not exist
+     */
+    private Optional<DataObjectMetadata> head(String fileName) throws DataObjectHelperException {
         Objects.requireNonNull(fileName, "fileName must not be null");
-        HeadObjectRequest headObjectRequest = HeadObjectRequest.builder()
-                .bucket(BUCKET)
-                .key(fileName)
-                .build();
+
+        Optional<DataObjectMetadata> cached = metadataCache.get(fileName);
+        if (cached != null) {
+            return cached;
+        }
+
         try {
-            s3.headObject(headObjectRequest);
-            return true;
+            HeadObjectResponse response = readPlaced(fileName, shard -> s3.headObject(HeadObjectRequest.builder()
+                    .bucket(shard.getBucket())
+                    .key(shard.toKey(fileName))
+                    .build()));
+            // Described as getContent serves it, decompressed
+            Optional<DataObjectMetadata> metadata = Optional.of(toMetadata(response.contentLength(),
+                    response.contentType(), response.eTag(), response.lastModified(), response.contentEncoding(),
+                    response.metadata(), true));
+            metadataCache.put(fileName, metadata, metadataCacheTtl);
+            return metadata;
         } catch (NoSuchKeyException e) {
-            return false;
+            metadataCache.put(fileName, Optional.empty(), metadataCacheNegativeTtl);
+            return Optional.empty();
         } catch (S3Exception e) {
+            if (AwsTransfers.isUnavailable(e)) {
+                throw AwsTransfers.unavailable("Error checking object", e);
+            }
             throw new DataObjectException("Error checking object" + e.getMessage());
         } catch (AwsServiceException e) {
-            throw new ServiceException("Error checking object" + e.getMessage());
+            throw AwsTransfers.unavailable("Error checking object", e);
         } catch (SdkClientException e) {
             throw new ClientException("Error checking object" + e.getMessage());
         }
@@ -214,35 +1083,63 @@ public class AwsDataObjectHelperImpl implements DataObjectHelper {
             throw new InvalidParamException("linkDuration must be positive");
         }
 
+        // Hits skip the existence check, a URL to an object deleted by another client simply expires
+        AwsShards.Shard shard = shards.shardOf(fileName);
+        URL cachedUrl = urlSigner.getCached(shard.getBucket(), shard.toKey(fileName), linkDuration);
+        if (cachedUrl != null) {
+            return cachedUrl;
+        }
+
         if(!exists(fileName))
             throw new KeyNotFoundException("Object not found");
 
-        // Create an S3Presigner using the default region and credentials.
-        // This is usually done at application startup, because creating a presigner can be expensive.
-        S3Presigner presigner = S3Presigner.create();
-
-        // Create a GetObjectRequest to be pre-signed
-        GetObjectRequest getObjectRequest = GetObjectRequest.builder()
-                .bucket(BUCKET)
-                .key(fileName)
-                .build();
-
-        // Create a GetObjectPresignRequest to specify the signature duration
-        GetObjectPresignRequest getObjectPresignRequest = GetObjectPresignRequest.builder()
-                .signatureDuration(linkDuration)
-                .getObjectRequest(getObjectRequest)
-                .build();
+        if (shards.previousShardOf(fileName) != null) {
+            // Signed where the object is, on its shard of the previous placement until it is moved
+            shard = locate(fileName);
+        }
+        return urlSigner.sign(shard.getBucket(), shard.toKey(fileName), linkDuration);
+    }
 
-        // Generate the presigned request
-        PresignedGetObjectRequest presignedGetObjectRequest = presigner.presignGetObject(getObjectPresignRequest);
+    /**
+     * @return shard holding a file, its shard of the previous placement while it was not moved
+     */
+    private AwsShards.Shard locate(String fileName) throws DataObjectHelperException {
+        try {
+            return readPlaced(fileName, shard -> {
+                s3.headObject(HeadObjectRequest.builder().bucket(shard.getBucket()).key(shard.toKey(fileName)).build());
+                return shard;
+            });
+        } catch (NoSuchKeyException e) {
+            throw new KeyNotFoundException("Object not found");
+        } catch (S3Exception e) {
+            if (AwsTransfers.isUnavailable(e)) {
+                throw AwsTransfers.unavailable("Error checking object", e);
+            }
+            throw new DataObjectException("Error checking object" + e.getMessage());
+        } catch (AwsServiceException e) {
+            throw AwsTransfers.unavailable("Error checking object", e);
+        } catch (SdkClientException e) {
+            throw new ClientException("Error checking object" + e.getMessage());
+        }
+    }
 
-        // It is recommended to close the S3Presigner when it is done being used, because some credential
-        // providers (e.g. if your AWS profile is configured to assume an STS role) require system resources
-        // that need to be freed. If you are using one S3Presigner per application (as recommended), this
-        // usually is not needed.
-        presigner.close();
+    /**
+     * Read an object on its shard, then on its shard of the previous placement if it was not found and not moved yet
+     */
+    private <T, E extends Exception> T readPlaced(String fileName, ShardRead<T, E> read) throws E {
+        try {
+            return read.read(shards.shardOf(fileName));
+        } catch (NoSuchKeyException e) {
+            AwsShards.Shard previous = shards.previousShardOf(fileName);
+            if (previous == null) {
+                throw e;
+            }
+            return read.read(previous);
+        }
+    }
 
-        // Return URL.
-        return presignedGetObjectRequest.url();
+    @FunctionalInterface
+    private interface ShardRead<T, E extends Exception> {
+        T read(AwsShards.Shard shard) throws E;
     }
 }
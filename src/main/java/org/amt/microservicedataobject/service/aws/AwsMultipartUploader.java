@@ -0,0 +1,352 @@
+package org.amt.microservicedataobject.service.aws;
+
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.http.ContentStreamProvider;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.*;
+
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+
+/**
+ * Multipart upload engine sending the parts of an object concurrently
+ * Only the parts that failed are sent again, and the upload is aborted if a part keeps failing
+ *
+ * @author De Bleser Dimitri
+ * @author Peer Vincent
+ * @author Nelson Jeanreneaud
+ */
+class AwsMultipartUploader {
+
+    // S3 limits on multipart uploads
+    private static final long MIN_PART_SIZE = 5L * 1024 * 1024;
+    private static final int MAX_PARTS = 10_000;
+
+    private final S3Client s3;
+    private final ExecutorService executor;
+    private final long partSize;
+    private final int concurrency;
+    private final int partRetries;
+
+    AwsMultipartUploader(S3Client s3, ExecutorService executor, long partSize, int concurrency, int partRetries) {
+        this.s3 = s3;
+        this.executor = executor;
+        this.partSize = Math.max(partSize, MIN_PART_SIZE);
+        this.concurrency = Math.max(concurrency, 1);
+        this.partRetries = Math.max(partRetries, 0);
+    }
+
+    /**
+     * Upload a file, each part being read directly from the file when it is sent
+     * @param bucket target bucket
+     * @param key target key
+     * @param file to be uploaded
+     * @param metadata user metadata of the object
+     */
+    void upload(String bucket, String key, File file, Map<String, String> metadata) throws IOException {
+        long size = file.length();
+        // Grow the parts if the file does not fit in the maximum number of parts
+        long filePartSize = Math.max(partSize, (size + MAX_PARTS - 1) / MAX_PARTS);
+        int partCount = (int) Math.max(1, (size + filePartSize - 1) / filePartSize);
+
+        String uploadId = create(bucket, key, metadata, null);
+        List<Future<CompletedPart>> futures = new ArrayList<>();
+        Semaphore slots = new Semaphore(concurrency);
+        try {
+            for (int i = 0; i < partCount; i++) {
+                int partNumber = i + 1;
+                long offset = i * filePartSize;
+                long length = Math.min(filePartSize, size - offset);
+
+                slots.acquire();
+                throwIfFailed(futures);
+                futures.add(executor.submit(() -> {
+                    try (FilePartProvider provider = new FilePartProvider(file, offset, length)) {
+                        return uploadPart(bucket, key, uploadId, partNumber, length, provider);
+                    } finally {
+                        slots.release();
+                    }
+                }));
+            }
+            complete(bucket, key, uploadId, await(futures));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            abort(bucket, key, uploadId, futures);
+            throw SdkClientException.create("Upload interrupted", e);
+        } catch (IOException | RuntimeException e) {
+            abort(bucket, key, uploadId, futures);
+            throw e;
+        }
+    }
+
+    /**
+     * Upload a stream, keeping at most one buffer per concurrent part in memory
+     * Content smaller than a part is sent in a single request
+     * @param bucket target bucket
+     * @param key target key
+     * @param inputStream content to be uploaded
+     */
+    void upload(String bucket, String key, InputStream inputStream) throws IOException {
+        upload(bucket, key, inputStream, Map.of(), null);
+    }
+
+    /**
+     * Upload a stream, keeping at most one buffer per concurrent part in memory
+     * Content smaller than a part is sent in a single request
+     * @param bucket target bucket
+     * @param key target key
+     * @param inputStream content to be uploaded
+     * @param metadata user metadata of the object
+     * @param contentEncoding Content-Encoding of the object, or null
+     */
+    void upload(String bucket, String key, InputStream inputStream, Map<String, String> metadata,
+                String contentEncoding) throws IOException {
+        BlockingQueue<byte[]> buffers = new ArrayBlockingQueue<>(concurrency);
+        byte[] buffer = new byte[(int) partSize];
+        int allocated = 1;
+        int read = inputStream.readNBytes(buffer, 0, buffer.length);
+
+        if (read < buffer.length) {
+            s3.putObject(PutObjectRequest.builder()
+                            .bucket(bucket)
+                            .key(key)
+                            .metadata(metadata)
+                            .contentEncoding(contentEncoding)
+                            .build(),
+                    RequestBody.fromInputStream(new ByteArrayInputStream(buffer, 0, read), read));
+            return;
+        }
+
+        String uploadId = create(bucket, key, metadata, contentEncoding);
+        List<Future<CompletedPart>> futures = new ArrayList<>();
+        try {
+            int partNumber = 1;
+            while (read > 0) {
+                if (partNumber > MAX_PARTS) {
+                    throw SdkClientException.create("Content exceeds the maximum number of parts");
+                }
+                byte[] part = buffer;
+                int length = read;
+                int number = partNumber++;
+                futures.add(executor.submit(() -> {
+                    try {
+                        return uploadPart(bucket, key, uploadId, number, length,
+                                () -> new ByteArrayInputStream(part, 0, length));
+                    } finally {
+                        buffers.add(part);
+                    }
+                }));
+
+                // Reuse a buffer released by a finished part, or allocate one while under the concurrency limit
+                buffer = buffers.poll();
+                if (buffer == null) {
+                    if (allocated < concurrency) {
+                        buffer = new byte[(int) partSize];
+                        allocated++;
+                    } else {
+                        buffer = buffers.take();
+                    }
+                }
+                throwIfFailed(futures);
+                read = inputStream.readNBytes(buffer, 0, buffer.length);
+            }
+            complete(bucket, key, uploadId, await(futures));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            abort(bucket, key, uploadId, futures);
+            throw SdkClientException.create("Upload interrupted", e);
+        } catch (IOException | RuntimeException e) {
+            abort(bucket, key, uploadId, futures);
+            throw e;
+        }
+    }
+
+    private String create(String bucket, String key, Map<String, String> metadata, String contentEncoding) {
+        return s3.createMultipartUpload(CreateMultipartUploadRequest.builder()
+                .bucket(bucket)
+                .key(key)
+                .metadata(metadata)
+                .contentEncoding(contentEncoding)
+                .build()).uploadId();
+    }
+
+    private CompletedPart uploadPart(String bucket, String key, String uploadId, int partNumber, long length,
+                                     ContentStreamProvider provider) throws InterruptedException {
+        UploadPartRequest uploadPartRequest = UploadPartRequest.builder()
+                .bucket(bucket)
+                .key(key)
+                .uploadId(uploadId)
+                .partNumber(partNumber)
+                .contentLength(length)
+                .build();
+
+        for (int attempt = 0; ; attempt++) {
+            try {
+                String eTag = s3.uploadPart(uploadPartRequest,
+                        RequestBody.fromContentProvider(provider, length, "application/octet-stream")).eTag();
+                return CompletedPart.builder().partNumber(partNumber).eTag(eTag).build();
+            } catch (SdkException e) {
+                if (attempt >= partRetries || !AwsTransfers.isRetryable(e)) {
+                    throw e;
+                }
+                AwsTransfers.backoff(attempt);
+            }
+        }
+    }
+
+    private void complete(String bucket, String key, String uploadId, List<CompletedPart> parts) {
+        parts.sort(Comparator.comparing(CompletedPart::partNumber));
+        s3.completeMultipartUpload(CompleteMultipartUploadRequest.builder()
+                .bucket(bucket)
+                .key(key)
+                .uploadId(uploadId)
+                .multipartUpload(CompletedMultipartUpload.builder().parts(parts).build())
+                .build());
+    }
+
+    private void abort(String bucket, String key, String uploadId, List<Future<CompletedPart>> futures) {
+        futures.forEach(future -> future.cancel(true));
+        try {
+            s3.abortMultipartUpload(AbortMultipartUploadRequest.builder()
+                    .bucket(bucket)
+                    .key(key)
+                    .uploadId(uploadId)
+                    .build());
+        } catch (SdkException ignored) {
+            // The original failure is more relevant, S3 lifecycle rules clean up what is left behind
+        }
+    }
+
+    private static List<CompletedPart> await(List<Future<CompletedPart>> futures) throws IOException, InterruptedException {
+        List<CompletedPart> parts = new ArrayList<>(futures.size());
+        for (Future<CompletedPart> future : futures) {
+            try {
+                parts.add(future.get());
+            } catch (ExecutionException e) {
+                throw unwrap(e);
+            }
+        }
+        return parts;
+    }
+
+    private static void throwIfFailed(List<Future<CompletedPart>> futures) throws IOException, InterruptedException {
+        for (Future<CompletedPart> future : futures) {
+            if (future.isDone()) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    throw unwrap(e);
+                }
+            }
+        }
+    }
+
+    private static IOException unwrap(ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        }
+        if (cause instanceof IOException) {
+            return (IOException) cause;
+        }
+        throw SdkClientException.create("Error uploading part", cause);
+    }
+
+    /**
+     * Opens a new stream on a slice of a file for every attempt made by the SDK
+     */
+    private static class FilePartProvider implements ContentStreamProvider, Closeable {
+        private final File file;
+        private final long offset;
+        private final long length;
+        private InputStream current;
+
+        FilePartProvider(File file, long offset, long length) {
+            this.file = file;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override
+        public synchronized InputStream newStream() {
+            try {
+                close();
+                FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ).position(offset);
+                current = new LimitedInputStream(Channels.newInputStream(channel), length);
+                return current;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            if (current != null) {
+                current.close();
+                current = null;
+            }
+        }
+    }
+
+    /**
+     * Stream ending after a given number of bytes
+     */
+    private static class LimitedInputStream extends FilterInputStream {
+        private long remaining;
+
+        LimitedInputStream(InputStream in, long limit) {
+            super(in);
+            this.remaining = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int b = super.read();
+            if (b >= 0) {
+                remaining--;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int read = super.read(b, off, (int) Math.min(len, remaining));
+            if (read > 0) {
+                remaining -= read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(Math.min(n, remaining));
+            remaining -= skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(super.available(), remaining);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package org.amt.microservicedataobject.service.aws;
+
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Download engine fetching the byte ranges of an object concurrently into a file channel
+ * Every range is requested with the ETag of the object, so a download never mixes two versions of it
+ *
+ * @author De Bleser Dimitri
+ * @author Peer Vincent
+ * @author Nelson Jeanreneaud
+ */
+class AwsRangedDownloader {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final S3Client s3;
+    private final ExecutorService executor;
+    private final long chunkSize;
+    private final int concurrency;
+    private final int chunkRetries;
+
+    AwsRangedDownloader(S3Client s3, ExecutorService executor, long chunkSize, int concurrency, int chunkRetries) {
+        this.s3 = s3;
+        this.executor = executor;
+        this.chunkSize = Math.max(chunkSize, BUFFER_SIZE);
+        this.concurrency = Math.max(concurrency, 1);
+        this.chunkRetries = Math.max(chunkRetries, 0);
+    }
+
+    /**
+     * Download an object into a channel
+     * @param bucket source bucket
+     * @param key source key
+     * @param channel destination, written from its current position
+     * @return number of bytes written
+     */
+    long download(String bucket, String key, FileChannel channel) throws IOException {
+        HeadObjectResponse head = s3.headObject(HeadObjectRequest.builder()
+                .bucket(bucket)
+                .key(key)
+                .build());
+        if (AwsCompression.isCompressed(head.contentEncoding())) {
+            return downloadDecompressed(bucket, key, head.eTag(), channel);
+        }
+        long size = head.contentLength();
+        long origin = channel.position();
+        int chunkCount = (int) Math.max(1, (size + chunkSize - 1) / chunkSize);
+
+        List<Future<?>> futures = new ArrayList<>();
+        Semaphore slots = new Semaphore(concurrency);
+        try {
+            for (int i = 0; i < chunkCount && size > 0; i++) {
+                long start = i * chunkSize;
+                long end = Math.min(start + chunkSize, size) - 1;
+
+                slots.acquire();
+                throwIfFailed(futures);
+                futures.add(executor.submit(() -> {
+                    try {
+                        fetchChunk(bucket, key, head.eTag(), start, end, channel, origin);
+                        return null;
+                    } finally {
+                        slots.release();
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                get(future);
+            }
+            channel.position(origin + size);
+            return size;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            futures.forEach(future -> future.cancel(true));
+            throw SdkClientException.create("Download interrupted", e);
+        } catch (IOException | RuntimeException e) {
+            futures.forEach(future -> future.cancel(true));
+            throw e;
+        }
+    }
+
+    /**
+     * Download a compressed object in a single request, its content being decompressed as it is written
+     * The ranges of the compressed bytes cannot be decompressed on their own
+     */
+    private long downloadDecompressed(String bucket, String key, String eTag, FileChannel channel) throws IOException {
+        GetObjectRequest getObjectRequest = GetObjectRequest.builder()
+                .bucket(bucket)
+                .key(key)
+                .ifMatch(eTag)
+                .build();
+
+        try (ResponseInputStream<GetObjectResponse> stream = s3.getObject(getObjectRequest);
+             InputStream content = AwsCompression.decompress(stream)) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            long written = 0;
+            int read;
+            while ((read = content.read(buffer)) >= 0) {
+                ByteBuffer byteBuffer = ByteBuffer.wrap(buffer, 0, read);
+                while (byteBuffer.hasRemaining()) {
+                    written += channel.write(byteBuffer);
+                }
+            }
+            return written;
+        }
+    }
+
+    private void fetchChunk(String bucket, String key, String eTag, long start, long end,
+                            FileChannel channel, long origin) throws IOException, InterruptedException {
+        GetObjectRequest getObjectRequest = GetObjectRequest.builder()
+                .bucket(bucket)
+                .key(key)
+                .ifMatch(eTag)
+                .range("bytes=" + start + "-" + end)
+                .build();
+
+        for (int attempt = 0; ; attempt++) {
+            try (ResponseInputStream<GetObjectResponse> stream = s3.getObject(getObjectRequest)) {
+                // Positional writes do not move the channel position, so chunks can be written concurrently
+                byte[] buffer = new byte[BUFFER_SIZE];
+                long position = origin + start;
+                int read;
+                while ((read = stream.read(buffer)) >= 0) {
+                    ByteBuffer byteBuffer = ByteBuffer.wrap(buffer, 0, read);
+                    while (byteBuffer.hasRemaining()) {
+                        position += channel.write(byteBuffer, position);
+                    }
+                }
+                return;
+            } catch (SdkException e) {
+                if (attempt >= chunkRetries || !AwsTransfers.isRetryable(e)) {
+                    throw e;
+                }
+                AwsTransfers.backoff(attempt);
+            }
+        }
+    }
+
+    private static void throwIfFailed(List<Future<?>> futures) throws IOException, InterruptedException {
+        for (Future<?> future : futures) {
+            if (future.isDone()) {
+                get(future);
+            }
+        }
+    }
+
+    private static void get(Future<?> future) throws IOException, InterruptedException {
+        try {
+            future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw SdkClientException.create("Error downloading range", cause);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package org.amt.microservicedataobject.service.aws;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import software.amazon.awssdk.core.metrics.CoreMetric;
+import software.amazon.awssdk.http.HttpMetric;
+import software.amazon.awssdk.metrics.MetricCollection;
+import software.amazon.awssdk.metrics.MetricPublisher;
+import software.amazon.awssdk.metrics.SdkMetric;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Records the metrics published by the AWS clients after each request in a Micrometer registry
+ * - aws.sdk.api.calls: duration of the calls, retries included, by operation and success
+ * - aws.sdk.api.call.attempts: duration of each HTTP attempt, by operation and HTTP status
+ * - aws.sdk.api.call.retries: number of attempts retried, by operation
+ *
+ * @author De Bleser Dimitri
+ * @author Peer Vincent
+ * @author Nelson Jeanreneaud
+ */
+public class AwsRequestMetrics implements MetricPublisher {
+
+    private final MeterRegistry meterRegistry;
+
+    public AwsRequestMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public void publish(MetricCollection metricCollection) {
+        String service = first(metricCollection, CoreMetric.SERVICE_ID, "unknown");
+        String operation = first(metricCollection, CoreMetric.OPERATION_NAME, "unknown");
+
+        Duration duration = first(metricCollection, CoreMetric.API_CALL_DURATION, null);
+        if (duration != null) {
+            Timer.builder("aws.sdk.api.calls")
+                    .description("Duration of the calls to AWS, retries included")
+                    .tag("service", service)
+                    .tag("operation", operation)
+                    .tag("successful", String.valueOf(first(metricCollection, CoreMetric.API_CALL_SUCCESSFUL, false)))
+                    .publishPercentileHistogram()
+                    .register(meterRegistry)
+                    .record(duration);
+        }
+
+        int retries = first(metricCollection, CoreMetric.RETRY_COUNT, 0);
+        if (retries > 0) {
+            Counter.builder("aws.sdk.api.call.retries")
+                    .description("Attempts of calls to AWS sent again")
+                    .tag("service", service)
+                    .tag("operation", operation)
+                    .register(meterRegistry)
+                    .increment(retries);
+        }
+
+        // Each attempt is a child collection, holding the HTTP metrics
+        for (MetricCollection attempt : metricCollection.children()) {
+            Duration attemptDuration = first(attempt, CoreMetric.SERVICE_CALL_DURATION, null);
+            if (attemptDuration != null) {
+                Integer status = first(attempt, HttpMetric.HTTP_STATUS_CODE, null);
+                Timer.builder("aws.sdk.api.call.attempts")
+                        .description("Duration of the HTTP attempts of the calls to AWS")
+                        .tag("service", service)
+                        .tag("operation", operation)
+                        .tag("status", status == null ? "none" : String.valueOf(status))
+                        .register(meterRegistry)
+                        .record(attemptDuration);
+            }
+        }
+    }
+
+    private static <T> T first(MetricCollection metricCollection, SdkMetric<T> metric, T defaultValue) {
+        List<T> values = metricCollection.metricValues(metric);
+        return values.isEmpty() ? defaultValue : values.get(0);
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -1,10 +1,26 @@
 package org.amt.microservicedataobject.service.aws;
 
+import io.netty.channel.ChannelOption;
+import org.amt.microservicedataobject.service.VirtualThreads;
 import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
 import software.amazon.awssdk.auth.credentials.EnvironmentVariableCredentialsProvider;
 import software.amazon.awssdk.auth.credentials.ProfileCredentialsProvider;
+import software.amazon.awssdk.core.retry.RetryPolicy;
+import software.amazon.awssdk.core.retry.backoff.FullJitterBackoffStrategy;
+import software.amazon.awssdk.http.SdkHttpClient;
+import software.amazon.awssdk.http.apache.ApacheHttpClient;
+import software.amazon.awssdk.http.async.SdkAsyncHttpClient;
+import software.amazon.awssdk.http.nio.netty.NettyNioAsyncHttpClient;
+import software.amazon.awssdk.http.urlconnection.UrlConnectionHttpClient;
+import software.amazon.awssdk.metrics.MetricPublisher;
 import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3Configuration;
 
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.Objects;
 
 /**
@@ -16,24 +32,115 @@ import java.util.Objects;
  */
 public class AwsServiceConfigurator {
     private static final Region DEFAULT_REGION = Region.EU_WEST_2;
+    private static final List<String> DEFAULT_BUCKETS = List.of("amt.team08.diduno.education");
+    // Keys of a shard prefix are at most 3 hexadecimal digits
+    private static final int MAX_SHARD_PREFIXES = 4096;
+    private static final long DEFAULT_MULTIPART_THRESHOLD = 16L * 1024 * 1024;
+    private static final long DEFAULT_PART_SIZE = 8L * 1024 * 1024;
+    private static final int DEFAULT_TRANSFER_CONCURRENCY = 8;
+    private static final int DEFAULT_PART_RETRIES = 3;
+    private static final int DEFAULT_RETRIES = 3;
+    private static final Duration DEFAULT_RETRY_BASE_DELAY = Duration.ofMillis(100);
+    private static final Duration DEFAULT_THROTTLING_RETRY_BASE_DELAY = Duration.ofMillis(500);
+    private static final Duration DEFAULT_RETRY_MAX_BACKOFF = Duration.ofSeconds(20);
+    private static final int DEFAULT_PRESIGNED_URL_CACHE_SIZE = 10_000;
+    private static final Duration DEFAULT_PRESIGNED_URL_MAX_AGE = Duration.ofMinutes(5);
+    private static final int DEFAULT_METADATA_CACHE_SIZE = 10_000;
+    private static final Duration DEFAULT_METADATA_CACHE_TTL = Duration.ofSeconds(5);
+    private static final Duration DEFAULT_METADATA_CACHE_NEGATIVE_TTL = Duration.ofSeconds(1);
+    private static final long DEFAULT_DEDUPLICATION_MAX_BUFFER_SIZE = 8L * 1024 * 1024;
+    private static final List<String> DEFAULT_COMPRESSED_EXTENSIONS = List.of(
+            "json", "jsonl", "ndjson", "csv", "tsv", "txt", "log", "xml", "html", "md", "yaml", "yml");
+    private static final long DEFAULT_COMPRESSION_MIN_SIZE = 1024;
+    private static final int DEFAULT_MAX_CONNECTIONS = 50;
+    private static final Duration DEFAULT_CONNECTION_ACQUISITION_TIMEOUT = Duration.ofSeconds(10);
+    private static final Duration DEFAULT_CONNECTION_TIMEOUT = Duration.ofSeconds(2);
+    private static final Duration DEFAULT_SOCKET_TIMEOUT = Duration.ofSeconds(30);
+    private static final Duration DEFAULT_CONNECTION_MAX_IDLE_TIME = Duration.ofSeconds(60);
     private final Region region;
     private final AwsCredentialsProvider credentialsProvider;
+    private final List<String> buckets;
+    private final int shardPrefixes;
+    private final List<String> previousBuckets;
+    private final int previousShardPrefixes;
+    private final long multipartThreshold;
+    private final long partSize;
+    private final int transferConcurrency;
+    private final int partRetries;
+    private final int retries;
+    private final Duration retryBaseDelay;
+    private final Duration throttlingRetryBaseDelay;
+    private final Duration retryMaxBackoff;
+    private final int presignedUrlCacheSize;
+    private final Duration presignedUrlMaxAge;
+    private final int metadataCacheSize;
+    private final Duration metadataCacheTtl;
+    private final Duration metadataCacheNegativeTtl;
+    private final boolean deduplication;
+    private final long deduplicationMaxBufferSize;
+    private final boolean compression;
+    private final List<String> compressedExtensions;
+    private final long compressionMinSize;
+    private final boolean virtualThreads;
+    private final HttpClientType httpClientType;
+    private final int maxConnections;
+    private final Duration connectionAcquisitionTimeout;
+    private final Duration connectionTimeout;
+    private final Duration socketTimeout;
+    private final boolean tcpKeepAlive;
+    private final Duration connectionMaxIdleTime;
+    private final boolean idleConnectionReaper;
+    private final URI endpointOverride;
+    private final List<MetricPublisher> metricPublishers;
 
     private static boolean isRegionInvalid(String region) {
         return Region.regions().stream().noneMatch(r -> r.equals(Region.of(region)));
     }
 
-    private AwsServiceConfigurator(Region region, AwsCredentialsProvider credentialsProvider) {
-        if (region == null) {
+    private AwsServiceConfigurator(Builder builder) {
+        if (builder.region == null) {
             this.region = DEFAULT_REGION;
         } else {
-            this.region = region;
+            this.region = builder.region;
         }
-        if (credentialsProvider == null) {
+        if (builder.credentialsProvider == null) {
             this.credentialsProvider = ProfileCredentialsProvider.create();
         } else {
-            this.credentialsProvider = credentialsProvider;
+            this.credentialsProvider = builder.credentialsProvider;
         }
+        this.buckets = builder.buckets == null ? DEFAULT_BUCKETS : builder.buckets;
+        this.shardPrefixes = builder.shardPrefixes;
+        this.previousBuckets = builder.previousBuckets == null ? List.of() : builder.previousBuckets;
+        this.previousShardPrefixes = builder.previousShardPrefixes;
+        this.multipartThreshold = builder.multipartThreshold == null ? DEFAULT_MULTIPART_THRESHOLD : builder.multipartThreshold;
+        this.partSize = builder.partSize == null ? DEFAULT_PART_SIZE : builder.partSize;
+        this.transferConcurrency = builder.transferConcurrency == null ? DEFAULT_TRANSFER_CONCURRENCY : builder.transferConcurrency;
+        this.partRetries = builder.partRetries == null ? DEFAULT_PART_RETRIES : builder.partRetries;
+        this.retries = builder.retries == null ? DEFAULT_RETRIES : builder.retries;
+        this.retryBaseDelay = builder.retryBaseDelay == null ? DEFAULT_RETRY_BASE_DELAY : builder.retryBaseDelay;
+        this.throttlingRetryBaseDelay = builder.throttlingRetryBaseDelay == null ? DEFAULT_THROTTLING_RETRY_BASE_DELAY : builder.throttlingRetryBaseDelay;
+        this.retryMaxBackoff = builder.retryMaxBackoff == null ? DEFAULT_RETRY_MAX_BACKOFF : builder.retryMaxBackoff;
+        this.presignedUrlCacheSize = builder.presignedUrlCacheSize == null ? DEFAULT_PRESIGNED_URL_CACHE_SIZE : builder.presignedUrlCacheSize;
+        this.presignedUrlMaxAge = builder.presignedUrlMaxAge == null ? DEFAULT_PRESIGNED_URL_MAX_AGE : builder.presignedUrlMaxAge;
+        this.metadataCacheSize = builder.metadataCacheSize == null ? DEFAULT_METADATA_CACHE_SIZE : builder.metadataCacheSize;
+        this.metadataCacheTtl = builder.metadataCacheTtl == null ? DEFAULT_METADATA_CACHE_TTL : builder.metadataCacheTtl;
+        this.metadataCacheNegativeTtl = builder.metadataCacheNegativeTtl == null ? DEFAULT_METADATA_CACHE_NEGATIVE_TTL : builder.metadataCacheNegativeTtl;
+        this.deduplication = builder.deduplication != null && builder.deduplication;
+        this.deduplicationMaxBufferSize = builder.deduplicationMaxBufferSize == null ? DEFAULT_DEDUPLICATION_MAX_BUFFER_SIZE : builder.deduplicationMaxBufferSize;
+        this.compression = builder.compression;
+        this.compressedExtensions = builder.compressedExtensions == null ? DEFAULT_COMPRESSED_EXTENSIONS : builder.compressedExtensions;
+        this.compressionMinSize = builder.compressionMinSize == null ? DEFAULT_COMPRESSION_MIN_SIZE : builder.compressionMinSize;
+        this.virtualThreads = builder.virtualThreads;
+        this.httpClientType = builder.httpClientType == null ? HttpClientType.APACHE : builder.httpClientType;
+        this.maxConnections = builder.maxConnections == null ? DEFAULT_MAX_CONNECTIONS : builder.maxConnections;
+        this.connectionAcquisitionTimeout = builder.connectionAcquisitionTimeout == null ? DEFAULT_CONNECTION_ACQUISITION_TIMEOUT : builder.connectionAcquisitionTimeout;
+        this.connectionTimeout = builder.connectionTimeout == null ? DEFAULT_CONNECTION_TIMEOUT : builder.connectionTimeout;
+        this.socketTimeout = builder.socketTimeout == null ? DEFAULT_SOCKET_TIMEOUT : builder.socketTimeout;
+        this.tcpKeepAlive = builder.tcpKeepAlive;
+        this.connectionMaxIdleTime = builder.connectionMaxIdleTime == null ? DEFAULT_CONNECTION_MAX_IDLE_TIME : builder.connectionMaxIdleTime;
+        this.idleConnectionReaper = builder.idleConnectionReaper == null || builder.idleConnectionReaper;
+        this.endpointOverride = builder.endpointOverride;
+        this.metricPublishers = List.copyOf(builder.metricPublishers);
     }
 
     public Region getRegion() {
@@ -44,10 +151,359 @@ public class AwsServiceConfigurator {
         return credentialsProvider;
     }
 
+    /**
+     * @return buckets the objects are spread on, a key being stored in one of them
+     */
+    public List<String> getBuckets() {
+        return buckets;
+    }
+
+    /**
+     * @return number of hashed prefixes the keys of each bucket are spread on, 0 for keys stored as named
+     */
+    public int getShardPrefixes() {
+        return shardPrefixes;
+    }
+
+    /**
+     * @return buckets of the placement the objects are being moved from, read when a key is not found where it is
+     * placed, or empty
+     */
+    public List<String> getPreviousBuckets() {
+        return previousBuckets;
+    }
+
+    /**
+     * @return number of hashed prefixes of the placement the objects are being moved from
+     */
+    public int getPreviousShardPrefixes() {
+        return previousShardPrefixes;
+    }
+
+    /**
+     * @return size in bytes from which objects are sent as multipart uploads
+     */
+    public long getMultipartThreshold() {
+        return multipartThreshold;
+    }
+
+    /**
+     * @return size in bytes of the parts of a multipart transfer
+     */
+    public long getPartSize() {
+        return partSize;
+    }
+
+    /**
+     * @return number of parts transferred at the same time for one object
+     */
+    public int getTransferConcurrency() {
+        return transferConcurrency;
+    }
+
+    /**
+     * @return number of times a failed part is sent again before the transfer is aborted
+     */
+    public int getPartRetries() {
+        return partRetries;
+    }
+
+    /**
+     * @return number of times the AWS clients send a throttled or failed request again
+     */
+    public int getRetries() {
+        return retries;
+    }
+
+    /**
+     * @return base of the random delay before sending a failed request again
+     */
+    public Duration getRetryBaseDelay() {
+        return retryBaseDelay;
+    }
+
+    /**
+     * @return base of the random delay before sending a throttled request again
+     */
+    public Duration getThrottlingRetryBaseDelay() {
+        return throttlingRetryBaseDelay;
+    }
+
+    /**
+     * @return maximum delay before sending a request again
+     */
+    public Duration getRetryMaxBackoff() {
+        return retryMaxBackoff;
+    }
+
+    /**
+     * @return maximum number of presigned URLs kept in cache, 0 to disable the cache
+     */
+    public int getPresignedUrlCacheSize() {
+        return presignedUrlCacheSize;
+    }
+
+    /**
+     * @return maximum duration during which a presigned URL is returned again
+     */
+    public Duration getPresignedUrlMaxAge() {
+        return presignedUrlMaxAge;
+    }
+
+    /**
+     * @return maximum number of object metadata kept in cache, 0 to disable the cache
+     */
+    public int getMetadataCacheSize() {
+        return metadataCacheSize;
+    }
+
+    /**
+     * @return duration during which the metadata of an existing object is reused
+     */
+    public Duration getMetadataCacheTtl() {
+        return metadataCacheTtl;
+    }
+
+    /**
+     * @return duration during which a missing object is remembered as missing
+     */
+    public Duration getMetadataCacheNegativeTtl() {
+        return metadataCacheNegativeTtl;
+    }
+
+    /**
+     * @return true if uploads are skipped when the bucket already holds the same content under the same key
+     */
+    public boolean isDeduplication() {
+        return deduplication;
+    }
+
+    /**
+     * @return size in bytes up to which a stream is buffered in memory to be hashed before its upload,
+     * larger streams are uploaded without deduplication
+     */
+    public long getDeduplicationMaxBufferSize() {
+        return deduplicationMaxBufferSize;
+    }
+
+    /**
+     * @return true if the contents of compressible objects are stored gzip-compressed
+     */
+    public boolean isCompression() {
+        return compression;
+    }
+
+    /**
+     * @return extensions of the keys whose contents are compressed, without their dot
+     */
+    public List<String> getCompressedExtensions() {
+        return compressedExtensions;
+    }
+
+    /**
+     * @return size in bytes from which contents are compressed
+     */
+    public long getCompressionMinSize() {
+        return compressionMinSize;
+    }
+
+    /**
+     * @return true if the parts of multipart transfers are sent from virtual threads
+     */
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    /**
+     * @return implementation of the HTTP client of the blocking AWS client
+     */
+    public HttpClientType getHttpClientType() {
+        return httpClientType;
+    }
+
+    /**
+     * @return maximum number of connections to AWS kept by a client
+     */
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    /**
+     * @return maximum time a request waits for a connection of the pool
+     */
+    public Duration getConnectionAcquisitionTimeout() {
+        return connectionAcquisitionTimeout;
+    }
+
+    /**
+     * @return maximum time to establish a connection
+     */
+    public Duration getConnectionTimeout() {
+        return connectionTimeout;
+    }
+
+    /**
+     * @return maximum time without data received or sent on an open connection
+     */
+    public Duration getSocketTimeout() {
+        return socketTimeout;
+    }
+
+    /**
+     * @return true if TCP keep-alive probes are sent on idle connections
+     */
+    public boolean isTcpKeepAlive() {
+        return tcpKeepAlive;
+    }
+
+    /**
+     * @return time after which an idle connection is closed
+     */
+    public Duration getConnectionMaxIdleTime() {
+        return connectionMaxIdleTime;
+    }
+
+    /**
+     * @return true if idle connections are closed in the background
+     */
+    public boolean isIdleConnectionReaper() {
+        return idleConnectionReaper;
+    }
+
+    /**
+     * @return endpoint of an S3-compatible storage used instead of AWS, or null for AWS
+     */
+    public URI getEndpointOverride() {
+        return endpointOverride;
+    }
+
+    /**
+     * @return publishers receiving the metrics of every request of the AWS clients
+     */
+    public List<MetricPublisher> getMetricPublishers() {
+        return metricPublishers;
+    }
+
+    /**
+     * S3-compatible storages address the buckets in the path rather than in the host name
+     * @return settings of the S3 clients
+     */
+    public S3Configuration s3Configuration() {
+        return S3Configuration.builder()
+                .pathStyleAccessEnabled(endpointOverride != null)
+                .build();
+    }
+
+    /**
+     * Create the retry policy of the AWS clients
+     * Throttled requests, 5xx responses and I/O errors are sent again after a random delay up to a maximum doubling
+     * with each attempt (full jitter), so the clients throttled together do not retry together
+     * The default retry condition also stops retrying once most recent requests failed, instead of multiplying the load
+     * @return the retry policy
+     */
+    public RetryPolicy retryPolicy() {
+        return RetryPolicy.builder()
+                .numRetries(retries)
+                .backoffStrategy(FullJitterBackoffStrategy.builder()
+                        .baseDelay(retryBaseDelay)
+                        .maxBackoffTime(retryMaxBackoff)
+                        .build())
+                .throttlingBackoffStrategy(FullJitterBackoffStrategy.builder()
+                        .baseDelay(throttlingRetryBaseDelay)
+                        .maxBackoffTime(retryMaxBackoff)
+                        .build())
+                .build();
+    }
+
+    /**
+     * Create the HTTP client of a blocking AWS client with the transport settings
+     * @return builder of the HTTP client
+     */
+    public SdkHttpClient.Builder<?> httpClientBuilder() {
+        if (httpClientType == HttpClientType.URL_CONNECTION) {
+            // No connection pool to configure, the JDK keeps the connections alive itself
+            return UrlConnectionHttpClient.builder()
+                    .connectionTimeout(connectionTimeout)
+                    .socketTimeout(socketTimeout);
+        }
+        return ApacheHttpClient.builder()
+                .maxConnections(maxConnections)
+                .connectionAcquisitionTimeout(connectionAcquisitionTimeout)
+                .connectionTimeout(connectionTimeout)
+                .socketTimeout(socketTimeout)
+                .tcpKeepAlive(tcpKeepAlive)
+                .connectionMaxIdleTime(connectionMaxIdleTime)
+                .useIdleConnectionReaper(idleConnectionReaper);
+    }
+
+    /**
+     * Create the HTTP client of a non-blocking AWS client with the transport settings
+     * @return builder of the HTTP client
+     */
+    public SdkAsyncHttpClient.Builder<?> asyncHttpClientBuilder() {
+        return NettyNioAsyncHttpClient.builder()
+                .maxConcurrency(maxConnections)
+                .connectionAcquisitionTimeout(connectionAcquisitionTimeout)
+                .connectionTimeout(connectionTimeout)
+                .readTimeout(socketTimeout)
+                .writeTimeout(socketTimeout)
+                .putChannelOption(ChannelOption.SO_KEEPALIVE, tcpKeepAlive)
+                .connectionMaxIdleTime(connectionMaxIdleTime)
+                .useIdleConnectionReaper(idleConnectionReaper);
+    }
+
+    /**
+     * Implementations of the HTTP client of the blocking AWS client
+     * The CRT client is not available with this version of the AWS SDK
+     */
+    public enum HttpClientType {
+        /**
+         * Apache HttpClient, with a configurable connection pool
+         */
+        APACHE,
+        /**
+         * HttpURLConnection of the JDK, lighter but without pool settings
+         */
+        URL_CONNECTION
+    }
+
     @SuppressWarnings("UnusedReturnValue")
     public static class Builder {
         private Region region;
         private AwsCredentialsProvider credentialsProvider;
+        private List<String> buckets;
+        private int shardPrefixes;
+        private List<String> previousBuckets;
+        private int previousShardPrefixes;
+        private Long multipartThreshold;
+        private Long partSize;
+        private Integer transferConcurrency;
+        private Integer partRetries;
+        private Integer retries;
+        private Duration retryBaseDelay;
+        private Duration throttlingRetryBaseDelay;
+        private Duration retryMaxBackoff;
+        private Integer presignedUrlCacheSize;
+        private Duration presignedUrlMaxAge;
+        private Integer metadataCacheSize;
+        private Duration metadataCacheTtl;
+        private Duration metadataCacheNegativeTtl;
+        private Boolean deduplication;
+        private Long deduplicationMaxBufferSize;
+        private boolean compression;
+        private List<String> compressedExtensions;
+        private Long compressionMinSize;
+        private boolean virtualThreads;
+        private HttpClientType httpClientType;
+        private Integer maxConnections;
+        private Duration connectionAcquisitionTimeout;
+        private Duration connectionTimeout;
+        private Duration socketTimeout;
+        private boolean tcpKeepAlive;
+        private Duration connectionMaxIdleTime;
+        private Boolean idleConnectionReaper;
+        private URI endpointOverride;
+        private final List<MetricPublisher> metricPublishers = new ArrayList<>();
 
         public Builder withRegion(String region) {
             if (isRegionInvalid(region)) {
@@ -79,9 +535,251 @@ public class AwsServiceConfigurator {
             return this;
         }
 
+        public Builder withBuckets(Collection<String> buckets) {
+            this.buckets = checkBuckets(buckets);
+            return this;
+        }
+
+        public Builder withShardPrefixes(int shardPrefixes) {
+            this.shardPrefixes = checkShardPrefixes(shardPrefixes);
+            return this;
+        }
+
+        /**
+         * Placement the objects are being moved from, while a rebalancing runs
+         */
+        public Builder withPreviousPlacement(Collection<String> buckets, int shardPrefixes) {
+            this.previousBuckets = checkBuckets(buckets);
+            this.previousShardPrefixes = checkShardPrefixes(shardPrefixes);
+            return this;
+        }
+
+        private static List<String> checkBuckets(Collection<String> buckets) {
+            Objects.requireNonNull(buckets);
+            if (buckets.isEmpty()) {
+                throw new IllegalArgumentException("At least one bucket is required");
+            }
+            for (String bucket : buckets) {
+                if (bucket == null || bucket.isBlank() || bucket.contains("/")) {
+                    throw new IllegalArgumentException("Invalid bucket: " + bucket);
+                }
+            }
+            if (buckets.stream().distinct().count() < buckets.size()) {
+                throw new IllegalArgumentException("Duplicate bucket: " + buckets);
+            }
+            return List.copyOf(buckets);
+        }
+
+        private static int checkShardPrefixes(int shardPrefixes) {
+            if (shardPrefixes < 0 || shardPrefixes > MAX_SHARD_PREFIXES) {
+                throw new IllegalArgumentException("Invalid shard prefixes: " + shardPrefixes);
+            }
+            return shardPrefixes;
+        }
+
+        public Builder withMultipartThreshold(long multipartThreshold) {
+            if (multipartThreshold < 0) {
+                throw new IllegalArgumentException("Invalid multipart threshold: " + multipartThreshold);
+            }
+            this.multipartThreshold = multipartThreshold;
+            return this;
+        }
+
+        public Builder withPartSize(long partSize) {
+            if (partSize < 5L * 1024 * 1024) {
+                throw new IllegalArgumentException("Part size must be at least 5MB: " + partSize);
+            }
+            this.partSize = partSize;
+            return this;
+        }
+
+        public Builder withTransferConcurrency(int transferConcurrency) {
+            if (transferConcurrency < 1) {
+                throw new IllegalArgumentException("Invalid transfer concurrency: " + transferConcurrency);
+            }
+            this.transferConcurrency = transferConcurrency;
+            return this;
+        }
+
+        public Builder withPartRetries(int partRetries) {
+            if (partRetries < 0) {
+                throw new IllegalArgumentException("Invalid part retries: " + partRetries);
+            }
+            this.partRetries = partRetries;
+            return this;
+        }
+
+        public Builder withRetries(int retries) {
+            if (retries < 0) {
+                throw new IllegalArgumentException("Invalid retries: " + retries);
+            }
+            this.retries = retries;
+            return this;
+        }
+
+        public Builder withRetryBaseDelay(Duration retryBaseDelay) {
+            this.retryBaseDelay = positive(retryBaseDelay, "retry base delay");
+            return this;
+        }
+
+        public Builder withThrottlingRetryBaseDelay(Duration throttlingRetryBaseDelay) {
+            this.throttlingRetryBaseDelay = positive(throttlingRetryBaseDelay, "throttling retry base delay");
+            return this;
+        }
+
+        public Builder withRetryMaxBackoff(Duration retryMaxBackoff) {
+            this.retryMaxBackoff = positive(retryMaxBackoff, "retry max backoff");
+            return this;
+        }
+
+        public Builder withPresignedUrlCacheSize(int presignedUrlCacheSize) {
+            if (presignedUrlCacheSize < 0) {
+                throw new IllegalArgumentException("Invalid presigned URL cache size: " + presignedUrlCacheSize);
+            }
+            this.presignedUrlCacheSize = presignedUrlCacheSize;
+            return this;
+        }
+
+        public Builder withPresignedUrlMaxAge(Duration presignedUrlMaxAge) {
+            Objects.requireNonNull(presignedUrlMaxAge);
+            this.presignedUrlMaxAge = presignedUrlMaxAge;
+            return this;
+        }
+
+        public Builder withMetadataCacheSize(int metadataCacheSize) {
+            if (metadataCacheSize < 0) {
+                throw new IllegalArgumentException("Invalid metadata cache size: " + metadataCacheSize);
+            }
+            this.metadataCacheSize = metadataCacheSize;
+            return this;
+        }
+
+        public Builder withMetadataCacheTtl(Duration metadataCacheTtl) {
+            Objects.requireNonNull(metadataCacheTtl);
+            this.metadataCacheTtl = metadataCacheTtl;
+            return this;
+        }
+
+        public Builder withMetadataCacheNegativeTtl(Duration metadataCacheNegativeTtl) {
+            Objects.requireNonNull(metadataCacheNegativeTtl);
+            this.metadataCacheNegativeTtl = metadataCacheNegativeTtl;
+            return this;
+        }
+
+        public Builder withDeduplication(boolean deduplication) {
+            this.deduplication = deduplication;
+            return this;
+        }
+
+        public Builder withDeduplicationMaxBufferSize(long deduplicationMaxBufferSize) {
+            if (deduplicationMaxBufferSize < 0 || deduplicationMaxBufferSize > Integer.MAX_VALUE - 8) {
+                throw new IllegalArgumentException("Invalid deduplication max buffer size: " + deduplicationMaxBufferSize);
+            }
+            this.deduplicationMaxBufferSize = deduplicationMaxBufferSize;
+            return this;
+        }
+
+        public Builder withCompression(boolean compression) {
+            this.compression = compression;
+            return this;
+        }
+
+        public Builder withCompressedExtensions(Collection<String> compressedExtensions) {
+            Objects.requireNonNull(compressedExtensions);
+            for (String extension : compressedExtensions) {
+                if (extension == null || extension.isBlank() || extension.contains(".")) {
+                    throw new IllegalArgumentException("Invalid compressed extension: " + extension);
+                }
+            }
+            this.compressedExtensions = List.copyOf(compressedExtensions);
+            return this;
+        }
+
+        public Builder withCompressionMinSize(long compressionMinSize) {
+            if (compressionMinSize < 0) {
+                throw new IllegalArgumentException("Invalid compression min size: " + compressionMinSize);
+            }
+            this.compressionMinSize = compressionMinSize;
+            return this;
+        }
+
+        public Builder withVirtualThreads(boolean virtualThreads) {
+            if (virtualThreads && !VirtualThreads.isAvailable()) {
+                throw new IllegalArgumentException("Virtual threads require Java 21");
+            }
+            this.virtualThreads = virtualThreads;
+            return this;
+        }
+
+        public Builder withHttpClientType(HttpClientType httpClientType) {
+            Objects.requireNonNull(httpClientType);
+            this.httpClientType = httpClientType;
+            return this;
+        }
+
+        public Builder withMaxConnections(int maxConnections) {
+            if (maxConnections < 1) {
+                throw new IllegalArgumentException("Invalid max connections: " + maxConnections);
+            }
+            this.maxConnections = maxConnections;
+            return this;
+        }
+
+        public Builder withConnectionAcquisitionTimeout(Duration connectionAcquisitionTimeout) {
+            this.connectionAcquisitionTimeout = positive(connectionAcquisitionTimeout, "connection acquisition timeout");
+            return this;
+        }
+
+        public Builder withConnectionTimeout(Duration connectionTimeout) {
+            this.connectionTimeout = positive(connectionTimeout, "connection timeout");
+            return this;
+        }
+
+        public Builder withSocketTimeout(Duration socketTimeout) {
+            this.socketTimeout = positive(socketTimeout, "socket timeout");
+            return this;
+        }
+
+        public Builder withTcpKeepAlive(boolean tcpKeepAlive) {
+            this.tcpKeepAlive = tcpKeepAlive;
+            return this;
+        }
+
+        public Builder withConnectionMaxIdleTime(Duration connectionMaxIdleTime) {
+            this.connectionMaxIdleTime = positive(connectionMaxIdleTime, "connection max idle time");
+            return this;
+        }
+
+        public Builder withIdleConnectionReaper(boolean idleConnectionReaper) {
+            this.idleConnectionReaper = idleConnectionReaper;
+            return this;
+        }
+
+        public Builder withEndpointOverride(URI endpointOverride) {
+            Objects.requireNonNull(endpointOverride);
+            if (!"http".equals(endpointOverride.getScheme()) && !"https".equals(endpointOverride.getScheme())) {
+                throw new IllegalArgumentException("Invalid endpoint: " + endpointOverride);
+            }
+            this.endpointOverride = endpointOverride;
+            return this;
+        }
+
+        public Builder withMetricPublisher(MetricPublisher metricPublisher) {
+            Objects.requireNonNull(metricPublisher);
+            this.metricPublishers.add(metricPublisher);
+            return this;
+        }
+
+        private static Duration positive(Duration duration, String name) {
+            Objects.requireNonNull(duration);
+            if (duration.isNegative() || duration.isZero()) {
+                throw new IllegalArgumentException("Invalid " + name + ": " + duration);
+            }
+            return duration;
+        }
 
         public AwsServiceConfigurator build() {
-            return new AwsServiceConfigurator(region, credentialsProvider);
+            return new AwsServiceConfigurator(this);
         }
     }
 
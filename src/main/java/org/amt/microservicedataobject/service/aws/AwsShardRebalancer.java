@@ -0,0 +1,262 @@
+package org.amt.microservicedataobject.service.aws;
+
+import org.amt.microservicedataobject.service.DataObjectHelper;
+import org.amt.microservicedataobject.service.DataObjectResult;
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.S3ClientBuilder;
+import software.amazon.awssdk.services.s3.model.*;
+import software.amazon.awssdk.utils.http.SdkHttpUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Move the objects stored with a previous placement of the keys to the shards of the configured placement
+ * Each object not where the configured placement puts it is copied by S3 to its new key, then deleted
+ * An object already written at its new key since the placement changed is newer: the old copy is only deleted
+ * Writes should be paused while it runs, a key written with the previous placement meanwhile would not be moved
+ * Reads keep working meanwhile when the helpers are configured with the previous placement, see
+ * {@link AwsServiceConfigurator.Builder#withPreviousPlacement}: a key not moved yet is read from its previous shard
+ * Running it again resumes an interrupted rebalancing
+ *
+ * @author De Bleser Dimitri
+ * @author Peer Vincent
+ * @author Nelson Jeanreneaud
+ */
+public class AwsShardRebalancer implements AutoCloseable {
+
+    // Largest object copied by a single CopyObject, larger ones are copied by parts
+    private static final long MAX_COPY_SIZE = 5L * 1024 * 1024 * 1024;
+    private static final long MIN_PART_SIZE = 5L * 1024 * 1024;
+    private static final int MAX_PARTS = 10_000;
+
+    private final S3Client s3;
+    private final AwsShards previous;
+    private final AwsShards current;
+    private final long partSize;
+    private final int concurrency;
+    private final ExecutorService executor;
+
+    /**
+     * @param awsServiceConfigurator configuration of the client, and the placement to move the objects to
+     * @param previousBuckets buckets of the previous placement
+     * @param previousShardPrefixes number of hashed prefixes of the previous placement
+     */
+    public AwsShardRebalancer(AwsServiceConfigurator awsServiceConfigurator, List<String> previousBuckets, int previousShardPrefixes) {
+        S3ClientBuilder s3Builder = S3Client.builder()
+                .region(awsServiceConfigurator.getRegion())
+                .credentialsProvider(awsServiceConfigurator.getCredentialsProvider())
+                .httpClientBuilder(awsServiceConfigurator.httpClientBuilder())
+                .serviceConfiguration(awsServiceConfigurator.s3Configuration())
+                .overrideConfiguration(configuration -> configuration.retryPolicy(awsServiceConfigurator.retryPolicy()));
+        if (awsServiceConfigurator.getEndpointOverride() != null) {
+            s3Builder.endpointOverride(awsServiceConfigurator.getEndpointOverride());
+        }
+        s3 = s3Builder.build();
+        previous = new AwsShards(new AwsServiceConfigurator.Builder()
+                .withBuckets(previousBuckets)
+                .withShardPrefixes(previousShardPrefixes)
+                .build());
+        current = new AwsShards(awsServiceConfigurator);
+        partSize = Math.max(awsServiceConfigurator.getPartSize(), MIN_PART_SIZE);
+        concurrency = Math.max(awsServiceConfigurator.getTransferConcurrency(), 1);
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(concurrency, runnable -> {
+            Thread thread = new Thread(runnable, "s3-rebalance-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * List every shard of the previous placement and move the objects that the configured placement puts elsewhere
+     * @return what was moved, and the objects that could not be
+     * @throws DataObjectHelper.ServiceException if a listing fails
+     */
+    public Report rebalance() throws DataObjectHelper.DataObjectHelperException {
+        Report report = new Report();
+        Semaphore slots = new Semaphore(concurrency);
+        try {
+            for (AwsShards.Shard shard : previous.getShards()) {
+                ListObjectsV2Request request = ListObjectsV2Request.builder()
+                        .bucket(shard.getBucket())
+                        .prefix(shard.getPrefix())
+                        .build();
+                for (S3Object object : s3.listObjectsV2Paginator(request).contents()) {
+                    // Also skips the objects this run already moved to a later key of the same bucket
+                    if (current.holder(shard.getBucket(), object.key()) != null) {
+                        report.placed.increment();
+                        continue;
+                    }
+                    String fileName = shard.toFileName(object.key());
+                    slots.acquire();
+                    executor.execute(() -> {
+                        try {
+                            move(shard.getBucket(), object.key(), fileName, object.size(), report);
+                        } finally {
+                            slots.release();
+                        }
+                    });
+                }
+            }
+            slots.acquire(concurrency);
+            slots.release(concurrency);
+        } catch (SdkException e) {
+            throw new DataObjectHelper.ServiceException(e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DataObjectHelper.ServiceException("Rebalancing interrupted");
+        }
+        return report;
+    }
+
+    private void move(String bucket, String key, String fileName, long size, Report report) {
+        AwsShards.Shard target = current.shardOf(fileName);
+        String targetKey = target.toKey(fileName);
+        try {
+            if (exists(target.getBucket(), targetKey)) {
+                report.superseded.increment();
+            } else {
+                if (size > MAX_COPY_SIZE) {
+                    copyParts(bucket, key, target.getBucket(), targetKey, size);
+                } else {
+                    s3.copyObject(CopyObjectRequest.builder()
+                            .copySource(copySource(bucket, key))
+                            .destinationBucket(target.getBucket())
+                            .destinationKey(targetKey)
+                            .metadataDirective(MetadataDirective.COPY)
+                            .build());
+                }
+                report.moved.increment();
+                report.movedBytes.add(size);
+            }
+            s3.deleteObject(DeleteObjectRequest.builder().bucket(bucket).key(key).build());
+        } catch (SdkException e) {
+            report.failures.add(DataObjectResult.failure(fileName, e.getMessage()));
+        }
+    }
+
+    /**
+     * Copy an object larger than a single copy allows, part by part, keeping its metadata
+     */
+    private void copyParts(String bucket, String key, String targetBucket, String targetKey, long size) {
+        HeadObjectResponse head = s3.headObject(HeadObjectRequest.builder().bucket(bucket).key(key).build());
+        String uploadId = s3.createMultipartUpload(CreateMultipartUploadRequest.builder()
+                .bucket(targetBucket)
+                .key(targetKey)
+                .contentType(head.contentType())
+                .contentEncoding(head.contentEncoding())
+                .metadata(head.metadata())
+                .build()).uploadId();
+        try {
+            long objectPartSize = Math.max(partSize, (size + MAX_PARTS - 1) / MAX_PARTS);
+            List<CompletedPart> parts = new ArrayList<>();
+            for (long offset = 0; offset < size; offset += objectPartSize) {
+                int partNumber = parts.size() + 1;
+                long end = Math.min(offset + objectPartSize, size) - 1;
+                UploadPartCopyResponse response = s3.uploadPartCopy(UploadPartCopyRequest.builder()
+                        .copySource(copySource(bucket, key))
+                        .copySourceRange("bytes=" + offset + "-" + end)
+                        .bucket(targetBucket)
+                        .key(targetKey)
+                        .uploadId(uploadId)
+                        .partNumber(partNumber)
+                        .build());
+                parts.add(CompletedPart.builder().partNumber(partNumber).eTag(response.copyPartResult().eTag()).build());
+            }
+            s3.completeMultipartUpload(CompleteMultipartUploadRequest.builder()
+                    .bucket(targetBucket)
+                    .key(targetKey)
+                    .uploadId(uploadId)
+                    .multipartUpload(CompletedMultipartUpload.builder().parts(parts).build())
+                    .build());
+        } catch (SdkException e) {
+            s3.abortMultipartUpload(AbortMultipartUploadRequest.builder()
+                    .bucket(targetBucket).key(targetKey).uploadId(uploadId).build());
+            throw e;
+        }
+    }
+
+    private boolean exists(String bucket, String key) {
+        try {
+            s3.headObject(HeadObjectRequest.builder().bucket(bucket).key(key).build());
+            return true;
+        } catch (NoSuchKeyException e) {
+            return false;
+        } catch (S3Exception e) {
+            if (e.statusCode() == 404) {
+                return false;
+            }
+            throw e;
+        }
+    }
+
+    private static String copySource(String bucket, String key) {
+        return bucket + "/" + SdkHttpUtils.urlEncodeIgnoreSlashes(key);
+    }
+
+    /**
+     * Close the S3Client and stop the copy threads
+     */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+        s3.close();
+    }
+
+    /**
+     * Outcome of a rebalancing
+     */
+    public static class Report {
+        private final LongAdder placed = new LongAdder();
+        private final LongAdder moved = new LongAdder();
+        private final LongAdder movedBytes = new LongAdder();
+        private final LongAdder superseded = new LongAdder();
+        private final List<DataObjectResult> failures = Collections.synchronizedList(new ArrayList<>());
+
+        /**
+         * @return number of objects already where the configured placement puts them
+         */
+        public long getPlaced() {
+            return placed.sum();
+        }
+
+        /**
+         * @return number of objects copied to their new key
+         */
+        public long getMoved() {
+            return moved.sum();
+        }
+
+        public long getMovedBytes() {
+            return movedBytes.sum();
+        }
+
+        /**
+         * @return number of objects only deleted, a newer copy being already stored at their new key
+         */
+        public long getSuperseded() {
+            return superseded.sum();
+        }
+
+        /**
+         * @return objects that could not be moved, left at their previous key
+         */
+        public List<DataObjectResult> getFailures() {
+            return List.copyOf(failures);
+        }
+
+        @Override
+        public String toString() {
+            return "placed=" + getPlaced() + ", moved=" + getMoved() + " (" + getMovedBytes() + " bytes)"
+                    + ", superseded=" + getSuperseded() + ", failures=" + failures.size();
+        }
+    }
+}
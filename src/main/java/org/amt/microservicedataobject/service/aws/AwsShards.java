@@ -0,0 +1,344 @@
+package org.amt.microservicedataobject.service.aws;
+
+import org.amt.microservicedataobject.service.DataObjectHelper;
+import org.amt.microservicedataobject.service.DataObjectListing;
+import org.amt.microservicedataobject.service.DataObjectResult;
+import software.amazon.awssdk.services.s3.model.CommonPrefix;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * Placement of the objects on shards, a shard being a bucket and a hashed prefix of the keys stored in it
+ * Spreading the keys on several buckets and prefixes spreads the requests on as many S3 partitions
+ * Each key is placed by rendezvous hashing: adding or removing a shard only moves the keys of this shard
+ * With a single bucket and no prefixes, the keys are stored as named
+ * While the objects are moved from a previous placement, a key not found on its shard is read from its shard of the
+ * previous placement, the listings include the shards of both placements and a deletion deletes the key from both
+ *
+ * @author De Bleser Dimitri
+ * @author Peer Vincent
+ * @author Nelson Jeanreneaud
+ */
+final class AwsShards {
+
+    // Names sort as S3 lists them, by code point: the UTF-8 byte order
+    static final Comparator<String> KEY_ORDER = AwsShards::compareCodePoints;
+    // Sorts after every key starting with a common prefix, to list what follows it
+    private static final String AFTER_PREFIX = new String(Character.toChars(Character.MAX_CODE_POINT));
+
+    private final List<Shard> shards;
+    // Placement the objects are being moved from, or null
+    private final AwsShards previous;
+
+    /**
+     * @param buckets buckets the keys are spread on
+     * @param prefixes number of hashed prefixes in each bucket, 0 or 1 for keys stored as named
+     */
+    AwsShards(List<String> buckets, int prefixes) {
+        this(buckets, prefixes, null);
+    }
+
+    /**
+     * @param previous placement the objects are being moved from, or null
+     */
+    AwsShards(List<String> buckets, int prefixes, AwsShards previous) {
+        List<Shard> shards = new ArrayList<>();
+        int width = prefixes > 1 ? Integer.toHexString(prefixes - 1).length() : 0;
+        for (String bucket : buckets) {
+            if (prefixes > 1) {
+                for (int i = 0; i < prefixes; i++)
+                    shards.add(new Shard(bucket, String.format("%0" + width + "x/", i)));
+            } else {
+                shards.add(new Shard(bucket, ""));
+            }
+        }
+        this.shards = List.copyOf(shards);
+        this.previous = previous;
+    }
+
+    AwsShards(AwsServiceConfigurator awsServiceConfigurator) {
+        this(awsServiceConfigurator.getBuckets(), awsServiceConfigurator.getShardPrefixes(),
+                awsServiceConfigurator.getPreviousBuckets().isEmpty() ? null
+                        : new AwsShards(awsServiceConfigurator.getPreviousBuckets(), awsServiceConfigurator.getPreviousShardPrefixes()));
+    }
+
+    List<Shard> getShards() {
+        return shards;
+    }
+
+    /**
+     * @return shards to list, those of the previous placement included while the objects are moved from it
+     */
+    List<Shard> getListedShards() {
+        if (previous == null) {
+            return shards;
+        }
+        LinkedHashSet<Shard> listed = new LinkedHashSet<>(shards);
+        listed.addAll(previous.shards);
+        return List.copyOf(listed);
+    }
+
+    /**
+     * @return buckets of the shards, in the configured order
+     */
+    List<String> getBuckets() {
+        return shards.stream().map(Shard::getBucket).distinct().collect(Collectors.toList());
+    }
+
+    /**
+     * @return true unless the keys are stored as named in a single bucket, with no previous placement, the listings
+     * of the shards then being merged
+     */
+    boolean isSharded() {
+        return getListedShards().size() > 1 || !shards.get(0).getPrefix().isEmpty();
+    }
+
+    /**
+     * @return shard holding a key, the one with the highest score for the key
+     */
+    Shard shardOf(String fileName) {
+        if (shards.size() == 1) {
+            return shards.get(0);
+        }
+        long hash = hash(fileName);
+        Shard placed = null;
+        long best = 0;
+        for (Shard shard : shards) {
+            long score = mix(hash ^ shard.seed);
+            if (placed == null || Long.compareUnsigned(score, best) > 0) {
+                placed = shard;
+                best = score;
+            }
+        }
+        return placed;
+    }
+
+    /**
+     * @return shard of the previous placement holding a key that was not moved yet, or null if the key was not
+     * placed elsewhere
+     */
+    Shard previousShardOf(String fileName) {
+        if (previous == null) {
+            return null;
+        }
+        Shard placed = previous.shardOf(fileName);
+        return placed.equals(shardOf(fileName)) ? null : placed;
+    }
+
+    /**
+     * Keys to delete for files, on their shard and on their shard of the previous placement, grouped by bucket
+     * A key left on the previous placement would otherwise be moved back by the next rebalancing
+     * @return bucket to the stored keys to the names of the files
+     */
+    Map<String, Map<String, String>> keysByBucket(Collection<String> fileNames) {
+        Map<String, Map<String, String>> keysByBucket = new LinkedHashMap<>();
+        for (String fileName : fileNames) {
+            Shard shard = shardOf(fileName);
+            keysByBucket.computeIfAbsent(shard.getBucket(), bucket -> new LinkedHashMap<>()).put(shard.toKey(fileName), fileName);
+            Shard previousShard = previousShardOf(fileName);
+            if (previousShard != null) {
+                keysByBucket.computeIfAbsent(previousShard.getBucket(), bucket -> new LinkedHashMap<>())
+                        .put(previousShard.toKey(fileName), fileName);
+            }
+        }
+        return keysByBucket;
+    }
+
+    /**
+     * One outcome for each file deleted from several shards, in the order of the files, a failure on any shard failing it
+     */
+    static List<DataObjectResult> resultsByFile(Collection<String> fileNames, List<DataObjectResult> results) {
+        Map<String, DataObjectResult> byFile = new LinkedHashMap<>();
+        for (String fileName : fileNames)
+            byFile.put(fileName, null);
+        for (DataObjectResult result : results)
+            byFile.merge(result.getFileName(), result, (kept, other) -> kept.isSuccessful() ? other : kept);
+        List<DataObjectResult> merged = new ArrayList<>(byFile.size());
+        byFile.forEach((fileName, result) -> merged.add(result != null ? result : DataObjectResult.success(fileName)));
+        return merged;
+    }
+
+    /**
+     * @param bucket bucket holding a stored key
+     * @param key stored key, prefix included
+     * @return the shard of this placement holding the key, or null if the key is not where this placement puts it
+     */
+    Shard holder(String bucket, String key) {
+        for (Shard shard : shards) {
+            if (shard.getBucket().equals(bucket) && key.startsWith(shard.getPrefix())
+                    && shardOf(shard.toFileName(key)) == shard) {
+                return shard;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Request of one page of the listing of a shard
+     * @param startAfter last name of the previous page, or null
+     */
+    static ListObjectsV2Request pageRequest(Shard shard, String prefix, String delimiter, int pageSize, String startAfter) {
+        return ListObjectsV2Request.builder()
+                .bucket(shard.getBucket())
+                .prefix(shard.getPrefix() + (prefix == null ? "" : prefix))
+                .delimiter(delimiter)
+                .maxKeys(pageSize)
+                .startAfter(startAfter == null ? null : shard.getPrefix() + startAfter)
+                .build();
+    }
+
+    /**
+     * Merge the pages listed from the shards into a single page, the names of every shard being sorted
+     * A common prefix found in several shards is listed once
+     * @param pages page of each shard, listed by pageRequest
+     * @return first names of the merged pages, followed by a token starting after the last one
+     */
+    static DataObjectListing merge(List<Shard> shards, List<ListObjectsV2Response> pages, int pageSize) {
+        // Name to true for a common prefix
+        TreeMap<String, Boolean> names = new TreeMap<>(KEY_ORDER);
+        boolean truncated = false;
+        for (int i = 0; i < shards.size(); i++) {
+            Shard shard = shards.get(i);
+            ListObjectsV2Response page = pages.get(i);
+            for (S3Object object : page.contents())
+                names.putIfAbsent(shard.toFileName(object.key()), false);
+            for (CommonPrefix commonPrefix : page.commonPrefixes())
+                names.put(shard.toFileName(commonPrefix.prefix()), true);
+            truncated |= Boolean.TRUE.equals(page.isTruncated());
+        }
+
+        List<String> keys = new ArrayList<>();
+        List<String> commonPrefixes = new ArrayList<>();
+        String last = null;
+        for (Map.Entry<String, Boolean> name : names.entrySet()) {
+            if (keys.size() + commonPrefixes.size() == pageSize) {
+                truncated = true;
+                break;
+            }
+            (name.getValue() ? commonPrefixes : keys).add(name.getKey());
+            last = name.getValue() ? name.getKey() + AFTER_PREFIX : name.getKey();
+        }
+        return new DataObjectListing(keys, commonPrefixes, truncated && last != null ? encodeToken(last) : null);
+    }
+
+    static String encodeToken(String startAfter) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(startAfter.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static String decodeToken(String continuationToken) throws DataObjectHelper.InvalidParamException {
+        try {
+            return new String(Base64.getUrlDecoder().decode(continuationToken), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new DataObjectHelper.InvalidParamException("Invalid continuation token");
+        }
+    }
+
+    /**
+     * 64-bit FNV-1a of the UTF-8 bytes
+     */
+    private static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /**
+     * Finalizer of MurmurHash3, spreading the bits of the combined hashes
+     */
+    private static long mix(long value) {
+        value = (value ^ (value >>> 33)) * 0xff51afd7ed558ccdL;
+        value = (value ^ (value >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return value ^ (value >>> 33);
+    }
+
+    private static int compareCodePoints(String a, String b) {
+        int i = 0;
+        int j = 0;
+        while (i < a.length() && j < b.length()) {
+            int codePointA = a.codePointAt(i);
+            int codePointB = b.codePointAt(j);
+            if (codePointA != codePointB) {
+                return Integer.compare(codePointA, codePointB);
+            }
+            i += Character.charCount(codePointA);
+            j += Character.charCount(codePointB);
+        }
+        return Integer.compare(a.length() - i, b.length() - j);
+    }
+
+    /**
+     * A bucket and the prefix of the keys stored in it
+     */
+    static final class Shard {
+        private final String bucket;
+        private final String prefix;
+        private final long seed;
+
+        Shard(String bucket, String prefix) {
+            this.bucket = bucket;
+            this.prefix = prefix;
+            this.seed = hash(bucket + "/" + prefix);
+        }
+
+        String getBucket() {
+            return bucket;
+        }
+
+        String getPrefix() {
+            return prefix;
+        }
+
+        /**
+         * @return key storing a file in the bucket
+         */
+        String toKey(String fileName) {
+            return prefix + fileName;
+        }
+
+        /**
+         * @return name of the file stored under a key of the bucket
+         */
+        String toFileName(String key) {
+            return key.substring(prefix.length());
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this == other) {
+                return true;
+            }
+            if (!(other instanceof Shard)) {
+                return false;
+            }
+            Shard shard = (Shard) other;
+            return bucket.equals(shard.bucket) && prefix.equals(shard.prefix);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(bucket, prefix);
+        }
+
+        @Override
+        public String toString() {
+            return bucket + "/" + prefix;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package org.amt.microservicedataobject.service.aws;
+
+import org.amt.microservicedataobject.service.DataObjectHelper;
+import software.amazon.awssdk.awscore.exception.AwsServiceException;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.core.exception.SdkException;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Retry rules shared by the multipart transfers, and translation of the failures of an overloaded storage
+ *
+ * @author De Bleser Dimitri
+ * @author Peer Vincent
+ * @author Nelson Jeanreneaud
+ */
+final class AwsTransfers {
+
+    private static final long RETRY_BASE_DELAY_MS = 100;
+
+    private AwsTransfers() {
+    }
+
+    /**
+     * @return true if the failed request may succeed when sent again
+     */
+    static boolean isRetryable(SdkException e) {
+        if (e instanceof AwsServiceException) {
+            int status = ((AwsServiceException) e).statusCode();
+            return status >= 500 || status == 429;
+        }
+        return e instanceof SdkClientException;
+    }
+
+    /**
+     * @return true if S3 throttled the request or failed to serve it, rather than refusing it
+     */
+    static boolean isUnavailable(AwsServiceException e) {
+        return e.isThrottlingException() || e.statusCode() >= 500;
+    }
+
+    /**
+     * @param message describing the failed action
+     * @return ThrottlingException if S3 asked to slow down, ServiceException otherwise
+     */
+    static DataObjectHelper.ServiceException unavailable(String message, AwsServiceException e) {
+        if (e.isThrottlingException()) {
+            return new DataObjectHelper.ThrottlingException(message + e.getMessage());
+        }
+        return new DataObjectHelper.ServiceException(message + e.getMessage());
+    }
+
+    /**
+     * Wait before the next attempt, a random delay up to twice the previous maximum (full jitter)
+     * Randomized delays keep the parts failed together from being sent again together
+     * @param attempt number of attempts already made, starting at 0
+     */
+    static void backoff(int attempt) throws InterruptedException {
+        Thread.sleep(ThreadLocalRandom.current().nextLong((RETRY_BASE_DELAY_MS << attempt) + 1));
+    }
+}
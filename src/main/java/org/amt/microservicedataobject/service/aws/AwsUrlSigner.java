@@ -0,0 +1,120 @@
+package org.amt.microservicedataobject.service.aws;
+
+import org.amt.microservicedataobject.service.cache.ExpiringCache;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+import software.amazon.awssdk.services.s3.presigner.model.GetObjectPresignRequest;
+import software.amazon.awssdk.services.s3.presigner.model.PresignedGetObjectRequest;
+
+import java.net.URL;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Presigns download URLs with a single long-lived presigner, and reuses them while they are far from their expiry
+ * The cached URLs are indexed by object, so those of deleted objects are dropped without scanning the cache
+ *
+ * @author De Bleser Dimitri
+ * @author Peer Vincent
+ * @author Nelson Jeanreneaud
+ */
+class AwsUrlSigner implements AutoCloseable {
+
+    // A cached URL is returned again only while it keeps this share of the requested validity
+    private static final double PRESIGNED_URL_REUSE_RATIO = 0.1;
+
+    private final S3Presigner presigner;
+    private final ExpiringCache<String, URL> presignedUrls;
+    private final Duration presignedUrlMaxAge;
+
+    AwsUrlSigner(AwsServiceConfigurator awsServiceConfigurator) {
+        S3Presigner.Builder presignerBuilder = S3Presigner.builder()
+                .region(awsServiceConfigurator.getRegion())
+                .credentialsProvider(awsServiceConfigurator.getCredentialsProvider())
+                .serviceConfiguration(awsServiceConfigurator.s3Configuration());
+        if (awsServiceConfigurator.getEndpointOverride() != null) {
+            presignerBuilder.endpointOverride(awsServiceConfigurator.getEndpointOverride());
+        }
+        presigner = presignerBuilder.build();
+        presignedUrls = new ExpiringCache<>(awsServiceConfigurator.getPresignedUrlCacheSize(), AwsUrlSigner::objectOf);
+        presignedUrlMaxAge = awsServiceConfigurator.getPresignedUrlMaxAge();
+    }
+
+    /**
+     * @return a URL still valid for most of the duration, or null if none is cached
+     */
+    URL getCached(String bucket, String key, Duration linkDuration) {
+        return presignedUrls.get(cacheKey(bucket, key, linkDuration));
+    }
+
+    /**
+     * Presign a new URL and cache it
+     * @return URL valid for the given duration
+     */
+    URL sign(String bucket, String key, Duration linkDuration) {
+        // Create a GetObjectRequest to be pre-signed
+        GetObjectRequest getObjectRequest = GetObjectRequest.builder()
+                .bucket(bucket)
+                .key(key)
+                .build();
+
+        // Create a GetObjectPresignRequest to specify the signature duration
+        GetObjectPresignRequest getObjectPresignRequest = GetObjectPresignRequest.builder()
+                .signatureDuration(linkDuration)
+                .getObjectRequest(getObjectRequest)
+                .build();
+
+        // Generate the presigned request with the presigner shared by all the calls
+        PresignedGetObjectRequest presignedGetObjectRequest = presigner.presignGetObject(getObjectPresignRequest);
+
+        // Keep the URL while most of its validity is left
+        Duration reuseDuration = Duration.ofMillis((long) (linkDuration.toMillis() * PRESIGNED_URL_REUSE_RATIO));
+        presignedUrls.put(cacheKey(bucket, key, linkDuration), presignedGetObjectRequest.url(),
+                reuseDuration.compareTo(presignedUrlMaxAge) < 0 ? reuseDuration : presignedUrlMaxAge);
+
+        return presignedGetObjectRequest.url();
+    }
+
+    /**
+     * Drop the URLs of a deleted object
+     */
+    void invalidate(String bucket, String key) {
+        presignedUrls.invalidateGroups(List.of(bucket + "/" + key));
+    }
+
+    /**
+     * Drop the URLs of objects deleted together, in a single pass
+     */
+    void invalidate(String bucket, Collection<String> keys) {
+        List<String> objects = new ArrayList<>(keys.size());
+        for (String key : keys)
+            objects.add(bucket + "/" + key);
+        presignedUrls.invalidateGroups(objects);
+    }
+
+    long getHitCount() {
+        return presignedUrls.getHitCount();
+    }
+
+    long getMissCount() {
+        return presignedUrls.getMissCount();
+    }
+
+    private static String cacheKey(String bucket, String key, Duration linkDuration) {
+        return linkDuration.getSeconds() + "/" + bucket + "/" + key;
+    }
+
+    /**
+     * @return bucket and key of the object a cache key was built for
+     */
+    private static String objectOf(String cacheKey) {
+        return cacheKey.substring(cacheKey.indexOf('/') + 1);
+    }
+
+    @Override
+    public void close() {
+        presigner.close();
+    }
+}
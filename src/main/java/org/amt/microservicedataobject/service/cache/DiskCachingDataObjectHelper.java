@@ -0,0 +1,467 @@
+package org.amt.microservicedataobject.service.cache;
+
+import org.amt.microservicedataobject.service.DataObjectContent;
+import org.amt.microservicedataobject.service.DataObjectHelper;
+import org.amt.microservicedataobject.service.DataObjectMetadata;
+import org.amt.microservicedataobject.service.DataObjectResult;
+import org.amt.microservicedataobject.service.FileDataObjectContent;
+import org.amt.microservicedataobject.service.ForwardingDataObjectHelper;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link DataObjectHelper} keeping the contents read from the decorated helper in files of a local directory
+ * An entry is served without contacting the storage while it is younger than the revalidation delay,
+ * then with a conditional GET on its ETag, so an unchanged object is not transferred again
+ * The total size of the files is bounded, the least recently used entries being evicted first
+ * Entries are invalidated by the writes and deletes made through this helper, the ones made by other
+ * clients are seen at the next revalidation
+ * The index is kept in memory, the directory is emptied when the helper is created
+ * @author De Bleser Dimitri
+ * @author Peer Vincent
+ * @author Nelson Jeanreneaud
+ */
+public class DiskCachingDataObjectHelper extends ForwardingDataObjectHelper {
+
+    private final Path directory;
+    private final long maxSize;
+    private final long maxEntrySize;
+    private final Duration revalidateAfter;
+    private final Clock clock;
+
+    // Guarded by this
+    private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long size;
+
+    private final AtomicLong fileSequence = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong revalidatedCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+    private final AtomicLong bytesSaved = new AtomicLong();
+
+    /**
+     * @param delegate helper whose contents are cached
+     * @param directory where the contents are written, emptied by the constructor
+     * @param maxSize maximum number of bytes of the cached contents
+     * @param maxEntrySize size from which contents are not cached
+     * @param revalidateAfter age from which an entry is validated with a conditional GET before being served
+     */
+    public DiskCachingDataObjectHelper(DataObjectHelper delegate, Path directory, long maxSize, long maxEntrySize, Duration revalidateAfter) {
+        this(delegate, directory, maxSize, maxEntrySize, revalidateAfter, Clock.systemUTC());
+    }
+
+    public DiskCachingDataObjectHelper(DataObjectHelper delegate, Path directory, long maxSize, long maxEntrySize,
+                                       Duration revalidateAfter, Clock clock) {
+        super(delegate);
+        Objects.requireNonNull(directory, "directory must not be null");
+        Objects.requireNonNull(revalidateAfter, "revalidateAfter must not be null");
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("Invalid cache size: " + maxSize);
+        }
+        if (maxEntrySize < 0) {
+            throw new IllegalArgumentException("Invalid cache entry size: " + maxEntrySize);
+        }
+        if (revalidateAfter.isNegative()) {
+            throw new IllegalArgumentException("Invalid revalidation delay: " + revalidateAfter);
+        }
+        this.directory = directory;
+        this.maxSize = maxSize;
+        this.maxEntrySize = Math.min(maxEntrySize, maxSize);
+        this.revalidateAfter = revalidateAfter;
+        this.clock = Objects.requireNonNull(clock);
+        try {
+            Files.createDirectories(directory);
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*.object")) {
+                for (Path file : files)
+                    Files.deleteIfExists(file);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to prepare the cache directory " + directory, e);
+        }
+    }
+
+    @Override
+    public void add(String fileName, File file) throws DataObjectHelperException {
+        try {
+            super.add(fileName, file);
+        } finally {
+            invalidate(fileName);
+        }
+    }
+
+    @Override
+    public void add(String fileName, InputStream inputStream, long contentLength) throws DataObjectHelperException {
+        try {
+            super.add(fileName, inputStream, contentLength);
+        } finally {
+            invalidate(fileName);
+        }
+    }
+
+    @Override
+    public long addIfChanged(String fileName, File file) throws DataObjectHelperException {
+        long saved = 0;
+        try {
+            saved = super.addIfChanged(fileName, file);
+            return saved;
+        } finally {
+            // A skipped upload left the stored content, and its cached copy, as they were
+            if (saved == 0) {
+                invalidate(fileName);
+            }
+        }
+    }
+
+    @Override
+    public long addIfChanged(String fileName, InputStream inputStream, long contentLength) throws DataObjectHelperException {
+        long saved = 0;
+        try {
+            saved = super.addIfChanged(fileName, inputStream, contentLength);
+            return saved;
+        } finally {
+            if (saved == 0) {
+                invalidate(fileName);
+            }
+        }
+    }
+
+    @Override
+    public byte[] get(String fileName) throws DataObjectHelperException {
+        try (DataObjectContent content = getContent(fileName)) {
+            return content.getInputStream().readAllBytes();
+        } catch (IOException e) {
+            throw new DataObjectException("Error getting object" + e.getMessage());
+        }
+    }
+
+    @Override
+    public DataObjectContent getContent(String fileName) throws DataObjectHelperException {
+        return open(fileName, 0, -1, false);
+    }
+
+    @Override
+    public DataObjectContent getContent(String fileName, long start, long end) throws DataObjectHelperException {
+        if (start < 0 && end >= 0) {
+            throw new InvalidRangeException("A suffix range has no end");
+        }
+        if (end >= 0 && end < start) {
+            throw new InvalidRangeException("Range end is before its start");
+        }
+        return open(fileName, start, end, true);
+    }
+
+    private DataObjectContent open(String fileName, long start, long end, boolean ranged) throws DataObjectHelperException {
+        Objects.requireNonNull(fileName, "fileName must not be null");
+        Entry entry = lookup(fileName);
+        if (entry != null && isFresh(entry)) {
+            DataObjectContent cached = openEntry(entry, start, end, ranged);
+            if (cached != null) {
+                hitCount.incrementAndGet();
+                bytesSaved.addAndGet(cached.getMetadata().getContentLength());
+                return cached;
+            }
+            entry = null;
+        }
+        // A range of an object never read in full is not worth a full download
+        if (entry == null && ranged) {
+            missCount.incrementAndGet();
+            return super.getContent(fileName, start, end);
+        }
+
+        long generation = invalidations.get();
+        DataObjectContent content = super.getContentIfModified(fileName, entry == null ? null : entry.metadata.getETag(), null);
+        if (content == null) {
+            entry.validatedAt = clock.instant();
+            DataObjectContent cached = openEntry(entry, start, end, ranged);
+            if (cached != null) {
+                revalidatedCount.incrementAndGet();
+                bytesSaved.addAndGet(cached.getMetadata().getContentLength());
+                return cached;
+            }
+            content = super.getContent(fileName);
+        }
+        missCount.incrementAndGet();
+
+        long contentLength = content.getMetadata().getContentLength();
+        if (contentLength < 0 || contentLength > maxEntrySize) {
+            invalidate(fileName);
+            if (!ranged) {
+                return content;
+            }
+            close(content);
+            return super.getContent(fileName, start, end);
+        }
+        Entry filled = fill(fileName, content, generation);
+        DataObjectContent cached = openEntry(filled, start, end, ranged);
+        return cached != null ? cached : (ranged ? super.getContent(fileName, start, end) : super.getContent(fileName));
+    }
+
+    /**
+     * Answer a conditional read from a fresh entry, otherwise S3 evaluates the condition without sending
+     * the content of an unchanged object
+     */
+    @Override
+    public DataObjectContent getContentIfModified(String fileName, String ifNoneMatch, Instant ifModifiedSince) throws DataObjectHelperException {
+        if (ifNoneMatch == null && ifModifiedSince == null) {
+            return getContent(fileName);
+        }
+        Entry entry = lookup(fileName);
+        if (entry == null || !isFresh(entry)) {
+            return super.getContentIfModified(fileName, ifNoneMatch, ifModifiedSince);
+        }
+        if (entry.metadata.isNotModified(ifNoneMatch, ifModifiedSince)) {
+            hitCount.incrementAndGet();
+            return null;
+        }
+        return getContent(fileName);
+    }
+
+    /**
+     * The contents are cached and served decompressed, whatever the encodings accepted by the caller
+     */
+    @Override
+    public DataObjectContent getContentIfModified(String fileName, String ifNoneMatch, Instant ifModifiedSince, String acceptEncoding) throws DataObjectHelperException {
+        return getContentIfModified(fileName, ifNoneMatch, ifModifiedSince);
+    }
+
+    /**
+     * Copy a content into a new file of the directory and index it
+     */
+    private Entry fill(String fileName, DataObjectContent content, long generation) throws DataObjectHelperException {
+        Path file = directory.resolve(fileSequence.incrementAndGet() + ".object");
+        try (content; OutputStream outputStream = Files.newOutputStream(file)) {
+            content.transferTo(outputStream);
+        } catch (IOException e) {
+            delete(file);
+            throw new DataObjectException("Error caching object" + e.getMessage());
+        }
+        // A write made while the content was read may be older or newer than it, the next read revalidates it
+        Instant validatedAt = invalidations.get() == generation ? clock.instant() : Instant.EPOCH;
+        Entry entry = new Entry(file, content.getMetadata(), validatedAt);
+        put(fileName, entry);
+        return entry;
+    }
+
+    /**
+     * @return the entry opened as requested, or null if its file was evicted meanwhile
+     */
+    private DataObjectContent openEntry(Entry entry, long start, long end, boolean ranged) throws DataObjectHelperException {
+        try {
+            return ranged
+                    ? FileDataObjectContent.open(entry.file, entry.metadata, start, end)
+                    : FileDataObjectContent.open(entry.file, entry.metadata);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            throw new DataObjectException("Error reading cached object" + e.getMessage());
+        }
+    }
+
+    @Override
+    public long download(String fileName, FileChannel channel) throws DataObjectHelperException {
+        Objects.requireNonNull(fileName, "fileName must not be null");
+        Objects.requireNonNull(channel, "channel must not be null");
+        Entry entry = lookup(fileName);
+        // The content is not fetched, large files are better downloaded in concurrent ranges by the storage
+        if (entry != null && !isFresh(entry) && Objects.equals(entry.metadata.getETag(), super.getMetadata(fileName).getETag())) {
+            entry.validatedAt = clock.instant();
+            revalidatedCount.incrementAndGet();
+        } else if (entry != null && isFresh(entry)) {
+            hitCount.incrementAndGet();
+        } else {
+            missCount.incrementAndGet();
+            return super.download(fileName, channel);
+        }
+
+        try (FileChannel source = FileChannel.open(entry.file, StandardOpenOption.READ)) {
+            long length = source.size();
+            for (long position = 0; position < length; )
+                position += source.transferTo(position, length - position, channel);
+            bytesSaved.addAndGet(length);
+            return length;
+        } catch (NoSuchFileException e) {
+            return super.download(fileName, channel);
+        } catch (IOException e) {
+            throw new DataObjectException("Error while writing file" + e.getMessage());
+        }
+    }
+
+    @Override
+    public void delete(String fileName) throws DataObjectHelperException {
+        try {
+            super.delete(fileName);
+        } finally {
+            invalidate(fileName);
+        }
+    }
+
+    @Override
+    public List<DataObjectResult> deleteAll(Collection<String> fileNames) throws DataObjectHelperException {
+        try {
+            return super.deleteAll(fileNames);
+        } finally {
+            if (fileNames != null) {
+                for (String fileName : fileNames)
+                    invalidate(fileName);
+            }
+        }
+    }
+
+    @Override
+    public boolean exists(String fileName) throws DataObjectHelperException {
+        Entry entry = lookup(fileName);
+        return entry != null && isFresh(entry) || super.exists(fileName);
+    }
+
+    @Override
+    public DataObjectMetadata getMetadata(String fileName) throws DataObjectHelperException {
+        Entry entry = lookup(fileName);
+        return entry != null && isFresh(entry) ? entry.metadata : super.getMetadata(fileName);
+    }
+
+    private boolean isFresh(Entry entry) {
+        return entry.validatedAt.plus(revalidateAfter).isAfter(clock.instant());
+    }
+
+    private synchronized Entry lookup(String fileName) {
+        return fileName == null ? null : entries.get(fileName);
+    }
+
+    private synchronized void put(String fileName, Entry entry) {
+        Entry previous = entries.put(fileName, entry);
+        if (previous != null) {
+            size -= previous.metadata.getContentLength();
+            delete(previous.file);
+        }
+        size += entry.metadata.getContentLength();
+        Iterator<Entry> eldest = entries.values().iterator();
+        while (size > maxSize && eldest.hasNext()) {
+            Entry evicted = eldest.next();
+            eldest.remove();
+            size -= evicted.metadata.getContentLength();
+            delete(evicted.file);
+            evictionCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * Remove the entry of a file, its content is read again at the next access
+     */
+    public synchronized void invalidate(String fileName) {
+        invalidations.incrementAndGet();
+        Entry entry = fileName == null ? null : entries.remove(fileName);
+        if (entry != null) {
+            size -= entry.metadata.getContentLength();
+            delete(entry.file);
+        }
+    }
+
+    private static void delete(Path file) {
+        try {
+            // Contents already opened stay readable until they are closed
+            Files.deleteIfExists(file);
+        } catch (IOException ignored) {
+            // Deleted when the helper is created again
+        }
+    }
+
+    private static void close(DataObjectContent content) {
+        try {
+            content.close();
+        } catch (IOException ignored) {
+            // Nothing was read from it
+        }
+    }
+
+    /**
+     * @return number of reads served from the cache without contacting the storage
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * @return number of reads served from the cache after the storage confirmed the ETag
+     */
+    public long getRevalidatedCount() {
+        return revalidatedCount.get();
+    }
+
+    /**
+     * @return number of reads whose content was transferred from the storage
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * @return part of the reads served from the cache, with or without revalidation
+     */
+    public double getHitRatio() {
+        long served = hitCount.get() + revalidatedCount.get();
+        long total = served + missCount.get();
+        return total == 0 ? 0 : (double) served / total;
+    }
+
+    /**
+     * @return number of bytes served from the cache instead of being transferred from the storage
+     */
+    public long getBytesSaved() {
+        return bytesSaved.get();
+    }
+
+    /**
+     * @return number of entries evicted to stay under the maximum size
+     */
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    /**
+     * @return number of bytes of the cached contents
+     */
+    public synchronized long getSize() {
+        return size;
+    }
+
+    /**
+     * @return number of cached contents
+     */
+    public synchronized int getEntryCount() {
+        return entries.size();
+    }
+
+    private static class Entry {
+        private final Path file;
+        private final DataObjectMetadata metadata;
+        private volatile Instant validatedAt;
+
+        private Entry(Path file, DataObjectMetadata metadata, Instant validatedAt) {
+            this.file = file;
+            this.metadata = metadata;
+            this.validatedAt = validatedAt;
+        }
+    }
+}
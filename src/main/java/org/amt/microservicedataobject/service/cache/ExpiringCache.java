@@ -0,0 +1,201 @@
+package org.amt.microservicedataobject.service.cache;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Size-bounded in-memory cache whose entries expire after their own time to live
+ * The least recently used entry is evicted when the cache is full
+ * Keys can be indexed by a group, such as the object several cached values are derived from, so the values of a
+ * group are removed without scanning the cache
+ *
+ * @param <K> key type
+ * @param <V> value type
+ * @author De Bleser Dimitri
+ * @author Peer Vincent
+ * @author Nelson Jeanreneaud
+ */
+public class ExpiringCache<K, V> {
+
+    private final Map<K, Entry<V>> entries;
+    private final Clock clock;
+    // Keys of each group, null when the keys are not grouped
+    private final Function<? super K, ?> groupOf;
+    private final Map<Object, Set<K>> groups;
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    public ExpiringCache(int maxSize) {
+        this(maxSize, Clock.systemUTC());
+    }
+
+    public ExpiringCache(int maxSize, Clock clock) {
+        this(maxSize, clock, null);
+    }
+
+    /**
+     * @param groupOf group of a key, whose values can be removed together by invalidateGroup
+     */
+    public ExpiringCache(int maxSize, Function<? super K, ?> groupOf) {
+        this(maxSize, Clock.systemUTC(), groupOf);
+    }
+
+    public ExpiringCache(int maxSize, Clock clock, Function<? super K, ?> groupOf) {
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("Invalid cache size: " + maxSize);
+        }
+        this.clock = clock;
+        this.groupOf = groupOf;
+        this.groups = groupOf == null ? null : new HashMap<>();
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                if (size() > maxSize) {
+                    unindex(eldest.getKey());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * @param key to look up
+     * @return the cached value, or null if it is absent or expired
+     */
+    public synchronized V get(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry != null && entry.expiresAt.isAfter(clock.instant())) {
+            hitCount.incrementAndGet();
+            return entry.value;
+        }
+        if (entry != null) {
+            remove(key);
+        }
+        missCount.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Cache a value, replacing the previous one
+     * @param key of the value
+     * @param value to cache
+     * @param timeToLive duration after which the value is no longer returned
+     */
+    public synchronized void put(K key, V value, Duration timeToLive) {
+        if (timeToLive.isNegative() || timeToLive.isZero()) {
+            remove(key);
+            return;
+        }
+        if (groups != null) {
+            groups.computeIfAbsent(groupOf.apply(key), group -> new HashSet<>()).add(key);
+        }
+        entries.put(key, new Entry<>(value, clock.instant().plus(timeToLive)));
+    }
+
+    /**
+     * Remove the value of a key
+     */
+    public synchronized void invalidate(K key) {
+        remove(key);
+    }
+
+    /**
+     * Remove the values of all the keys matching a predicate, scanning the whole cache
+     */
+    public synchronized void invalidateIf(Predicate<K> predicate) {
+        Iterator<K> keys = entries.keySet().iterator();
+        while (keys.hasNext()) {
+            K key = keys.next();
+            if (predicate.test(key)) {
+                keys.remove();
+                unindex(key);
+            }
+        }
+    }
+
+    /**
+     * Remove the values of the keys of some groups, without scanning the cache
+     * @param groupsToRemove groups, as returned by the group function of the cache
+     */
+    public synchronized void invalidateGroups(Collection<?> groupsToRemove) {
+        if (groups == null) {
+            throw new IllegalStateException("Keys are not grouped");
+        }
+        for (Object group : groupsToRemove) {
+            Set<K> keys = groups.remove(group);
+            if (keys != null) {
+                entries.keySet().removeAll(keys);
+            }
+        }
+    }
+
+    /**
+     * Remove all the values
+     */
+    public synchronized void invalidateAll() {
+        entries.clear();
+        if (groups != null) {
+            groups.clear();
+        }
+    }
+
+    /**
+     * @return number of entries, including expired ones not evicted yet
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return number of lookups that returned a value
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * @return number of lookups that returned nothing
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    private void remove(K key) {
+        if (entries.remove(key) != null) {
+            unindex(key);
+        }
+    }
+
+    private void unindex(K key) {
+        if (groups == null) {
+            return;
+        }
+        Object group = groupOf.apply(key);
+        Set<K> keys = groups.get(group);
+        if (keys != null && keys.remove(key) && keys.isEmpty()) {
+            groups.remove(group);
+        }
+    }
+
+    private static class Entry<V> {
+        private final V value;
+        private final Instant expiresAt;
+
+        private Entry(V value, Instant expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
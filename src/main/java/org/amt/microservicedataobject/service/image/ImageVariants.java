@@ -0,0 +1,441 @@
+package org.amt.microservicedataobject.service.image;
+
+import org.amt.microservicedataobject.service.DataObjectContent;
+import org.amt.microservicedataobject.service.DataObjectHelper;
+import org.amt.microservicedataobject.service.DataObjectListing;
+import org.amt.microservicedataobject.service.DataObjectMetadata;
+
+import javax.imageio.IIOException;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Resized variants of the images stored through a {@link DataObjectHelper}
+ * A variant is generated on its first request by a fixed pool of workers, then stored back through the helper
+ * under a key derived from the name, the ETag of the image, the size and the format of the variant.
+ * Later requests are served from the stored variant, a new version of the image getting new variants
+ * Requests for a variant being generated wait for the same generation
+ * Only the configured sizes are generated, every variant stored staying in the storage until its image is deleted
+ * @author De Bleser Dimitri
+ * @author Peer Vincent
+ * @author Nelson Jeanreneaud
+ */
+public class ImageVariants implements AutoCloseable {
+
+    // Prefix of the keys of the variants, the variants of an image sharing the prefix followed by its name
+    public static final String VARIANT_PREFIX = ".variants/";
+    private static final float JPEG_QUALITY = 0.85f;
+    // Images with more pixels are rejected before being decoded
+    private static final long MAX_SOURCE_PIXELS = 100_000_000L;
+
+    private final DataObjectHelper dataObjectHelper;
+    private final ThreadPoolExecutor executor;
+    private final Set<String> sizes;
+    private final long maxSourceSize;
+    private final ConcurrentMap<String, CompletableFuture<Variant>> generations = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder generated = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * @param dataObjectHelper storage of the images and of their variants
+     * @param workers number of variants generated at the same time
+     * @param queueSize number of generations waiting for a worker, the requests beyond it are rejected
+     * @param sizes sizes of the variants, as widthxheight, the other sizes being rejected
+     * @param maxSourceSize size of the largest image variants are generated from
+     */
+    public ImageVariants(DataObjectHelper dataObjectHelper, int workers, int queueSize, Collection<String> sizes, long maxSourceSize) {
+        if (workers < 1) {
+            throw new IllegalArgumentException("Invalid number of workers: " + workers);
+        }
+        if (queueSize < 1) {
+            throw new IllegalArgumentException("Invalid queue size: " + queueSize);
+        }
+        this.dataObjectHelper = Objects.requireNonNull(dataObjectHelper);
+        this.sizes = new LinkedHashSet<>();
+        for (String size : sizes) {
+            String normalized = size.trim().toLowerCase(Locale.ROOT);
+            if (!normalized.matches("[1-9][0-9]{0,4}x[1-9][0-9]{0,4}")) {
+                throw new IllegalArgumentException("Invalid variant size: " + size);
+            }
+            this.sizes.add(normalized);
+        }
+        if (this.sizes.isEmpty()) {
+            throw new IllegalArgumentException("No variant size");
+        }
+        this.maxSourceSize = maxSourceSize;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueSize),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "image-variant-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    /**
+     * @return sizes of the variants, as widthxheight
+     */
+    public Set<String> getSizes() {
+        return Set.copyOf(sizes);
+    }
+
+    /**
+     * @return number of variants served from the storage
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * @return number of variants generated and stored
+     */
+    public long getGeneratedCount() {
+        return generated.sum();
+    }
+
+    /**
+     * @return number of generations rejected because the queue was full
+     */
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    /**
+     * @return number of generations waiting for a worker
+     */
+    public int getQueuedCount() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * @return number of generations running
+     */
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    /**
+     * Open a variant of an image fitting in a box, the image being shrunk keeping its proportions but never enlarged
+     * @param fileName name of the image
+     * @param width width of the box, one of the configured sizes with the height
+     * @param height height of the box
+     * @param format jpg or png, or null for the format of the image when it is a png and jpg otherwise
+     * @param ifNoneMatch entity tags held by the client, or null
+     * @param ifModifiedSince date of the version held by the client, or null
+     * @return the variant, or null if the client already holds it
+     */
+    public DataObjectContent getVariant(String fileName, int width, int height, String format, String ifNoneMatch,
+                                        Instant ifModifiedSince) throws DataObjectHelper.DataObjectHelperException {
+        Objects.requireNonNull(fileName, "fileName must not be null");
+        if (fileName.startsWith(VARIANT_PREFIX)) {
+            throw new DataObjectHelper.InvalidParamException("Variants have no variants: " + fileName);
+        }
+        if (!sizes.contains(width + "x" + height)) {
+            throw new DataObjectHelper.InvalidParamException("Variant size must be one of " + String.join(", ", sizes));
+        }
+        DataObjectMetadata source = dataObjectHelper.getMetadata(fileName);
+        String variantFormat = formatOf(format, fileName, source);
+        String key = variantKey(fileName, source, width, height, variantFormat);
+        String contentType = "image/" + (variantFormat.equals("png") ? "png" : "jpeg");
+
+        try {
+            DataObjectContent stored = dataObjectHelper.getContentIfModified(key, ifNoneMatch, ifModifiedSince);
+            hits.increment();
+            return stored == null ? null : withContentType(stored, contentType);
+        } catch (DataObjectHelper.KeyNotFoundException | DataObjectHelper.DataObjectNotFoundException e) {
+            // First request of the variant, generated below
+        }
+        Variant variant = await(generation(key, () -> generate(fileName, source, width, height, variantFormat, key)));
+        DataObjectMetadata metadata = new DataObjectMetadata(variant.content.length, contentType,
+                variant.stored.getETag(), variant.stored.getLastModified());
+        return metadata.isNotModified(ifNoneMatch, ifModifiedSince) ? null
+                : new DataObjectContent(metadata, new ByteArrayInputStream(variant.content));
+    }
+
+    /**
+     * Delete the variants of every version of an image, once the image itself is deleted
+     * Only the direct children of the prefix of the image are deleted, not the variants of the images named after it
+     * @param fileName name of the image
+     * @return number of variants deleted
+     */
+    public int deleteVariants(String fileName) throws DataObjectHelper.DataObjectHelperException {
+        Objects.requireNonNull(fileName, "fileName must not be null");
+        if (fileName.startsWith(VARIANT_PREFIX)) {
+            return 0;
+        }
+        List<String> keys = new ArrayList<>();
+        String continuationToken = null;
+        do {
+            DataObjectListing listing = dataObjectHelper.listObjects(VARIANT_PREFIX + fileName + "/", "/", 1000, continuationToken);
+            keys.addAll(listing.getKeys());
+            continuationToken = listing.isTruncated() ? listing.getNextContinuationToken() : null;
+        } while (continuationToken != null);
+        if (!keys.isEmpty()) {
+            dataObjectHelper.deleteAll(keys);
+        }
+        return keys.size();
+    }
+
+    /**
+     * @return true if the name is reserved for the variants, and cannot be written through the API
+     */
+    public static boolean isReserved(String fileName) {
+        return fileName != null && fileName.startsWith(VARIANT_PREFIX);
+    }
+
+    /**
+     * Start the generation of a variant, or join the one already running
+     */
+    private CompletableFuture<Variant> generation(String key, Generation generation) throws DataObjectHelper.ServiceException {
+        CompletableFuture<Variant> flight = new CompletableFuture<>();
+        CompletableFuture<Variant> running = generations.putIfAbsent(key, flight);
+        if (running != null) {
+            return running;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    flight.complete(generation.generate());
+                } catch (DataObjectHelper.DataObjectHelperException | RuntimeException | Error e) {
+                    flight.completeExceptionally(e);
+                } finally {
+                    generations.remove(key, flight);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            DataObjectHelper.ServiceException busy = new DataObjectHelper.ServiceException("Too many image variants being generated");
+            flight.completeExceptionally(busy);
+            generations.remove(key, flight);
+            throw busy;
+        }
+        return flight;
+    }
+
+    private Variant generate(String fileName, DataObjectMetadata source, int width, int height, String format, String key)
+            throws DataObjectHelper.DataObjectHelperException {
+        if (maxSourceSize > 0 && source.getContentLength() > maxSourceSize) {
+            throw new DataObjectHelper.InvalidParamException("Image too large for a variant: " + fileName);
+        }
+        BufferedImage resized;
+        try (DataObjectContent content = dataObjectHelper.getContent(fileName);
+             ImageInputStream input = new MemoryCacheImageInputStream(content.getInputStream())) {
+            resized = decodeResized(fileName, input, width, height, format.equals("png"));
+        } catch (IIOException e) {
+            throw new DataObjectHelper.InvalidParamException("Unsupported image " + fileName + ": " + e.getMessage());
+        } catch (IOException e) {
+            throw new DataObjectHelper.DataObjectException("Error reading image " + fileName + ": " + e.getMessage());
+        }
+
+        byte[] variant = encode(resized, format);
+        dataObjectHelper.add(key, new ByteArrayInputStream(variant), variant.length);
+        generated.increment();
+        // Served with the ETag and date of the stored variant, for the later requests to be validated against them
+        return new Variant(variant, dataObjectHelper.getMetadata(key));
+    }
+
+    /**
+     * Decode an image at the lowest resolution keeping the quality of the variant, then shrink it to the variant
+     * Large images are subsampled while decoded, only every n-th pixel of each n-th row being kept in memory
+     */
+    private static BufferedImage decodeResized(String fileName, ImageInputStream input, int width, int height, boolean alpha)
+            throws IOException, DataObjectHelper.InvalidParamException {
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+        if (!readers.hasNext()) {
+            throw new DataObjectHelper.InvalidParamException("Not an image: " + fileName);
+        }
+        ImageReader reader = readers.next();
+        try {
+            reader.setInput(input, true, true);
+            int sourceWidth = reader.getWidth(0);
+            int sourceHeight = reader.getHeight(0);
+            if ((long) sourceWidth * sourceHeight > MAX_SOURCE_PIXELS) {
+                throw new DataObjectHelper.InvalidParamException("Image too large for a variant: " + fileName);
+            }
+            double scale = Math.min(1, Math.min((double) width / sourceWidth, (double) height / sourceHeight));
+            int targetWidth = Math.max(1, (int) Math.round(sourceWidth * scale));
+            int targetHeight = Math.max(1, (int) Math.round(sourceHeight * scale));
+
+            // At least twice the resolution of the variant is decoded, for the bilinear shrink to stay smooth
+            int subsampling = Math.max(1, (int) (1 / (2 * scale)));
+            ImageReadParam param = reader.getDefaultReadParam();
+            param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+            BufferedImage decoded = reader.read(0, param);
+
+            BufferedImage resized = new BufferedImage(targetWidth, targetHeight,
+                    alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+            Graphics2D graphics = resized.createGraphics();
+            try {
+                if (!alpha) {
+                    // Transparent pixels are drawn on white rather than black
+                    graphics.setColor(Color.WHITE);
+                    graphics.fillRect(0, 0, targetWidth, targetHeight);
+                }
+                graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                graphics.drawImage(decoded, 0, 0, targetWidth, targetHeight, null);
+            } finally {
+                graphics.dispose();
+            }
+            return resized;
+        } finally {
+            reader.dispose();
+        }
+    }
+
+    private static byte[] encode(BufferedImage image, String format) throws DataObjectHelper.DataObjectException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName(format.equals("png") ? "png" : "jpeg").next();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ImageOutputStream output = new MemoryCacheImageOutputStream(bytes)) {
+            writer.setOutput(output);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            if (param.canWriteCompressed() && !format.equals("png")) {
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                param.setCompressionQuality(JPEG_QUALITY);
+            }
+            writer.write(null, new IIOImage(image, null, null), param);
+        } catch (IOException e) {
+            throw new DataObjectHelper.DataObjectException("Error encoding variant: " + e.getMessage());
+        } finally {
+            writer.dispose();
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @return jpg or png
+     */
+    private static String formatOf(String format, String fileName, DataObjectMetadata source)
+            throws DataObjectHelper.InvalidParamException {
+        if (format == null || format.isBlank()) {
+            boolean png = "image/png".equalsIgnoreCase(source.getContentType())
+                    || fileName.toLowerCase(Locale.ROOT).endsWith(".png");
+            return png ? "png" : "jpg";
+        }
+        switch (format.trim().toLowerCase(Locale.ROOT)) {
+            case "jpg":
+            case "jpeg":
+                return "jpg";
+            case "png":
+                return "png";
+            default:
+                throw new DataObjectHelper.InvalidParamException("Unsupported variant format: " + format);
+        }
+    }
+
+    /**
+     * @return key of a variant of a version of an image
+     */
+    static String variantKey(String fileName, DataObjectMetadata source, int width, int height, String format) {
+        String version;
+        if (source.getETag() != null) {
+            version = source.getETag().replaceAll("[^A-Za-z0-9-]|^W/", "");
+        } else if (source.getLastModified() != null) {
+            version = Long.toString(source.getLastModified().toEpochMilli());
+        } else {
+            version = "0";
+        }
+        return VARIANT_PREFIX + fileName + "/" + width + "x" + height + "-" + version + "." + format;
+    }
+
+    /**
+     * The stored variant with the content type of its format, the storage not keeping it
+     */
+    private static DataObjectContent withContentType(DataObjectContent content, String contentType) {
+        DataObjectMetadata metadata = content.getMetadata();
+        return new DataObjectContent(new DataObjectMetadata(metadata.getContentLength(), contentType, metadata.getETag(),
+                metadata.getLastModified()), content.getInputStream(), content.getContentRange()) {
+            @Override
+            public long transferTo(OutputStream outputStream) throws IOException {
+                return content.transferTo(outputStream);
+            }
+
+            @Override
+            public void close() throws IOException {
+                content.close();
+            }
+        };
+    }
+
+    private static Variant await(CompletableFuture<Variant> flight) throws DataObjectHelper.DataObjectHelperException {
+        try {
+            return flight.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DataObjectHelper.ClientException("Interrupted while waiting for an image variant");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof DataObjectHelper.DataObjectHelperException) {
+                throw (DataObjectHelper.DataObjectHelperException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw (Error) cause;
+        }
+    }
+
+    /**
+     * Stop the workers, the requests waiting for a generation fail
+     */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+        generations.values().forEach(flight -> flight.completeExceptionally(
+                new DataObjectHelper.ServiceException("Image variants stopped")));
+    }
+
+    @FunctionalInterface
+    private interface Generation {
+        Variant generate() throws DataObjectHelper.DataObjectHelperException;
+    }
+
+    /**
+     * Content of a generated variant, and metadata of the stored variant
+     */
+    private static final class Variant {
+        private final byte[] content;
+        private final DataObjectMetadata stored;
+
+        private Variant(byte[] content, DataObjectMetadata stored) {
+            this.content = content;
+            this.stored = stored;
+        }
+    }
+}
@@ -0,0 +1,540 @@
+package org.amt.microservicedataobject.service.local;
+
+import org.amt.microservicedataobject.service.DataObjectContent;
+import org.amt.microservicedataobject.service.DataObjectHelper;
+import org.amt.microservicedataobject.service.DataObjectListing;
+import org.amt.microservicedataobject.service.DataObjectMetadata;
+import org.amt.microservicedataobject.service.DataObjectResult;
+import org.amt.microservicedataobject.service.FileDataObjectContent;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Implementation of {@link DataObjectHelper} storing the objects as files of a local or mounted directory
+ * Keys are paths relative to the root directory, their slashes making sub-directories
+ * Objects are written to a temporary file then renamed, so a reader never sees a partial object,
+ * and are copied to other files with {@link FileChannel#transferTo}, letting the kernel copy the bytes
+ * URLs are signed by a {@link LocalUrlSigner} and served by the service itself
+ * @author De Bleser Dimitri
+ * @author Peer Vincent
+ * @author Nelson Jeanreneaud
+ */
+public class LocalDataObjectHelperImpl implements DataObjectHelper {
+
+    // Directory of the files being written, on the same file system as the objects so that they can be renamed
+    static final String TEMP_DIRECTORY = ".dataobject-tmp";
+
+    private final Path root;
+    private final Path tempDirectory;
+    private final LocalUrlSigner urlSigner;
+    // Renames share it, pruning takes it alone so it never removes a directory a rename is about to use
+    private final ReadWriteLock directoryLock = new ReentrantReadWriteLock();
+
+    /**
+     * Constructor
+     * @param root directory of the objects, created if missing
+     * @param urlSigner signs the URLs returned by {@link #getUrl(String, Duration)}
+     */
+    public LocalDataObjectHelperImpl(Path root, LocalUrlSigner urlSigner) {
+        this.root = Objects.requireNonNull(root, "root must not be null").toAbsolutePath().normalize();
+        this.tempDirectory = this.root.resolve(TEMP_DIRECTORY);
+        this.urlSigner = Objects.requireNonNull(urlSigner, "urlSigner must not be null");
+        try {
+            Files.createDirectories(tempDirectory);
+            // Files left behind by writes interrupted by a restart
+            try (DirectoryStream<Path> leftovers = Files.newDirectoryStream(tempDirectory)) {
+                for (Path leftover : leftovers)
+                    Files.deleteIfExists(leftover);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to prepare the directory " + this.root, e);
+        }
+    }
+
+    /**
+     * Root directory name getter
+     * @return String containing the root directory
+     */
+    public String getName() {
+        return root.toString();
+    }
+
+    /**
+     * Copy a file into the root directory
+     * @param targetFileName uploaded file name
+     * @param file to be uploaded
+     */
+    public void add(String targetFileName, File file) throws NullPointerException, DataObjectHelperException {
+        Objects.requireNonNull(targetFileName, "targetFileName must not be null");
+        Objects.requireNonNull(file, "file must not be null");
+        Path target = resolve(targetFileName);
+
+        if (!file.exists()) {
+            throw new NullPointerException("File does not exist");
+        }
+
+        Path temp = null;
+        try {
+            temp = Files.createTempFile(tempDirectory, "add-", ".tmp");
+            try (FileChannel source = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+                 FileChannel destination = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                transfer(source, destination);
+                destination.force(true);
+            }
+            publish(temp, target);
+        } catch (IOException e) {
+            discard(temp);
+            throw translate(e, "Error adding object");
+        }
+    }
+
+    /**
+     * Write the content of a stream into the root directory
+     * @param targetFileName uploaded file name
+     * @param inputStream content to be uploaded
+     * @param contentLength number of bytes in the stream, or -1 if unknown
+     */
+    public void add(String targetFileName, InputStream inputStream, long contentLength) throws NullPointerException, DataObjectHelperException {
+        Objects.requireNonNull(targetFileName, "targetFileName must not be null");
+        Objects.requireNonNull(inputStream, "inputStream must not be null");
+        Path target = resolve(targetFileName);
+
+        Path temp = null;
+        try {
+            temp = Files.createTempFile(tempDirectory, "add-", ".tmp");
+            long written = Files.copy(inputStream, temp, StandardCopyOption.REPLACE_EXISTING);
+            if (contentLength >= 0 && written != contentLength) {
+                discard(temp);
+                throw new DataObjectException("Error adding object: expected " + contentLength + " bytes, received " + written);
+            }
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                channel.force(true);
+            }
+            publish(temp, target);
+        } catch (IOException e) {
+            discard(temp);
+            throw translate(e, "Error adding object");
+        }
+    }
+
+    /**
+     * Rename a written file to its key, replacing the previous version at once
+     */
+    private void publish(Path temp, Path target) throws IOException {
+        directoryLock.readLock().lock();
+        try {
+            Files.createDirectories(target.getParent());
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            directoryLock.readLock().unlock();
+        }
+    }
+
+    private static void discard(Path temp) {
+        if (temp != null) {
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException ignored) {
+                // Cleaned up on the next start
+            }
+        }
+    }
+
+    /**
+     * List files contained in the root directory
+     * @return Objects names
+     */
+    public Vector<String> listObjects() throws DataObjectHelperException {
+        Vector<String> keys = new Vector<>();
+        String continuationToken = null;
+        do {
+            DataObjectListing page = listObjects(null, null, Integer.MAX_VALUE - 1, continuationToken);
+            keys.addAll(page.getKeys());
+            continuationToken = page.getNextContinuationToken();
+        } while (continuationToken != null);
+        return keys;
+    }
+
+    /**
+     * List one page of files contained in the root directory, in the order of their keys as S3 does
+     * Directories are visited in key order, so only the ones holding the page are read
+     * @see DataObjectHelper#listObjects(String, String, int, String)
+     */
+    public DataObjectListing listObjects(String prefix, String delimiter, int pageSize, String continuationToken) throws DataObjectHelperException {
+        if (pageSize <= 0) {
+            throw new InvalidParamException("pageSize must be positive");
+        }
+        Listing listing = new Listing(prefix == null ? "" : prefix, delimiter == null || delimiter.isEmpty() ? null : delimiter,
+                pageSize, continuationToken == null ? null : decodeToken(continuationToken));
+
+        // Start from the deepest directory named by the prefix
+        int directoryEnd = listing.prefix.lastIndexOf('/');
+        String directoryKey = directoryEnd < 0 ? "" : listing.prefix.substring(0, directoryEnd + 1);
+        Path directory = directoryKey.isEmpty() ? root : root.resolve(directoryKey).normalize();
+        try {
+            if (directory.startsWith(root) && Files.isDirectory(directory, LinkOption.NOFOLLOW_LINKS)) {
+                listing.collect(directory, directoryKey);
+            }
+        } catch (IOException e) {
+            throw translate(e, "Error listing objects");
+        }
+        return listing.toPage();
+    }
+
+    /**
+     * Get the file content
+     * @param fileName to be downloaded
+     * @return file content in byte array
+     */
+    public byte[] get(String fileName) throws DataObjectHelperException {
+        Objects.requireNonNull(fileName, "fileName must not be null");
+        try {
+            return Files.readAllBytes(existing(fileName));
+        } catch (IOException e) {
+            throw translate(e, "Error getting object");
+        }
+    }
+
+    /**
+     * Open a channel on the file content
+     * @param fileName to be downloaded
+     * @return file content, read with positional reads of a channel
+     */
+    public DataObjectContent getContent(String fileName) throws DataObjectHelperException {
+        return openContent(fileName, 0, -1, false);
+    }
+
+    /**
+     * Open a channel on a byte range of the file content
+     * @see DataObjectHelper#getContent(String, long, long)
+     */
+    public DataObjectContent getContent(String fileName, long start, long end) throws DataObjectHelperException {
+        if (start < 0 && end >= 0) {
+            throw new InvalidRangeException("A suffix range has no end");
+        }
+        if (end >= 0 && end < start) {
+            throw new InvalidRangeException("Range end is before its start");
+        }
+        return openContent(fileName, start, end, true);
+    }
+
+    private DataObjectContent openContent(String fileName, long start, long end, boolean ranged) throws DataObjectHelperException {
+        Objects.requireNonNull(fileName, "fileName must not be null");
+        Path path = existing(fileName);
+        try {
+            DataObjectMetadata metadata = metadata(path, Files.readAttributes(path, BasicFileAttributes.class));
+            return ranged ? FileDataObjectContent.open(path, metadata, start, end) : FileDataObjectContent.open(path, metadata);
+        } catch (IOException e) {
+            throw translate(e, "Error getting object");
+        }
+    }
+
+    /**
+     * Copy a file into a channel, letting the kernel copy the bytes when the channel is a file
+     * @param fileName to download
+     * @param channel destination, written from its current position
+     * @return number of bytes written
+     */
+    public long download(String fileName, FileChannel channel) throws DataObjectHelperException {
+        Objects.requireNonNull(fileName, "fileName must not be null");
+        Objects.requireNonNull(channel, "channel must not be null");
+        try (FileChannel source = FileChannel.open(existing(fileName), StandardOpenOption.READ)) {
+            return transfer(source, channel);
+        } catch (IOException e) {
+            throw translate(e, "Error downloading object");
+        }
+    }
+
+    /**
+     * Copy a whole file into a channel, stopping at the end of the file if it is truncated meanwhile
+     * @return number of bytes written
+     */
+    private static long transfer(FileChannel source, FileChannel destination) throws IOException {
+        long size = source.size();
+        long position = 0;
+        while (position < size) {
+            long transferred = source.transferTo(position, size - position, destination);
+            if (transferred == 0) {
+                break;
+            }
+            position += transferred;
+        }
+        return position;
+    }
+
+    /**
+     * Delete a file in the root directory, and the directories it leaves empty
+     * @param fileName to delete
+     */
+    public void delete(String fileName) throws DataObjectHelperException {
+        Objects.requireNonNull(fileName, "fileName must not be null");
+        Path path = resolve(fileName);
+        try {
+            if (!Files.deleteIfExists(path)) {
+                throw new KeyNotFoundException("Object not found");
+            }
+            prune(path.getParent());
+        } catch (IOException e) {
+            throw translate(e, "Error deleting object");
+        }
+    }
+
+    private void prune(Path directory) {
+        if (directory.equals(root)) {
+            return;
+        }
+        directoryLock.writeLock().lock();
+        try {
+            for (Path current = directory; current != null && !current.equals(root); current = current.getParent()) {
+                try {
+                    Files.delete(current);
+                } catch (IOException e) {
+                    // Not empty, or already removed by a concurrent delete
+                    return;
+                }
+            }
+        } finally {
+            directoryLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Delete many files in the root directory
+     * @see DataObjectHelper#deleteAll(Collection)
+     */
+    public List<DataObjectResult> deleteAll(Collection<String> fileNames) throws DataObjectHelperException {
+        Objects.requireNonNull(fileNames, "fileNames must not be null");
+        Set<String> keys = new LinkedHashSet<>(fileNames);
+        if (keys.contains(null)) {
+            throw new InvalidParamException("fileNames must not contain null");
+        }
+
+        List<DataObjectResult> results = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            try {
+                Path path = resolve(key);
+                // As with S3, deleting a missing object succeeds
+                if (Files.deleteIfExists(path)) {
+                    prune(path.getParent());
+                }
+                results.add(DataObjectResult.success(key));
+            } catch (DataObjectHelperException | IOException e) {
+                results.add(DataObjectResult.failure(key, e.getMessage()));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Request a url to a file, signed and served by this service *
+     * @param fileName     of the requested file
+     * @param linkDuration duration of the link validity
+     * @return Url linking to the file
+     */
+    public URL getUrl(String fileName, Duration linkDuration) throws DataObjectHelperException {
+        Objects.requireNonNull(fileName, "fileName must not be null");
+        Objects.requireNonNull(linkDuration, "linkDuration must not be null");
+
+        if (linkDuration.isNegative() || linkDuration.isZero()) {
+            throw new InvalidParamException("linkDuration must be positive");
+        }
+        existing(fileName);
+        try {
+            return urlSigner.sign(fileName, linkDuration);
+        } catch (MalformedURLException e) {
+            throw new InvalidParamException("Invalid public url" + e.getMessage());
+        }
+    }
+
+    /**
+     * Checks if a file exists in the root directory
+     * @param fileName to check
+     * @return true if the file exists, false otherwise
+     */
+    public boolean exists(String fileName) throws DataObjectHelperException {
+        Objects.requireNonNull(fileName, "fileName must not be null");
+        return Files.isRegularFile(resolve(fileName), LinkOption.NOFOLLOW_LINKS);
+    }
+
+    /**
+     * Get the metadata of a file in the root directory
+     * @param fileName to check
+     * @return size, ETag and last modification date of the file
+     */
+    public DataObjectMetadata getMetadata(String fileName) throws DataObjectHelperException {
+        Objects.requireNonNull(fileName, "fileName must not be null");
+        Path path = existing(fileName);
+        try {
+            return metadata(path, Files.readAttributes(path, BasicFileAttributes.class));
+        } catch (IOException e) {
+            throw translate(e, "Error getting metadata");
+        }
+    }
+
+    private static DataObjectMetadata metadata(Path path, BasicFileAttributes attributes) {
+        // The ETag changes with the size or the modification time, as a rename replaces both
+        String eTag = "\"" + Long.toHexString(attributes.size()) + "-"
+                + Long.toHexString(attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS)) + "\"";
+        return new DataObjectMetadata(attributes.size(), URLConnection.guessContentTypeFromName(path.getFileName().toString()),
+                eTag, attributes.lastModifiedTime().toInstant());
+    }
+
+    /**
+     * @return path of a key, checked to stay inside the root directory
+     */
+    private Path resolve(String key) throws InvalidParamException {
+        if (key.isEmpty() || key.startsWith("/") || key.endsWith("/") || key.indexOf('\0') >= 0 || key.indexOf('\\') >= 0) {
+            throw new InvalidParamException("Invalid object name: " + key);
+        }
+        for (String segment : key.split("/", -1)) {
+            if (segment.isEmpty() || segment.equals(".") || segment.equals("..")) {
+                throw new InvalidParamException("Invalid object name: " + key);
+            }
+        }
+        if (key.equals(TEMP_DIRECTORY) || key.startsWith(TEMP_DIRECTORY + "/")) {
+            throw new InvalidParamException("Reserved object name: " + key);
+        }
+        try {
+            return root.resolve(key);
+        } catch (InvalidPathException e) {
+            throw new InvalidParamException("Invalid object name: " + key);
+        }
+    }
+
+    private Path existing(String key) throws DataObjectHelperException {
+        Path path = resolve(key);
+        if (!Files.isRegularFile(path, LinkOption.NOFOLLOW_LINKS)) {
+            throw new KeyNotFoundException("Object not found");
+        }
+        return path;
+    }
+
+    private static DataObjectHelperException translate(IOException e, String message) {
+        if (e instanceof NoSuchFileException) {
+            return new KeyNotFoundException("Object not found" + e.getMessage());
+        }
+        if (e instanceof java.nio.file.AccessDeniedException) {
+            return new AccessDeniedException("Access denied" + e.getMessage());
+        }
+        return new DataObjectException(message + e.getMessage());
+    }
+
+    private static String encodeToken(String startAfter) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(startAfter.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String decodeToken(String continuationToken) throws InvalidParamException {
+        try {
+            return new String(Base64.getUrlDecoder().decode(continuationToken), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidParamException("Invalid continuation token");
+        }
+    }
+
+    /**
+     * One page of a listing, filled by a traversal of the directories in key order
+     */
+    private class Listing {
+        private final String prefix;
+        private final String delimiter;
+        private final int pageSize;
+        private final String startAfter;
+        private final List<String> names = new ArrayList<>();
+        private final Set<String> commonPrefixes = new HashSet<>();
+
+        Listing(String prefix, String delimiter, int pageSize, String startAfter) {
+            this.prefix = prefix;
+            this.delimiter = delimiter;
+            this.pageSize = pageSize;
+            this.startAfter = startAfter;
+        }
+
+        /**
+         * @return true once the page and the first name of the next page are found
+         */
+        boolean collect(Path directory, String directoryKey) throws IOException {
+            // A directory sorts as its name followed by a slash, as the keys of its files do
+            List<Map.Entry<String, Path>> entries = new ArrayList<>();
+            try (DirectoryStream<Path> children = Files.newDirectoryStream(directory)) {
+                for (Path child : children) {
+                    String name = child.getFileName().toString();
+                    if (directory.equals(root) && name.equals(TEMP_DIRECTORY)) {
+                        continue;
+                    }
+                    boolean isDirectory = Files.isDirectory(child, LinkOption.NOFOLLOW_LINKS);
+                    entries.add(Map.entry(directoryKey + name + (isDirectory ? "/" : ""), child));
+                }
+            }
+            entries.sort(Map.Entry.comparingByKey());
+
+            for (Map.Entry<String, Path> entry : entries) {
+                String key = entry.getKey();
+                if (key.endsWith("/")) {
+                    if (!key.startsWith(prefix) && !prefix.startsWith(key)) {
+                        continue;
+                    }
+                    // Every key of the directory sorts before startAfter
+                    if (startAfter != null && key.compareTo(startAfter) < 0 && !startAfter.startsWith(key)) {
+                        continue;
+                    }
+                    // Every key of the directory rolls up into the same common prefix
+                    String commonPrefix = commonPrefixOf(key);
+                    if (commonPrefix != null ? add(commonPrefix, true) : collect(entry.getValue(), key)) {
+                        return true;
+                    }
+                } else if (key.startsWith(prefix)) {
+                    String commonPrefix = commonPrefixOf(key);
+                    if (commonPrefix != null ? add(commonPrefix, true) : add(key, false)) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        private String commonPrefixOf(String key) {
+            if (delimiter == null || !key.startsWith(prefix)) {
+                return null;
+            }
+            int index = key.indexOf(delimiter, prefix.length());
+            return index < 0 ? null : key.substring(0, index + delimiter.length());
+        }
+
+        private boolean add(String name, boolean commonPrefix) {
+            if ((startAfter != null && name.compareTo(startAfter) <= 0)
+                    || (!names.isEmpty() && names.get(names.size() - 1).equals(name))) {
+                return false;
+            }
+            names.add(name);
+            if (commonPrefix) {
+                commonPrefixes.add(name);
+            }
+            return names.size() > pageSize;
+        }
+
+        DataObjectListing toPage() {
+            boolean truncated = names.size() > pageSize;
+            List<String> page = truncated ? names.subList(0, pageSize) : names;
+            List<String> keys = new ArrayList<>();
+            List<String> prefixes = new ArrayList<>();
+            for (String name : page)
+                (commonPrefixes.contains(name) ? prefixes : keys).add(name);
+            return new DataObjectListing(keys, prefixes, truncated ? encodeToken(page.get(page.size() - 1)) : null);
+        }
+    }
+}
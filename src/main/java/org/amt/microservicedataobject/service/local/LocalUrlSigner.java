@@ -0,0 +1,99 @@
+package org.amt.microservicedataobject.service.local;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Objects;
+
+/**
+ * Signs time-limited URLs to the objects of a {@link LocalDataObjectHelperImpl}, served by the service itself
+ * A URL carries its expiration time and an HMAC-SHA256 of the key and of this time,
+ * so it cannot be extended or pointed to another object without the secret
+ *
+ * @author De Bleser Dimitri
+ * @author Peer Vincent
+ * @author Nelson Jeanreneaud
+ */
+public class LocalUrlSigner {
+
+    /**
+     * Path of the route serving the signed URLs
+     */
+    public static final String PATH = "/signed-objects";
+
+    private static final String ALGORITHM = "HmacSHA256";
+
+    private final String publicUrl;
+    private final SecretKeySpec secret;
+    private final Clock clock;
+
+    /**
+     * @param publicUrl base URL of the service as seen by the clients
+     * @param secret key of the signatures, or null or empty for a random key, valid until the service restarts
+     */
+    public LocalUrlSigner(String publicUrl, String secret) {
+        this(publicUrl, secret, Clock.systemUTC());
+    }
+
+    public LocalUrlSigner(String publicUrl, String secret, Clock clock) {
+        Objects.requireNonNull(publicUrl, "publicUrl must not be null");
+        this.publicUrl = publicUrl.endsWith("/") ? publicUrl.substring(0, publicUrl.length() - 1) : publicUrl;
+        byte[] key;
+        if (secret == null || secret.isEmpty()) {
+            key = new byte[32];
+            new SecureRandom().nextBytes(key);
+        } else {
+            key = secret.getBytes(StandardCharsets.UTF_8);
+        }
+        this.secret = new SecretKeySpec(key, ALGORITHM);
+        this.clock = Objects.requireNonNull(clock);
+    }
+
+    /**
+     * Sign a URL to an object
+     * @param key of the object
+     * @param duration validity of the URL
+     * @return URL to the object, valid for the given duration
+     */
+    public URL sign(String key, Duration duration) throws MalformedURLException {
+        long expires = clock.instant().plus(duration).getEpochSecond();
+        return new URL(publicUrl + PATH
+                + "?key=" + URLEncoder.encode(key, StandardCharsets.UTF_8)
+                + "&expires=" + expires
+                + "&signature=" + signature(key, expires));
+    }
+
+    /**
+     * @param key of the object, as found in the URL
+     * @param expires expiration time found in the URL, in seconds since the epoch
+     * @param signature found in the URL
+     * @return true if the URL was signed with this secret and is not expired
+     */
+    public boolean verify(String key, long expires, String signature) {
+        if (key == null || signature == null || clock.instant().getEpochSecond() > expires) {
+            return false;
+        }
+        return MessageDigest.isEqual(signature(key, expires).getBytes(StandardCharsets.US_ASCII),
+                signature.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private String signature(String key, long expires) {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(secret);
+            byte[] digest = mac.doFinal((key + "\n" + expires).getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 is not available", e);
+        }
+    }
+}
@@ -17,6 +17,7 @@ import org.springframework.web.context.WebApplicationContext;
 
 import java.util.Objects;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
@@ -38,7 +39,9 @@ class MicroserviceDataObjectApplicationTests {
     }
 
     private static final String FILE_NAME = "ZOIMjQo0nBMHIcjDfdQL";
+    private static final String FILE_NAME_2 = "ZOIMjQo0nBMHIcjDfdQM";
     private static final String FILE_PARAM_NAME = "file";
+    private static final String BATCH_PARAM_NAME = "files";
     private static final byte[] FILE_CONTENT = "This is a test file".getBytes();
     private static final String FILE_CONTENT_TYPE = "text/plain";
 
@@ -187,6 +190,24 @@ class MicroserviceDataObjectApplicationTests {
         assertTrue(response.hasBody() && Objects.requireNonNull(response.getBody()).contains(FILE_NAME));
     }
 
+    @Test
+    public void postObjectsWithFilesShouldAddObjects() throws Exception {
+        // Given
+        String url = getBaseUrl() + "/objects";
+        MockMultipartFile file = new MockMultipartFile(BATCH_PARAM_NAME, FILE_NAME, FILE_CONTENT_TYPE, FILE_CONTENT);
+        MockMultipartFile file2 = new MockMultipartFile(BATCH_PARAM_NAME, FILE_NAME_2, FILE_CONTENT_TYPE, FILE_CONTENT);
+        MockMvc mockMvc = MockMvcBuilders.webAppContextSetup(webApplicationContext).build();
+
+        // When
+        ResultActions result = mockMvc.perform(MockMvcRequestBuilders.multipart(url + "/batch").file(file).file(file2));
+
+        // Then
+        result.andExpect(status().isOk());
+        ResponseEntity<String> response = restTemplate.getForEntity(url, String.class);
+        assertTrue(Objects.requireNonNull(response.getBody()).contains(FILE_NAME));
+        assertTrue(Objects.requireNonNull(response.getBody()).contains(FILE_NAME_2));
+    }
+
     @Test
     public void postObjectWithoutFileShouldReturnBadRequest() throws Exception {
         // Given
@@ -212,6 +233,35 @@ class MicroserviceDataObjectApplicationTests {
         assertEquals(HttpStatus.UNSUPPORTED_MEDIA_TYPE, response.getStatusCode());
     }
 
+    @Test
+    public void getObjectContentShouldReturnContent() throws Exception {
+        // Given
+        String url = getBaseUrl() + "/objects";
+        MockMultipartFile file = new MockMultipartFile(FILE_PARAM_NAME, FILE_NAME, FILE_CONTENT_TYPE, FILE_CONTENT);
+        MockMvc mockMvc = MockMvcBuilders.webAppContextSetup(webApplicationContext).build();
+        mockMvc.perform(MockMvcRequestBuilders.multipart(url).file(file));
+
+        // When
+        ResponseEntity<byte[]> response = restTemplate.getForEntity(url + "/" + FILE_NAME + "/content", byte[].class);
+
+        // Then
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertArrayEquals(FILE_CONTENT, response.getBody());
+    }
+
+    @Test
+    public void getObjectContentShouldReturnNotFound() {
+        // Given
+        String url = getBaseUrl() + "/objects";
+        String notExistingFile = "MXEV1BN39ZFD9MBZC98H";
+
+        // When
+        ResponseEntity<byte[]> response = restTemplate.getForEntity(url + "/" + notExistingFile + "/content", byte[].class);
+
+        // Then
+        assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
+    }
+
     @Test
     public void deleteObjectShouldReturnNoContent() throws Exception {
         // Given
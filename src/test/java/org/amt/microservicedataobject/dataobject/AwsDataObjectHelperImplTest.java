@@ -2,13 +2,21 @@ package org.amt.microservicedataobject.dataobject;
 
 import org.amt.microservicedataobject.service.aws.AwsDataObjectHelperImpl;
 import org.amt.microservicedataobject.service.aws.AwsServiceConfigurator;
+import org.amt.microservicedataobject.service.DataObjectContent;
 import org.amt.microservicedataobject.service.DataObjectHelper;
+import org.amt.microservicedataobject.service.DataObjectListing;
+import org.amt.microservicedataobject.service.DataObjectMetadata;
+import org.amt.microservicedataobject.service.DataObjectResult;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 
 import java.io.File;
 import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Vector;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -16,6 +24,7 @@ import static org.junit.jupiter.api.Assertions.*;
 public class AwsDataObjectHelperImplTest {
 
     final static String TEST_KEY = "test";
+    final static String TEST_KEY_2 = "test2";
     final static String NOT_FOUND_KEY = "notFound";
     final AwsDataObjectHelperImpl helper = new AwsDataObjectHelperImpl(new AwsServiceConfigurator.Builder().withEnvironmentVariables().build());
     static File testFile;
@@ -52,6 +61,26 @@ public class AwsDataObjectHelperImplTest {
     }
 
 
+    @Test
+    void testDeleteAllShouldRemoveFilesFromDataObject() throws DataObjectHelper.DataObjectHelperException {
+        // Given
+        helper.add(TEST_KEY, testFile);
+        helper.add(TEST_KEY_2, testFile2);
+
+        // When
+        List<DataObjectResult> results = helper.deleteAll(List.of(TEST_KEY, TEST_KEY_2));
+
+        // Then
+        assertTrue(results.stream().allMatch(DataObjectResult::isSuccessful));
+        assertFalse(helper.exists(TEST_KEY));
+        assertFalse(helper.exists(TEST_KEY_2));
+    }
+
+    @Test
+    void testDeleteAllShouldThrowAnExceptionWhenFileNamesAreNull() {
+        assertThrows(NullPointerException.class, () -> helper.deleteAll(null));
+    }
+
     @Test
     void testAddShouldAddFileToDataObject() throws DataObjectHelper.DataObjectHelperException {
 
@@ -98,6 +127,54 @@ public class AwsDataObjectHelperImplTest {
         assertThrows(NullPointerException.class, () -> helper.add(null, testFile));
     }
 
+    @Test
+    void testGetContentWithRangeShouldReturnRange() throws Exception {
+        // Given
+        helper.add(TEST_KEY, testFile);
+        byte[] expected = Arrays.copyOfRange(Files.readAllBytes(testFile.toPath()), 10, 20);
+
+        // When
+        byte[] range;
+        try (DataObjectContent content = helper.getContent(TEST_KEY, 10, 19)) {
+            range = content.getInputStream().readAllBytes();
+        }
+
+        // Then
+        assertArrayEquals(expected, range);
+
+        // Clean
+        helper.delete(TEST_KEY);
+    }
+
+    @Test
+    void testDownloadShouldWriteFileContent() throws Exception {
+        // Given
+        helper.add(TEST_KEY, testFile);
+        Path target = Files.createTempFile("download", ".jpg");
+
+        // When
+        helper.download(TEST_KEY, target);
+
+        // Then
+        assertArrayEquals(Files.readAllBytes(testFile.toPath()), Files.readAllBytes(target));
+
+        // Clean
+        Files.delete(target);
+        helper.delete(TEST_KEY);
+    }
+
+    @Test
+    void testDownloadShouldThrowAnExceptionWhenTheFileIsNotFound() throws Exception {
+        // Given
+        Path target = Files.createTempFile("download", ".jpg");
+
+        // Then
+        assertThrows(DataObjectHelper.KeyNotFoundException.class, () -> helper.download(NOT_FOUND_KEY, target));
+
+        // Clean
+        Files.delete(target);
+    }
+
     @Test
     void testExistsShouldReturnTrueWhenFileExists() throws DataObjectHelper.DataObjectHelperException {
         // Given
@@ -130,6 +207,41 @@ public class AwsDataObjectHelperImplTest {
         assertThrows(NullPointerException.class, () -> helper.exists(null));
     }
 
+    @Test
+    void testGetMetadataShouldReturnFileSize() throws DataObjectHelper.DataObjectHelperException {
+        // Given
+        helper.add(TEST_KEY, testFile);
+
+        // When
+        DataObjectMetadata metadata = helper.getMetadata(TEST_KEY);
+
+        // Then
+        assertEquals(testFile.length(), metadata.getContentLength());
+        assertNotNull(metadata.getETag());
+
+        // Clean
+        helper.delete(TEST_KEY);
+    }
+
+    @Test
+    void testGetMetadataShouldThrowAnExceptionWhenTheFileIsNotFound() {
+        assertThrows(DataObjectHelper.KeyNotFoundException.class, () -> helper.getMetadata(NOT_FOUND_KEY));
+    }
+
+    @Test
+    void testExistsShouldUseTheMetadataCache() throws DataObjectHelper.DataObjectHelperException {
+        // Given
+        helper.exists(NOT_FOUND_KEY);
+        long hits = helper.getMetadataCacheHitCount();
+
+        // When
+        boolean exists = helper.exists(NOT_FOUND_KEY);
+
+        // Then
+        assertFalse(exists);
+        assertEquals(hits + 1, helper.getMetadataCacheHitCount());
+    }
+
     @Test
     void testGetUrlShouldReturnUrl() throws DataObjectHelper.DataObjectHelperException {
         // Given
@@ -194,4 +306,25 @@ public class AwsDataObjectHelperImplTest {
         // Clean
         helper.delete(TEST_KEY);
     }
+
+    @Test
+    void testListObjectsWithPrefixShouldReturnMatchingKeys() throws DataObjectHelper.DataObjectHelperException {
+        // Given
+        helper.add(TEST_KEY, testFile);
+
+        // When
+        DataObjectListing listing = helper.listObjects(TEST_KEY, null, 10, null);
+
+        // Then
+        assertTrue(listing.getKeys().contains(TEST_KEY));
+        assertTrue(listing.getKeys().stream().allMatch(key -> key.startsWith(TEST_KEY)));
+
+        // Clean
+        helper.delete(TEST_KEY);
+    }
+
+    @Test
+    void testListObjectsWithInvalidPageSizeShouldThrowAnException() {
+        assertThrows(DataObjectHelper.InvalidParamException.class, () -> helper.listObjects(null, null, 0, null));
+    }
 }
@@ -0,0 +1,140 @@
+package org.amt.microservicedataobject.dataobject;
+
+import org.amt.microservicedataobject.service.aws.AwsServiceConfigurator;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.http.urlconnection.UrlConnectionHttpClient;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AwsServiceConfiguratorBuilderTest {
+
+    private static final long TEST_PART_SIZE = 16L * 1024 * 1024;
+
+    @Test
+    public void testBuilderWithPartSizeShouldSetPartSize() {
+        // Given
+        AwsServiceConfigurator.Builder builder = new AwsServiceConfigurator.Builder();
+        AwsServiceConfigurator awsServiceConfigurator;
+
+        // When
+        awsServiceConfigurator = builder.withPartSize(TEST_PART_SIZE).build();
+
+        // Then
+        assertEquals(TEST_PART_SIZE, awsServiceConfigurator.getPartSize());
+    }
+
+    @Test
+    public void testBuilderWithPartSizeTooSmallShouldThrowIllegalArgumentException() {
+        // Given
+        AwsServiceConfigurator.Builder builder = new AwsServiceConfigurator.Builder();
+
+        // When
+        assertThrows(IllegalArgumentException.class, () -> builder.withPartSize(1024));
+    }
+
+    @Test
+    public void testBuilderWithTransferConcurrencyShouldSetTransferConcurrency() {
+        // Given
+        AwsServiceConfigurator.Builder builder = new AwsServiceConfigurator.Builder();
+        AwsServiceConfigurator awsServiceConfigurator;
+
+        // When
+        awsServiceConfigurator = builder.withTransferConcurrency(4).build();
+
+        // Then
+        assertEquals(4, awsServiceConfigurator.getTransferConcurrency());
+    }
+
+    @Test
+    public void testBuilderWithMaxConnectionsShouldSetMaxConnections() {
+        // Given
+        AwsServiceConfigurator.Builder builder = new AwsServiceConfigurator.Builder();
+        AwsServiceConfigurator awsServiceConfigurator;
+
+        // When
+        awsServiceConfigurator = builder.withMaxConnections(200).build();
+
+        // Then
+        assertEquals(200, awsServiceConfigurator.getMaxConnections());
+    }
+
+    @Test
+    public void testBuilderWithZeroSocketTimeoutShouldThrowIllegalArgumentException() {
+        // Given
+        AwsServiceConfigurator.Builder builder = new AwsServiceConfigurator.Builder();
+
+        // When
+        assertThrows(IllegalArgumentException.class, () -> builder.withSocketTimeout(Duration.ZERO));
+    }
+
+    @Test
+    public void testHttpClientBuilderShouldFollowTheHttpClientType() {
+        // Given
+        AwsServiceConfigurator.Builder builder = new AwsServiceConfigurator.Builder();
+        AwsServiceConfigurator awsServiceConfigurator;
+
+        // When
+        awsServiceConfigurator = builder.withHttpClientType(AwsServiceConfigurator.HttpClientType.URL_CONNECTION).build();
+
+        // Then
+        assertInstanceOf(UrlConnectionHttpClient.Builder.class, awsServiceConfigurator.httpClientBuilder());
+    }
+
+    @Test
+    public void testBuilderWithBucketsShouldSetBuckets() {
+        // Given
+        AwsServiceConfigurator.Builder builder = new AwsServiceConfigurator.Builder();
+        AwsServiceConfigurator awsServiceConfigurator;
+
+        // When
+        awsServiceConfigurator = builder.withBuckets(List.of("bucket-a", "bucket-b")).withShardPrefixes(16).build();
+
+        // Then
+        assertEquals(List.of("bucket-a", "bucket-b"), awsServiceConfigurator.getBuckets());
+        assertEquals(16, awsServiceConfigurator.getShardPrefixes());
+    }
+
+    @Test
+    public void testBuilderWithDuplicateBucketsShouldThrowIllegalArgumentException() {
+        // Given
+        AwsServiceConfigurator.Builder builder = new AwsServiceConfigurator.Builder();
+
+        // When
+        assertThrows(IllegalArgumentException.class, () -> builder.withBuckets(List.of("bucket-a", "bucket-a")));
+    }
+
+    @Test
+    public void testBuilderWithTooManyShardPrefixesShouldThrowIllegalArgumentException() {
+        // Given
+        AwsServiceConfigurator.Builder builder = new AwsServiceConfigurator.Builder();
+
+        // When
+        assertThrows(IllegalArgumentException.class, () -> builder.withShardPrefixes(4097));
+    }
+
+    @Test
+    public void testBuilderWithPreviousPlacementShouldSetPreviousPlacement() {
+        // Given
+        AwsServiceConfigurator.Builder builder = new AwsServiceConfigurator.Builder();
+        AwsServiceConfigurator awsServiceConfigurator;
+
+        // When
+        awsServiceConfigurator = builder.withBuckets(List.of("bucket-a", "bucket-b")).withPreviousPlacement(List.of("bucket-a"), 0).build();
+
+        // Then
+        assertEquals(List.of("bucket-a"), awsServiceConfigurator.getPreviousBuckets());
+        assertEquals(0, awsServiceConfigurator.getPreviousShardPrefixes());
+    }
+
+    @Test
+    public void testBuilderWithDuplicatePreviousBucketsShouldThrowIllegalArgumentException() {
+        // Given
+        AwsServiceConfigurator.Builder builder = new AwsServiceConfigurator.Builder();
+
+        // When
+        assertThrows(IllegalArgumentException.class, () -> builder.withPreviousPlacement(List.of("bucket-a", "bucket-a"), 0));
+    }
+}
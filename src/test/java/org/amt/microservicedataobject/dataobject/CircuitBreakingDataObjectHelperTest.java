@@ -0,0 +1,95 @@
+package org.amt.microservicedataobject.dataobject;
+
+import org.amt.microservicedataobject.service.CircuitBreakingDataObjectHelper;
+import org.amt.microservicedataobject.service.DataObjectHelper;
+import org.amt.microservicedataobject.service.ForwardingDataObjectHelper;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.amt.microservicedataobject.service.CircuitBreakingDataObjectHelper.State.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CircuitBreakingDataObjectHelperTest {
+
+    final static String TEST_FILE_NAME = "testFile.txt";
+    final static byte[] TEST_CONTENT = "content".getBytes();
+    final InMemoryDataObjectHelper storage = new InMemoryDataObjectHelper();
+    final AtomicBoolean unavailable = new AtomicBoolean();
+    // Fails like an unhealthy S3 while unavailable is set
+    final DataObjectHelper failing = new ForwardingDataObjectHelper(storage) {
+        @Override
+        public boolean exists(String fileName) throws DataObjectHelperException {
+            if (unavailable.get()) {
+                throw new ServiceException("Internal error");
+            }
+            return super.exists(fileName);
+        }
+    };
+
+    @Test
+    void testFailuresOverTheThresholdShouldFailFastUntilTheTrialCallsSucceed() throws Exception {
+        // Given
+        CircuitBreakingDataObjectHelper helper = new CircuitBreakingDataObjectHelper(failing, 4, 4, 0.5, Duration.ofMillis(100), 2);
+        storage.add(TEST_FILE_NAME, new ByteArrayInputStream(TEST_CONTENT), TEST_CONTENT.length);
+        assertTrue(helper.exists(TEST_FILE_NAME));
+        assertTrue(helper.exists(TEST_FILE_NAME));
+        unavailable.set(true);
+
+        // When
+        assertThrows(DataObjectHelper.ServiceException.class, () -> helper.exists(TEST_FILE_NAME));
+        assertThrows(DataObjectHelper.ServiceException.class, () -> helper.exists(TEST_FILE_NAME));
+
+        // Then
+        assertEquals(OPEN, helper.getState());
+        int callsBefore = storage.calls.get();
+        assertThrows(DataObjectHelper.CircuitOpenException.class, () -> helper.exists(TEST_FILE_NAME));
+        assertEquals(callsBefore, storage.calls.get());
+        assertEquals(1, helper.getRejectedCalls());
+
+        unavailable.set(false);
+        Thread.sleep(150);
+        assertTrue(helper.exists(TEST_FILE_NAME));
+        assertEquals(HALF_OPEN, helper.getState());
+        assertTrue(helper.exists(TEST_FILE_NAME));
+        assertEquals(CLOSED, helper.getState());
+        assertEquals(1, helper.getTransitions(OPEN));
+        assertEquals(1, helper.getTransitions(CLOSED));
+    }
+
+    @Test
+    void testFailedTrialCallShouldOpenTheCircuitAgain() throws Exception {
+        // Given
+        CircuitBreakingDataObjectHelper helper = new CircuitBreakingDataObjectHelper(failing, 2, 1, 1.0, Duration.ZERO, 1);
+        unavailable.set(true);
+        assertThrows(DataObjectHelper.ServiceException.class, () -> helper.exists(TEST_FILE_NAME));
+
+        // When
+        assertThrows(DataObjectHelper.ServiceException.class, () -> helper.exists(TEST_FILE_NAME));
+
+        // Then
+        assertEquals(OPEN, helper.getState());
+        assertEquals(2, helper.getTransitions(OPEN));
+        assertEquals(1, helper.getTransitions(HALF_OPEN));
+    }
+
+    @Test
+    void testMissingKeysAndThrottlingShouldNotOpenTheCircuit() {
+        // Given
+        CircuitBreakingDataObjectHelper helper = new CircuitBreakingDataObjectHelper(new ForwardingDataObjectHelper(storage) {
+            @Override
+            public boolean exists(String fileName) throws DataObjectHelperException {
+                throw new ThrottlingException("Slow down");
+            }
+        }, 2, 1, 0.5, Duration.ofMinutes(1), 1);
+
+        // When
+        assertThrows(DataObjectHelper.KeyNotFoundException.class, () -> helper.getMetadata(TEST_FILE_NAME));
+        assertThrows(DataObjectHelper.ThrottlingException.class, () -> helper.exists(TEST_FILE_NAME));
+
+        // Then
+        assertEquals(CLOSED, helper.getState());
+    }
+}
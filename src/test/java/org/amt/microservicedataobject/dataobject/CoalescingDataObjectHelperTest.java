@@ -0,0 +1,132 @@
+package org.amt.microservicedataobject.dataobject;
+
+import org.amt.microservicedataobject.service.CoalescingDataObjectHelper;
+import org.amt.microservicedataobject.service.DataObjectHelper;
+import org.amt.microservicedataobject.service.ForwardingDataObjectHelper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CoalescingDataObjectHelperTest {
+
+    final static String TEST_FILE_NAME = "testFile.txt";
+    final static byte[] TEST_CONTENT = "content".getBytes();
+    final static int CALLERS = 8;
+    final InMemoryDataObjectHelper storage = new InMemoryDataObjectHelper();
+    final ExecutorService executor = Executors.newCachedThreadPool();
+    final CountDownLatch started = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    // Blocks the first get until released, so that the other callers arrive while it runs
+    final CoalescingDataObjectHelper helper = new CoalescingDataObjectHelper(new ForwardingDataObjectHelper(storage) {
+        @Override
+        public byte[] get(String fileName) throws DataObjectHelperException {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return super.get(fileName);
+        }
+    });
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private List<Future<byte[]>> concurrentGets() throws Exception {
+        List<Future<byte[]>> gets = new ArrayList<>();
+        gets.add(executor.submit(() -> helper.get(TEST_FILE_NAME)));
+        started.await();
+        for (int i = 1; i < CALLERS; i++)
+            gets.add(executor.submit(() -> helper.get(TEST_FILE_NAME)));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (helper.getCoalescedCount() < CALLERS - 1 && System.nanoTime() < deadline)
+            Thread.onSpinWait();
+        return gets;
+    }
+
+    @Test
+    void testConcurrentGetsShouldShareOneCall() throws Exception {
+        // Given
+        storage.add(TEST_FILE_NAME, new ByteArrayInputStream(TEST_CONTENT), TEST_CONTENT.length);
+        int callsBefore = storage.calls.get();
+        List<Future<byte[]>> gets = concurrentGets();
+
+        // When
+        release.countDown();
+
+        // Then
+        List<byte[]> contents = new ArrayList<>();
+        for (Future<byte[]> get : gets) {
+            byte[] content = get.get();
+            assertArrayEquals(TEST_CONTENT, content);
+            assertTrue(contents.stream().noneMatch(other -> other == content), "Each caller gets its own copy");
+            contents.add(content);
+        }
+        assertEquals(1, storage.calls.get() - callsBefore);
+        assertEquals(1, helper.getCallCount());
+        assertEquals(CALLERS - 1, helper.getCoalescedCount());
+    }
+
+    @Test
+    void testCallerMakingTheReadShouldGetItsOwnCopy() throws Exception {
+        // Given
+        byte[] shared = TEST_CONTENT.clone();
+        CoalescingDataObjectHelper coalescing = new CoalescingDataObjectHelper(new ForwardingDataObjectHelper(storage) {
+            @Override
+            public byte[] get(String fileName) {
+                return shared;
+            }
+        });
+
+        // When
+        byte[] content = coalescing.get(TEST_FILE_NAME);
+
+        // Then
+        assertNotSame(shared, content);
+        assertArrayEquals(TEST_CONTENT, content);
+    }
+
+    @Test
+    void testFailureShouldBeThrownToEveryCaller() throws Exception {
+        // Given
+        List<Future<byte[]>> gets = concurrentGets();
+
+        // When
+        release.countDown();
+
+        // Then
+        for (Future<byte[]> get : gets) {
+            ExecutionException thrown = assertThrows(ExecutionException.class, get::get);
+            assertInstanceOf(DataObjectHelper.KeyNotFoundException.class, thrown.getCause());
+        }
+        assertEquals(1, helper.getCallCount());
+    }
+
+    @Test
+    void testWriteShouldDetachTheReadInFlight() throws Exception {
+        // Given
+        storage.add(TEST_FILE_NAME, new ByteArrayInputStream(TEST_CONTENT), TEST_CONTENT.length);
+        Future<byte[]> before = executor.submit(() -> helper.get(TEST_FILE_NAME));
+        started.await();
+
+        // When
+        helper.add(TEST_FILE_NAME, new ByteArrayInputStream("new".getBytes()), 3);
+        Future<byte[]> after = executor.submit(() -> helper.get(TEST_FILE_NAME));
+        release.countDown();
+
+        // Then
+        before.get();
+        assertArrayEquals("new".getBytes(), after.get());
+        assertEquals(2, helper.getCallCount());
+        assertEquals(0, helper.getCoalescedCount());
+    }
+}
@@ -0,0 +1,149 @@
+package org.amt.microservicedataobject.dataobject;
+
+import org.amt.microservicedataobject.service.ConcurrencyLimitedDataObjectHelper;
+import org.amt.microservicedataobject.service.DataObjectContent;
+import org.amt.microservicedataobject.service.DataObjectHelper;
+import org.amt.microservicedataobject.service.ForwardingDataObjectHelper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.time.Duration;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConcurrencyLimitedDataObjectHelperTest {
+
+    final static String TEST_FILE_NAME = "testFile.txt";
+    final static byte[] TEST_CONTENT = "content".getBytes();
+    final InMemoryDataObjectHelper storage = new InMemoryDataObjectHelper();
+    final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void testCallOverTheLimitShouldFailAfterTheTimeout() throws Exception {
+        // Given
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        DataObjectHelper blocking = new ForwardingDataObjectHelper(storage) {
+            @Override
+            public boolean exists(String fileName) throws DataObjectHelperException {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.exists(fileName);
+            }
+        };
+        ConcurrencyLimitedDataObjectHelper helper = new ConcurrencyLimitedDataObjectHelper(blocking, 1, Duration.ofMillis(50));
+        Future<Boolean> running = executor.submit(() -> helper.exists(TEST_FILE_NAME));
+        started.await();
+
+        // When
+        assertThrows(DataObjectHelper.ServiceException.class, () -> helper.exists(TEST_FILE_NAME));
+
+        // Then
+        assertEquals(1, helper.getActiveCalls());
+        release.countDown();
+        assertFalse(running.get());
+        assertEquals(0, helper.getActiveCalls());
+    }
+
+    @Test
+    void testOpenContentShouldHoldItsPermitUntilClosed() throws Exception {
+        // Given
+        ConcurrencyLimitedDataObjectHelper helper = new ConcurrencyLimitedDataObjectHelper(storage, 1, Duration.ZERO);
+        helper.add(TEST_FILE_NAME, new ByteArrayInputStream(TEST_CONTENT), TEST_CONTENT.length);
+
+        // When
+        DataObjectContent content = helper.getContent(TEST_FILE_NAME);
+
+        // Then
+        assertThrows(DataObjectHelper.ServiceException.class, () -> helper.exists(TEST_FILE_NAME));
+        assertArrayEquals(TEST_CONTENT, content.getInputStream().readAllBytes());
+        content.close();
+        content.close();
+        assertEquals(0, helper.getActiveCalls());
+        assertTrue(helper.exists(TEST_FILE_NAME));
+    }
+
+    @Test
+    void testFailedCallShouldReleaseItsPermit() {
+        // Given
+        ConcurrencyLimitedDataObjectHelper helper = new ConcurrencyLimitedDataObjectHelper(storage, 1, Duration.ZERO);
+
+        // When
+        assertThrows(DataObjectHelper.KeyNotFoundException.class, () -> helper.getContent(TEST_FILE_NAME));
+
+        // Then
+        assertEquals(0, helper.getActiveCalls());
+    }
+
+    @Test
+    void testThrottledConcurrentCallsShouldDecreaseTheAdaptiveLimitOnce() throws Exception {
+        // Given
+        CountDownLatch release = new CountDownLatch(1);
+        DataObjectHelper throttling = new ForwardingDataObjectHelper(storage) {
+            @Override
+            public boolean exists(String fileName) throws DataObjectHelperException {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                throw new ThrottlingException("Slow down");
+            }
+        };
+        ConcurrencyLimitedDataObjectHelper helper = new ConcurrencyLimitedDataObjectHelper(throttling, 2, 10, Duration.ZERO);
+        Future<Boolean> first = executor.submit(() -> helper.exists(TEST_FILE_NAME));
+        Future<Boolean> second = executor.submit(() -> helper.exists(TEST_FILE_NAME));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (helper.getActiveCalls() < 2 && System.nanoTime() < deadline)
+            Thread.onSpinWait();
+
+        // When
+        release.countDown();
+
+        // Then
+        ExecutionException failure = assertThrows(ExecutionException.class, first::get);
+        assertInstanceOf(DataObjectHelper.ThrottlingException.class, failure.getCause());
+        assertThrows(ExecutionException.class, second::get);
+        assertEquals(9, helper.getLimit());
+        assertEquals(1, helper.getLimitDecreases());
+        assertThrows(DataObjectHelper.ThrottlingException.class, () -> helper.exists(TEST_FILE_NAME));
+        assertEquals(8, helper.getLimit());
+    }
+
+    @Test
+    void testSuccessfulCallsOfAnIdleHelperShouldNotRaiseTheAdaptiveLimit() throws Exception {
+        // Given
+        AtomicBoolean throttled = new AtomicBoolean(true);
+        ConcurrencyLimitedDataObjectHelper helper = new ConcurrencyLimitedDataObjectHelper(new ForwardingDataObjectHelper(storage) {
+            @Override
+            public boolean exists(String fileName) throws DataObjectHelperException {
+                if (throttled.getAndSet(false)) {
+                    throw new ThrottlingException("Slow down");
+                }
+                return super.exists(fileName);
+            }
+        }, 2, 10, Duration.ZERO);
+        assertThrows(DataObjectHelper.ThrottlingException.class, () -> helper.exists(TEST_FILE_NAME));
+
+        // When
+        for (int i = 0; i < 20; i++)
+            helper.exists(TEST_FILE_NAME);
+
+        // Then
+        assertEquals(9, helper.getLimit());
+        assertEquals(1, helper.getLimitDecreases());
+        assertEquals(0, helper.getActiveCalls());
+    }
+}
@@ -0,0 +1,188 @@
+package org.amt.microservicedataobject.dataobject;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.amt.microservicedataobject.controller.DataObjectController;
+import org.amt.microservicedataobject.service.DataObjectBatchUploader;
+import org.amt.microservicedataobject.service.DataObjectContent;
+import org.amt.microservicedataobject.service.DataObjectHelper;
+import org.amt.microservicedataobject.service.DataObjectMetadata;
+import org.amt.microservicedataobject.service.ForwardingDataObjectHelper;
+import org.amt.microservicedataobject.service.image.ImageVariants;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.io.ByteArrayInputStream;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+public class DataObjectControllerTest {
+
+    final static String TEST_FILE_NAME = "testFile.txt";
+    final static byte[] TEST_CONTENT = "This is a test file".getBytes();
+    final static String BYTES_SAVED = "X-Bytes-Saved";
+    final static byte[] TEST_COMPRESSED_CONTENT = {31, -117, 8, 0, 0, 0, 0, 0};
+    final static String TEST_VARIANT = ImageVariants.VARIANT_PREFIX + TEST_FILE_NAME + "/64x64-1.jpg";
+    // Variant of an image named after the test file, kept when the test file is deleted
+    final static String TEST_OTHER_VARIANT = ImageVariants.VARIANT_PREFIX + TEST_FILE_NAME + "/old/64x64-1.jpg";
+    final InMemoryDataObjectHelper storage = new InMemoryDataObjectHelper();
+    final DataObjectBatchUploader batchUploader = new DataObjectBatchUploader(storage, 2);
+    final ImageVariants imageVariants = new ImageVariants(storage, 1, 1, List.of("64x64"), 0);
+    MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        mockMvc = MockMvcBuilders.standaloneSetup(
+                new DataObjectController(storage, batchUploader, imageVariants, new ObjectMapper())).build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        batchUploader.close();
+        imageVariants.close();
+    }
+
+    @Test
+    void testPutObjectShouldReportTheBytesSavedByAnUnchangedContent() throws Exception {
+        // When
+        mockMvc.perform(put("/objects/" + TEST_FILE_NAME).content(TEST_CONTENT))
+
+        // Then
+                .andExpect(status().isOk())
+                .andExpect(header().string(BYTES_SAVED, "0"));
+        mockMvc.perform(put("/objects/" + TEST_FILE_NAME).content(TEST_CONTENT))
+                .andExpect(status().isOk())
+                .andExpect(header().string(BYTES_SAVED, String.valueOf(TEST_CONTENT.length)));
+        assertArrayEquals(TEST_CONTENT, storage.get(TEST_FILE_NAME));
+    }
+
+    @Test
+    void testPostObjectShouldReportTheBytesSaved() throws Exception {
+        // Given
+        storage.add(TEST_FILE_NAME, new ByteArrayInputStream(TEST_CONTENT), TEST_CONTENT.length);
+
+        // When
+        mockMvc.perform(multipart("/objects").file(new MockMultipartFile("file", TEST_FILE_NAME, null, TEST_CONTENT)))
+
+        // Then
+                .andExpect(status().isOk())
+                .andExpect(header().string(BYTES_SAVED, String.valueOf(TEST_CONTENT.length)));
+    }
+
+    @Test
+    void testPostObjectsShouldReportTheBytesSavedOfEachFile() throws Exception {
+        // Given
+        storage.add(TEST_FILE_NAME, new ByteArrayInputStream(TEST_CONTENT), TEST_CONTENT.length);
+
+        // When
+        mockMvc.perform(multipart("/objects/batch")
+                        .file(new MockMultipartFile("files", TEST_FILE_NAME, null, TEST_CONTENT))
+                        .file(new MockMultipartFile("files", "other.txt", null, TEST_CONTENT)))
+
+        // Then
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].fileName").value(TEST_FILE_NAME))
+                .andExpect(jsonPath("$[0].successful").value(true))
+                .andExpect(jsonPath("$[0].bytesSaved").value(TEST_CONTENT.length))
+                .andExpect(jsonPath("$[1].fileName").value("other.txt"))
+                .andExpect(jsonPath("$[1].bytesSaved").value(0));
+    }
+
+    @Test
+    void testGetObjectContentShouldSendTheEncodingOfAContentSentAsStored() throws Exception {
+        // Given
+        storage.add(TEST_FILE_NAME, new ByteArrayInputStream(TEST_CONTENT), TEST_CONTENT.length);
+        DataObjectHelper compressedStorage = new ForwardingDataObjectHelper(storage) {
+            @Override
+            public DataObjectContent getContentIfModified(String fileName, String ifNoneMatch, Instant ifModifiedSince,
+                                                          String acceptEncoding) throws DataObjectHelperException {
+                if (!DataObjectMetadata.acceptsEncoding(acceptEncoding, "gzip")) {
+                    return super.getContentIfModified(fileName, ifNoneMatch, ifModifiedSince, acceptEncoding);
+                }
+                return new DataObjectContent(new DataObjectMetadata(TEST_COMPRESSED_CONTENT.length, "text/plain",
+                        "\"compressed\"", Instant.EPOCH, null, "gzip"), new ByteArrayInputStream(TEST_COMPRESSED_CONTENT));
+            }
+        };
+        mockMvc = MockMvcBuilders.standaloneSetup(
+                new DataObjectController(compressedStorage, batchUploader, imageVariants, new ObjectMapper())).build();
+
+        // When
+        MvcResult compressed = mockMvc.perform(get("/objects/" + TEST_FILE_NAME + "/content")
+                .header(HttpHeaders.ACCEPT_ENCODING, "gzip")).andReturn();
+        MvcResult decompressed = mockMvc.perform(get("/objects/" + TEST_FILE_NAME + "/content")).andReturn();
+
+        // Then
+        mockMvc.perform(asyncDispatch(compressed))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"))
+                .andExpect(header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING))
+                .andExpect(header().string(HttpHeaders.ETAG, "\"compressed\""))
+                .andExpect(content().bytes(TEST_COMPRESSED_CONTENT));
+        mockMvc.perform(asyncDispatch(decompressed))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(HttpHeaders.CONTENT_ENCODING))
+                .andExpect(header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING))
+                .andExpect(content().bytes(TEST_CONTENT));
+    }
+
+    @Test
+    void testUploadsUnderTheVariantPrefixShouldBeRefused() throws Exception {
+        // When
+        mockMvc.perform(multipart("/objects").file(new MockMultipartFile("file", TEST_VARIANT, null, TEST_CONTENT)))
+
+        // Then
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(multipart("/objects/batch")
+                        .file(new MockMultipartFile("files", TEST_FILE_NAME, null, TEST_CONTENT))
+                        .file(new MockMultipartFile("files", TEST_VARIANT, null, TEST_CONTENT)))
+                .andExpect(status().isBadRequest());
+        assertTrue(storage.listObjects().isEmpty());
+    }
+
+    @Test
+    void testDeleteObjectShouldDeleteItsVariants() throws Exception {
+        // Given
+        storage.add(TEST_FILE_NAME, new ByteArrayInputStream(TEST_CONTENT), TEST_CONTENT.length);
+        storage.add(TEST_VARIANT, new ByteArrayInputStream(TEST_CONTENT), TEST_CONTENT.length);
+        storage.add(TEST_OTHER_VARIANT, new ByteArrayInputStream(TEST_CONTENT), TEST_CONTENT.length);
+
+        // When
+        mockMvc.perform(delete("/objects/" + TEST_FILE_NAME))
+
+        // Then
+                .andExpect(status().isNoContent());
+        assertEquals(List.of(TEST_OTHER_VARIANT), storage.listObjects());
+    }
+
+    @Test
+    void testDeleteObjectsShouldDeleteTheirVariants() throws Exception {
+        // Given
+        storage.add(TEST_FILE_NAME, new ByteArrayInputStream(TEST_CONTENT), TEST_CONTENT.length);
+        storage.add(TEST_VARIANT, new ByteArrayInputStream(TEST_CONTENT), TEST_CONTENT.length);
+
+        // When
+        mockMvc.perform(post("/objects/delete").contentType("application/json").content("[\"" + TEST_FILE_NAME + "\"]"))
+
+        // Then
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].successful").value(true));
+        assertFalse(storage.listObjects().contains(TEST_VARIANT));
+    }
+}
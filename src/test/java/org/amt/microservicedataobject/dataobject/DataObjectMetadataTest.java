@@ -0,0 +1,30 @@
+package org.amt.microservicedataobject.dataobject;
+
+import org.amt.microservicedataobject.service.DataObjectMetadata;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DataObjectMetadataTest {
+
+    @Test
+    void testAcceptEncodingShouldHonorQualityValues() {
+        // Then
+        assertTrue(DataObjectMetadata.acceptsEncoding("gzip, deflate, br", "gzip"));
+        assertTrue(DataObjectMetadata.acceptsEncoding("*", "gzip"));
+        assertFalse(DataObjectMetadata.acceptsEncoding("gzip;q=0, *", "gzip"));
+        assertFalse(DataObjectMetadata.acceptsEncoding("br", "gzip"));
+        assertFalse(DataObjectMetadata.acceptsEncoding(null, "gzip"));
+    }
+
+    @Test
+    void testWeakETagShouldMatchTheStrongOne() {
+        // Given
+        DataObjectMetadata metadata = new DataObjectMetadata(10, "text/plain", "W/\"abc\"", null);
+
+        // Then
+        assertTrue(metadata.isNotModified("\"abc\"", null));
+        assertTrue(metadata.isNotModified("W/\"abc\"", null));
+        assertFalse(metadata.isNotModified("\"other\"", null));
+    }
+}
@@ -0,0 +1,119 @@
+package org.amt.microservicedataobject.dataobject;
+
+import org.amt.microservicedataobject.service.DataObjectContent;
+import org.amt.microservicedataobject.service.cache.DiskCachingDataObjectHelper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DiskCachingDataObjectHelperTest {
+
+    final static String TEST_FILE_NAME = "testFile.txt";
+    final static byte[] TEST_CONTENT = "0123456789".getBytes();
+    final static Duration REVALIDATE_AFTER = Duration.ofSeconds(5);
+
+    @TempDir
+    Path directory;
+    final InMemoryDataObjectHelper storage = new InMemoryDataObjectHelper();
+    final ExpiringCacheTest.MutableClock clock = new ExpiringCacheTest.MutableClock();
+    DiskCachingDataObjectHelper helper;
+
+    @BeforeEach
+    void init() throws Exception {
+        storage.add(TEST_FILE_NAME, new ByteArrayInputStream(TEST_CONTENT), TEST_CONTENT.length);
+        storage.calls.set(0);
+        helper = new DiskCachingDataObjectHelper(storage, directory, 25, 20, REVALIDATE_AFTER, clock);
+    }
+
+    @Test
+    void testSecondReadShouldBeServedFromTheDisk() throws Exception {
+        // Given
+        helper.get(TEST_FILE_NAME);
+
+        // When
+        byte[] content = helper.get(TEST_FILE_NAME);
+
+        // Then
+        assertArrayEquals(TEST_CONTENT, content);
+        assertEquals(1, storage.calls.get());
+        assertEquals(1, helper.getHitCount());
+        assertEquals(TEST_CONTENT.length, helper.getBytesSaved());
+        assertEquals(0.5, helper.getHitRatio());
+    }
+
+    @Test
+    void testStaleEntryShouldBeRevalidatedWithItsETag() throws Exception {
+        // Given
+        helper.get(TEST_FILE_NAME);
+        clock.advance(REVALIDATE_AFTER);
+
+        // When
+        byte[] unchanged = helper.get(TEST_FILE_NAME);
+        clock.advance(REVALIDATE_AFTER);
+        storage.add(TEST_FILE_NAME, new ByteArrayInputStream("changed".getBytes()), 7);
+        byte[] changed = helper.get(TEST_FILE_NAME);
+
+        // Then
+        assertArrayEquals(TEST_CONTENT, unchanged);
+        assertArrayEquals("changed".getBytes(), changed);
+        assertEquals(1, helper.getRevalidatedCount());
+        assertEquals(2, helper.getMissCount());
+    }
+
+    @Test
+    void testWriteThroughTheHelperShouldInvalidateTheEntry() throws Exception {
+        // Given
+        helper.get(TEST_FILE_NAME);
+
+        // When
+        helper.add(TEST_FILE_NAME, new ByteArrayInputStream("new".getBytes()), 3);
+
+        // Then
+        assertEquals(0, helper.getEntryCount());
+        assertArrayEquals("new".getBytes(), helper.get(TEST_FILE_NAME));
+    }
+
+    @Test
+    void testLeastRecentlyUsedEntryShouldBeEvicted() throws Exception {
+        // Given
+        storage.add("other.txt", new ByteArrayInputStream(TEST_CONTENT), TEST_CONTENT.length);
+        storage.add("third.txt", new ByteArrayInputStream(TEST_CONTENT), TEST_CONTENT.length);
+        helper.get(TEST_FILE_NAME);
+        helper.get("other.txt");
+        helper.get(TEST_FILE_NAME);
+
+        // When
+        helper.get("third.txt");
+
+        // Then
+        assertEquals(1, helper.getEvictionCount());
+        assertEquals(2 * TEST_CONTENT.length, helper.getSize());
+        storage.calls.set(0);
+        helper.get(TEST_FILE_NAME);
+        assertEquals(0, storage.calls.get());
+        helper.get("other.txt");
+        assertEquals(1, storage.calls.get());
+    }
+
+    @Test
+    void testRangeShouldBeServedFromTheCachedContent() throws Exception {
+        // Given
+        helper.get(TEST_FILE_NAME);
+
+        // When
+        try (DataObjectContent content = helper.getContent(TEST_FILE_NAME, 2, 4)) {
+
+            // Then
+            assertEquals("bytes 2-4/10", content.getContentRange());
+            assertEquals(3, content.getMetadata().getContentLength());
+            assertArrayEquals("234".getBytes(), content.getInputStream().readAllBytes());
+        }
+        assertEquals(1, storage.calls.get());
+    }
+}
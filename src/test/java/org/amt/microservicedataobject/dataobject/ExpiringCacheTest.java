@@ -0,0 +1,160 @@
+package org.amt.microservicedataobject.dataobject;
+
+import org.amt.microservicedataobject.service.cache.ExpiringCache;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ExpiringCacheTest {
+
+    final static String TEST_KEY = "test";
+    final static String TEST_VALUE = "value";
+    final static Duration TEST_TTL = Duration.ofSeconds(10);
+    final MutableClock clock = new MutableClock();
+
+    @Test
+    void testGetShouldReturnCachedValue() {
+        // Given
+        ExpiringCache<String, String> cache = new ExpiringCache<>(10, clock);
+        cache.put(TEST_KEY, TEST_VALUE, TEST_TTL);
+
+        // When
+        String value = cache.get(TEST_KEY);
+
+        // Then
+        assertEquals(TEST_VALUE, value);
+        assertEquals(1, cache.getHitCount());
+    }
+
+    @Test
+    void testGetShouldReturnNullWhenTheValueExpired() {
+        // Given
+        ExpiringCache<String, String> cache = new ExpiringCache<>(10, clock);
+        cache.put(TEST_KEY, TEST_VALUE, TEST_TTL);
+
+        // When
+        clock.advance(TEST_TTL);
+
+        // Then
+        assertNull(cache.get(TEST_KEY));
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    void testPutShouldEvictTheLeastRecentlyUsedValueWhenFull() {
+        // Given
+        ExpiringCache<String, String> cache = new ExpiringCache<>(2, clock);
+        cache.put("first", TEST_VALUE, TEST_TTL);
+        cache.put("second", TEST_VALUE, TEST_TTL);
+        cache.get("first");
+
+        // When
+        cache.put("third", TEST_VALUE, TEST_TTL);
+
+        // Then
+        assertNotNull(cache.get("first"));
+        assertNull(cache.get("second"));
+        assertNotNull(cache.get("third"));
+    }
+
+    @Test
+    void testInvalidateIfShouldRemoveMatchingValues() {
+        // Given
+        ExpiringCache<String, String> cache = new ExpiringCache<>(10, clock);
+        cache.put("60/" + TEST_KEY, TEST_VALUE, TEST_TTL);
+        cache.put("60/other", TEST_VALUE, TEST_TTL);
+
+        // When
+        cache.invalidateIf(key -> key.endsWith("/" + TEST_KEY));
+
+        // Then
+        assertNull(cache.get("60/" + TEST_KEY));
+        assertNotNull(cache.get("60/other"));
+    }
+
+    @Test
+    void testInvalidateGroupsShouldRemoveTheValuesOfTheGroups() {
+        // Given
+        ExpiringCache<String, String> cache = new ExpiringCache<>(10, clock, key -> key.substring(key.indexOf('/') + 1));
+        cache.put("60/" + TEST_KEY, TEST_VALUE, TEST_TTL);
+        cache.put("3600/" + TEST_KEY, TEST_VALUE, TEST_TTL);
+        cache.put("60/other", TEST_VALUE, TEST_TTL);
+        cache.put("60/third", TEST_VALUE, TEST_TTL);
+
+        // When
+        cache.invalidateGroups(List.of(TEST_KEY, "third", "missing"));
+
+        // Then
+        assertNull(cache.get("60/" + TEST_KEY));
+        assertNull(cache.get("3600/" + TEST_KEY));
+        assertNull(cache.get("60/third"));
+        assertNotNull(cache.get("60/other"));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void testEvictedValueShouldLeaveItsGroup() {
+        // Given
+        ExpiringCache<String, String> cache = new ExpiringCache<>(1, clock, key -> key.substring(key.indexOf('/') + 1));
+        cache.put("60/" + TEST_KEY, TEST_VALUE, TEST_TTL);
+        cache.put("60/other", TEST_VALUE, TEST_TTL);
+
+        // When
+        cache.put("60/" + TEST_KEY, TEST_VALUE, TEST_TTL);
+        cache.invalidateGroups(List.of(TEST_KEY));
+
+        // Then
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void testInvalidateGroupsShouldFailWithoutGroups() {
+        // Given
+        ExpiringCache<String, String> cache = new ExpiringCache<>(10, clock);
+
+        // Then
+        assertThrows(IllegalStateException.class, () -> cache.invalidateGroups(List.of(TEST_KEY)));
+    }
+
+    @Test
+    void testCacheWithoutSizeShouldNotKeepValues() {
+        // Given
+        ExpiringCache<String, String> cache = new ExpiringCache<>(0, clock);
+
+        // When
+        cache.put(TEST_KEY, TEST_VALUE, TEST_TTL);
+
+        // Then
+        assertNull(cache.get(TEST_KEY));
+    }
+
+    static class MutableClock extends Clock {
+        private Instant instant = Instant.parse("2023-01-01T00:00:00Z");
+
+        void advance(Duration duration) {
+            instant = instant.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package org.amt.microservicedataobject.dataobject;
+
+import org.amt.microservicedataobject.service.GzipCompressingInputStream;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GzipCompressingInputStreamTest {
+
+    final static byte[] TEST_CONTENT = "{\"key\":\"value\"}\n".repeat(1000).getBytes();
+
+    @Test
+    void testCompressedContentShouldBeReadableAsGzip() throws Exception {
+        // Given
+        GzipCompressingInputStream compressing = new GzipCompressingInputStream(new ByteArrayInputStream(TEST_CONTENT));
+
+        // When
+        byte[] compressed = compressing.readAllBytes();
+        compressing.close();
+
+        // Then
+        assertArrayEquals(TEST_CONTENT, new GZIPInputStream(new ByteArrayInputStream(compressed)).readAllBytes());
+        assertEquals(TEST_CONTENT.length, compressing.getUncompressedLength());
+        assertEquals(compressed.length, compressing.getCompressedLength());
+        assertTrue(compressed.length < TEST_CONTENT.length);
+    }
+
+    @Test
+    void testEmptyContentShouldBeCompressed() throws Exception {
+        // Given
+        GzipCompressingInputStream compressing = new GzipCompressingInputStream(new ByteArrayInputStream(new byte[0]));
+
+        // When
+        byte[] compressed = compressing.readAllBytes();
+
+        // Then
+        assertEquals(0, new GZIPInputStream(new ByteArrayInputStream(compressed)).readAllBytes().length);
+        assertEquals(0, compressing.getUncompressedLength());
+    }
+}
@@ -0,0 +1,152 @@
+package org.amt.microservicedataobject.dataobject;
+
+import org.amt.microservicedataobject.service.ConcurrencyLimitedDataObjectHelper;
+import org.amt.microservicedataobject.service.DataObjectHelper;
+import org.amt.microservicedataobject.service.ForwardingDataObjectHelper;
+import org.amt.microservicedataobject.service.HedgingDataObjectHelper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HedgingDataObjectHelperTest {
+
+    final static String TEST_FILE_NAME = "testFile.txt";
+    final static byte[] TEST_CONTENT = "content".getBytes();
+    // Calls needed before the helper knows enough latencies to hedge
+    final static int WARM_UP_CALLS = 100;
+    final InMemoryDataObjectHelper storage = new InMemoryDataObjectHelper();
+    final AtomicInteger gets = new AtomicInteger();
+    final CountDownLatch release = new CountDownLatch(1);
+    // The first get after the warm up blocks until released, as a slow S3 response
+    final DataObjectHelper slowOnce = new ForwardingDataObjectHelper(storage) {
+        @Override
+        public byte[] get(String fileName) throws DataObjectHelperException {
+            if (gets.incrementAndGet() == WARM_UP_CALLS + 1) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new ClientException("Cancelled");
+                }
+            }
+            return super.get(fileName);
+        }
+    };
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+    }
+
+    private void warmUp(DataObjectHelper helper) throws Exception {
+        storage.add(TEST_FILE_NAME, new ByteArrayInputStream(TEST_CONTENT), TEST_CONTENT.length);
+        for (int i = 0; i < WARM_UP_CALLS; i++)
+            helper.get(TEST_FILE_NAME);
+    }
+
+    @Test
+    void testSlowCallShouldBeHedgedAndTheHedgeShouldWin() throws Exception {
+        // Given
+        HedgingDataObjectHelper helper = new HedgingDataObjectHelper(slowOnce, 0.95, 1.0, Duration.ofMillis(10), false);
+        warmUp(helper);
+
+        // When
+        byte[] content = helper.get(TEST_FILE_NAME);
+
+        // Then
+        assertArrayEquals(TEST_CONTENT, content);
+        assertEquals(1, helper.getHedgeableCount());
+        assertEquals(1, helper.getHedgeCount());
+        assertEquals(1, helper.getWinCount());
+        helper.close();
+    }
+
+    @Test
+    void testSlowCallShouldNotBeHedgedOverTheMaximumRate() throws Exception {
+        // Given
+        HedgingDataObjectHelper helper = new HedgingDataObjectHelper(slowOnce, 0.95, 0.0, Duration.ofMillis(10), false);
+        warmUp(helper);
+        new Thread(() -> {
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException ignored) {
+            }
+            release.countDown();
+        }).start();
+
+        // When
+        byte[] content = helper.get(TEST_FILE_NAME);
+
+        // Then
+        assertArrayEquals(TEST_CONTENT, content);
+        assertEquals(0, helper.getHedgeCount());
+        assertEquals(1, helper.getBudgetExhaustedCount());
+        helper.close();
+    }
+
+    @Test
+    void testMissingKeyShouldNotBeHedged() throws Exception {
+        // Given
+        HedgingDataObjectHelper helper = new HedgingDataObjectHelper(storage, 0.95, 1.0, Duration.ofSeconds(1), false);
+        warmUp(helper);
+
+        // When
+        assertThrows(DataObjectHelper.KeyNotFoundException.class, () -> helper.get("missing.txt"));
+
+        // Then
+        assertEquals(1, helper.getHedgeableCount());
+        assertEquals(0, helper.getHedgeCount());
+        helper.close();
+    }
+
+    @Test
+    void testSlowCallShouldNotBeHedgedWithoutAFreePermit() throws Exception {
+        // Given
+        HedgingDataObjectHelper helper = new HedgingDataObjectHelper(slowOnce, 0.95, 1.0, Duration.ofMillis(10), false);
+        ConcurrencyLimitedDataObjectHelper limited = new ConcurrencyLimitedDataObjectHelper(helper, 1, Duration.ofSeconds(1));
+        helper.setHedgePermits(limited);
+        warmUp(limited);
+        new Thread(() -> {
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException ignored) {
+            }
+            release.countDown();
+        }).start();
+
+        // When
+        byte[] content = limited.get(TEST_FILE_NAME);
+
+        // Then
+        assertArrayEquals(TEST_CONTENT, content);
+        assertEquals(0, helper.getHedgeCount());
+        assertEquals(1, helper.getPermitUnavailableCount());
+        assertEquals(0, limited.getActiveCalls());
+        helper.close();
+    }
+
+    @Test
+    void testHedgeShouldGiveItsPermitBack() throws Exception {
+        // Given
+        HedgingDataObjectHelper helper = new HedgingDataObjectHelper(slowOnce, 0.95, 1.0, Duration.ofMillis(10), false);
+        ConcurrencyLimitedDataObjectHelper limited = new ConcurrencyLimitedDataObjectHelper(helper, 2, Duration.ofSeconds(1));
+        helper.setHedgePermits(limited);
+        warmUp(limited);
+
+        // When
+        byte[] content = limited.get(TEST_FILE_NAME);
+
+        // Then
+        assertArrayEquals(TEST_CONTENT, content);
+        assertEquals(1, helper.getWinCount());
+        assertEquals(0, helper.getPermitUnavailableCount());
+        assertEquals(0, limited.getActiveCalls());
+        helper.close();
+    }
+}
@@ -0,0 +1,134 @@
+package org.amt.microservicedataobject.dataobject;
+
+import org.amt.microservicedataobject.service.DataObjectContent;
+import org.amt.microservicedataobject.service.DataObjectHelper;
+import org.amt.microservicedataobject.service.image.ImageVariants;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ImageVariantsTest {
+
+    final static String TEST_FILE_NAME = "testImage2.jpg";
+    final InMemoryDataObjectHelper storage = new InMemoryDataObjectHelper();
+    final ImageVariants imageVariants = new ImageVariants(storage, 2, 4, List.of("64x64", "128x96"), 8 * 1024 * 1024);
+
+    @BeforeEach
+    void init() throws Exception {
+        storage.add(TEST_FILE_NAME, new File("src/test/resources/testImage2.jpg"));
+    }
+
+    @AfterEach
+    void close() {
+        imageVariants.close();
+    }
+
+    @Test
+    void testFirstRequestShouldGenerateAndStoreTheVariant() throws Exception {
+        // When
+        BufferedImage variant = read(imageVariants.getVariant(TEST_FILE_NAME, 64, 64, null, null, null));
+
+        // Then
+        assertTrue(variant.getWidth() <= 64 && variant.getHeight() <= 64);
+        assertTrue(variant.getWidth() == 64 || variant.getHeight() == 64);
+        assertEquals(1, imageVariants.getGeneratedCount());
+        assertTrue(storage.listObjects().stream().anyMatch(key -> key.startsWith(ImageVariants.VARIANT_PREFIX + TEST_FILE_NAME + "/64x64-")));
+    }
+
+    @Test
+    void testGeneratedVariantShouldHaveTheValidatorsOfTheStoredVariant() throws Exception {
+        // When
+        DataObjectContent generated = imageVariants.getVariant(TEST_FILE_NAME, 128, 96, null, null, null);
+        generated.close();
+        DataObjectContent stored = imageVariants.getVariant(TEST_FILE_NAME, 128, 96, null, null, null);
+        stored.close();
+
+        // Then
+        assertNotNull(generated.getMetadata().getETag());
+        assertEquals(stored.getMetadata().getETag(), generated.getMetadata().getETag());
+        assertEquals(stored.getMetadata().getLastModified(), generated.getMetadata().getLastModified());
+        assertNull(imageVariants.getVariant(TEST_FILE_NAME, 128, 96, null, generated.getMetadata().getETag(), null));
+    }
+
+    @Test
+    void testDeleteVariantsShouldDeleteTheVariantsOfEveryVersion() throws Exception {
+        // Given
+        read(imageVariants.getVariant(TEST_FILE_NAME, 64, 64, null, null, null));
+        read(imageVariants.getVariant(TEST_FILE_NAME, 64, 64, "png", null, null));
+
+        // When
+        int deleted = imageVariants.deleteVariants(TEST_FILE_NAME);
+
+        // Then
+        assertEquals(2, deleted);
+        assertEquals(List.of(TEST_FILE_NAME), List.copyOf(storage.listObjects()));
+    }
+
+    @Test
+    void testInvalidSizesShouldNotBeConfigured() {
+        // Then
+        assertThrows(IllegalArgumentException.class, () -> new ImageVariants(storage, 1, 1, List.of(), 0));
+        assertThrows(IllegalArgumentException.class, () -> new ImageVariants(storage, 1, 1, List.of("0x64"), 0));
+        assertThrows(IllegalArgumentException.class, () -> new ImageVariants(storage, 1, 1, List.of("64"), 0));
+    }
+
+    @Test
+    void testNextRequestsShouldBeServedFromTheStorage() throws Exception {
+        // Given
+        read(imageVariants.getVariant(TEST_FILE_NAME, 64, 64, null, null, null));
+
+        // When
+        DataObjectContent content = imageVariants.getVariant(TEST_FILE_NAME, 64, 64, null, null, null);
+
+        // Then
+        assertEquals("image/jpeg", content.getMetadata().getContentType());
+        assertNotNull(read(content));
+        assertEquals(1, imageVariants.getGeneratedCount());
+        assertEquals(1, imageVariants.getHitCount());
+    }
+
+    @Test
+    void testNewVersionOfTheImageShouldGetNewVariants() throws Exception {
+        // Given
+        read(imageVariants.getVariant(TEST_FILE_NAME, 64, 64, "png", null, null));
+        storage.add(TEST_FILE_NAME, new File("src/test/resources/testImage.jpg"));
+
+        // When
+        BufferedImage variant = read(imageVariants.getVariant(TEST_FILE_NAME, 64, 64, "png", null, null));
+
+        // Then
+        assertNotNull(variant);
+        assertEquals(2, imageVariants.getGeneratedCount());
+        assertEquals(0, imageVariants.getHitCount());
+    }
+
+    @Test
+    void testInvalidRequestsShouldBeRejected() throws Exception {
+        // Given
+        byte[] text = "not an image".getBytes();
+        storage.add("testFile.txt", new ByteArrayInputStream(text), text.length);
+
+        // Then
+        assertThrows(DataObjectHelper.InvalidParamException.class, () -> imageVariants.getVariant(TEST_FILE_NAME, 0, 64, null, null, null));
+        assertThrows(DataObjectHelper.InvalidParamException.class, () -> imageVariants.getVariant(TEST_FILE_NAME, 2048, 64, null, null, null));
+        assertThrows(DataObjectHelper.InvalidParamException.class, () -> imageVariants.getVariant(TEST_FILE_NAME, 96, 128, null, null, null));
+        assertThrows(DataObjectHelper.InvalidParamException.class, () -> imageVariants.getVariant(TEST_FILE_NAME, 64, 64, "gif", null, null));
+        assertThrows(DataObjectHelper.InvalidParamException.class, () -> imageVariants.getVariant("testFile.txt", 64, 64, null, null, null));
+        assertThrows(DataObjectHelper.KeyNotFoundException.class, () -> imageVariants.getVariant("missing.jpg", 64, 64, null, null, null));
+    }
+
+    private static BufferedImage read(DataObjectContent content) throws Exception {
+        try (content) {
+            return ImageIO.read(content.getInputStream());
+        }
+    }
+}
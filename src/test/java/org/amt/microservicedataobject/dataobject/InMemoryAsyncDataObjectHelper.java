@@ -0,0 +1,136 @@
+package org.amt.microservicedataobject.dataobject;
+
+import org.amt.microservicedataobject.service.AsyncDataObjectContent;
+import org.amt.microservicedataobject.service.AsyncDataObjectHelper;
+import org.amt.microservicedataobject.service.DataObjectContent;
+import org.amt.microservicedataobject.service.DataObjectHelper;
+import org.amt.microservicedataobject.service.DataObjectListing;
+import org.amt.microservicedataobject.service.DataObjectMetadata;
+import org.amt.microservicedataobject.service.DataObjectResult;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Flux;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Stand-in non-blocking storage running the calls of an {@link InMemoryDataObjectHelper}
+ */
+class InMemoryAsyncDataObjectHelper implements AsyncDataObjectHelper {
+
+    private final InMemoryDataObjectHelper storage;
+
+    InMemoryAsyncDataObjectHelper(InMemoryDataObjectHelper storage) {
+        this.storage = storage;
+    }
+
+    @Override
+    public CompletableFuture<Void> add(String fileName, Path file) {
+        return call(() -> {
+            storage.add(fileName, file.toFile());
+            return null;
+        });
+    }
+
+    @Override
+    public CompletableFuture<Void> add(String fileName, Publisher<ByteBuffer> content, long contentLength) {
+        return Flux.from(content)
+                .collect(ByteArrayOutputStream::new, (output, buffer) -> {
+                    byte[] bytes = new byte[buffer.remaining()];
+                    buffer.get(bytes);
+                    output.writeBytes(bytes);
+                })
+                .toFuture()
+                .thenCompose(output -> call(() -> {
+                    storage.add(fileName, new ByteArrayInputStream(output.toByteArray()), output.size());
+                    return null;
+                }));
+    }
+
+    @Override
+    public CompletableFuture<List<String>> listObjects() {
+        return call(storage::listObjects);
+    }
+
+    @Override
+    public CompletableFuture<DataObjectListing> listObjects(String prefix, String delimiter, int pageSize, String continuationToken) {
+        return call(() -> storage.listObjects(prefix, delimiter, pageSize, continuationToken));
+    }
+
+    @Override
+    public CompletableFuture<byte[]> get(String fileName) {
+        return call(() -> storage.get(fileName));
+    }
+
+    @Override
+    public CompletableFuture<AsyncDataObjectContent> getContent(String fileName) {
+        return call(() -> toAsync(storage.getContent(fileName)));
+    }
+
+    @Override
+    public CompletableFuture<AsyncDataObjectContent> getContent(String fileName, long start, long end) {
+        return call(() -> toAsync(storage.getContent(fileName, start, end)));
+    }
+
+    @Override
+    public CompletableFuture<Void> delete(String fileName) {
+        return call(() -> {
+            storage.delete(fileName);
+            return null;
+        });
+    }
+
+    @Override
+    public CompletableFuture<List<DataObjectResult>> deleteAll(Collection<String> fileNames) {
+        return call(() -> storage.deleteAll(fileNames));
+    }
+
+    @Override
+    public CompletableFuture<URL> getUrl(String fileName, Duration linkDuration) {
+        return call(() -> storage.getUrl(fileName, linkDuration));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> exists(String fileName) {
+        return call(() -> storage.exists(fileName));
+    }
+
+    @Override
+    public CompletableFuture<DataObjectMetadata> getMetadata(String fileName) {
+        return call(() -> storage.getMetadata(fileName));
+    }
+
+    @Override
+    public String getName() {
+        return storage.getName();
+    }
+
+    private static AsyncDataObjectContent toAsync(DataObjectContent content) throws DataObjectHelper.DataObjectHelperException {
+        try (content) {
+            byte[] bytes = content.getInputStream().readAllBytes();
+            return new AsyncDataObjectContent(content.getMetadata(), Flux.just(ByteBuffer.wrap(bytes)), content.getContentRange());
+        } catch (java.io.IOException e) {
+            throw new DataObjectHelper.DataObjectException("Error reading object" + e.getMessage());
+        }
+    }
+
+    private static <T> CompletableFuture<T> call(Call<T> call) {
+        try {
+            return CompletableFuture.completedFuture(call.call());
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    @FunctionalInterface
+    private interface Call<T> {
+        T call() throws Exception;
+    }
+}
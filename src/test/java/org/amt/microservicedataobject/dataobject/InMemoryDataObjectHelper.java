@@ -0,0 +1,199 @@
+package org.amt.microservicedataobject.dataobject;
+
+import org.amt.microservicedataobject.service.DataObjectContent;
+import org.amt.microservicedataobject.service.DataObjectHelper;
+import org.amt.microservicedataobject.service.DataObjectListing;
+import org.amt.microservicedataobject.service.DataObjectMetadata;
+import org.amt.microservicedataobject.service.DataObjectResult;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Stand-in storage keeping the objects in memory, for the tests of the decorators
+ * Counts the calls reaching it
+ */
+class InMemoryDataObjectHelper implements DataObjectHelper {
+
+    private final NavigableMap<String, byte[]> objects = new ConcurrentSkipListMap<>();
+    final AtomicInteger calls = new AtomicInteger();
+
+    @Override
+    public void add(String fileName, File file) throws DataObjectHelperException {
+        Objects.requireNonNull(file);
+        try {
+            add(fileName, Files.newInputStream(file.toPath()), file.length());
+        } catch (IOException e) {
+            throw new DataObjectException("Error adding object" + e.getMessage());
+        }
+    }
+
+    @Override
+    public void add(String fileName, InputStream inputStream, long contentLength) throws DataObjectHelperException {
+        Objects.requireNonNull(fileName);
+        calls.incrementAndGet();
+        try (inputStream) {
+            objects.put(fileName, inputStream.readAllBytes());
+        } catch (IOException e) {
+            throw new DataObjectException("Error adding object" + e.getMessage());
+        }
+    }
+
+    @Override
+    public long addIfChanged(String fileName, InputStream inputStream, long contentLength) throws DataObjectHelperException {
+        Objects.requireNonNull(fileName);
+        calls.incrementAndGet();
+        try (inputStream) {
+            byte[] content = inputStream.readAllBytes();
+            if (Arrays.equals(objects.get(fileName), content)) {
+                return content.length;
+            }
+            objects.put(fileName, content);
+            return 0;
+        } catch (IOException e) {
+            throw new DataObjectException("Error adding object" + e.getMessage());
+        }
+    }
+
+    @Override
+    public Vector<String> listObjects() {
+        calls.incrementAndGet();
+        return new Vector<>(objects.keySet());
+    }
+
+    @Override
+    public DataObjectListing listObjects(String prefix, String delimiter, int pageSize, String continuationToken) {
+        calls.incrementAndGet();
+        List<String> keys = new ArrayList<>();
+        Set<String> commonPrefixes = new TreeSet<>();
+        String start = prefix == null ? "" : prefix;
+        for (String key : objects.keySet()) {
+            if (!key.startsWith(start))
+                continue;
+            // As S3, the keys holding the delimiter after the prefix are rolled up into a common prefix
+            int delimiterIndex = delimiter == null || delimiter.isEmpty() ? -1 : key.indexOf(delimiter, start.length());
+            if (delimiterIndex >= 0)
+                commonPrefixes.add(key.substring(0, delimiterIndex + delimiter.length()));
+            else
+                keys.add(key);
+        }
+        return new DataObjectListing(keys, new ArrayList<>(commonPrefixes), null);
+    }
+
+    @Override
+    public byte[] get(String fileName) throws DataObjectHelperException {
+        calls.incrementAndGet();
+        return find(fileName).clone();
+    }
+
+    @Override
+    public DataObjectContent getContent(String fileName) throws DataObjectHelperException {
+        return getContent(fileName, 0, -1);
+    }
+
+    @Override
+    public DataObjectContent getContent(String fileName, long start, long end) throws DataObjectHelperException {
+        calls.incrementAndGet();
+        byte[] content = find(fileName);
+        int from = (int) (start < 0 ? Math.max(content.length + start, 0) : start);
+        int to = (int) (end < 0 ? content.length : Math.min(end + 1, content.length));
+        if (from >= content.length && content.length > 0) {
+            throw new InvalidRangeException("Range not satisfiable");
+        }
+        String contentRange = start == 0 && end < 0 ? null : "bytes " + from + "-" + (to - 1) + "/" + content.length;
+        return new DataObjectContent(metadata(fileName, content), new ByteArrayInputStream(content, from, to - from), contentRange);
+    }
+
+    @Override
+    public DataObjectContent getContentIfModified(String fileName, String ifNoneMatch, Instant ifModifiedSince) throws DataObjectHelperException {
+        calls.incrementAndGet();
+        byte[] content = find(fileName);
+        DataObjectMetadata metadata = metadata(fileName, content);
+        return metadata.isNotModified(ifNoneMatch, ifModifiedSince) ? null : new DataObjectContent(metadata, new ByteArrayInputStream(content));
+    }
+
+    @Override
+    public long download(String fileName, FileChannel channel) throws DataObjectHelperException {
+        calls.incrementAndGet();
+        try {
+            return channel.write(ByteBuffer.wrap(find(fileName)));
+        } catch (IOException e) {
+            throw new DataObjectException("Error while writing file" + e.getMessage());
+        }
+    }
+
+    @Override
+    public void delete(String fileName) throws DataObjectHelperException {
+        Objects.requireNonNull(fileName);
+        calls.incrementAndGet();
+        if (objects.remove(fileName) == null) {
+            throw new KeyNotFoundException("Object not found");
+        }
+    }
+
+    @Override
+    public List<DataObjectResult> deleteAll(Collection<String> fileNames) {
+        calls.incrementAndGet();
+        List<DataObjectResult> results = new ArrayList<>();
+        for (String fileName : fileNames) {
+            objects.remove(fileName);
+            results.add(DataObjectResult.success(fileName));
+        }
+        return results;
+    }
+
+    @Override
+    public URL getUrl(String fileName, Duration linkDuration) throws DataObjectHelperException {
+        calls.incrementAndGet();
+        find(fileName);
+        try {
+            return new URL("http://localhost/" + fileName);
+        } catch (MalformedURLException e) {
+            throw new InvalidParamException("Invalid file name");
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "memory";
+    }
+
+    @Override
+    public boolean exists(String fileName) {
+        Objects.requireNonNull(fileName);
+        calls.incrementAndGet();
+        return objects.containsKey(fileName);
+    }
+
+    @Override
+    public DataObjectMetadata getMetadata(String fileName) throws DataObjectHelperException {
+        calls.incrementAndGet();
+        return metadata(fileName, find(fileName));
+    }
+
+    private byte[] find(String fileName) throws KeyNotFoundException {
+        Objects.requireNonNull(fileName);
+        byte[] content = objects.get(fileName);
+        if (content == null) {
+            throw new KeyNotFoundException("Object not found");
+        }
+        return content;
+    }
+
+    private static DataObjectMetadata metadata(String fileName, byte[] content) {
+        return new DataObjectMetadata(content.length, "application/octet-stream",
+                "\"" + Integer.toHexString(Arrays.hashCode(content)) + "\"", Instant.EPOCH);
+    }
+}
@@ -0,0 +1,193 @@
+package org.amt.microservicedataobject.dataobject;
+
+import org.amt.microservicedataobject.service.DataObjectContent;
+import org.amt.microservicedataobject.service.DataObjectHelper;
+import org.amt.microservicedataobject.service.DataObjectListing;
+import org.amt.microservicedataobject.service.local.LocalDataObjectHelperImpl;
+import org.amt.microservicedataobject.service.local.LocalUrlSigner;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.net.URL;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LocalDataObjectHelperImplTest {
+
+    final static String TEST_FILE_NAME = "testFile.txt";
+    final static byte[] TEST_CONTENT = "0123456789".getBytes();
+    final static Instant NOW = Instant.parse("2024-01-01T00:00:00Z");
+
+    @TempDir
+    Path root;
+    LocalUrlSigner urlSigner;
+    LocalDataObjectHelperImpl helper;
+
+    @BeforeEach
+    void init() {
+        urlSigner = new LocalUrlSigner("http://localhost:8080", "secret", Clock.fixed(NOW, ZoneOffset.UTC));
+        helper = new LocalDataObjectHelperImpl(root, urlSigner);
+    }
+
+    private void add(String key, byte[] content) throws DataObjectHelper.DataObjectHelperException {
+        helper.add(key, new ByteArrayInputStream(content), content.length);
+    }
+
+    @Test
+    void testAddedObjectShouldBeReadBack() throws Exception {
+        // Given
+        File file = Files.write(root.resolve("upload.bin"), TEST_CONTENT).toFile();
+
+        // When
+        helper.add("folder/" + TEST_FILE_NAME, file);
+
+        // Then
+        assertArrayEquals(TEST_CONTENT, helper.get("folder/" + TEST_FILE_NAME));
+        assertEquals(TEST_CONTENT.length, helper.getMetadata("folder/" + TEST_FILE_NAME).getContentLength());
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (DataObjectContent content = helper.getContent("folder/" + TEST_FILE_NAME)) {
+            assertNull(content.getContentRange());
+            assertEquals(TEST_CONTENT.length, content.transferTo(output));
+        }
+        assertArrayEquals(TEST_CONTENT, output.toByteArray());
+    }
+
+    @Test
+    void testOverwriteShouldReplaceTheObjectAndLeaveNoTemporaryFile() throws Exception {
+        // Given
+        add(TEST_FILE_NAME, TEST_CONTENT);
+
+        // When
+        add(TEST_FILE_NAME, "new".getBytes());
+
+        // Then
+        assertArrayEquals("new".getBytes(), helper.get(TEST_FILE_NAME));
+        assertEquals(List.of(TEST_FILE_NAME), helper.listObjects());
+    }
+
+    @Test
+    void testTruncatedUploadShouldNotReplaceTheObject() throws Exception {
+        // Given
+        add(TEST_FILE_NAME, TEST_CONTENT);
+
+        // When
+        assertThrows(DataObjectHelper.DataObjectException.class,
+                () -> helper.add(TEST_FILE_NAME, new ByteArrayInputStream("new".getBytes()), 100));
+
+        // Then
+        assertArrayEquals(TEST_CONTENT, helper.get(TEST_FILE_NAME));
+    }
+
+    @Test
+    void testRangeShouldReturnOnlyTheRequestedBytes() throws Exception {
+        // Given
+        add(TEST_FILE_NAME, TEST_CONTENT);
+
+        // When
+        DataObjectContent range = helper.getContent(TEST_FILE_NAME, 2, 4);
+        DataObjectContent suffix = helper.getContent(TEST_FILE_NAME, -3, -1);
+
+        // Then
+        try (range; suffix) {
+            assertEquals("bytes 2-4/10", range.getContentRange());
+            assertEquals(3, range.getMetadata().getContentLength());
+            assertArrayEquals("234".getBytes(), range.getInputStream().readAllBytes());
+            assertEquals("bytes 7-9/10", suffix.getContentRange());
+            assertArrayEquals("789".getBytes(), suffix.getInputStream().readAllBytes());
+        }
+        assertThrows(DataObjectHelper.InvalidRangeException.class, () -> helper.getContent(TEST_FILE_NAME, 10, -1));
+    }
+
+    @Test
+    void testListingShouldFollowTheOrderOfTheKeysAcrossPages() throws Exception {
+        // Given
+        for (String key : List.of("a/b/c.txt", "a/x.txt", "a.txt", "a0.txt", "b.txt"))
+            add(key, TEST_CONTENT);
+
+        // When
+        DataObjectListing first = helper.listObjects(null, null, 3, null);
+        DataObjectListing second = helper.listObjects(null, null, 3, first.getNextContinuationToken());
+        DataObjectListing folders = helper.listObjects("a/", "/", 10, null);
+
+        // Then
+        assertEquals(List.of("a.txt", "a/b/c.txt", "a/x.txt"), first.getKeys());
+        assertTrue(first.isTruncated());
+        assertEquals(List.of("a0.txt", "b.txt"), second.getKeys());
+        assertFalse(second.isTruncated());
+        assertEquals(List.of("a/x.txt"), folders.getKeys());
+        assertEquals(List.of("a/b/"), folders.getCommonPrefixes());
+    }
+
+    @Test
+    void testDeleteShouldRemoveTheObjectAndItsEmptyFolders() throws Exception {
+        // Given
+        add("a/b/" + TEST_FILE_NAME, TEST_CONTENT);
+
+        // When
+        helper.delete("a/b/" + TEST_FILE_NAME);
+
+        // Then
+        assertFalse(helper.exists("a/b/" + TEST_FILE_NAME));
+        assertFalse(Files.exists(root.resolve("a")));
+        assertThrows(DataObjectHelper.KeyNotFoundException.class, () -> helper.delete("a/b/" + TEST_FILE_NAME));
+    }
+
+    @Test
+    void testDownloadShouldWriteTheObjectIntoTheChannel() throws Exception {
+        // Given
+        add(TEST_FILE_NAME, TEST_CONTENT);
+        Path target = root.resolve("download.bin");
+
+        // When
+        try (FileChannel channel = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            assertEquals(TEST_CONTENT.length, helper.download(TEST_FILE_NAME, channel));
+        }
+
+        // Then
+        assertArrayEquals(TEST_CONTENT, Files.readAllBytes(target));
+    }
+
+    @Test
+    void testSignedUrlShouldBeValidUntilItExpires() throws Exception {
+        // Given
+        add("folder/" + TEST_FILE_NAME, TEST_CONTENT);
+
+        // When
+        URL url = helper.getUrl("folder/" + TEST_FILE_NAME, Duration.ofMinutes(1));
+
+        // Then
+        Matcher query = Pattern.compile("key=(.+)&expires=(\\d+)&signature=(.+)").matcher(url.getQuery());
+        assertTrue(query.matches());
+        assertEquals("/signed-objects", url.getPath());
+        assertEquals("folder%2F" + TEST_FILE_NAME, query.group(1));
+        long expires = Long.parseLong(query.group(2));
+        assertEquals(NOW.plusSeconds(60).getEpochSecond(), expires);
+        assertTrue(urlSigner.verify("folder/" + TEST_FILE_NAME, expires, query.group(3)));
+        assertFalse(urlSigner.verify("other.txt", expires, query.group(3)));
+        assertFalse(urlSigner.verify("folder/" + TEST_FILE_NAME, expires + 60, query.group(3)));
+        assertFalse(new LocalUrlSigner("http://localhost:8080", "secret", Clock.fixed(NOW.plusSeconds(61), ZoneOffset.UTC))
+                .verify("folder/" + TEST_FILE_NAME, expires, query.group(3)));
+    }
+
+    @Test
+    void testKeysEscapingTheRootShouldBeRejected() {
+        // When / Then
+        for (String key : List.of("../outside.txt", "/absolute.txt", "a/../../outside.txt", "a//b.txt", "folder/"))
+            assertThrows(DataObjectHelper.InvalidParamException.class, () -> add(key, TEST_CONTENT), key);
+    }
+}
@@ -0,0 +1,99 @@
+package org.amt.microservicedataobject.dataobject;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.amt.microservicedataobject.service.DataObjectContent;
+import org.amt.microservicedataobject.service.DataObjectHelper;
+import org.amt.microservicedataobject.service.MeteredDataObjectHelper;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MeteredDataObjectHelperTest {
+
+    final static String TEST_FILE_NAME = "testFile.txt";
+    final static byte[] TEST_CONTENT = "content".getBytes();
+    final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    final MeteredDataObjectHelper helper = new MeteredDataObjectHelper(new InMemoryDataObjectHelper(), registry);
+
+    @Test
+    void testSuccessfulCallsShouldBeTimedAndTheirBytesCounted() throws Exception {
+        // Given
+        helper.add(TEST_FILE_NAME, new ByteArrayInputStream(TEST_CONTENT), TEST_CONTENT.length);
+
+        // When
+        helper.get(TEST_FILE_NAME);
+        helper.get(TEST_FILE_NAME);
+
+        // Then
+        assertEquals(1, registry.get(MeteredDataObjectHelper.OPERATIONS)
+                .tags("operation", "add", "outcome", "success", "exception", "none").timer().count());
+        assertEquals(2, registry.get(MeteredDataObjectHelper.OPERATIONS)
+                .tags("operation", "get", "outcome", "success").timer().count());
+        assertEquals(TEST_CONTENT.length, registry.get(MeteredDataObjectHelper.BYTES_IN).counter().count());
+        assertEquals(2 * TEST_CONTENT.length, registry.get(MeteredDataObjectHelper.BYTES_OUT).tag("operation", "get").counter().count());
+    }
+
+    @Test
+    void testUnchangedUploadsShouldCountTheBytesSaved() throws Exception {
+        // Given
+        helper.add(TEST_FILE_NAME, new ByteArrayInputStream(TEST_CONTENT), TEST_CONTENT.length);
+
+        // When
+        long saved = helper.addIfChanged(TEST_FILE_NAME, new ByteArrayInputStream(TEST_CONTENT), TEST_CONTENT.length);
+
+        // Then
+        assertEquals(TEST_CONTENT.length, saved);
+        assertEquals(TEST_CONTENT.length, registry.get(MeteredDataObjectHelper.BYTES_IN).counter().count());
+        assertEquals(TEST_CONTENT.length, registry.get(MeteredDataObjectHelper.BYTES_DEDUPLICATED).counter().count());
+        assertEquals(1, registry.get(MeteredDataObjectHelper.OPERATIONS)
+                .tags("operation", "add", "outcome", "unchanged").timer().count());
+    }
+
+    @Test
+    void testChunkedUploadsShouldCountTheBytesRead() throws Exception {
+        // When
+        helper.add(TEST_FILE_NAME, new ByteArrayInputStream(TEST_CONTENT), -1);
+
+        // Then
+        assertEquals(TEST_CONTENT.length, registry.get(MeteredDataObjectHelper.BYTES_IN).counter().count());
+        assertArrayEquals(TEST_CONTENT, helper.get(TEST_FILE_NAME));
+    }
+
+    @Test
+    void testFailedCallsShouldBeCountedByException() {
+        // When
+        assertThrows(DataObjectHelper.KeyNotFoundException.class, () -> helper.get(TEST_FILE_NAME));
+        assertThrows(DataObjectHelper.KeyNotFoundException.class, () -> helper.delete(TEST_FILE_NAME));
+
+        // Then
+        assertEquals(1, registry.get(MeteredDataObjectHelper.ERRORS)
+                .tags("operation", "get", "exception", "KeyNotFoundException").counter().count());
+        assertEquals(1, registry.get(MeteredDataObjectHelper.OPERATIONS)
+                .tags("operation", "delete", "outcome", "error", "exception", "KeyNotFoundException").timer().count());
+        assertNull(registry.find(MeteredDataObjectHelper.BYTES_OUT).counter());
+    }
+
+    @Test
+    void testContentBytesShouldBeCountedAsTheyAreRead() throws Exception {
+        // Given
+        helper.add(TEST_FILE_NAME, new ByteArrayInputStream(TEST_CONTENT), TEST_CONTENT.length);
+
+        // When
+        try (DataObjectContent streamed = helper.getContent(TEST_FILE_NAME);
+             DataObjectContent transferred = helper.getContent(TEST_FILE_NAME)) {
+            assertArrayEquals(TEST_CONTENT, streamed.getInputStream().readAllBytes());
+            assertEquals(TEST_CONTENT.length, transferred.transferTo(new ByteArrayOutputStream()));
+        }
+        DataObjectContent notModified = helper.getContentIfModified(TEST_FILE_NAME,
+                helper.getMetadata(TEST_FILE_NAME).getETag(), null);
+
+        // Then
+        assertNull(notModified);
+        assertEquals(2 * TEST_CONTENT.length, registry.get(MeteredDataObjectHelper.BYTES_OUT).tag("operation", "getContent").counter().count());
+        assertEquals(1, registry.get(MeteredDataObjectHelper.OPERATIONS)
+                .tags("operation", "getContent", "outcome", "not_modified").timer().count());
+    }
+}
@@ -0,0 +1,303 @@
+package org.amt.microservicedataobject.dataobject;
+
+import org.amt.microservicedataobject.controller.ReactiveDataObjectController;
+import org.amt.microservicedataobject.service.AsyncDataObjectContent;
+import org.amt.microservicedataobject.service.DataObjectMetadata;
+import org.amt.microservicedataobject.service.GzipCompressingInputStream;
+import org.amt.microservicedataobject.service.image.ImageVariants;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscription;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.BaseSubscriber;
+import reactor.core.publisher.Flux;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ReactiveDataObjectControllerTest {
+
+    final static String TEST_FILE_NAME = "testFile.txt";
+    final static byte[] TEST_CONTENT = "This is a test file".getBytes();
+    final static byte[] TEST_LONG_CONTENT = "This is a test file\n".repeat(5000).getBytes();
+    final InMemoryDataObjectHelper storage = new InMemoryDataObjectHelper();
+    WebTestClient client;
+
+    @BeforeEach
+    void setUp() {
+        client = WebTestClient.bindToController(
+                new ReactiveDataObjectController(new InMemoryAsyncDataObjectHelper(storage), 4)).build();
+    }
+
+    @Test
+    void testPutObjectShouldStreamTheBodyToTheStorage() throws Exception {
+        // When
+        client.put().uri("/objects/" + TEST_FILE_NAME)
+                .bodyValue(TEST_CONTENT)
+                .exchange()
+
+        // Then
+                .expectStatus().isOk();
+        assertArrayEquals(TEST_CONTENT, storage.get(TEST_FILE_NAME));
+    }
+
+    @Test
+    void testDeleteObjectShouldDeleteItsVariants() throws Exception {
+        // Given
+        String variant = ImageVariants.VARIANT_PREFIX + TEST_FILE_NAME + "/64x64-1.jpg";
+        storage.add(TEST_FILE_NAME, new ByteArrayInputStream(TEST_CONTENT), TEST_CONTENT.length);
+        storage.add(variant, new ByteArrayInputStream(TEST_CONTENT), TEST_CONTENT.length);
+
+        // When
+        client.delete().uri("/objects/" + TEST_FILE_NAME)
+                .exchange()
+
+        // Then
+                .expectStatus().isNoContent();
+        assertEquals(List.of(), List.copyOf(storage.listObjects()));
+    }
+
+    @Test
+    void testPutObjectShouldReadTheBodyOnlyAsFastAsTheStorageRequestsIt() {
+        // Given
+        AtomicInteger read = new AtomicInteger();
+        Flux<DataBuffer> body = Flux.range(0, 100)
+                .<DataBuffer>map(i -> DefaultDataBufferFactory.sharedInstance.wrap(TEST_CONTENT))
+                .doOnNext(buffer -> read.incrementAndGet());
+        AtomicInteger stored = new AtomicInteger();
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        BaseSubscriber<ByteBuffer> slowStorage = new BaseSubscriber<>() {
+            @Override
+            protected void hookOnSubscribe(Subscription subscription) {
+                request(2);
+            }
+
+            @Override
+            protected void hookOnNext(ByteBuffer buffer) {
+                stored.incrementAndGet();
+            }
+
+            @Override
+            protected void hookOnComplete() {
+                done.complete(null);
+            }
+        };
+        ReactiveDataObjectController controller = new ReactiveDataObjectController(new InMemoryAsyncDataObjectHelper(storage) {
+            @Override
+            public CompletableFuture<Void> add(String fileName, Publisher<ByteBuffer> content, long contentLength) {
+                content.subscribe(slowStorage);
+                return done;
+            }
+        }, 4);
+
+        // When
+        CompletableFuture<ResponseEntity<Object>> response = controller
+                .putObject(TEST_FILE_NAME, MockServerHttpRequest.put("/objects/" + TEST_FILE_NAME).body(body))
+                .toFuture();
+
+        // Then
+        assertEquals(2, read.get());
+        assertEquals(2, stored.get());
+        assertFalse(response.isDone());
+        slowStorage.request(98);
+        assertEquals(100, read.get());
+        assertEquals(HttpStatus.OK, response.join().getStatusCode());
+    }
+
+    @Test
+    void testGetObjectContentShouldServeARange() throws Exception {
+        // Given
+        storage.add(TEST_FILE_NAME, new ByteArrayInputStream(TEST_CONTENT), TEST_CONTENT.length);
+
+        // When
+        client.get().uri("/objects/" + TEST_FILE_NAME + "/content")
+                .header(HttpHeaders.RANGE, "bytes=0-3")
+                .exchange()
+
+        // Then
+                .expectStatus().isEqualTo(206)
+                .expectHeader().valueEquals(HttpHeaders.CONTENT_RANGE, "bytes 0-3/" + TEST_CONTENT.length)
+                .expectBody(String.class).isEqualTo("This");
+    }
+
+    @Test
+    void testGetObjectContentShouldMapErrorsLikeTheServletController() throws Exception {
+        // Given
+        storage.add(TEST_FILE_NAME, new ByteArrayInputStream(TEST_CONTENT), TEST_CONTENT.length);
+
+        // Then
+        client.get().uri("/objects/missing/content").exchange().expectStatus().isNotFound();
+        client.get().uri("/objects/" + TEST_FILE_NAME + "/content")
+                .header(HttpHeaders.RANGE, "bytes=1000-")
+                .exchange()
+                .expectStatus().isEqualTo(416);
+    }
+
+    @Test
+    void testCompressedContentShouldBeSentAsStoredToAClientAcceptingGzip() throws Exception {
+        // Given
+        client = WebTestClient.bindToController(new ReactiveDataObjectController(compressedStorage(), 4)).build();
+
+        // When
+        client.get().uri("/objects/" + TEST_FILE_NAME + "/content")
+                .header(HttpHeaders.ACCEPT_ENCODING, "gzip, br")
+                .exchange()
+
+        // Then
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(HttpHeaders.CONTENT_ENCODING, "gzip")
+                .expectHeader().valueEquals(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING)
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "\"compressed\"")
+                .expectBody(byte[].class).isEqualTo(compressed(TEST_LONG_CONTENT));
+    }
+
+    @Test
+    void testCompressedContentShouldBeDecompressedForOtherClients() throws Exception {
+        // Given
+        client = WebTestClient.bindToController(new ReactiveDataObjectController(compressedStorage(), 4)).build();
+
+        // When
+        client.get().uri("/objects/" + TEST_FILE_NAME + "/content")
+                .header(HttpHeaders.ACCEPT_ENCODING, "br")
+                .exchange()
+
+        // Then
+                .expectStatus().isOk()
+                .expectHeader().doesNotExist(HttpHeaders.CONTENT_ENCODING)
+                .expectHeader().valueEquals(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING)
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "W/\"compressed\"")
+                .expectBody(byte[].class).isEqualTo(TEST_LONG_CONTENT);
+    }
+
+    /**
+     * Storage holding a gzip-compressed content, published in small buffers as the non-blocking AWS helper does
+     */
+    private InMemoryAsyncDataObjectHelper compressedStorage() throws Exception {
+        byte[] compressed = compressed(TEST_LONG_CONTENT);
+        return new InMemoryAsyncDataObjectHelper(storage) {
+            @Override
+            public CompletableFuture<AsyncDataObjectContent> getContent(String fileName) {
+                Flux<ByteBuffer> publisher = Flux.range(0, (compressed.length + 99) / 100)
+                        .map(i -> ByteBuffer.wrap(Arrays.copyOfRange(compressed, i * 100, Math.min(compressed.length, (i + 1) * 100))));
+                return CompletableFuture.completedFuture(new AsyncDataObjectContent(new DataObjectMetadata(compressed.length,
+                        "text/plain", "\"compressed\"", Instant.EPOCH, null, "gzip"), publisher, null));
+            }
+        };
+    }
+
+    private static byte[] compressed(byte[] content) throws Exception {
+        try (GzipCompressingInputStream compressing = new GzipCompressingInputStream(new ByteArrayInputStream(content))) {
+            return compressing.readAllBytes();
+        }
+    }
+
+    @Test
+    void testGetObjectsShouldStreamNamesAsNdjson() throws Exception {
+        // Given
+        storage.add("a", new ByteArrayInputStream(TEST_CONTENT), TEST_CONTENT.length);
+        storage.add("b", new ByteArrayInputStream(TEST_CONTENT), TEST_CONTENT.length);
+
+        // When
+        client.get().uri("/objects")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+
+        // Then
+                .expectStatus().isOk()
+                .expectBody(String.class).isEqualTo("\"a\"\n\"b\"\n");
+    }
+
+    @Test
+    void testGetObjectsShouldReturnAJsonArray() throws Exception {
+        // Given
+        storage.add("a", new ByteArrayInputStream(TEST_CONTENT), TEST_CONTENT.length);
+
+        // Then
+        client.get().uri("/objects")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody().json("[\"a\"]");
+    }
+
+    @Test
+    void testGetObjectContentShouldAnswerNotModifiedToAClientHoldingTheCurrentVersion() throws Exception {
+        // Given
+        storage.add(TEST_FILE_NAME, new ByteArrayInputStream(TEST_CONTENT), TEST_CONTENT.length);
+        String eTag = client.get().uri("/objects/" + TEST_FILE_NAME + "/content")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().exists(HttpHeaders.LAST_MODIFIED)
+                .returnResult(String.class).getResponseHeaders().getETag();
+        String later = DateTimeFormatter.RFC_1123_DATE_TIME.format(ZonedDateTime.ofInstant(Instant.EPOCH.plusSeconds(60), ZoneOffset.UTC));
+
+        // Then
+        client.get().uri("/objects/" + TEST_FILE_NAME + "/content")
+                .header(HttpHeaders.IF_NONE_MATCH, "W/" + eTag)
+                .exchange()
+                .expectStatus().isNotModified()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, eTag)
+                .expectBody().isEmpty();
+        client.get().uri("/objects/" + TEST_FILE_NAME + "/content")
+                .header(HttpHeaders.IF_NONE_MATCH, "\"other\", " + eTag)
+                .header(HttpHeaders.RANGE, "bytes=0-3")
+                .exchange()
+                .expectStatus().isNotModified();
+        client.get().uri("/objects/" + TEST_FILE_NAME + "/content")
+                .header(HttpHeaders.IF_MODIFIED_SINCE, later)
+                .exchange()
+                .expectStatus().isNotModified()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, eTag);
+    }
+
+    @Test
+    void testGetObjectContentShouldSendAModifiedObject() throws Exception {
+        // Given
+        storage.add(TEST_FILE_NAME, new ByteArrayInputStream(TEST_CONTENT), TEST_CONTENT.length);
+
+        // Then
+        client.get().uri("/objects/" + TEST_FILE_NAME + "/content")
+                .header(HttpHeaders.IF_NONE_MATCH, "\"other\"")
+                .header(HttpHeaders.IF_MODIFIED_SINCE, "Thu, 01 Jan 2099 00:00:00 GMT")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class).isEqualTo(new String(TEST_CONTENT));
+        client.get().uri("/objects/" + TEST_FILE_NAME + "/content")
+                .header(HttpHeaders.IF_MODIFIED_SINCE, "not a date")
+                .exchange()
+                .expectStatus().isOk();
+    }
+
+    @Test
+    void testGetObjectShouldAnswerNotModifiedForTheSameUrl() throws Exception {
+        // Given
+        storage.add(TEST_FILE_NAME, new ByteArrayInputStream(TEST_CONTENT), TEST_CONTENT.length);
+        String eTag = client.get().uri("/objects/" + TEST_FILE_NAME + "?duration=1")
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(String.class).getResponseHeaders().getETag();
+
+        // Then
+        client.get().uri("/objects/" + TEST_FILE_NAME + "?duration=1")
+                .header(HttpHeaders.IF_NONE_MATCH, eTag)
+                .exchange()
+                .expectStatus().isNotModified();
+    }
+}
@@ -0,0 +1,175 @@
+package org.amt.microservicedataobject.service.aws;
+
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Subscription;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AwsAsyncMultipartUploadTest {
+
+    final static String TEST_BUCKET = "bucket";
+    final static String TEST_KEY = "testFile.bin";
+    final static int PART_SIZE = 4;
+    final static int CONCURRENCY = 2;
+    // Ten full parts and a last smaller one
+    final static byte[] TEST_CONTENT = "0123456789abcdefghijklmnopqrstuvwxyzABCDEFG".getBytes();
+    final StubS3AsyncClient s3 = new StubS3AsyncClient();
+    final TestSubscription subscription = new TestSubscription();
+    final AwsAsyncMultipartUpload upload = new AwsAsyncMultipartUpload(s3, TEST_BUCKET, TEST_KEY, PART_SIZE, CONCURRENCY);
+
+    private byte[] uploadedContent() {
+        List<Integer> partNumbers = s3.completed.multipartUpload().parts().stream()
+                .map(CompletedPart::partNumber)
+                .collect(Collectors.toList());
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        for (int partNumber : partNumbers)
+            content.writeBytes(s3.parts.get(partNumber));
+        return content.toByteArray();
+    }
+
+    @Test
+    void testPublishedBuffersShouldBeUploadedInOrderedParts() throws Exception {
+        // Given
+        upload.onSubscribe(subscription);
+
+        // When
+        for (int start = 0; start < TEST_CONTENT.length; start += 3) {
+            upload.onNext(ByteBuffer.wrap(Arrays.copyOfRange(TEST_CONTENT, start, Math.min(start + 3, TEST_CONTENT.length))));
+            while (s3.partsInFlight() > 0)
+                s3.completeNextPart();
+        }
+        upload.onComplete();
+        while (s3.partsInFlight() > 0)
+            s3.completeNextPart();
+
+        // Then
+        upload.result().get();
+        assertArrayEquals(TEST_CONTENT, uploadedContent());
+        assertEquals(11, s3.completed.multipartUpload().parts().size());
+        assertEquals(List.of("createMultipartUpload", "completeMultipartUpload"), s3.calls);
+    }
+
+    @Test
+    void testContentSmallerThanAPartShouldBeSentWithASingleRequest() throws Exception {
+        // Given
+        upload.onSubscribe(subscription);
+
+        // When
+        upload.onNext(ByteBuffer.wrap(new byte[]{1, 2, 3}));
+        upload.onComplete();
+
+        // Then
+        upload.result().get();
+        assertArrayEquals(new byte[]{1, 2, 3}, s3.putBody);
+        assertEquals(List.of("putObject"), s3.calls);
+    }
+
+    @Test
+    void testLargeBufferShouldNotSendMorePartsThanTheConcurrency() throws Exception {
+        // Given
+        upload.onSubscribe(subscription);
+
+        // When
+        upload.onNext(ByteBuffer.wrap(TEST_CONTENT));
+
+        // Then
+        assertEquals(CONCURRENCY, s3.partsInFlight());
+        assertEquals(1, subscription.requested);
+        int sent = CONCURRENCY;
+        while (sent < TEST_CONTENT.length / PART_SIZE - 1) {
+            s3.completeNextPart();
+            sent++;
+            assertEquals(CONCURRENCY, s3.partsInFlight());
+            assertEquals(sent, s3.partResponses.size());
+            assertEquals(1, subscription.requested);
+        }
+        // The last full part is sent and the rest buffered once a slot frees, then more data is requested
+        s3.completeNextPart();
+        assertEquals(TEST_CONTENT.length / PART_SIZE, s3.partResponses.size());
+        assertEquals(2, subscription.requested);
+
+        upload.onComplete();
+        while (s3.partsInFlight() > 0)
+            s3.completeNextPart();
+        upload.result().get();
+        assertArrayEquals(TEST_CONTENT, uploadedContent());
+    }
+
+    @Test
+    void testCompletionWhileAPartWaitsForASlotShouldSendTheRest() throws Exception {
+        // Given
+        upload.onSubscribe(subscription);
+        upload.onNext(ByteBuffer.wrap(TEST_CONTENT));
+
+        // When
+        upload.onComplete();
+        while (s3.partsInFlight() > 0) {
+            assertTrue(s3.partsInFlight() <= CONCURRENCY);
+            s3.completeNextPart();
+        }
+
+        // Then
+        upload.result().get();
+        assertArrayEquals(TEST_CONTENT, uploadedContent());
+        assertEquals(List.of("createMultipartUpload", "completeMultipartUpload"), s3.calls);
+    }
+
+    @Test
+    void testFailedPartShouldAbortTheUploadAndCancelThePublisher() {
+        // Given
+        upload.onSubscribe(subscription);
+        upload.onNext(ByteBuffer.wrap(TEST_CONTENT));
+
+        // When
+        s3.failNextPart(500);
+
+        // Then
+        ExecutionException exception = assertThrows(ExecutionException.class, () -> upload.result().get());
+        assertInstanceOf(S3Exception.class, exception.getCause());
+        assertTrue(subscription.cancelled);
+        assertEquals(List.of("createMultipartUpload", "abortMultipartUpload"), s3.calls);
+        // The parts still in flight do not send the waiting bytes
+        s3.completeNextPart();
+        assertEquals(CONCURRENCY, s3.partResponses.size());
+        assertNull(s3.completed);
+    }
+
+    @Test
+    void testPublisherErrorShouldAbortTheUpload() {
+        // Given
+        upload.onSubscribe(subscription);
+        upload.onNext(ByteBuffer.wrap(Arrays.copyOf(TEST_CONTENT, 2 * PART_SIZE)));
+
+        // When
+        upload.onError(new IllegalStateException("Connection reset"));
+
+        // Then
+        ExecutionException exception = assertThrows(ExecutionException.class, () -> upload.result().get());
+        assertInstanceOf(IllegalStateException.class, exception.getCause());
+        assertEquals(List.of("createMultipartUpload", "abortMultipartUpload"), s3.calls);
+    }
+
+    private static class TestSubscription implements Subscription {
+        volatile long requested;
+        volatile boolean cancelled;
+
+        @Override
+        public synchronized void request(long n) {
+            requested += n;
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package org.amt.microservicedataobject.service.aws;
+
+import org.amt.microservicedataobject.service.GzipCompressingInputStream;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AwsCompressionTest {
+
+    final static byte[] TEST_CONTENT = "{\"key\":\"value\"}\n".repeat(1000).getBytes();
+    final AwsCompression compression = new AwsCompression(true, List.of("json", "TXT"), 1024);
+
+    private static byte[] compressed(byte[] content) throws Exception {
+        try (InputStream compressing = new GzipCompressingInputStream(new ByteArrayInputStream(content))) {
+            return compressing.readAllBytes();
+        }
+    }
+
+    @Test
+    void testContentsShouldBeCompressedByExtensionAndSize() {
+        // Then
+        assertTrue(compression.shouldCompress("data/file.json", 1024));
+        assertTrue(compression.shouldCompress("notes.Txt", 4096));
+        assertFalse(compression.shouldCompress("data/file.json", 1023));
+        assertFalse(compression.shouldCompress("data/file.json", -1));
+        assertFalse(compression.shouldCompress("image.png", 4096));
+        assertFalse(compression.shouldCompress("archive.json/file", 4096));
+        assertFalse(compression.shouldCompress("json", 4096));
+    }
+
+    @Test
+    void testDisabledCompressionShouldCompressNothing() {
+        // Given
+        AwsCompression disabled = new AwsCompression(false, List.of("json"), 0);
+
+        // Then
+        assertFalse(disabled.shouldCompress("file.json", 4096));
+        assertFalse(disabled.mayBeCompressed("file.json"));
+        assertTrue(compression.mayBeCompressed("small.json"));
+    }
+
+    @Test
+    void testRangeShouldBeCutFromTheDecompressedContent() throws Exception {
+        // When
+        byte[] range;
+        try (InputStream decompressed = AwsCompression.decompressRange(new ByteArrayInputStream(compressed(TEST_CONTENT)), 5000, 100)) {
+            range = decompressed.readAllBytes();
+        }
+
+        // Then
+        assertArrayEquals(Arrays.copyOfRange(TEST_CONTENT, 5000, 5100), range);
+    }
+
+    @Test
+    void testRangePastTheEndShouldStopAtTheEnd() throws Exception {
+        // When
+        byte[] range;
+        try (InputStream decompressed = AwsCompression.decompressRange(new ByteArrayInputStream(compressed(TEST_CONTENT)),
+                TEST_CONTENT.length - 10, 100)) {
+            range = decompressed.readAllBytes();
+        }
+
+        // Then
+        assertArrayEquals(Arrays.copyOfRange(TEST_CONTENT, TEST_CONTENT.length - 10, TEST_CONTENT.length), range);
+    }
+
+    @Test
+    void testUncompressedLengthShouldBeReadFromTheMetadata() {
+        // Then
+        assertEquals(42, AwsCompression.uncompressedLength(Map.of(AwsCompression.UNCOMPRESSED_LENGTH_METADATA, "42")));
+        assertEquals(-1, AwsCompression.uncompressedLength(Map.of(AwsCompression.UNCOMPRESSED_LENGTH_METADATA, "many")));
+        assertEquals(-1, AwsCompression.uncompressedLength(Map.of()));
+    }
+}
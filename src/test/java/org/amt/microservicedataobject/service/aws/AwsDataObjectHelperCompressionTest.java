@@ -0,0 +1,113 @@
+package org.amt.microservicedataobject.service.aws;
+
+import org.amt.microservicedataobject.service.DataObjectContent;
+import org.amt.microservicedataobject.service.DataObjectHelper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AwsDataObjectHelperCompressionTest {
+
+    final static String TEST_FILE_NAME = "testFile.txt";
+    final static String TEST_BINARY_NAME = "testFile.bin";
+    final static byte[] TEST_CONTENT = "This is a test file\n".repeat(500).getBytes();
+    final StubS3Client s3 = new StubS3Client();
+    final AwsDataObjectHelperImpl helper = new AwsDataObjectHelperImpl(new AwsServiceConfigurator.Builder()
+            .withCompression(true)
+            .withCompressedExtensions(List.of("txt"))
+            .withCompressionMinSize(1024)
+            .build(), s3);
+
+    @BeforeEach
+    void setUp() throws Exception {
+        helper.add(TEST_FILE_NAME, new ByteArrayInputStream(TEST_CONTENT), TEST_CONTENT.length);
+        helper.add(TEST_BINARY_NAME, new ByteArrayInputStream(TEST_CONTENT), TEST_CONTENT.length);
+        s3.calls.clear();
+    }
+
+    @Test
+    void testCompressedObjectShouldBeSentAsStoredToAClientAcceptingGzip() throws Exception {
+        // When
+        try (DataObjectContent content = helper.getContentIfModified(TEST_FILE_NAME, null, null, "gzip, br")) {
+            byte[] sent = content.getInputStream().readAllBytes();
+
+            // Then
+            assertEquals("gzip", content.getMetadata().getContentEncoding());
+            assertEquals("\"put\"", content.getMetadata().getETag());
+            assertTrue(sent.length < TEST_CONTENT.length);
+            assertArrayEquals(TEST_CONTENT, new GZIPInputStream(new ByteArrayInputStream(sent)).readAllBytes());
+        }
+    }
+
+    @Test
+    void testCompressedObjectShouldBeDecompressedWithAWeakETag() throws Exception {
+        // When
+        try (DataObjectContent content = helper.getContentIfModified(TEST_FILE_NAME, null, null, "br")) {
+
+            // Then
+            assertArrayEquals(TEST_CONTENT, content.getInputStream().readAllBytes());
+            assertNull(content.getMetadata().getContentEncoding());
+            assertEquals("W/\"put\"", content.getMetadata().getETag());
+            assertEquals(TEST_CONTENT.length, content.getMetadata().getContentLength());
+        }
+    }
+
+    @Test
+    void testRangeOfACompressedObjectShouldTakeASingleRequest() throws Exception {
+        // When
+        try (DataObjectContent content = helper.getContent(TEST_FILE_NAME, 100, 199)) {
+
+            // Then
+            assertArrayEquals(Arrays.copyOfRange(TEST_CONTENT, 100, 200), content.getInputStream().readAllBytes());
+            assertEquals("bytes 100-199/" + TEST_CONTENT.length, content.getContentRange());
+            assertEquals("W/\"put\"", content.getMetadata().getETag());
+        }
+        assertEquals(List.of("getObject"), s3.calls);
+    }
+
+    @Test
+    void testRangePastTheCompressedBytesShouldBeServed() throws Exception {
+        // When
+        try (DataObjectContent content = helper.getContent(TEST_FILE_NAME, TEST_CONTENT.length - 10, -1)) {
+
+            // Then
+            assertArrayEquals(Arrays.copyOfRange(TEST_CONTENT, TEST_CONTENT.length - 10, TEST_CONTENT.length),
+                    content.getInputStream().readAllBytes());
+        }
+        assertEquals(List.of("getObject"), s3.calls);
+    }
+
+    @Test
+    void testRangeOfAnUncompressedObjectShouldBeAskedToS3() throws Exception {
+        // When
+        try (DataObjectContent content = helper.getContent(TEST_BINARY_NAME, 100, 199)) {
+
+            // Then
+            assertArrayEquals(Arrays.copyOfRange(TEST_CONTENT, 100, 200), content.getInputStream().readAllBytes());
+            assertEquals("\"put\"", content.getMetadata().getETag());
+        }
+        assertEquals(List.of("bytes=100-199"), s3.ranges);
+    }
+
+    @Test
+    void testUnsatisfiableRangeOfAnUncompressedObjectShouldTakeASingleRequest() {
+        // Then
+        assertThrows(DataObjectHelper.InvalidRangeException.class,
+                () -> helper.getContent(TEST_BINARY_NAME, TEST_CONTENT.length, -1));
+        assertEquals(List.of("getObject"), s3.calls);
+    }
+
+    @Test
+    void testUnsatisfiableRangeOfACompressedObjectShouldBeRefused() {
+        // Then
+        assertThrows(DataObjectHelper.InvalidRangeException.class,
+                () -> helper.getContent(TEST_FILE_NAME, TEST_CONTENT.length, -1));
+        assertEquals(List.of("getObject"), s3.calls);
+    }
+}
@@ -0,0 +1,83 @@
+package org.amt.microservicedataobject.service.aws;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AwsDataObjectHelperDeduplicationTest {
+
+    final static String TEST_FILE_NAME = "testFile.txt";
+    final static byte[] TEST_CONTENT = "This is a test file".getBytes();
+    final static byte[] OTHER_CONTENT = "This is another test file".getBytes();
+    final StubS3Client s3 = new StubS3Client();
+
+    private AwsDataObjectHelperImpl helper(boolean deduplication) {
+        return new AwsDataObjectHelperImpl(new AwsServiceConfigurator.Builder()
+                .withDeduplication(deduplication)
+                .build(), s3);
+    }
+
+    @Test
+    void testDeduplicationShouldBeOffByDefault() throws Exception {
+        // Given
+        AwsDataObjectHelperImpl helper = new AwsDataObjectHelperImpl(new AwsServiceConfigurator.Builder().build(), s3);
+        helper.add(TEST_FILE_NAME, new ByteArrayInputStream(TEST_CONTENT), TEST_CONTENT.length);
+
+        // When
+        long saved = helper.addIfChanged(TEST_FILE_NAME, new ByteArrayInputStream(TEST_CONTENT), TEST_CONTENT.length);
+
+        // Then
+        assertEquals(0, saved);
+        assertEquals(List.of("putObject", "putObject"), s3.calls);
+        assertFalse(s3.objects.get(TEST_FILE_NAME).metadata().containsKey(AwsDataObjectHelperImpl.CONTENT_HASH_METADATA));
+    }
+
+    @Test
+    void testUnchangedContentShouldNotBeUploadedAgain() throws Exception {
+        // Given
+        AwsDataObjectHelperImpl helper = helper(true);
+        helper.add(TEST_FILE_NAME, new ByteArrayInputStream(TEST_CONTENT), TEST_CONTENT.length);
+
+        // When
+        long saved = helper.addIfChanged(TEST_FILE_NAME, new ByteArrayInputStream(TEST_CONTENT), TEST_CONTENT.length);
+
+        // Then
+        assertEquals(TEST_CONTENT.length, saved);
+        assertEquals(List.of("headObject", "putObject", "headObject"), s3.calls);
+        assertEquals(1, helper.getDeduplicatedUploadCount());
+        assertEquals(TEST_CONTENT.length, helper.getDeduplicatedBytes());
+    }
+
+    @Test
+    void testChangedContentShouldBeUploaded() throws Exception {
+        // Given
+        AwsDataObjectHelperImpl helper = helper(true);
+        helper.add(TEST_FILE_NAME, new ByteArrayInputStream(TEST_CONTENT), TEST_CONTENT.length);
+
+        // When
+        long saved = helper.addIfChanged(TEST_FILE_NAME, new ByteArrayInputStream(OTHER_CONTENT), OTHER_CONTENT.length);
+
+        // Then
+        assertEquals(0, saved);
+        assertArrayEquals(OTHER_CONTENT, s3.contents.get(TEST_FILE_NAME));
+        assertEquals(0, helper.getDeduplicatedUploadCount());
+    }
+
+    @Test
+    void testStreamOfUnknownLengthShouldBeUploadedWithoutAHash() throws Exception {
+        // Given
+        AwsDataObjectHelperImpl helper = helper(true);
+        helper.add(TEST_FILE_NAME, new ByteArrayInputStream(TEST_CONTENT), TEST_CONTENT.length);
+        s3.calls.clear();
+
+        // When
+        long saved = helper.addIfChanged(TEST_FILE_NAME, new ByteArrayInputStream(TEST_CONTENT), -1);
+
+        // Then
+        assertEquals(0, saved);
+        assertFalse(s3.calls.contains("headObject"));
+    }
+}
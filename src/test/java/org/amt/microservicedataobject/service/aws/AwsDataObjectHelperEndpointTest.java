@@ -0,0 +1,222 @@
+package org.amt.microservicedataobject.service.aws;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Helper built by its public constructor, sending its requests to a local endpoint answering as S3
+ */
+public class AwsDataObjectHelperEndpointTest {
+
+    final static String TEST_FILE_NAME = "testFile.bin";
+    final static long PART_SIZE = 5L * 1024 * 1024;
+    final static byte[] TEST_CONTENT = new byte[(int) (2 * PART_SIZE + 1024)];
+    final Map<String, byte[]> objects = new ConcurrentHashMap<>();
+    final Map<String, TreeMap<Integer, byte[]>> uploads = new ConcurrentHashMap<>();
+    final AtomicInteger uploadIds = new AtomicInteger();
+    final AtomicInteger rangedGets = new AtomicInteger();
+    HttpServer server;
+    AwsDataObjectHelperImpl helper;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        new Random(42).nextBytes(TEST_CONTENT);
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", this::handle);
+        server.start();
+        helper = new AwsDataObjectHelperImpl(new AwsServiceConfigurator.Builder()
+                .withRegion("eu-west-2")
+                .withCredentialsProvider(StaticCredentialsProvider.create(AwsBasicCredentials.create("key", "secret")))
+                .withEndpointOverride(URI.create("http://localhost:" + server.getAddress().getPort()))
+                .withBuckets(List.of("bucket"))
+                .withMultipartThreshold(PART_SIZE)
+                .withPartSize(PART_SIZE)
+                .build());
+    }
+
+    @AfterEach
+    void tearDown() {
+        helper.close();
+        server.stop(0);
+    }
+
+    @Test
+    void testMultipartUploadShouldSendEveryPart() throws Exception {
+        // When
+        helper.add(TEST_FILE_NAME, new ByteArrayInputStream(TEST_CONTENT), TEST_CONTENT.length);
+
+        // Then
+        assertEquals(1, uploadIds.get());
+        assertArrayEquals(TEST_CONTENT, objects.get("/bucket/" + TEST_FILE_NAME));
+    }
+
+    @Test
+    void testDownloadShouldFetchEveryRange() throws Exception {
+        // Given
+        objects.put("/bucket/" + TEST_FILE_NAME, TEST_CONTENT);
+        Path target = Files.createTempFile("download", ".bin");
+
+        // When
+        try (FileChannel channel = FileChannel.open(target, StandardOpenOption.WRITE)) {
+            assertEquals(TEST_CONTENT.length, helper.download(TEST_FILE_NAME, channel));
+        }
+
+        // Then
+        assertEquals(3, rangedGets.get());
+        assertArrayEquals(TEST_CONTENT, Files.readAllBytes(target));
+        Files.delete(target);
+    }
+
+    /**
+     * The requests of the multipart uploads and ranged downloads, with path style addressing
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        String query = exchange.getRequestURI().getQuery() == null ? "" : exchange.getRequestURI().getQuery();
+        Map<String, String> parameters = new TreeMap<>();
+        for (String parameter : query.split("&")) {
+            String[] pair = parameter.split("=", 2);
+            parameters.put(pair[0], pair.length > 1 ? pair[1] : "");
+        }
+        byte[] body = readBody(exchange);
+        switch (exchange.getRequestMethod()) {
+            case "POST":
+                if (parameters.containsKey("uploads")) {
+                    String uploadId = "upload-" + uploadIds.incrementAndGet();
+                    uploads.put(uploadId, new TreeMap<>());
+                    respond(exchange, 200, "<InitiateMultipartUploadResult><UploadId>" + uploadId + "</UploadId></InitiateMultipartUploadResult>");
+                } else {
+                    ByteArrayOutputStream content = new ByteArrayOutputStream();
+                    for (byte[] part : uploads.remove(parameters.get("uploadId")).values())
+                        content.write(part);
+                    objects.put(path, content.toByteArray());
+                    respond(exchange, 200, "<CompleteMultipartUploadResult><ETag>\"completed\"</ETag></CompleteMultipartUploadResult>");
+                }
+                break;
+            case "PUT":
+                if (parameters.containsKey("partNumber")) {
+                    uploads.get(parameters.get("uploadId")).put(Integer.parseInt(parameters.get("partNumber")), body);
+                } else {
+                    objects.put(path, body);
+                }
+                exchange.getResponseHeaders().set("ETag", "\"" + md5(body) + "\"");
+                exchange.sendResponseHeaders(200, -1);
+                break;
+            case "HEAD":
+            case "GET":
+                byte[] content = objects.get(path);
+                if (content == null) {
+                    respond(exchange, 404, "<Error><Code>NoSuchKey</Code></Error>");
+                    break;
+                }
+                exchange.getResponseHeaders().set("ETag", "\"" + md5(content) + "\"");
+                exchange.getResponseHeaders().set("Last-Modified", "Thu, 01 Jan 1970 00:00:00 GMT");
+                if (exchange.getRequestMethod().equals("HEAD")) {
+                    exchange.getResponseHeaders().set("Content-Length", String.valueOf(content.length));
+                    exchange.sendResponseHeaders(200, -1);
+                    break;
+                }
+                String range = exchange.getRequestHeaders().getFirst("Range");
+                int status = 200;
+                if (range != null) {
+                    rangedGets.incrementAndGet();
+                    String[] bounds = range.substring("bytes=".length()).split("-");
+                    int start = Integer.parseInt(bounds[0]);
+                    int end = Math.min(Integer.parseInt(bounds[1]), content.length - 1);
+                    exchange.getResponseHeaders().set("Content-Range", "bytes " + start + "-" + end + "/" + content.length);
+                    byte[] slice = new byte[end - start + 1];
+                    System.arraycopy(content, start, slice, 0, slice.length);
+                    content = slice;
+                    status = 206;
+                }
+                exchange.sendResponseHeaders(status, content.length);
+                try (OutputStream outputStream = exchange.getResponseBody()) {
+                    outputStream.write(content);
+                }
+                break;
+            default:
+                exchange.sendResponseHeaders(405, -1);
+        }
+        exchange.close();
+    }
+
+    /**
+     * Body of a request, decoded from the signed chunks sent to an HTTP endpoint
+     */
+    private static byte[] readBody(HttpExchange exchange) throws IOException {
+        byte[] body;
+        try (InputStream inputStream = exchange.getRequestBody()) {
+            body = inputStream.readAllBytes();
+        }
+        String contentSha256 = exchange.getRequestHeaders().getFirst("x-amz-content-sha256");
+        if (contentSha256 == null || !contentSha256.startsWith("STREAMING-")) {
+            return body;
+        }
+        ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+        int position = 0;
+        while (true) {
+            int lineEnd = indexOfLineEnd(body, position);
+            String header = new String(body, position, lineEnd - position, StandardCharsets.US_ASCII);
+            int size = Integer.parseInt(header.split(";", 2)[0], 16);
+            if (size == 0) {
+                return decoded.toByteArray();
+            }
+            decoded.write(body, lineEnd + 2, size);
+            position = lineEnd + 2 + size + 2;
+        }
+    }
+
+    private static int indexOfLineEnd(byte[] body, int from) {
+        for (int i = from; i < body.length - 1; i++) {
+            if (body[i] == '\r' && body[i + 1] == '\n') {
+                return i;
+            }
+        }
+        throw new IllegalStateException("Truncated chunk");
+    }
+
+    private static void respond(HttpExchange exchange, int status, String xml) throws IOException {
+        byte[] content = xml.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/xml");
+        exchange.sendResponseHeaders(status, content.length);
+        try (OutputStream outputStream = exchange.getResponseBody()) {
+            outputStream.write(content);
+        }
+    }
+
+    private static String md5(byte[] content) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("MD5").digest(content));
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
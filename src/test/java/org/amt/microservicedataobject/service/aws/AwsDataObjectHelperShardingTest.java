@@ -0,0 +1,95 @@
+package org.amt.microservicedataobject.service.aws;
+
+import org.amt.microservicedataobject.service.DataObjectContent;
+import org.amt.microservicedataobject.service.DataObjectHelper;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+
+import java.io.ByteArrayInputStream;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AwsDataObjectHelperShardingTest {
+
+    final static String TEST_FILE_NAME = "testFile.txt";
+    final static byte[] TEST_CONTENT = "This is a test file".getBytes();
+    final StubS3Client s3 = new StubS3Client();
+
+    private AwsDataObjectHelperImpl helper(boolean withPreviousPlacement) {
+        AwsServiceConfigurator.Builder builder = new AwsServiceConfigurator.Builder()
+                .withBuckets(List.of("bucket"))
+                .withShardPrefixes(16);
+        if (withPreviousPlacement) {
+            builder.withPreviousPlacement(List.of("bucket"), 0);
+        }
+        return new AwsDataObjectHelperImpl(builder.build(), s3);
+    }
+
+    /**
+     * Store the file where the placement before sharding put it, as if not moved yet
+     */
+    private void putUnmoved() {
+        s3.putObject(PutObjectRequest.builder().bucket("bucket").key(TEST_FILE_NAME).build(), RequestBody.fromBytes(TEST_CONTENT));
+        s3.calls.clear();
+    }
+
+    @Test
+    void testUnmovedObjectShouldBeReadFromThePreviousPlacement() throws Exception {
+        // Given
+        AwsDataObjectHelperImpl helper = helper(true);
+        putUnmoved();
+
+        // When
+        byte[] content = helper.get(TEST_FILE_NAME);
+
+        // Then
+        assertArrayEquals(TEST_CONTENT, content);
+        assertEquals(TEST_CONTENT.length, helper.getMetadata(TEST_FILE_NAME).getContentLength());
+        try (DataObjectContent stream = helper.getContent(TEST_FILE_NAME)) {
+            assertArrayEquals(TEST_CONTENT, stream.getInputStream().readAllBytes());
+        }
+    }
+
+    @Test
+    void testMovedObjectShouldBeReadWithASingleRequest() throws Exception {
+        // Given
+        AwsDataObjectHelperImpl helper = helper(true);
+        helper.add(TEST_FILE_NAME, new ByteArrayInputStream(TEST_CONTENT), TEST_CONTENT.length);
+        s3.calls.clear();
+
+        // When
+        byte[] content = helper.get(TEST_FILE_NAME);
+
+        // Then
+        assertArrayEquals(TEST_CONTENT, content);
+        assertEquals(List.of("getObject"), s3.calls);
+    }
+
+    @Test
+    void testDeleteShouldRemoveTheFileFromBothPlacements() throws Exception {
+        // Given
+        AwsDataObjectHelperImpl helper = helper(true);
+        putUnmoved();
+        AwsShards.Shard shard = new AwsShards(List.of("bucket"), 16).shardOf(TEST_FILE_NAME);
+
+        // When
+        helper.delete(TEST_FILE_NAME);
+
+        // Then
+        assertTrue(s3.calls.contains("deleteObject bucket/" + shard.toKey(TEST_FILE_NAME)));
+        assertTrue(s3.calls.contains("deleteObject bucket/" + TEST_FILE_NAME));
+        assertFalse(helper.exists(TEST_FILE_NAME));
+    }
+
+    @Test
+    void testUnmovedObjectShouldNotBeFoundWithoutThePreviousPlacement() {
+        // Given
+        AwsDataObjectHelperImpl helper = helper(false);
+        putUnmoved();
+
+        // Then
+        assertThrows(DataObjectHelper.KeyNotFoundException.class, () -> helper.get(TEST_FILE_NAME));
+    }
+}
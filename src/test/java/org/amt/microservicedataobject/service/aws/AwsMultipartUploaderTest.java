@@ -0,0 +1,123 @@
+package org.amt.microservicedataobject.service.aws;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AwsMultipartUploaderTest {
+
+    final static String TEST_BUCKET = "bucket";
+    final static String TEST_KEY = "testFile.bin";
+    final static int PART_SIZE = 5 * 1024 * 1024;
+    // Two full parts and a last smaller one
+    final static byte[] TEST_CONTENT = new byte[2 * PART_SIZE + 1024];
+    final StubS3Client s3 = new StubS3Client();
+    final ExecutorService executor = Executors.newCachedThreadPool();
+    final AwsMultipartUploader uploader = new AwsMultipartUploader(s3, executor, PART_SIZE, 2, 2);
+
+    static {
+        new Random(42).nextBytes(TEST_CONTENT);
+    }
+
+    @TempDir
+    Path directory;
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private byte[] uploadedContent() throws Exception {
+        List<Integer> partNumbers = s3.completed.multipartUpload().parts().stream()
+                .map(CompletedPart::partNumber)
+                .collect(Collectors.toList());
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        for (int partNumber : partNumbers)
+            content.write(s3.parts.get(partNumber));
+        return content.toByteArray();
+    }
+
+    @Test
+    void testStreamShouldBeUploadedInOrderedParts() throws Exception {
+        // When
+        uploader.upload(TEST_BUCKET, TEST_KEY, new ByteArrayInputStream(TEST_CONTENT), Map.of("sha256", "hash"), null);
+
+        // Then
+        assertEquals(List.of(1, 2, 3), s3.completed.multipartUpload().parts().stream()
+                .map(CompletedPart::partNumber).collect(Collectors.toList()));
+        assertArrayEquals(TEST_CONTENT, uploadedContent());
+        assertFalse(s3.calls.contains("abortMultipartUpload"));
+    }
+
+    @Test
+    void testStreamSmallerThanAPartShouldBeSentInASingleRequest() throws Exception {
+        // When
+        uploader.upload(TEST_BUCKET, TEST_KEY, new ByteArrayInputStream("content".getBytes()));
+
+        // Then
+        assertEquals(List.of("putObject"), s3.calls);
+        assertArrayEquals("content".getBytes(), s3.putBody);
+    }
+
+    @Test
+    void testFailedPartShouldBeSentAgainAlone() throws Exception {
+        // Given
+        File file = directory.resolve(TEST_KEY).toFile();
+        Files.write(file.toPath(), TEST_CONTENT);
+        s3.failPart(2, 500, 2);
+
+        // When
+        uploader.upload(TEST_BUCKET, TEST_KEY, file, Map.of());
+
+        // Then
+        assertEquals(1, s3.attempts(1));
+        assertEquals(3, s3.attempts(2));
+        assertEquals(1, s3.attempts(3));
+        assertArrayEquals(TEST_CONTENT, uploadedContent());
+    }
+
+    @Test
+    void testPartFailingEveryAttemptShouldAbortTheUpload() {
+        // Given
+        s3.failPart(2, 503, Integer.MAX_VALUE);
+
+        // When
+        S3Exception thrown = assertThrows(S3Exception.class,
+                () -> uploader.upload(TEST_BUCKET, TEST_KEY, new ByteArrayInputStream(TEST_CONTENT)));
+
+        // Then
+        assertEquals(503, thrown.statusCode());
+        assertEquals(3, s3.attempts(2));
+        assertTrue(s3.calls.contains("abortMultipartUpload"));
+        assertFalse(s3.calls.contains("completeMultipartUpload"));
+    }
+
+    @Test
+    void testRefusedPartShouldNotBeSentAgain() {
+        // Given
+        s3.failPart(1, 403, Integer.MAX_VALUE);
+
+        // When
+        assertThrows(S3Exception.class, () -> uploader.upload(TEST_BUCKET, TEST_KEY, new ByteArrayInputStream(TEST_CONTENT)));
+
+        // Then
+        assertEquals(1, s3.attempts(1));
+        assertTrue(s3.calls.contains("abortMultipartUpload"));
+    }
+}
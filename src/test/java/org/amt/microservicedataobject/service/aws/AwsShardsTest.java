@@ -0,0 +1,244 @@
+package org.amt.microservicedataobject.service.aws;
+
+import org.amt.microservicedataobject.service.DataObjectHelper;
+import org.amt.microservicedataobject.service.DataObjectListing;
+import org.amt.microservicedataobject.service.DataObjectResult;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.services.s3.model.CommonPrefix;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AwsShardsTest {
+
+    final static List<String> TEST_NAMES = IntStream.range(0, 2000)
+            .mapToObj(i -> "file-" + i + ".txt")
+            .collect(Collectors.toList());
+
+    @Test
+    void testSingleBucketWithoutPrefixesShouldStoreKeysAsNamed() {
+        // Given
+        AwsShards shards = new AwsShards(List.of("bucket-a"), 0);
+
+        // When
+        AwsShards.Shard shard = shards.shardOf("a/b.txt");
+
+        // Then
+        assertFalse(shards.isSharded());
+        assertEquals("bucket-a", shard.getBucket());
+        assertEquals("a/b.txt", shard.toKey("a/b.txt"));
+    }
+
+    @Test
+    void testKeysShouldBeSpreadOnEveryShard() {
+        // Given
+        AwsShards shards = new AwsShards(List.of("bucket-a", "bucket-b"), 4);
+        Map<AwsShards.Shard, Integer> counts = new HashMap<>();
+
+        // When
+        for (String name : TEST_NAMES)
+            counts.merge(shards.shardOf(name), 1, Integer::sum);
+
+        // Then
+        assertEquals(8, shards.getShards().size());
+        assertEquals(8, counts.size());
+        // 250 keys per shard on average
+        counts.values().forEach(count -> assertTrue(count > 150 && count < 350, "Unbalanced shard: " + count));
+        assertEquals("0/", shards.getShards().get(0).getPrefix());
+        assertEquals("3/", shards.getShards().get(3).getPrefix());
+    }
+
+    @Test
+    void testAddingABucketShouldOnlyMoveKeysToIt() {
+        // Given
+        AwsShards before = new AwsShards(List.of("bucket-a", "bucket-b"), 4);
+        AwsShards after = new AwsShards(List.of("bucket-a", "bucket-b", "bucket-c"), 4);
+        int moved = 0;
+
+        // When
+        for (String name : TEST_NAMES) {
+            AwsShards.Shard previous = before.shardOf(name);
+            AwsShards.Shard placed = after.shardOf(name);
+            if (!placed.equals(previous)) {
+                // Then
+                assertEquals("bucket-c", placed.getBucket());
+                moved++;
+            }
+        }
+
+        // About a third of the keys, taken by the new bucket
+        assertTrue(moved > 500 && moved < 830, "Moved keys: " + moved);
+    }
+
+    @Test
+    void testHolderShouldOnlyFindKeysWherePlaced() {
+        // Given
+        AwsShards shards = new AwsShards(List.of("bucket-a", "bucket-b"), 4);
+        AwsShards.Shard shard = shards.shardOf("testFile.txt");
+        AwsShards.Shard other = shards.getShards().stream().filter(candidate -> !candidate.equals(shard)).findFirst().orElseThrow();
+
+        // Then
+        assertSame(shard, shards.holder(shard.getBucket(), shard.toKey("testFile.txt")));
+        assertNull(shards.holder(other.getBucket(), other.toKey("testFile.txt")));
+        assertNull(shards.holder("bucket-c", shard.toKey("testFile.txt")));
+    }
+
+    @Test
+    void testMergedPagesShouldBeSortedAndContinueAfterTheLastName() throws Exception {
+        // Given
+        AwsShards shards = new AwsShards(List.of("bucket-a", "bucket-b"), 2);
+        TreeSet<String> expected = new TreeSet<>(AwsShards.KEY_ORDER);
+        expected.addAll(TEST_NAMES.subList(0, 50));
+        Map<AwsShards.Shard, List<String>> stored = store(shards, expected);
+        List<String> listed = new ArrayList<>();
+        String continuationToken = null;
+
+        // When
+        do {
+            String startAfter = continuationToken == null ? null : AwsShards.decodeToken(continuationToken);
+            DataObjectListing page = AwsShards.merge(shards.getShards(), list(shards.getShards(), stored, null, null, 7, startAfter), 7);
+            assertTrue(page.getKeys().size() <= 7);
+            listed.addAll(page.getKeys());
+            continuationToken = page.getNextContinuationToken();
+        } while (continuationToken != null);
+
+        // Then
+        assertEquals(new ArrayList<>(expected), listed);
+    }
+
+    @Test
+    void testCommonPrefixFoundOnSeveralShardsShouldBeListedOnce() throws Exception {
+        // Given
+        AwsShards shards = new AwsShards(List.of("bucket-a"), 4);
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < 40; i++)
+            names.add("folder/file-" + i + ".txt");
+        names.add("root.txt");
+        Map<AwsShards.Shard, List<String>> stored = store(shards, names);
+        assertTrue(shards.getShards().stream().filter(shard -> stored.get(shard).stream()
+                .anyMatch(key -> shard.toFileName(key).startsWith("folder/"))).count() > 1);
+
+        // When
+        DataObjectListing first = AwsShards.merge(shards.getShards(), list(shards.getShards(), stored, null, "/", 1, null), 1);
+        DataObjectListing next = AwsShards.merge(shards.getShards(),
+                list(shards.getShards(), stored, null, "/", 1, AwsShards.decodeToken(first.getNextContinuationToken())), 1);
+
+        // Then
+        assertEquals(List.of("folder/"), first.getCommonPrefixes());
+        assertEquals(List.of(), first.getKeys());
+        assertEquals(List.of("root.txt"), next.getKeys());
+        assertEquals(List.of(), next.getCommonPrefixes());
+        assertNull(next.getNextContinuationToken());
+    }
+
+    @Test
+    void testInvalidTokenShouldBeRejected() {
+        // Then
+        assertThrows(DataObjectHelper.InvalidParamException.class, () -> AwsShards.decodeToken("not base64!"));
+    }
+
+    @Test
+    void testPreviousPlacementShouldOnlyHoldTheKeysPlacedElsewhere() {
+        // Given
+        AwsShards previous = new AwsShards(List.of("bucket-a"), 0);
+        AwsShards shards = new AwsShards(List.of("bucket-a", "bucket-b"), 0, previous);
+
+        // Then
+        for (String name : TEST_NAMES.subList(0, 100)) {
+            AwsShards.Shard previousShard = shards.previousShardOf(name);
+            if (shards.shardOf(name).getBucket().equals("bucket-a")) {
+                assertNull(previousShard);
+            } else {
+                assertEquals("bucket-a", previousShard.getBucket());
+            }
+        }
+        assertEquals(2, shards.getListedShards().size());
+        assertTrue(shards.isSharded());
+        assertNull(new AwsShards(List.of("bucket-a"), 0).previousShardOf("testFile.txt"));
+    }
+
+    @Test
+    void testDeletionShouldCoverBothPlacements() {
+        // Given
+        AwsShards previous = new AwsShards(List.of("bucket-a"), 0);
+        AwsShards shards = new AwsShards(List.of("bucket-a"), 16, previous);
+
+        // When
+        Map<String, Map<String, String>> keysByBucket = shards.keysByBucket(List.of("testFile.txt"));
+
+        // Then
+        assertEquals(Map.of(shards.shardOf("testFile.txt").toKey("testFile.txt"), "testFile.txt", "testFile.txt", "testFile.txt"),
+                keysByBucket.get("bucket-a"));
+        assertEquals(Arrays.asList("denied", null),
+                AwsShards.resultsByFile(List.of("b", "a"), List.of(DataObjectResult.success("a"),
+                        DataObjectResult.failure("b", "denied"), DataObjectResult.success("b"), DataObjectResult.success("a")))
+                        .stream().map(DataObjectResult::getError).collect(Collectors.toList()));
+    }
+
+    /**
+     * Keys of the names on the shards placing them, sorted as S3 lists them
+     */
+    private static Map<AwsShards.Shard, List<String>> store(AwsShards shards, Iterable<String> names) {
+        Map<AwsShards.Shard, List<String>> stored = new HashMap<>();
+        for (AwsShards.Shard shard : shards.getShards())
+            stored.put(shard, new ArrayList<>());
+        for (String name : names) {
+            AwsShards.Shard shard = shards.shardOf(name);
+            stored.get(shard).add(shard.toKey(name));
+        }
+        stored.values().forEach(keys -> keys.sort(AwsShards.KEY_ORDER));
+        return stored;
+    }
+
+    /**
+     * One page of each shard, as S3 answers the requests built by pageRequest
+     */
+    private static List<ListObjectsV2Response> list(List<AwsShards.Shard> listed, Map<AwsShards.Shard, List<String>> stored,
+                                                    String prefix, String delimiter, int pageSize, String startAfter) {
+        List<ListObjectsV2Response> pages = new ArrayList<>();
+        for (AwsShards.Shard shard : listed) {
+            ListObjectsV2Request request = AwsShards.pageRequest(shard, prefix, delimiter, pageSize, startAfter);
+            List<S3Object> contents = new ArrayList<>();
+            TreeSet<String> commonPrefixes = new TreeSet<>(AwsShards.KEY_ORDER);
+            boolean truncated = false;
+            for (String key : stored.get(shard)) {
+                if (!key.startsWith(request.prefix())
+                        || (request.startAfter() != null && AwsShards.KEY_ORDER.compare(key, request.startAfter()) <= 0)) {
+                    continue;
+                }
+                int delimiterIndex = request.delimiter() == null ? -1 : key.indexOf(request.delimiter(), request.prefix().length());
+                String commonPrefix = delimiterIndex < 0 ? null : key.substring(0, delimiterIndex + 1);
+                if (commonPrefix != null && commonPrefixes.contains(commonPrefix)) {
+                    continue;
+                }
+                if (contents.size() + commonPrefixes.size() == request.maxKeys()) {
+                    truncated = true;
+                    break;
+                }
+                if (commonPrefix != null) {
+                    commonPrefixes.add(commonPrefix);
+                } else {
+                    contents.add(S3Object.builder().key(key).build());
+                }
+            }
+            pages.add(ListObjectsV2Response.builder()
+                    .contents(contents)
+                    .commonPrefixes(commonPrefixes.stream().map(commonPrefix -> CommonPrefix.builder().prefix(commonPrefix).build())
+                            .collect(Collectors.toList()))
+                    .isTruncated(truncated)
+                    .build());
+        }
+        return pages;
+    }
+}
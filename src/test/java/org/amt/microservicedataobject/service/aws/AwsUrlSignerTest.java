@@ -0,0 +1,61 @@
+package org.amt.microservicedataobject.service.aws;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+
+import java.net.URL;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AwsUrlSignerTest {
+
+    final static Duration TEST_DURATION = Duration.ofHours(1);
+    final static Duration TEST_OTHER_DURATION = Duration.ofDays(1);
+    final AwsUrlSigner urlSigner = new AwsUrlSigner(new AwsServiceConfigurator.Builder()
+            .withRegion("eu-west-2")
+            .withCredentialsProvider(StaticCredentialsProvider.create(AwsBasicCredentials.create("key", "secret")))
+            .build());
+
+    @AfterEach
+    void tearDown() {
+        urlSigner.close();
+    }
+
+    @Test
+    void testSignedUrlShouldBeReused() {
+        // Given
+        URL url = urlSigner.sign("bucket", "testFile.txt", TEST_DURATION);
+
+        // When
+        URL cached = urlSigner.getCached("bucket", "testFile.txt", TEST_DURATION);
+
+        // Then
+        assertSame(url, cached);
+        assertNull(urlSigner.getCached("bucket", "testFile.txt", TEST_OTHER_DURATION));
+    }
+
+    @Test
+    void testInvalidateShouldDropEveryDurationOfTheDeletedObjectsOnly() {
+        // Given
+        for (String key : List.of("a.txt", "b.txt", "c.txt")) {
+            urlSigner.sign("bucket", key, TEST_DURATION);
+            urlSigner.sign("bucket", key, TEST_OTHER_DURATION);
+        }
+        urlSigner.sign("other-bucket", "a.txt", TEST_DURATION);
+
+        // When
+        urlSigner.invalidate("bucket", List.of("a.txt", "b.txt"));
+        urlSigner.invalidate("bucket", "c.txt");
+
+        // Then
+        for (String key : List.of("a.txt", "b.txt", "c.txt")) {
+            assertNull(urlSigner.getCached("bucket", key, TEST_DURATION));
+            assertNull(urlSigner.getCached("bucket", key, TEST_OTHER_DURATION));
+        }
+        assertNotNull(urlSigner.getCached("other-bucket", "a.txt", TEST_DURATION));
+    }
+}
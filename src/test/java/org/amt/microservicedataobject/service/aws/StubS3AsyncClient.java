@@ -0,0 +1,131 @@
+package org.amt.microservicedataobject.service.aws;
+
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.*;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * S3AsyncClient recording the multipart uploads sent to it, whose parts complete when the test completes them
+ */
+class StubS3AsyncClient implements S3AsyncClient {
+
+    static final String UPLOAD_ID = "upload-1";
+
+    final Map<Integer, byte[]> parts = new ConcurrentHashMap<>();
+    // Responses of the parts sent, in the order they were sent
+    final List<CompletableFuture<UploadPartResponse>> partResponses = Collections.synchronizedList(new ArrayList<>());
+    final List<String> calls = Collections.synchronizedList(new ArrayList<>());
+    volatile CompleteMultipartUploadRequest completed;
+    volatile byte[] putBody;
+
+    /**
+     * @return number of parts sent whose response did not arrive yet
+     */
+    int partsInFlight() {
+        synchronized (partResponses) {
+            return (int) partResponses.stream().filter(response -> !response.isDone()).count();
+        }
+    }
+
+    /**
+     * Complete the part sent first among the ones in flight
+     */
+    void completeNextPart() {
+        CompletableFuture<UploadPartResponse> next;
+        synchronized (partResponses) {
+            next = partResponses.stream().filter(response -> !response.isDone()).findFirst().orElseThrow();
+        }
+        next.complete(UploadPartResponse.builder().eTag("\"part\"").build());
+    }
+
+    void failNextPart(int status) {
+        CompletableFuture<UploadPartResponse> next;
+        synchronized (partResponses) {
+            next = partResponses.stream().filter(response -> !response.isDone()).findFirst().orElseThrow();
+        }
+        next.completeExceptionally(S3Exception.builder().statusCode(status).message("Part failed").build());
+    }
+
+    @Override
+    public CompletableFuture<PutObjectResponse> putObject(PutObjectRequest request, AsyncRequestBody body) {
+        calls.add("putObject");
+        putBody = read(body);
+        return CompletableFuture.completedFuture(PutObjectResponse.builder().eTag("\"put\"").build());
+    }
+
+    @Override
+    public CompletableFuture<CreateMultipartUploadResponse> createMultipartUpload(CreateMultipartUploadRequest request) {
+        calls.add("createMultipartUpload");
+        return CompletableFuture.completedFuture(CreateMultipartUploadResponse.builder().uploadId(UPLOAD_ID).build());
+    }
+
+    @Override
+    public CompletableFuture<UploadPartResponse> uploadPart(UploadPartRequest request, AsyncRequestBody body) {
+        parts.put(request.partNumber(), read(body));
+        CompletableFuture<UploadPartResponse> response = new CompletableFuture<>();
+        partResponses.add(response);
+        return response;
+    }
+
+    @Override
+    public CompletableFuture<CompleteMultipartUploadResponse> completeMultipartUpload(CompleteMultipartUploadRequest request) {
+        calls.add("completeMultipartUpload");
+        completed = request;
+        return CompletableFuture.completedFuture(CompleteMultipartUploadResponse.builder().build());
+    }
+
+    @Override
+    public CompletableFuture<AbortMultipartUploadResponse> abortMultipartUpload(AbortMultipartUploadRequest request) {
+        calls.add("abortMultipartUpload");
+        return CompletableFuture.completedFuture(AbortMultipartUploadResponse.builder().build());
+    }
+
+    /**
+     * Body of a request, published at once by the request bodies made of bytes
+     */
+    private static byte[] read(AsyncRequestBody body) {
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        body.subscribe(new Subscriber<ByteBuffer>() {
+            @Override
+            public void onSubscribe(Subscription subscription) {
+                subscription.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(ByteBuffer byteBuffer) {
+                byte[] bytes = new byte[byteBuffer.remaining()];
+                byteBuffer.get(bytes);
+                content.writeBytes(bytes);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+            }
+
+            @Override
+            public void onComplete() {
+            }
+        });
+        return content.toByteArray();
+    }
+
+    @Override
+    public String serviceName() {
+        return SERVICE_NAME;
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,177 @@
+package org.amt.microservicedataobject.service.aws;
+
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.core.sync.ResponseTransformer;
+import software.amazon.awssdk.http.AbortableInputStream;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * S3Client recording the objects and multipart uploads sent to it, whose parts can be made to fail
+ */
+class StubS3Client implements S3Client {
+
+    static final String UPLOAD_ID = "upload-1";
+
+    final Map<Integer, byte[]> parts = new ConcurrentHashMap<>();
+    final Map<Integer, AtomicInteger> partAttempts = new ConcurrentHashMap<>();
+    // Status of the failed attempts of a part, and number of attempts failing, by part number
+    final Map<Integer, Integer> partFailureStatus = new ConcurrentHashMap<>();
+    final Map<Integer, Integer> partFailureCount = new ConcurrentHashMap<>();
+    final List<String> calls = Collections.synchronizedList(new ArrayList<>());
+    volatile CompleteMultipartUploadRequest completed;
+    volatile byte[] putBody;
+    // Objects stored by putObject, by key, only found in the bucket they were put in
+    final Map<String, PutObjectRequest> objects = new ConcurrentHashMap<>();
+    final Map<String, byte[]> contents = new ConcurrentHashMap<>();
+    // Range header of each getObject request, null for a whole object
+    final List<String> ranges = Collections.synchronizedList(new ArrayList<>());
+
+    /**
+     * Make the first attempts of a part fail with a status
+     */
+    void failPart(int partNumber, int status, int attempts) {
+        partFailureStatus.put(partNumber, status);
+        partFailureCount.put(partNumber, attempts);
+    }
+
+    int attempts(int partNumber) {
+        AtomicInteger attempts = partAttempts.get(partNumber);
+        return attempts == null ? 0 : attempts.get();
+    }
+
+    @Override
+    public PutObjectResponse putObject(PutObjectRequest request, RequestBody body) {
+        calls.add("putObject");
+        putBody = read(body);
+        objects.put(request.key(), request);
+        contents.put(request.key(), putBody);
+        return PutObjectResponse.builder().eTag("\"put\"").build();
+    }
+
+    @Override
+    public HeadObjectResponse headObject(HeadObjectRequest request) {
+        calls.add("headObject");
+        PutObjectRequest stored = find(request.bucket(), request.key());
+        if (stored == null) {
+            throw NoSuchKeyException.builder().statusCode(404).build();
+        }
+        return HeadObjectResponse.builder()
+                .contentLength((long) contents.get(request.key()).length)
+                .contentEncoding(stored.contentEncoding())
+                .eTag("\"put\"")
+                .lastModified(Instant.EPOCH)
+                .metadata(stored.metadata())
+                .build();
+    }
+
+    @Override
+    public <ReturnT> ReturnT getObject(GetObjectRequest request, ResponseTransformer<GetObjectResponse, ReturnT> transformer) {
+        calls.add("getObject");
+        ranges.add(request.range());
+        PutObjectRequest stored = find(request.bucket(), request.key());
+        if (stored == null) {
+            throw NoSuchKeyException.builder().statusCode(404).build();
+        }
+        byte[] content = contents.get(request.key());
+        GetObjectResponse.Builder response = GetObjectResponse.builder()
+                .contentEncoding(stored.contentEncoding())
+                .contentType(stored.contentType())
+                .eTag("\"put\"")
+                .lastModified(Instant.EPOCH)
+                .metadata(stored.metadata());
+        if (request.range() != null) {
+            // Ranges of the stored bytes, as S3 serves them
+            String[] bounds = request.range().substring("bytes=".length()).split("-", -1);
+            int start = bounds[0].isEmpty() ? Math.max(0, content.length - Integer.parseInt(bounds[1])) : Integer.parseInt(bounds[0]);
+            int end = bounds[0].isEmpty() || bounds[1].isEmpty() ? content.length - 1 : Math.min(Integer.parseInt(bounds[1]), content.length - 1);
+            if (start >= content.length) {
+                throw S3Exception.builder().statusCode(416).message("Range not satisfiable").build();
+            }
+            response.contentRange("bytes " + start + "-" + end + "/" + content.length);
+            content = Arrays.copyOfRange(content, start, end + 1);
+        }
+        response.contentLength((long) content.length);
+        try {
+            return transformer.transform(response.build(), AbortableInputStream.create(new ByteArrayInputStream(content)));
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public DeleteObjectResponse deleteObject(DeleteObjectRequest request) {
+        calls.add("deleteObject " + request.bucket() + "/" + request.key());
+        if (find(request.bucket(), request.key()) != null) {
+            objects.remove(request.key());
+            contents.remove(request.key());
+        }
+        return DeleteObjectResponse.builder().build();
+    }
+
+    private PutObjectRequest find(String bucket, String key) {
+        PutObjectRequest stored = objects.get(key);
+        return stored == null || !stored.bucket().equals(bucket) ? null : stored;
+    }
+
+    @Override
+    public CreateMultipartUploadResponse createMultipartUpload(CreateMultipartUploadRequest request) {
+        calls.add("createMultipartUpload");
+        return CreateMultipartUploadResponse.builder().uploadId(UPLOAD_ID).build();
+    }
+
+    @Override
+    public UploadPartResponse uploadPart(UploadPartRequest request, RequestBody body) {
+        int partNumber = request.partNumber();
+        int attempt = partAttempts.computeIfAbsent(partNumber, number -> new AtomicInteger()).getAndIncrement();
+        byte[] content = read(body);
+        if (attempt < partFailureCount.getOrDefault(partNumber, 0)) {
+            throw S3Exception.builder().statusCode(partFailureStatus.get(partNumber)).message("Part " + partNumber + " failed").build();
+        }
+        parts.put(partNumber, content);
+        return UploadPartResponse.builder().eTag("\"part-" + partNumber + "\"").build();
+    }
+
+    @Override
+    public CompleteMultipartUploadResponse completeMultipartUpload(CompleteMultipartUploadRequest request) {
+        calls.add("completeMultipartUpload");
+        completed = request;
+        return CompleteMultipartUploadResponse.builder().build();
+    }
+
+    @Override
+    public AbortMultipartUploadResponse abortMultipartUpload(AbortMultipartUploadRequest request) {
+        calls.add("abortMultipartUpload");
+        return AbortMultipartUploadResponse.builder().build();
+    }
+
+    private static byte[] read(RequestBody body) {
+        try (InputStream inputStream = body.contentStreamProvider().newStream()) {
+            return inputStream.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public String serviceName() {
+        return SERVICE_NAME;
+    }
+
+    @Override
+    public void close() {
+    }
+}